@@ -0,0 +1,7 @@
+-- Add content_hash column to videos table for upload deduplication
+-- Run this SQL script if using spring.jpa.hibernate.ddl-auto=none or validate
+-- Rows with the same content_hash (SHA-256, hex) share one S3 object and thumbnail
+
+ALTER TABLE videos ADD COLUMN content_hash VARCHAR(64);
+
+CREATE INDEX idx_videos_content_hash ON videos (content_hash);
@@ -0,0 +1,8 @@
+-- Add media metadata columns to videos table (populated with ffprobe)
+-- Run this SQL script if using spring.jpa.hibernate.ddl-auto=none or validate
+-- Existing rows are filled in by the MEDIA_METADATA_BACKFILL batch job
+
+ALTER TABLE videos ADD COLUMN width INT;
+ALTER TABLE videos ADD COLUMN height INT;
+ALTER TABLE videos ADD COLUMN bitrate BIGINT;
+ALTER TABLE videos ADD COLUMN codec VARCHAR(50);
@@ -0,0 +1,7 @@
+-- Add menu image derivative columns to videos table (300x300 grid thumbnail and 800x600 detail image)
+-- Run this SQL script if using spring.jpa.hibernate.ddl-auto=none or validate
+-- Existing menu images get their derivatives when their menu is next assigned to a kiosk
+
+ALTER TABLE videos ADD COLUMN menu_thumbnail_s3_key VARCHAR(500);
+ALTER TABLE videos ADD COLUMN menu_detail_s3_key VARCHAR(500);
+ALTER TABLE videos ADD COLUMN menu_detail_file_size BIGINT;
@@ -0,0 +1,6 @@
+-- Add metadata probe attempt counter to videos table
+-- Run this SQL script if using spring.jpa.hibernate.ddl-auto=none or validate
+-- Rows whose ffprobe run failed media.metadata.backfill-max-attempts times are skipped by the MEDIA_METADATA_BACKFILL batch job
+-- Reset the counter (UPDATE videos SET metadata_probe_attempts = 0) to retry them
+
+ALTER TABLE videos ADD COLUMN metadata_probe_attempts INT NOT NULL DEFAULT 0;
@@ -0,0 +1,11 @@
+-- Index the storage key columns of the videos table
+-- Run this SQL script if using spring.jpa.hibernate.ddl-auto=none or validate
+-- Deleting or replacing a video looks up which rows still reference its objects by key;
+-- without these indexes every lookup scans the whole table
+-- Requires the kiosk rendition (optimized_s3_key) and menu derivative columns
+
+CREATE INDEX idx_videos_s3_key ON videos (s3_key);
+CREATE INDEX idx_videos_thumbnail_s3_key ON videos (thumbnail_s3_key);
+CREATE INDEX idx_videos_optimized_s3_key ON videos (optimized_s3_key);
+CREATE INDEX idx_videos_menu_thumbnail_s3_key ON videos (menu_thumbnail_s3_key);
+CREATE INDEX idx_videos_menu_detail_s3_key ON videos (menu_detail_s3_key);
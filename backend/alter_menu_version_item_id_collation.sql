@@ -0,0 +1,5 @@
+-- Compare menu version item IDs exactly (binary collation)
+-- Run this SQL script if create_menu_versions_tables.sql was run before item_id was declared with utf8mb4_bin
+-- With utf8mb4_unicode_ci, item IDs differing only in case or accents violated uk_menu_version_item
+
+ALTER TABLE menu_version_items MODIFY item_id VARCHAR(255) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin NOT NULL;
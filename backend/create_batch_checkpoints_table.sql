@@ -0,0 +1,14 @@
+-- Create batch_checkpoints table (resumable progress of long-running batch jobs)
+-- Run this SQL script if using spring.jpa.hibernate.ddl-auto=none or validate
+
+CREATE TABLE IF NOT EXISTS batch_checkpoints (
+    batch_type VARCHAR(50) NOT NULL PRIMARY KEY,
+    parameters VARCHAR(500),
+    last_processed_id BIGINT NOT NULL DEFAULT 0,
+    processed INT NOT NULL DEFAULT 0,
+    succeeded INT NOT NULL DEFAULT 0,
+    failed INT NOT NULL DEFAULT 0,
+    completed BIT(1) NOT NULL DEFAULT 0,
+    started_at DATETIME(6) NOT NULL,
+    updated_at DATETIME(6) NOT NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
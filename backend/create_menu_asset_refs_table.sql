@@ -0,0 +1,12 @@
+-- Create menu_asset_refs table (images and videos referenced by each menu XML)
+-- Run this SQL script if using spring.jpa.hibernate.ddl-auto=none or validate
+-- Menus uploaded before this table existed are indexed the next time they are assigned to a kiosk
+
+CREATE TABLE IF NOT EXISTS menu_asset_refs (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    menu_id BIGINT NOT NULL,
+    asset_id BIGINT NOT NULL,
+    kind VARCHAR(10) NOT NULL,
+    CONSTRAINT uk_menu_asset_ref UNIQUE (menu_id, asset_id, kind),
+    INDEX idx_menu_asset_ref_asset (asset_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
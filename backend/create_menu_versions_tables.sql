@@ -0,0 +1,33 @@
+-- Create menu_versions, menu_version_items and menu_version_assets tables (menu version diffs for kiosks)
+-- Run this SQL script if using spring.jpa.hibernate.ddl-auto=none or validate
+
+CREATE TABLE IF NOT EXISTS menu_versions (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    menu_id BIGINT NOT NULL,
+    lineage_id BIGINT NOT NULL,
+    version INT NOT NULL,
+    layout_hash VARCHAR(64) NOT NULL,
+    item_count INT NOT NULL,
+    created_at DATETIME(6) NOT NULL,
+    CONSTRAINT uk_menu_version_menu UNIQUE (menu_id),
+    INDEX idx_menu_version_lineage (lineage_id, version)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+CREATE TABLE IF NOT EXISTS menu_version_items (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    version_id BIGINT NOT NULL,
+    -- Binary collation: item IDs are compared exactly, like the menu parser deduplicates them
+    item_id VARCHAR(255) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin NOT NULL,
+    category VARCHAR(100),
+    content_hash VARCHAR(64) NOT NULL,
+    content TEXT NOT NULL,
+    CONSTRAINT uk_menu_version_item UNIQUE (version_id, item_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+CREATE TABLE IF NOT EXISTS menu_version_assets (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    version_id BIGINT NOT NULL,
+    asset_id BIGINT NOT NULL,
+    kind VARCHAR(10) NOT NULL,
+    CONSTRAINT uk_menu_version_asset UNIQUE (version_id, asset_id, kind)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
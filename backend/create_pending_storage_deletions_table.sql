@@ -0,0 +1,12 @@
+-- Create pending_storage_deletions table (persistent storage deletion queue)
+-- Run this SQL script if using spring.jpa.hibernate.ddl-auto=none or validate
+
+CREATE TABLE IF NOT EXISTS pending_storage_deletions (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    storage_key VARCHAR(500) NOT NULL,
+    attempts INT NOT NULL DEFAULT 0,
+    last_error VARCHAR(1000),
+    next_attempt_at DATETIME(6) NOT NULL,
+    created_at DATETIME(6) NOT NULL,
+    INDEX idx_pending_deletion_next_attempt (next_attempt_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
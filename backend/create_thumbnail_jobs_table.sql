@@ -0,0 +1,16 @@
+-- Create thumbnail_jobs table (persistent thumbnail generation queue)
+-- Run this SQL script if using spring.jpa.hibernate.ddl-auto=none or validate
+
+CREATE TABLE IF NOT EXISTS thumbnail_jobs (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    video_id BIGINT NOT NULL,
+    status VARCHAR(20) NOT NULL DEFAULT 'PENDING',
+    thumbnail_folder VARCHAR(100) NOT NULL,
+    source_path VARCHAR(500),
+    attempts INT NOT NULL DEFAULT 0,
+    last_error VARCHAR(1000),
+    created_at DATETIME(6) NOT NULL,
+    updated_at DATETIME(6) NOT NULL,
+    INDEX idx_thumbnail_job_status (status),
+    INDEX idx_thumbnail_job_video_id (video_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
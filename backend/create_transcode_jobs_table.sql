@@ -0,0 +1,18 @@
+-- Create transcode_jobs table (persistent kiosk rendition queue) and the rendition columns on videos
+-- Run this SQL script if using spring.jpa.hibernate.ddl-auto=none or validate
+
+ALTER TABLE videos ADD COLUMN optimized_s3_key VARCHAR(500);
+ALTER TABLE videos ADD COLUMN optimized_file_size BIGINT;
+
+CREATE TABLE IF NOT EXISTS transcode_jobs (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    video_id BIGINT NOT NULL,
+    status VARCHAR(20) NOT NULL DEFAULT 'PENDING',
+    source_path VARCHAR(500),
+    attempts INT NOT NULL DEFAULT 0,
+    last_error VARCHAR(1000),
+    created_at DATETIME(6) NOT NULL,
+    updated_at DATETIME(6) NOT NULL,
+    INDEX idx_transcode_job_status (status),
+    INDEX idx_transcode_job_video_id (video_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
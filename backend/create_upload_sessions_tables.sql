@@ -0,0 +1,34 @@
+-- Create upload_sessions and upload_session_parts tables (resumable chunked uploads)
+-- Run this SQL script if using spring.jpa.hibernate.ddl-auto=none or validate
+
+CREATE TABLE IF NOT EXISTS upload_sessions (
+    id VARCHAR(36) NOT NULL PRIMARY KEY,
+    uploaded_by_id BIGINT NOT NULL,
+    video_type VARCHAR(20) NOT NULL,
+    media_type VARCHAR(20) NOT NULL,
+    image_purpose VARCHAR(20),
+    title VARCHAR(255) NOT NULL,
+    description TEXT NOT NULL,
+    original_filename VARCHAR(255) NOT NULL,
+    content_type VARCHAR(50) NOT NULL,
+    file_size BIGINT NOT NULL,
+    chunk_size INT NOT NULL,
+    chunk_count INT NOT NULL,
+    storage_key VARCHAR(500) NOT NULL,
+    storage_upload_id VARCHAR(1024) NOT NULL,
+    status VARCHAR(20) NOT NULL DEFAULT 'ACTIVE',
+    video_id BIGINT,
+    created_at DATETIME(6) NOT NULL,
+    expires_at DATETIME(6) NOT NULL,
+    INDEX idx_upload_session_status_expires (status, expires_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+CREATE TABLE IF NOT EXISTS upload_session_parts (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    session_id VARCHAR(36) NOT NULL,
+    part_number INT NOT NULL,
+    e_tag VARCHAR(100) NOT NULL,
+    size BIGINT NOT NULL,
+    uploaded_at DATETIME(6) NOT NULL,
+    CONSTRAINT uk_upload_session_part UNIQUE (session_id, part_number)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
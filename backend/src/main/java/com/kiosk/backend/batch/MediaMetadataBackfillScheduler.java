@@ -0,0 +1,80 @@
+package com.kiosk.backend.batch;
+
+import com.kiosk.backend.entity.User;
+import com.kiosk.backend.service.EntityHistoryService;
+import com.kiosk.backend.service.MediaMetadataService;
+import com.kiosk.backend.service.MediaMetadataService.BackfillResult;
+import com.kiosk.backend.service.UserService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+
+/**
+ * Scheduled batch job to fill in media metadata (duration, resolution, bitrate, codec)
+ * for videos uploaded before metadata extraction existed or whose extraction failed.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MediaMetadataBackfillScheduler {
+
+    private static final String BATCH_TYPE = "MEDIA_METADATA_BACKFILL";
+
+    private final UserService userService;
+    private final EntityHistoryService entityHistoryService;
+    private final MediaMetadataService mediaMetadataService;
+
+    /**
+     * Runs daily at 4:00 AM KST (Korea Standard Time), after storage reconciliation.
+     */
+    @Scheduled(cron = "${media.metadata.backfill-cron:0 0 4 * * ?}", zone = "Asia/Seoul")
+    public void backfillMediaMetadata() {
+        log.info("Starting media metadata backfill batch job...");
+        execute(null, false);
+    }
+
+    /**
+     * Manual backfill that can be called on demand.
+     *
+     * @return Backfill statistics
+     */
+    public BackfillResult executeBackfillManually() {
+        log.info("Manual media metadata backfill requested...");
+
+        User currentUser = null;
+        try {
+            currentUser = userService.getCurrentUser();
+        } catch (Exception e) {
+            log.warn("Unable to get current user for manual batch execution", e);
+        }
+
+        BackfillResult result = execute(currentUser, true);
+        if (result == null) {
+            throw new RuntimeException("Media metadata backfill failed");
+        }
+        return result;
+    }
+
+    private BackfillResult execute(User user, boolean isManual) {
+        LocalDateTime startTime = LocalDateTime.now();
+        BackfillResult result = null;
+        String status = "SUCCESS";
+        String errorMessage = null;
+
+        try {
+            result = mediaMetadataService.backfill();
+        } catch (Exception e) {
+            status = "FAILED";
+            errorMessage = e.getMessage();
+            log.error("Error during media metadata backfill batch job", e);
+        }
+
+        entityHistoryService.recordBatchExecution(startTime,
+                result != null ? result.updated() : 0,
+                status, errorMessage, user, isManual, BATCH_TYPE);
+        return result;
+    }
+}
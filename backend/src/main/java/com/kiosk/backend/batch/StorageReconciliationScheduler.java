@@ -0,0 +1,81 @@
+package com.kiosk.backend.batch;
+
+import com.kiosk.backend.entity.User;
+import com.kiosk.backend.service.EntityHistoryService;
+import com.kiosk.backend.service.StorageReconciliationService;
+import com.kiosk.backend.service.StorageReconciliationService.ReconciliationResult;
+import com.kiosk.backend.service.UserService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+
+/**
+ * Scheduled batch job to reclaim orphaned storage objects.
+ * Lists the media folders page by page and queues objects that no video references
+ * (and that are older than the grace period) for batched deletion.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StorageReconciliationScheduler {
+
+    private static final String BATCH_TYPE = "STORAGE_RECONCILIATION";
+
+    private final UserService userService;
+    private final EntityHistoryService entityHistoryService;
+    private final StorageReconciliationService storageReconciliationService;
+
+    /**
+     * Runs daily at 3:30 AM KST (Korea Standard Time), after the history cleanup jobs.
+     */
+    @Scheduled(cron = "${storage.reconciliation.cron:0 30 3 * * ?}", zone = "Asia/Seoul")
+    public void reconcileStorage() {
+        log.info("Starting storage reconciliation batch job...");
+        execute(null, false);
+    }
+
+    /**
+     * Manual reconciliation that can be called on demand.
+     *
+     * @return Scan statistics including bytes reclaimed
+     */
+    public ReconciliationResult executeReconciliationManually() {
+        log.info("Manual storage reconciliation requested...");
+
+        User currentUser = null;
+        try {
+            currentUser = userService.getCurrentUser();
+        } catch (Exception e) {
+            log.warn("Unable to get current user for manual batch execution", e);
+        }
+
+        ReconciliationResult result = execute(currentUser, true);
+        if (result == null) {
+            throw new RuntimeException("Storage reconciliation failed");
+        }
+        return result;
+    }
+
+    private ReconciliationResult execute(User user, boolean isManual) {
+        LocalDateTime startTime = LocalDateTime.now();
+        ReconciliationResult result = null;
+        String status = "SUCCESS";
+        String errorMessage = null;
+
+        try {
+            result = storageReconciliationService.reconcile();
+        } catch (Exception e) {
+            status = "FAILED";
+            errorMessage = e.getMessage();
+            log.error("Error during storage reconciliation batch job", e);
+        }
+
+        entityHistoryService.recordBatchExecution(startTime,
+                result != null ? result.orphanedObjects() : 0,
+                status, errorMessage, user, isManual, BATCH_TYPE);
+        return result;
+    }
+}
@@ -0,0 +1,65 @@
+package com.kiosk.backend.batch;
+
+import com.kiosk.backend.entity.User;
+import com.kiosk.backend.service.EntityHistoryService;
+import com.kiosk.backend.service.ThumbnailRegenerationService;
+import com.kiosk.backend.service.ThumbnailRegenerationService.RegenerationFilter;
+import com.kiosk.backend.service.ThumbnailRegenerationService.RegenerationRun;
+import com.kiosk.backend.service.UserService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Batch job to regenerate thumbnails in bulk, e.g. after the thumbnail size changed.
+ * Only triggered manually and runs in the background; an interrupted run resumes from its checkpoint on the next call.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ThumbnailRegenerationBatch {
+
+    private final UserService userService;
+    private final EntityHistoryService entityHistoryService;
+    private final ThumbnailRegenerationService thumbnailRegenerationService;
+
+    /**
+     * Manual regeneration that can be called on demand.
+     * Starts the run in the background; its execution is recorded when it finishes.
+     *
+     * @param filter Selection of videos
+     * @param restart Ignore the checkpoint of an unfinished run
+     * @return ID of the started run
+     * @throws IllegalStateException if a regeneration is already running
+     */
+    public String executeRegenerationManually(RegenerationFilter filter, boolean restart) {
+        log.info("Manual thumbnail regeneration requested: {}, restart={}", filter, restart);
+
+        // Resolved on the request thread, the security context is not available to the run
+        User currentUser = null;
+        try {
+            currentUser = userService.getCurrentUser();
+        } catch (Exception e) {
+            log.warn("Unable to get current user for manual batch execution", e);
+        }
+
+        LocalDateTime startTime = LocalDateTime.now();
+        User executedBy = currentUser;
+        RegenerationRun run = thumbnailRegenerationService.start(filter, restart);
+        run.result().whenComplete((result, error) -> {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause != null) {
+                log.error("Error during thumbnail regeneration batch job", cause);
+            }
+            entityHistoryService.recordBatchExecution(startTime,
+                    result != null ? result.regenerated() : 0,
+                    cause == null ? "SUCCESS" : "FAILED",
+                    cause != null ? cause.getMessage() : null,
+                    executedBy, true, ThumbnailRegenerationService.BATCH_TYPE);
+        });
+        return run.runId();
+    }
+}
@@ -56,6 +56,8 @@ public class SecurityConfig {
                 .requestMatchers("/api/kiosks/kioskid/*").permitAll()
                 // Kiosk events - no auth needed (kiosk apps can log events freely)
                 .requestMatchers("/api/kiosk-events", "/api/kiosk-events/**").permitAll()
+                // Signed media URLs (file system media store) - the HMAC signature authorizes access
+                .requestMatchers("/api/media/file").permitAll()
                 // Kiosk video management - requires kiosk authentication (via headers)
                 .requestMatchers("/api/kiosks/*/videos-with-status").authenticated()
                 .requestMatchers("/api/kiosks/*/videos/*/status").authenticated()
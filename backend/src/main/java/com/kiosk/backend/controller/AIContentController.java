@@ -2,10 +2,12 @@ package com.kiosk.backend.controller;
 
 import com.kiosk.backend.annotation.RecordActivity;
 import com.kiosk.backend.entity.EntityHistory;
+import com.kiosk.backend.entity.UploadSession;
 import com.kiosk.backend.entity.User;
 import com.kiosk.backend.entity.Video;
 import com.kiosk.backend.repository.UserRepository;
 import com.kiosk.backend.service.EntityHistoryService;
+import com.kiosk.backend.service.ResumableUploadService;
 import com.kiosk.backend.service.VideoService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -33,6 +35,7 @@ public class AIContentController {
     private final VideoService videoService;
     private final UserRepository userRepository;
     private final EntityHistoryService entityHistoryService;
+    private final ResumableUploadService resumableUploadService;
 
     /**
      * Upload AI-generated content (image, video, or audio)
@@ -132,4 +135,63 @@ public class AIContentController {
                     .body(Map.of("error", "Failed to upload AI content: " + e.getMessage()));
         }
     }
+
+    /**
+     * Start a resumable upload of a large AI-generated file (Admin only)
+     * POST /api/ai/upload/sessions
+     * Chunks are then sent to PUT /api/videos/uploads/sessions/{sessionId}/chunks/{n}
+     * and the upload is finished with POST /api/videos/uploads/sessions/{sessionId}/complete.
+     */
+    @PostMapping("/upload/sessions")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> createAIUploadSession(
+            @RequestParam("filename") String filename,
+            @RequestParam("contentType") String contentType,
+            @RequestParam("fileSize") long fileSize,
+            @RequestParam("title") String title,
+            @RequestParam("description") String description,
+            @RequestParam(value = "imagePurpose", required = false) String imagePurpose,
+            Authentication authentication) {
+        try {
+            String userEmail = authentication.getName();
+            User user = userRepository.findByEmail(userEmail)
+                    .orElseThrow(() -> new RuntimeException("User not found: " + userEmail));
+
+            // Determine media type from content type
+            Video.MediaType mediaType;
+            if (contentType.startsWith("image/")) {
+                mediaType = Video.MediaType.IMAGE;
+            } else if (contentType.startsWith("video/")) {
+                mediaType = Video.MediaType.VIDEO;
+            } else if (contentType.startsWith("audio/")) {
+                mediaType = Video.MediaType.AUDIO;
+            } else {
+                return ResponseEntity.badRequest()
+                        .body(Map.of("error", "Unsupported media type: " + contentType));
+            }
+
+            // Parse imagePurpose if provided (only for images)
+            Video.ImagePurpose purposeEnum = null;
+            if (imagePurpose != null && !imagePurpose.trim().isEmpty()) {
+                try {
+                    purposeEnum = Video.ImagePurpose.valueOf(imagePurpose.toUpperCase());
+                } catch (IllegalArgumentException e) {
+                    return ResponseEntity.badRequest()
+                            .body(Map.of("error", "Invalid image purpose. Use GENERAL, REFERENCE, or MENU"));
+                }
+            }
+
+            UploadSession session = resumableUploadService.createSession(user.getId(), Video.VideoType.AI_GENERATED,
+                    mediaType, purposeEnum, filename, contentType, fileSize, title, description);
+            return ResponseEntity.status(HttpStatus.CREATED)
+                    .body(resumableUploadService.getSessionStatus(session.getId(), user.getId()));
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid AI upload session request: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Failed to create AI upload session", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Failed to create upload session: " + e.getMessage()));
+        }
+    }
 }
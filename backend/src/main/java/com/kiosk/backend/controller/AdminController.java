@@ -2,6 +2,10 @@ package com.kiosk.backend.controller;
 
 import com.kiosk.backend.dto.UserDTO;
 import com.kiosk.backend.entity.User;
+import com.kiosk.backend.service.MediaStore;
+import com.kiosk.backend.service.StorageDeletionQueue;
+import com.kiosk.backend.service.ThumbnailJobService;
+import com.kiosk.backend.service.TranscodeJobService;
 import com.kiosk.backend.service.UserService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -9,7 +13,9 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
@@ -23,6 +29,10 @@ import java.util.stream.Collectors;
 public class AdminController {
 
     private final UserService userService;
+    private final MediaStore mediaStore;
+    private final StorageDeletionQueue storageDeletionQueue;
+    private final ThumbnailJobService thumbnailJobService;
+    private final TranscodeJobService transcodeJobService;
 
     /**
      * Get all users pending approval.
@@ -87,4 +97,18 @@ public class AdminController {
                 .collect(Collectors.toList());
         return ResponseEntity.ok(userDTOs);
     }
+
+    /**
+     * Get storage layer statistics (cache hit/miss counts for S3, disk usage for the file system store, deletion, thumbnail and transcode job queues).
+     * GET /api/admin/storage/stats
+     */
+    @GetMapping("/storage/stats")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> getStorageStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(mediaStore.getStorageStats());
+        stats.put("deletionQueue", storageDeletionQueue.getStats());
+        stats.put("thumbnailJobs", thumbnailJobService.getStats());
+        stats.put("transcodeJobs", transcodeJobService.getStats());
+        return ResponseEntity.ok(stats);
+    }
 }
@@ -2,9 +2,18 @@ package com.kiosk.backend.controller;
 
 import com.kiosk.backend.batch.EntityHistoryCleanupScheduler;
 import com.kiosk.backend.batch.KioskEventCleanupScheduler;
+import com.kiosk.backend.batch.MediaMetadataBackfillScheduler;
+import com.kiosk.backend.batch.StorageReconciliationScheduler;
+import com.kiosk.backend.batch.ThumbnailRegenerationBatch;
 import com.kiosk.backend.entity.EntityHistory;
+import com.kiosk.backend.entity.Video;
 import com.kiosk.backend.repository.EntityHistoryRepository;
+import com.kiosk.backend.service.MediaMetadataService.BackfillResult;
+import com.kiosk.backend.service.StorageReconciliationService.ReconciliationResult;
+import com.kiosk.backend.service.ThumbnailRegenerationService;
+import com.kiosk.backend.service.ThumbnailRegenerationService.RegenerationFilter;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
@@ -25,6 +34,10 @@ public class BatchController {
 
     private final EntityHistoryCleanupScheduler cleanupScheduler;
     private final KioskEventCleanupScheduler kioskEventCleanupScheduler;
+    private final StorageReconciliationScheduler storageReconciliationScheduler;
+    private final MediaMetadataBackfillScheduler mediaMetadataBackfillScheduler;
+    private final ThumbnailRegenerationBatch thumbnailRegenerationBatch;
+    private final ThumbnailRegenerationService thumbnailRegenerationService;
     private final EntityHistoryRepository entityHistoryRepository;
 
     /**
@@ -66,6 +79,113 @@ public class BatchController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Manually trigger storage reconciliation batch job.
+     * Queues storage objects that no video references for deletion.
+     *
+     * @return Response with number of orphaned objects and bytes reclaimed
+     */
+    @PostMapping("/reconcile-storage")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> reconcileStorage() {
+        ReconciliationResult result = storageReconciliationScheduler.executeReconciliationManually();
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("scannedObjects", result.scannedObjects());
+        response.put("orphanedObjects", result.orphanedObjects());
+        response.put("reclaimedBytes", result.reclaimedBytes());
+        response.put("dryRun", result.dryRun());
+        response.put("message", result.dryRun()
+                ? "Storage reconciliation dry run completed. No objects were deleted."
+                : "Storage reconciliation completed. Orphaned objects were queued for deletion.");
+
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Manually trigger media metadata backfill batch job.
+     * Probes videos, audio and images that have no duration/resolution/codec yet.
+     *
+     * @return Response with number of processed and updated records
+     */
+    @PostMapping("/backfill-media-metadata")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> backfillMediaMetadata() {
+        BackfillResult result = mediaMetadataBackfillScheduler.executeBackfillManually();
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("processedRecords", result.processed());
+        response.put("updatedRecords", result.updated());
+        response.put("failedRecords", result.failed());
+        response.put("elapsedMillis", result.elapsedMillis());
+        response.put("message", "Media metadata backfill completed successfully");
+
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Manually trigger bulk thumbnail regeneration.
+     * Starts regenerating thumbnails of all images and videos matching the filter in the background; an
+     * unfinished run with the same filter is resumed from its checkpoint unless restart is set.
+     * Poll /api/batch/regenerate-thumbnails/progress for the progress of the run.
+     *
+     * @param mediaType IMAGE or VIDEO (optional, both by default)
+     * @param videoType UPLOAD or AI_GENERATED (optional)
+     * @param uploadedById Uploader user ID (optional)
+     * @param missingOnly Only videos without a thumbnail
+     * @param restart Start from the first video even if the last run did not finish
+     * @return 202 with the run ID, or 409 if a run is already active
+     */
+    @PostMapping("/regenerate-thumbnails")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> regenerateThumbnails(
+            @RequestParam(required = false) Video.MediaType mediaType,
+            @RequestParam(required = false) Video.VideoType videoType,
+            @RequestParam(required = false) Long uploadedById,
+            @RequestParam(defaultValue = "false") boolean missingOnly,
+            @RequestParam(defaultValue = "false") boolean restart) {
+        Map<String, Object> response = new HashMap<>();
+        if (mediaType != null && mediaType != Video.MediaType.IMAGE && mediaType != Video.MediaType.VIDEO) {
+            response.put("success", false);
+            response.put("message", "Thumbnails can only be regenerated for IMAGE and VIDEO");
+            return ResponseEntity.badRequest().body(response);
+        }
+
+        String runId;
+        try {
+            runId = thumbnailRegenerationBatch.executeRegenerationManually(
+                    new RegenerationFilter(mediaType, videoType, uploadedById, missingOnly), restart);
+        } catch (IllegalStateException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+        }
+
+        response.put("success", true);
+        response.put("runId", runId);
+        response.put("progressUrl", "/api/batch/regenerate-thumbnails/progress");
+        response.put("message", "Thumbnail regeneration started");
+
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+    }
+
+    /**
+     * Get progress of the current or last thumbnail regeneration run.
+     *
+     * @return Checkpoint of the run, or 404 if no run was recorded
+     */
+    @GetMapping("/regenerate-thumbnails/progress")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> getThumbnailRegenerationProgress() {
+        Map<String, Object> progress = thumbnailRegenerationService.getProgress();
+        if (progress == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(progress);
+    }
+
     /**
      * Get recent batch execution history (last 10 executions).
      *
@@ -8,8 +8,10 @@ import com.kiosk.backend.entity.Kiosk;
 import com.kiosk.backend.entity.Video;
 import com.kiosk.backend.repository.KioskRepository;
 import com.kiosk.backend.security.JwtTokenProvider;
+import com.kiosk.backend.service.ContentDeliveryService;
 import com.kiosk.backend.service.KioskService;
 import com.kiosk.backend.service.VideoService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -40,6 +42,7 @@ public class KioskController {
     private final com.kiosk.backend.service.KioskEventService kioskEventService;
     private final com.kiosk.backend.websocket.WebSocketSessionManager webSocketSessionManager;
     private final VideoService videoService;
+    private final ContentDeliveryService contentDeliveryService;
 
     // SecureRandom for generating unpredictable session versions
     private static final SecureRandom secureRandom = new SecureRandom();
@@ -324,23 +327,35 @@ public class KioskController {
     /**
      * Get videos assigned to a kiosk with download status
      * GET /api/kiosks/{id}/videos-with-status
+     * Content-hash ETag (If-None-Match -> 304), gzip-encoded if accepted
      */
     @GetMapping("/{id}/videos-with-status")
-    public ResponseEntity<List<com.kiosk.backend.dto.KioskVideoDTO>> getKioskVideosWithStatus(@PathVariable Long id) {
+    public ResponseEntity<byte[]> getKioskVideosWithStatus(@PathVariable Long id, HttpServletRequest request) {
         log.info("GET /api/kiosks/{}/videos-with-status", id);
         List<com.kiosk.backend.dto.KioskVideoDTO> videos = kioskService.getKioskVideosWithStatus(id);
-        return ResponseEntity.ok(videos);
+        return contentDeliveryService.json(videos, request);
     }
 
     /**
      * Get videos assigned to a kiosk by kioskid with download status
      * GET /api/kiosks/by-kioskid/{kioskid}/videos-with-status
      * Automatically records SYNC_STARTED and SYNC_COMPLETED events
+     * Content-hash ETag (If-None-Match -> 304 when the list is unchanged), gzip-encoded if accepted
      */
     @GetMapping("/by-kioskid/{kioskid}/videos-with-status")
-    public ResponseEntity<List<com.kiosk.backend.dto.KioskVideoDTO>> getKioskVideosWithStatusByKioskId(@PathVariable String kioskid) {
+    public ResponseEntity<byte[]> getKioskVideosWithStatusByKioskId(@PathVariable String kioskid, HttpServletRequest request) {
         log.info("GET /api/kiosks/by-kioskid/{}/videos-with-status", kioskid);
 
+        // Fetch videos
+        List<com.kiosk.backend.dto.KioskVideoDTO> videos = kioskService.getKioskVideosWithStatusByKioskId(kioskid);
+        ResponseEntity<byte[]> response = contentDeliveryService.json(videos, request);
+
+        // Nothing to sync when the kiosk's list is still current - do not record sync events for the poll
+        if (response.getStatusCode() == HttpStatus.NOT_MODIFIED) {
+            log.debug("Video list of kiosk {} not modified, no sync events recorded", kioskid);
+            return response;
+        }
+
         // Record SYNC_STARTED event
         try {
             kioskEventService.recordEvent(kioskid, com.kiosk.backend.entity.KioskEvent.EventType.SYNC_STARTED,
@@ -350,9 +365,6 @@ public class KioskController {
             log.error("Failed to record SYNC_STARTED event for kiosk: {}", kioskid, e);
         }
 
-        // Fetch videos
-        List<com.kiosk.backend.dto.KioskVideoDTO> videos = kioskService.getKioskVideosWithStatusByKioskId(kioskid);
-
         // Record SYNC_COMPLETED event
         try {
             String eventMessage = String.format("영상 파일 %d 개 동기완료", videos.size());
@@ -364,7 +376,7 @@ public class KioskController {
             log.error("Failed to record SYNC_COMPLETED event for kiosk: {}", kioskid, e);
         }
 
-        return ResponseEntity.ok(videos);
+        return response;
     }
 
     /**
@@ -790,9 +802,10 @@ public class KioskController {
     /**
      * Get menu download URL for kiosk
      * GET /api/kiosks/by-kioskid/{kioskid}/menu/download-url
+     * Content-hash ETag (If-None-Match -> 304), gzip-encoded if accepted
      */
     @GetMapping("/by-kioskid/{kioskid}/menu/download-url")
-    public ResponseEntity<?> getMenuDownloadUrl(@PathVariable String kioskid) {
+    public ResponseEntity<?> getMenuDownloadUrl(@PathVariable String kioskid, HttpServletRequest request) {
         try {
             log.info("GET /api/kiosks/by-kioskid/{}/menu/download-url", kioskid);
 
@@ -803,10 +816,10 @@ public class KioskController {
             // Check if kiosk has menuId
             if (kiosk.getMenuId() == null) {
                 log.info("Kiosk {} has no menu assigned", kioskid);
-                return ResponseEntity.ok(Map.of(
+                return contentDeliveryService.json(Map.of(
                         "hasMenu", false,
                         "message", "No menu assigned to this kiosk"
-                ));
+                ), request);
             }
 
             // Get menu video by ID
@@ -826,10 +839,11 @@ public class KioskController {
             response.put("downloadUrl", downloadUrl);
             response.put("filename", menu.getOriginalFilename());
             response.put("title", menu.getTitle());
+            response.put("contentHash", menu.getContentHash());  // Kiosk can skip the download if its copy has this hash
 
             log.info("Menu download URL generated for kiosk {}, menu ID: {}", kioskid, menu.getId());
 
-            return ResponseEntity.ok(response);
+            return contentDeliveryService.json(response, request);
         } catch (Exception e) {
             log.error("Failed to get menu download URL for kiosk {}: {}", kioskid, e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -862,12 +876,13 @@ public class KioskController {
             }
 
             // Generate fresh presigned download URL (60 minutes)
-            String freshUrl = videoService.getPresignedDownloadUrl(video.getS3Key());
+            String freshUrl = videoService.getPresignedDownloadUrl(VideoService.kioskMediaKey(video));
 
             // Also generate thumbnail URL if available
             String thumbnailUrl = null;
-            if (video.getThumbnailS3Key() != null && !video.getThumbnailS3Key().isEmpty()) {
-                thumbnailUrl = videoService.getPresignedDownloadUrl(video.getThumbnailS3Key());
+            String thumbnailKey = VideoService.kioskThumbnailKey(video, false);
+            if (thumbnailKey != null && !thumbnailKey.isEmpty()) {
+                thumbnailUrl = videoService.getPresignedDownloadUrl(thumbnailKey);
             }
 
             Map<String, Object> response = new HashMap<>();
@@ -901,18 +916,26 @@ public class KioskController {
             // Get all videos for this kiosk with status
             List<com.kiosk.backend.dto.KioskVideoDTO> videos = kioskService.getKioskVideosWithStatusByKioskId(kioskid);
 
-            // Refresh presigned URLs for all videos
+            // Load all referenced videos at once and refresh their presigned URLs in one batch (60 minutes)
+            List<Video> videoEntities = videoService.getVideosByIds(videos.stream()
+                    .filter(video -> video.getUrl() != null)
+                    .map(com.kiosk.backend.dto.KioskVideoDTO::getVideoId)
+                    .toList());
+            Map<Long, Video> videosById = new HashMap<>();
+            videoEntities.forEach(video -> videosById.put(video.getId(), video));
+            Map<String, String> freshUrls = videoService.generatePresignedUrls(videoEntities, 60);
+
             for (com.kiosk.backend.dto.KioskVideoDTO video : videos) {
                 if (video.getUrl() != null) {
-                    Video videoEntity = videoService.getVideoById(video.getVideoId());
+                    Video videoEntity = videosById.get(video.getVideoId());
                     if (videoEntity != null && videoEntity.getS3Key() != null) {
-                        String freshUrl = videoService.getPresignedDownloadUrl(videoEntity.getS3Key());
-                        video.setPresignedUrl(freshUrl);
+                        boolean menuImage = "MENU_IMAGE".equals(video.getSourceType());
+                        video.setPresignedUrl(freshUrls.get(VideoService.kioskMediaKey(videoEntity, menuImage)));
 
                         // Also refresh thumbnail URL if available
-                        if (videoEntity.getThumbnailS3Key() != null && !videoEntity.getThumbnailS3Key().isEmpty()) {
-                            String thumbnailUrl = videoService.getPresignedDownloadUrl(videoEntity.getThumbnailS3Key());
-                            video.setThumbnailUrl(thumbnailUrl);
+                        String thumbnailKey = VideoService.kioskThumbnailKey(videoEntity, menuImage);
+                        if (thumbnailKey != null && !thumbnailKey.isEmpty()) {
+                            video.setThumbnailUrl(freshUrls.get(thumbnailKey));
                         }
                     }
                 }
@@ -0,0 +1,72 @@
+package com.kiosk.backend.controller;
+
+import com.kiosk.backend.service.FileSystemMediaStore;
+import com.kiosk.backend.service.MediaStreamingService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * Serves files of the file system media store through signed URLs
+ * (the local counterpart of S3 presigned URLs - no login required, the signature authorizes access)
+ */
+@RestController
+@RequestMapping("/api/media")
+@Profile(FileSystemMediaStore.PROFILE)
+@RequiredArgsConstructor
+@Slf4j
+public class MediaFileController {
+
+    private final FileSystemMediaStore fileSystemMediaStore;
+    private final MediaStreamingService mediaStreamingService;
+
+    /**
+     * Download a stored file with a signed URL (supports Range requests)
+     * GET /api/media/file?key={key}&expires={epochSeconds}&signature={signature}
+     */
+    @GetMapping("/file")
+    public ResponseEntity<?> getFile(@RequestParam String key,
+                                     @RequestParam long expires,
+                                     @RequestParam String signature,
+                                     HttpServletRequest request,
+                                     HttpServletResponse response) {
+        if (!fileSystemMediaStore.verifySignature(key, expires, signature)) {
+            log.warn("Rejected media request with invalid or expired signature: {}", key);
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("error", "Invalid or expired signature"));
+        }
+
+        if (!fileSystemMediaStore.fileExists(key)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("error", "File not found: " + key));
+        }
+
+        String filename = key.substring(key.lastIndexOf('/') + 1);
+        String contentType = MediaTypeFactory.getMediaType(filename)
+                .map(Object::toString)
+                .orElse(null);
+
+        try {
+            mediaStreamingService.stream(key, contentType, filename, request, response);
+            // Response has been written directly
+            return null;
+        } catch (Exception e) {
+            if (response.isCommitted()) {
+                log.warn("Streaming of {} interrupted: {}", key, e.getMessage());
+                return null;
+            }
+            log.error("Failed to serve file: {}", key, e);
+            response.reset();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Failed to serve file: " + e.getMessage()));
+        }
+    }
+}
@@ -2,14 +2,25 @@ package com.kiosk.backend.controller;
 
 import com.kiosk.backend.annotation.RecordActivity;
 import com.kiosk.backend.entity.EntityHistory;
+import com.kiosk.backend.entity.UploadSession;
 import com.kiosk.backend.entity.User;
 import com.kiosk.backend.entity.Video;
 import com.kiosk.backend.repository.UserRepository;
+import com.kiosk.backend.service.ContentDeliveryService;
 import com.kiosk.backend.service.EntityHistoryService;
+import com.kiosk.backend.service.MediaStreamingService;
+import com.kiosk.backend.service.MenuIndexService;
+import com.kiosk.backend.service.MenuRenderService;
+import com.kiosk.backend.service.MenuVersionService;
+import com.kiosk.backend.service.ResumableUploadService;
 import com.kiosk.backend.service.VideoService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
@@ -33,6 +44,12 @@ public class VideoController {
     private final UserRepository userRepository;
     private final EntityHistoryService entityHistoryService;
     private final com.kiosk.backend.service.KioskService kioskService;
+    private final MediaStreamingService mediaStreamingService;
+    private final ResumableUploadService resumableUploadService;
+    private final MenuRenderService menuRenderService;
+    private final MenuVersionService menuVersionService;
+    private final MenuIndexService menuIndexService;
+    private final ContentDeliveryService contentDeliveryService;
 
     /**
      * Helper method to extract actual user email from authentication
@@ -47,6 +64,21 @@ public class VideoController {
         return userEmail;
     }
 
+    /**
+     * IMAGE and DOCUMENT entries carry a presigned URL for the original file in list responses
+     */
+    private static boolean hasInlinePresignedUrl(Video video) {
+        return video.getMediaType() == Video.MediaType.IMAGE || video.getMediaType() == Video.MediaType.DOCUMENT;
+    }
+
+    /**
+     * XML documents (menus) are returned with their S3 URLs replaced by presigned URLs
+     */
+    private static boolean isXmlDocument(Video video) {
+        String contentType = video.getContentType();
+        return contentType != null && (contentType.equals("text/xml") || contentType.equals("application/xml"));
+    }
+
     /**
      * Upload a video file (Admin only)
      * POST /api/videos/upload
@@ -99,6 +131,169 @@ public class VideoController {
         }
     }
 
+    /**
+     * Start a resumable upload of a large file (Admin only)
+     * POST /api/videos/uploads/sessions
+     * The response tells the client the chunk size and count; chunks are sent with PUT .../chunks/{n}.
+     */
+    @PostMapping("/uploads/sessions")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> createUploadSession(
+            @RequestParam("filename") String filename,
+            @RequestParam("contentType") String contentType,
+            @RequestParam("fileSize") long fileSize,
+            @RequestParam("title") String title,
+            @RequestParam("description") String description,
+            @RequestParam(value = "imagePurpose", required = false) String imagePurpose,
+            Authentication authentication) {
+        try {
+            String userEmail = extractUserEmail(authentication);
+            User user = userRepository.findByEmail(userEmail)
+                    .orElseThrow(() -> new RuntimeException("User not found: " + userEmail));
+
+            // Parse imagePurpose if provided
+            Video.ImagePurpose purposeEnum = null;
+            if (imagePurpose != null && !imagePurpose.trim().isEmpty()) {
+                try {
+                    purposeEnum = Video.ImagePurpose.valueOf(imagePurpose.toUpperCase());
+                } catch (IllegalArgumentException e) {
+                    return ResponseEntity.badRequest()
+                            .body(Map.of("error", "Invalid image purpose. Use GENERAL, REFERENCE, or MENU"));
+                }
+            }
+
+            UploadSession session = resumableUploadService.createSession(user.getId(),
+                    Video.VideoType.UPLOAD, VideoService.detectMediaType(contentType), purposeEnum,
+                    filename, contentType, fileSize, title, description);
+            return ResponseEntity.status(HttpStatus.CREATED)
+                    .body(resumableUploadService.getSessionStatus(session.getId(), user.getId()));
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid upload session request: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Failed to create upload session", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Failed to create upload session: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Upload one chunk of a resumable upload (Admin only)
+     * PUT /api/videos/uploads/sessions/{sessionId}/chunks/{chunkNumber}
+     * The request body is the raw chunk content; a failed chunk is simply sent again.
+     */
+    @PutMapping("/uploads/sessions/{sessionId}/chunks/{chunkNumber}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> uploadChunk(
+            @PathVariable String sessionId,
+            @PathVariable int chunkNumber,
+            HttpServletRequest request,
+            Authentication authentication) {
+        try {
+            String userEmail = extractUserEmail(authentication);
+            User user = userRepository.findByEmail(userEmail)
+                    .orElseThrow(() -> new RuntimeException("User not found: " + userEmail));
+
+            int receivedChunks = resumableUploadService.uploadChunk(sessionId, user.getId(), chunkNumber,
+                    request.getInputStream(), request.getContentLengthLong());
+            return ResponseEntity.ok(Map.of("chunkNumber", chunkNumber, "receivedChunks", receivedChunks));
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid chunk upload request: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Failed to upload chunk {} of session {}", chunkNumber, sessionId, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Failed to upload chunk: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Get the state of a resumable upload, including the chunks received so far (Admin only)
+     * GET /api/videos/uploads/sessions/{sessionId}
+     */
+    @GetMapping("/uploads/sessions/{sessionId}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> getUploadSession(@PathVariable String sessionId, Authentication authentication) {
+        try {
+            String userEmail = extractUserEmail(authentication);
+            User user = userRepository.findByEmail(userEmail)
+                    .orElseThrow(() -> new RuntimeException("User not found: " + userEmail));
+
+            return ResponseEntity.ok(resumableUploadService.getSessionStatus(sessionId, user.getId()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Failed to get upload session {}", sessionId, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Failed to get upload session: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Complete a resumable upload and create the video (Admin only)
+     * POST /api/videos/uploads/sessions/{sessionId}/complete
+     */
+    @PostMapping("/uploads/sessions/{sessionId}/complete")
+    @PreAuthorize("hasRole('ADMIN')")
+    @RecordActivity(
+        entityType = EntityHistory.EntityType.VIDEO,
+        action = EntityHistory.ActionType.VIDEO_UPLOAD,
+        description = "영상 업로드 (분할 업로드)"
+    )
+    public ResponseEntity<?> completeUploadSession(@PathVariable String sessionId, Authentication authentication) {
+        try {
+            String userEmail = extractUserEmail(authentication);
+            User user = userRepository.findByEmail(userEmail)
+                    .orElseThrow(() -> new RuntimeException("User not found: " + userEmail));
+
+            Video video = resumableUploadService.completeSession(sessionId, user.getId());
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("message", "Video uploaded successfully");
+            response.put("id", video.getId());
+            response.put("title", video.getTitle());
+            response.put("video", video);
+
+            return ResponseEntity.status(HttpStatus.CREATED).body(response);
+        } catch (IllegalArgumentException e) {
+            log.error("Invalid upload completion request: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Failed to complete upload session {}", sessionId, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Failed to complete upload: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Cancel a resumable upload and discard its chunks (Admin only)
+     * DELETE /api/videos/uploads/sessions/{sessionId}
+     */
+    @DeleteMapping("/uploads/sessions/{sessionId}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> abortUploadSession(@PathVariable String sessionId, Authentication authentication) {
+        try {
+            String userEmail = extractUserEmail(authentication);
+            User user = userRepository.findByEmail(userEmail)
+                    .orElseThrow(() -> new RuntimeException("User not found: " + userEmail));
+
+            resumableUploadService.abortSession(sessionId, user.getId());
+            return ResponseEntity.ok(Map.of("message", "Upload cancelled"));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Failed to abort upload session {}", sessionId, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Failed to cancel upload: " + e.getMessage()));
+        }
+    }
+
     /**
      * Get all videos (Admin only)
      * GET /api/videos
@@ -152,6 +347,9 @@ public class VideoController {
                 }
             }
 
+            // Sign all thumbnails and IMAGE/DOCUMENT files in one batch (7 days)
+            Map<String, String> presignedUrls = videoService.generatePresignedUrls(videos, 10080, VideoController::hasInlinePresignedUrl);
+
             List<Map<String, Object>> videosWithUser = videos.stream().map(video -> {
                 Map<String, Object> videoMap = new HashMap<>();
                 videoMap.put("id", video.getId());
@@ -166,18 +364,16 @@ public class VideoController {
                 videoMap.put("s3Url", video.getS3Url());
                 videoMap.put("thumbnailS3Key", video.getThumbnailS3Key());
 
-                // Generate presigned URL for thumbnail if exists
+                // Presigned URL for thumbnail if exists
                 if (video.getThumbnailS3Key() != null && !video.getThumbnailS3Key().isEmpty()) {
-                    String thumbnailPresignedUrl = videoService.generateThumbnailPresignedUrl(video.getId(), 10080); // 7 days
-                    videoMap.put("thumbnailUrl", thumbnailPresignedUrl);
+                    videoMap.put("thumbnailUrl", presignedUrls.get(video.getThumbnailS3Key()));
                 } else {
                     videoMap.put("thumbnailUrl", null);
                 }
 
-                // For IMAGE and DOCUMENT types, also generate presigned URL for the original file
-                if (video.getMediaType() == Video.MediaType.IMAGE || video.getMediaType() == Video.MediaType.DOCUMENT) {
-                    String presignedUrl = videoService.generatePresignedUrl(video.getId(), 10080); // 7 days
-                    videoMap.put("presignedUrl", presignedUrl);
+                // For IMAGE and DOCUMENT types, also include presigned URL for the original file
+                if (hasInlinePresignedUrl(video)) {
+                    videoMap.put("presignedUrl", presignedUrls.get(video.getS3Key()));
                 } else {
                     videoMap.put("presignedUrl", null);
                 }
@@ -234,6 +430,9 @@ public class VideoController {
                 videos = videoService.getVideosByUser(user.getId());
             }
 
+            // Sign all thumbnails and IMAGE/DOCUMENT files in one batch (7 days)
+            Map<String, String> presignedUrls = videoService.generatePresignedUrls(videos, 10080, VideoController::hasInlinePresignedUrl);
+
             List<Map<String, Object>> videosWithUser = videos.stream().map(video -> {
                 Map<String, Object> videoMap = new HashMap<>();
                 videoMap.put("id", video.getId());
@@ -248,18 +447,16 @@ public class VideoController {
                 videoMap.put("s3Url", video.getS3Url());
                 videoMap.put("thumbnailS3Key", video.getThumbnailS3Key());
 
-                // Generate presigned URL for thumbnail if exists
+                // Presigned URL for thumbnail if exists
                 if (video.getThumbnailS3Key() != null && !video.getThumbnailS3Key().isEmpty()) {
-                    String thumbnailPresignedUrl = videoService.generateThumbnailPresignedUrl(video.getId(), 10080); // 7 days
-                    videoMap.put("thumbnailUrl", thumbnailPresignedUrl);
+                    videoMap.put("thumbnailUrl", presignedUrls.get(video.getThumbnailS3Key()));
                 } else {
                     videoMap.put("thumbnailUrl", null);
                 }
 
-                // For IMAGE and DOCUMENT types, also generate presigned URL for the original file
-                if (video.getMediaType() == Video.MediaType.IMAGE || video.getMediaType() == Video.MediaType.DOCUMENT) {
-                    String presignedUrl = videoService.generatePresignedUrl(video.getId(), 10080); // 7 days
-                    videoMap.put("presignedUrl", presignedUrl);
+                // For IMAGE and DOCUMENT types, also include presigned URL for the original file
+                if (hasInlinePresignedUrl(video)) {
+                    videoMap.put("presignedUrl", presignedUrls.get(video.getS3Key()));
                 } else {
                     videoMap.put("presignedUrl", null);
                 }
@@ -286,9 +483,10 @@ public class VideoController {
     /**
      * Get a specific video by ID with presigned download URL
      * GET /api/videos/{id}
+     * Content-hash ETag (If-None-Match -> 304), gzip-encoded if accepted
      */
     @GetMapping("/{id}")
-    public ResponseEntity<?> getVideoById(@PathVariable Long id) {
+    public ResponseEntity<?> getVideoById(@PathVariable Long id, HttpServletRequest request) {
         try {
             Video video = videoService.getVideoById(id);
 
@@ -338,23 +536,17 @@ public class VideoController {
             }
 
             // For XML files, include content in response
-            String contentType = video.getContentType();
-            if (contentType != null && (contentType.equals("text/xml") || contentType.equals("application/xml"))) {
+            if (isXmlDocument(video)) {
                 try {
-                    byte[] fileBytes = videoService.downloadVideoFile(id);
-                    String content = new String(fileBytes, java.nio.charset.StandardCharsets.UTF_8);
-
-                    // Replace S3 URLs in XML content with presigned URLs
-                    content = videoService.replaceS3UrlsWithPresignedUrls(content, 10080); // 7 days validity
-
-                    response.put("content", content);
+                    // S3 URLs replaced with presigned URLs (7 days validity), cached per presign window
+                    response.put("content", menuRenderService.render(id, 10080).text());
                 } catch (Exception e) {
                     log.warn("Failed to download XML content for video {}: {}", id, e.getMessage());
                     // Don't fail the entire request if content download fails
                 }
             }
 
-            return ResponseEntity.ok(response);
+            return contentDeliveryService.json(response, request);
         } catch (RuntimeException e) {
             log.error("Video not found: {}", id);
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
@@ -366,6 +558,68 @@ public class VideoController {
         }
     }
 
+    /**
+     * Get XML document content with S3 URLs replaced by presigned URLs (7 days validity)
+     * GET /api/videos/{id}/content
+     * Serves the cached UTF-8 bytes of the current presign window (content-hash ETag, gzip-encoded if accepted)
+     */
+    @GetMapping("/{id}/content")
+    public ResponseEntity<?> getDocumentContent(@PathVariable Long id, HttpServletRequest request) {
+        try {
+            Video video = videoService.getVideoById(id);
+            if (!isXmlDocument(video)) {
+                return ResponseEntity.badRequest()
+                        .body(Map.of("error", "Not an XML document: " + id));
+            }
+
+            MenuRenderService.RenderedMenu rendered = menuRenderService.render(id, 10080);
+            long maxAgeSeconds = Math.max(0, (rendered.validUntil() - System.currentTimeMillis()) / 1000);
+            return contentDeliveryService.deliver(rendered.content(), rendered.contentHash(),
+                    new MediaType("application", "xml", StandardCharsets.UTF_8),
+                    CacheControl.maxAge(maxAgeSeconds, java.util.concurrent.TimeUnit.SECONDS).cachePrivate(),
+                    request);
+        } catch (RuntimeException e) {
+            log.error("Failed to get content of document {}: {}", id, e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Stream file content with HTTP Range support (resumable downloads / seeking)
+     * GET /api/videos/{id}/stream
+     * Responds 206 Partial Content for a satisfiable Range (honoring If-Range), 416 otherwise
+     */
+    @GetMapping("/{id}/stream")
+    public ResponseEntity<?> streamVideo(@PathVariable Long id,
+                                         HttpServletRequest request,
+                                         HttpServletResponse response) {
+        Video video;
+        try {
+            video = videoService.getVideoById(id);
+        } catch (RuntimeException e) {
+            log.error("Video not found: {}", id);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("error", e.getMessage()));
+        }
+
+        try {
+            mediaStreamingService.stream(video, request, response);
+            // Response has been written directly
+            return null;
+        } catch (Exception e) {
+            if (response.isCommitted()) {
+                // Typically the client aborted the download mid-stream
+                log.warn("Streaming of video {} interrupted: {}", id, e.getMessage());
+                return null;
+            }
+            log.error("Failed to stream video: {}", id, e);
+            response.reset();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Failed to stream video: " + e.getMessage()));
+        }
+    }
+
     /**
      * Generate presigned URL for video playback/download (Admin only)
      * GET /api/videos/{id}/presigned-url
@@ -407,6 +661,23 @@ public class VideoController {
         }
     }
 
+    /**
+     * List the menus that reference an image or video (Admin only)
+     * GET /api/videos/{id}/menus
+     */
+    @GetMapping("/{id}/menus")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> getMenusReferencingVideo(@PathVariable Long id) {
+        try {
+            List<Long> menuIds = videoService.findMenusReferencingAsset(id);
+            return ResponseEntity.ok(Map.of("videoId", id, "menuIds", menuIds));
+        } catch (Exception e) {
+            log.error("Failed to find menus referencing video: {}", id, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Failed to find menus: " + e.getMessage()));
+        }
+    }
+
     /**
      * Update video title and/or description (Admin only)
      * PATCH /api/videos/{id}
@@ -658,6 +929,13 @@ public class VideoController {
             Video oldMenu = videoService.getVideoById(oldMenuId);
             String oldMenuTitle = oldMenu.getTitle();
 
+            // Keep the structure of the old menu, so kiosks can fetch the difference to the new one
+            try {
+                menuVersionService.ensureVersion(oldMenuId);
+            } catch (Exception e) {
+                log.warn("Failed to record version of menu {}, kiosks will download the new menu in full: {}", oldMenuId, e.getMessage());
+            }
+
             // Step 2: Delete old menu from S3 and database
             videoService.deleteVideo(oldMenuId, user.getId());
             log.info("Deleted old menu: id={}, title={}", oldMenuId, oldMenuTitle);
@@ -677,6 +955,9 @@ public class VideoController {
             log.info("Uploaded new menu: id={}, title={}, filename={}",
                     newMenu.getId(), newMenu.getTitle(), newMenu.getOriginalFilename());
 
+            // The new menu's row is not committed yet, so its version is linked to the old menu's after commit
+            menuIndexService.linkVersionAfterCommit(oldMenuId, newMenu.getId());
+
             // Step 4: Migrate all kiosks from old menu ID to new menu ID
             int migratedCount = kioskService.migrateKiosksToNewMenu(
                     oldMenuId,
@@ -709,6 +990,30 @@ public class VideoController {
         }
     }
 
+    /**
+     * Get the difference between the menu a kiosk has and the current menu
+     * GET /api/videos/{menuId}/menu-diff?fromMenuId={kioskMenuId}
+     * Lists added, changed and removed items (with the XML of added and changed items) and assets.
+     * fullDownload=true means the menus are unrelated and the whole menu XML must be downloaded.
+     */
+    @GetMapping("/{menuId}/menu-diff")
+    public ResponseEntity<?> getMenuDiff(@PathVariable Long menuId, @RequestParam("fromMenuId") Long fromMenuId) {
+        try {
+            return ResponseEntity.ok(menuVersionService.diff(fromMenuId, menuId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            // Version not recorded yet (menu just uploaded) - the kiosk downloads the whole menu
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", e.getMessage()));
+        } catch (RuntimeException e) {
+            log.error("Failed to compute menu diff {} -> {}: {}", fromMenuId, menuId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("error", e.getMessage()));
+        }
+    }
+
     /**
      * Save Runway-generated image from URL to S3 and database
      * POST /api/videos/save-runway-image
@@ -0,0 +1,61 @@
+package com.kiosk.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Progress of a long-running batch job, saved after every page of work.
+ * Rows are processed in id order, so a job interrupted by a restart or timeout
+ * resumes after the last id it finished instead of starting over.
+ */
+@Entity
+@Table(name = "batch_checkpoints")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BatchCheckpoint {
+
+    // Batch type (e.g., "THUMBNAIL_REGENERATION"), one checkpoint per type
+    @Id
+    @Column(length = 50)
+    private String batchType;
+
+    // Parameters of the run; a run with different parameters starts over
+    @Column(length = 500)
+    private String parameters;
+
+    // Last row id whose processing finished
+    @Column(nullable = false)
+    @Builder.Default
+    private Long lastProcessedId = 0L;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Integer processed = 0;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Integer succeeded = 0;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Integer failed = 0;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Boolean completed = false;
+
+    @Column(nullable = false)
+    private LocalDateTime startedAt;
+
+    @UpdateTimestamp
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+}
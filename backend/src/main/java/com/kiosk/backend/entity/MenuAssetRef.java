@@ -0,0 +1,46 @@
+package com.kiosk.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Image or video referenced by a menu XML document.
+ * Written once when the menu is uploaded, so kiosk assignment never has to read the XML again
+ * and menus can be looked up by the assets they use.
+ */
+@Entity
+@Table(name = "menu_asset_refs", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_menu_asset_ref", columnNames = {"menu_id", "asset_id", "kind"})
+}, indexes = {
+    @Index(name = "idx_menu_asset_ref_asset", columnList = "asset_id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class MenuAssetRef {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Video ID of the menu XML document
+    @Column(name = "menu_id", nullable = false)
+    private Long menuId;
+
+    // Video ID of the referenced image or video
+    @Column(name = "asset_id", nullable = false)
+    private Long assetId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 10)
+    private AssetKind kind;
+
+    public enum AssetKind {
+        IMAGE,  // <imageId> elements
+        VIDEO   // videoId of the menu metadata, categories, items and actions
+    }
+}
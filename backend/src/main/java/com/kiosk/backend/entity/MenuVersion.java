@@ -0,0 +1,56 @@
+package com.kiosk.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Snapshot of one version of a menu XML document.
+ * Updating a menu uploads it under a new video ID; all versions of a menu share the lineage ID
+ * (the video ID of the first version). Rows outlive the deleted menu videos, so kiosks still
+ * on an older version can ask for the difference to the current one.
+ */
+@Entity
+@Table(name = "menu_versions", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_menu_version_menu", columnNames = {"menu_id"})
+}, indexes = {
+    @Index(name = "idx_menu_version_lineage", columnList = "lineage_id, version")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class MenuVersion {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Video ID of the menu XML document of this version
+    @Column(name = "menu_id", nullable = false)
+    private Long menuId;
+
+    // Video ID of the first version of the menu
+    @Column(name = "lineage_id", nullable = false)
+    private Long lineageId;
+
+    // 1-based version number within the lineage
+    @Column(nullable = false)
+    private Integer version;
+
+    // SHA-256 of everything outside the menu items (metadata, categories, actions)
+    @Column(nullable = false, length = 64)
+    private String layoutHash;
+
+    @Column(nullable = false)
+    private Integer itemCount;
+
+    @CreationTimestamp
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,36 @@
+package com.kiosk.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Image or video referenced by a menu version.
+ * Unlike {@link MenuAssetRef}, kept after the menu video is deleted.
+ */
+@Entity
+@Table(name = "menu_version_assets", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_menu_version_asset", columnNames = {"version_id", "asset_id", "kind"})
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class MenuVersionAsset {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "version_id", nullable = false)
+    private Long versionId;
+
+    @Column(name = "asset_id", nullable = false)
+    private Long assetId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 10)
+    private MenuAssetRef.AssetKind kind;
+}
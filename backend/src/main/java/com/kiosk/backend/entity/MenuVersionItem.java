@@ -0,0 +1,44 @@
+package com.kiosk.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Menu item (&lt;item&gt; element) of a menu version, compared by content hash between versions
+ */
+@Entity
+@Table(name = "menu_version_items", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_menu_version_item", columnNames = {"version_id", "item_id"})
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class MenuVersionItem {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "version_id", nullable = false)
+    private Long versionId;
+
+    // id attribute of the item ("#n" for the n-th item without one)
+    // Binary collation, so IDs differing only in case or accents are distinct items, as they are in the parser
+    @Column(name = "item_id", nullable = false, columnDefinition = "VARCHAR(255) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin")
+    private String itemId;
+
+    @Column(length = 100)
+    private String category;
+
+    // SHA-256 of the normalized item XML
+    @Column(nullable = false, length = 64)
+    private String contentHash;
+
+    // Normalized item XML (whitespace between elements and comments removed)
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String content;
+}
@@ -0,0 +1,70 @@
+package com.kiosk.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Thumbnail generation job for an uploaded video or image.
+ * Rows are written in the upload transaction and processed by the thumbnail worker pool,
+ * so uploads return as soon as the original file is stored.
+ */
+@Entity
+@Table(name = "thumbnail_jobs", indexes = {
+    @Index(name = "idx_thumbnail_job_status", columnList = "status"),
+    @Index(name = "idx_thumbnail_job_video_id", columnList = "video_id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ThumbnailJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "video_id", nullable = false)
+    private Long videoId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    @Builder.Default
+    private JobStatus status = JobStatus.PENDING;
+
+    // Storage folder for the generated thumbnail (e.g., "thumbnails/uploads/")
+    @Column(nullable = false, length = 100)
+    private String thumbnailFolder;
+
+    // Local copy of the upload kept for the worker; null or missing means the original is fetched from storage
+    @Column(length = 500)
+    private String sourcePath;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Integer attempts = 0;
+
+    @Column(length = 1000)
+    private String lastError;
+
+    @CreationTimestamp
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @UpdateTimestamp
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+
+    public enum JobStatus {
+        PENDING,    // Waiting for a worker
+        RUNNING,    // Claimed by a worker
+        COMPLETED,  // Thumbnail stored on the video
+        FAILED      // Gave up after the maximum number of attempts
+    }
+}
@@ -0,0 +1,66 @@
+package com.kiosk.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Kiosk rendition job for an uploaded video.
+ * Rows are written in the upload transaction and processed by the transcoding worker pool,
+ * which stores a fast-start copy of the video for kiosk playback.
+ */
+@Entity
+@Table(name = "transcode_jobs", indexes = {
+    @Index(name = "idx_transcode_job_status", columnList = "status"),
+    @Index(name = "idx_transcode_job_video_id", columnList = "video_id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TranscodeJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "video_id", nullable = false)
+    private Long videoId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    @Builder.Default
+    private JobStatus status = JobStatus.PENDING;
+
+    // Local copy of the upload kept for the worker; null or missing means the original is read from storage
+    @Column(length = 500)
+    private String sourcePath;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Integer attempts = 0;
+
+    @Column(length = 1000)
+    private String lastError;
+
+    @CreationTimestamp
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @UpdateTimestamp
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+
+    public enum JobStatus {
+        PENDING,    // Waiting for a worker
+        RUNNING,    // Claimed by a worker
+        COMPLETED,  // Rendition stored on the video, or the original is already kiosk-ready
+        FAILED      // Gave up after the maximum number of attempts
+    }
+}
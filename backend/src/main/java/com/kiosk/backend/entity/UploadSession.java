@@ -0,0 +1,99 @@
+package com.kiosk.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Resumable chunked upload of a large media file.
+ * Each chunk is stored as one part of a storage multipart upload, so a dropped connection
+ * only loses the chunk in flight; the video row is created when the session is completed.
+ */
+@Entity
+@Table(name = "upload_sessions", indexes = {
+    @Index(name = "idx_upload_session_status_expires", columnList = "status, expires_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UploadSession {
+
+    // Random UUID, handed to the client as the session id
+    @Id
+    @Column(length = 36)
+    private String id;
+
+    @Column(nullable = false)
+    private Long uploadedById;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Video.VideoType videoType;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Video.MediaType mediaType;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 20)
+    private Video.ImagePurpose imagePurpose;
+
+    @Column(nullable = false, length = 255)
+    private String title;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String description;
+
+    @Column(nullable = false, length = 255)
+    private String originalFilename;
+
+    @Column(nullable = false, length = 50)
+    private String contentType;
+
+    @Column(nullable = false)
+    private Long fileSize;
+
+    // Size of every chunk except the last
+    @Column(nullable = false)
+    private Integer chunkSize;
+
+    @Column(nullable = false)
+    private Integer chunkCount;
+
+    // Storage key and multipart upload id the chunks are uploaded to
+    @Column(nullable = false, length = 500)
+    private String storageKey;
+
+    @Column(nullable = false, length = 1024)
+    private String storageUploadId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    @Builder.Default
+    private SessionStatus status = SessionStatus.ACTIVE;
+
+    // Created video (set when the session is completed)
+    @Column
+    private Long videoId;
+
+    @CreationTimestamp
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    // Extended with every received chunk; expired sessions are aborted by the cleanup sweep
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    public enum SessionStatus {
+        ACTIVE,      // Receiving chunks
+        COMPLETING,  // Parts are being assembled and the video row created
+        COMPLETED,   // Video created
+        ABORTED      // Cancelled by the client, failed or expired
+    }
+}
@@ -0,0 +1,46 @@
+package com.kiosk.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Chunk of an upload session that was stored as a multipart upload part.
+ * One row per chunk, so chunks uploaded in parallel never overwrite each other's state.
+ */
+@Entity
+@Table(name = "upload_session_parts", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_upload_session_part", columnNames = {"session_id", "part_number"})
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UploadSessionPart {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "session_id", nullable = false, length = 36)
+    private String sessionId;
+
+    // 1-based chunk number, equal to the storage part number
+    @Column(name = "part_number", nullable = false)
+    private Integer partNumber;
+
+    @Column(nullable = false, length = 100)
+    private String eTag;
+
+    @Column(nullable = false)
+    private Long size;
+
+    @UpdateTimestamp
+    @Column(nullable = false)
+    private LocalDateTime uploadedAt;
+}
@@ -10,7 +10,14 @@ import org.hibernate.annotations.CreationTimestamp;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "videos")
+@Table(name = "videos", indexes = {
+    @Index(name = "idx_videos_content_hash", columnList = "content_hash"),
+    @Index(name = "idx_videos_s3_key", columnList = "s3_key"),
+    @Index(name = "idx_videos_thumbnail_s3_key", columnList = "thumbnail_s3_key"),
+    @Index(name = "idx_videos_optimized_s3_key", columnList = "optimized_s3_key"),
+    @Index(name = "idx_videos_menu_thumbnail_s3_key", columnList = "menu_thumbnail_s3_key"),
+    @Index(name = "idx_videos_menu_detail_s3_key", columnList = "menu_detail_s3_key")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -77,6 +84,23 @@ public class Video {
     @Column(length = 1000)
     private String thumbnailUrl;
 
+    // Kiosk playback rendition (fast-start MP4, optionally re-encoded); null means kiosks download the original
+    @Column(length = 500)
+    private String optimizedS3Key;
+
+    @Column
+    private Long optimizedFileSize; // Bytes
+
+    // Menu image derivatives (coffee menu schema: 300x300 grid thumbnail, 800x600 detail image); null until generated
+    @Column(length = 500)
+    private String menuThumbnailS3Key;
+
+    @Column(length = 500)
+    private String menuDetailS3Key;
+
+    @Column
+    private Long menuDetailFileSize; // Bytes
+
     @Column(nullable = false)
     private Long uploadedById;
 
@@ -93,6 +117,26 @@ public class Video {
     @Column
     private Integer duration; // Video duration in seconds
 
+    // Media metadata extracted with ffprobe (null until probed)
+    @Column
+    private Integer width; // Pixels
+
+    @Column
+    private Integer height; // Pixels
+
+    @Column
+    private Long bitrate; // Bits per second
+
+    @Column(length = 50)
+    private String codec; // Video codec for videos and images, audio codec for audio (e.g., "h264", "aac")
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Integer metadataProbeAttempts = 0; // Failed ffprobe runs of the metadata backfill
+
+    @Column(length = 64)
+    private String contentHash; // SHA-256 of the file content (hex), used to deduplicate uploads
+
     // Kiosk download flag
     @Column(nullable = false)
     @Builder.Default
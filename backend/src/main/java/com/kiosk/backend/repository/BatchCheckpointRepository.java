@@ -0,0 +1,9 @@
+package com.kiosk.backend.repository;
+
+import com.kiosk.backend.entity.BatchCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface BatchCheckpointRepository extends JpaRepository<BatchCheckpoint, String> {
+}
@@ -1,12 +1,14 @@
 package com.kiosk.backend.repository;
 
 import com.kiosk.backend.entity.KioskVideo;
+import com.kiosk.backend.entity.MenuAssetRef;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -53,4 +55,37 @@ public interface KioskVideoRepository extends JpaRepository<KioskVideo, Long> {
      * Find a specific kiosk-video assignment
      */
     KioskVideo findByKioskIdAndVideoId(Long kioskId, Long videoId);
+
+    /**
+     * Remove a menu XML and the referenced assets of one kind from several kiosks
+     * Uses the menu_asset_refs index instead of reading the menu XML
+     * @return the number of deleted records
+     */
+    @Modifying
+    @Query("DELETE FROM KioskVideo kv WHERE kv.kioskId IN :kioskIds AND (kv.videoId = :menuId OR kv.videoId IN " +
+           "(SELECT r.assetId FROM MenuAssetRef r WHERE r.menuId = :menuId AND r.kind = :kind))")
+    int deleteMenuAssignments(@Param("kioskIds") Collection<Long> kioskIds, @Param("menuId") Long menuId,
+                              @Param("kind") MenuAssetRef.AssetKind kind);
+
+    /**
+     * Assign a menu XML (MANUAL) and every existing image (MENU_IMAGE) and video (MENU_VIDEO) it references
+     * to several kiosks, skipping assignments that already exist
+     * An asset referenced both as image and video is assigned once, as MENU_IMAGE.
+     * @return the number of inserted records
+     */
+    @Modifying
+    @Query(value = "INSERT INTO kiosk_videos (kiosk_id, video_id, display_order, created_at, assigned_at, download_status, source_type, menu_id) " +
+                   "SELECT k.id, a.asset_id, 0, NOW(6), NOW(6), 'PENDING', a.source_type, :menuIdText " +
+                   "FROM kiosks k JOIN (" +
+                   "  SELECT :menuId AS asset_id, 'MANUAL' AS source_type " +
+                   "  UNION ALL " +
+                   "  SELECT r.asset_id, CASE MIN(r.kind) WHEN 'IMAGE' THEN 'MENU_IMAGE' ELSE 'MENU_VIDEO' END " +
+                   "  FROM menu_asset_refs r JOIN videos v ON v.id = r.asset_id " +
+                   "  WHERE r.menu_id = :menuId AND r.asset_id <> :menuId GROUP BY r.asset_id" +
+                   ") a ON 1 = 1 " +
+                   "WHERE k.id IN (:kioskIds) " +
+                   "AND NOT EXISTS (SELECT 1 FROM kiosk_videos kv WHERE kv.kiosk_id = k.id AND kv.video_id = a.asset_id)",
+           nativeQuery = true)
+    int insertMenuAssignments(@Param("kioskIds") Collection<Long> kioskIds, @Param("menuId") Long menuId,
+                              @Param("menuIdText") String menuIdText);
 }
@@ -0,0 +1,40 @@
+package com.kiosk.backend.repository;
+
+import com.kiosk.backend.entity.MenuAssetRef;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Repository
+public interface MenuAssetRefRepository extends JpaRepository<MenuAssetRef, Long> {
+
+    /**
+     * Check if a menu has been indexed
+     */
+    boolean existsByMenuId(Long menuId);
+
+    /**
+     * Find the assets of one kind referenced by a menu
+     */
+    @Query("SELECT r.assetId FROM MenuAssetRef r WHERE r.menuId = :menuId AND r.kind = :kind ORDER BY r.id")
+    List<Long> findAssetIds(@Param("menuId") Long menuId, @Param("kind") MenuAssetRef.AssetKind kind);
+
+    /**
+     * Find the menus that reference an asset
+     */
+    @Query("SELECT DISTINCT r.menuId FROM MenuAssetRef r WHERE r.assetId = :assetId ORDER BY r.menuId")
+    List<Long> findMenuIdsByAssetId(@Param("assetId") Long assetId);
+
+    /**
+     * Delete the index rows of a menu
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM MenuAssetRef r WHERE r.menuId = :menuId")
+    int deleteByMenuId(@Param("menuId") Long menuId);
+}
@@ -0,0 +1,12 @@
+package com.kiosk.backend.repository;
+
+import com.kiosk.backend.entity.MenuVersionAsset;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface MenuVersionAssetRepository extends JpaRepository<MenuVersionAsset, Long> {
+    List<MenuVersionAsset> findByVersionIdOrderByIdAsc(Long versionId);
+}
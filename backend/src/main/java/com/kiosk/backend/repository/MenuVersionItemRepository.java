@@ -0,0 +1,12 @@
+package com.kiosk.backend.repository;
+
+import com.kiosk.backend.entity.MenuVersionItem;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface MenuVersionItemRepository extends JpaRepository<MenuVersionItem, Long> {
+    List<MenuVersionItem> findByVersionIdOrderByIdAsc(Long versionId);
+}
@@ -0,0 +1,19 @@
+package com.kiosk.backend.repository;
+
+import com.kiosk.backend.entity.MenuVersion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface MenuVersionRepository extends JpaRepository<MenuVersion, Long> {
+    Optional<MenuVersion> findByMenuId(Long menuId);
+
+    boolean existsByMenuId(Long menuId);
+
+    @Query("SELECT COALESCE(MAX(v.version), 0) FROM MenuVersion v WHERE v.lineageId = :lineageId")
+    int findLatestVersionNumber(@Param("lineageId") Long lineageId);
+}
@@ -0,0 +1,18 @@
+package com.kiosk.backend.repository;
+
+import com.kiosk.backend.entity.PendingStorageDeletion;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface PendingStorageDeletionRepository extends JpaRepository<PendingStorageDeletion, Long> {
+    List<PendingStorageDeletion> findByNextAttemptAtLessThanEqualOrderByIdAsc(LocalDateTime now, Pageable pageable);
+
+    @Query("SELECT p.storageKey FROM PendingStorageDeletion p")
+    List<String> findAllStorageKeys();
+}
@@ -0,0 +1,40 @@
+package com.kiosk.backend.repository;
+
+import com.kiosk.backend.entity.TranscodeJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Repository
+public interface TranscodeJobRepository extends JpaRepository<TranscodeJob, Long> {
+    List<TranscodeJob> findByStatusOrderByIdAsc(TranscodeJob.JobStatus status);
+
+    long countByStatus(TranscodeJob.JobStatus status);
+
+    @Query("SELECT j.sourcePath FROM TranscodeJob j WHERE j.sourcePath IS NOT NULL AND j.status IN :statuses")
+    List<String> findSourcePathsByStatusIn(@Param("statuses") List<TranscodeJob.JobStatus> statuses);
+
+    /**
+     * Claim a pending job for a worker
+     * @return 1 if this caller claimed the job, 0 if another worker got there first
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE TranscodeJob j SET j.status = 'RUNNING', j.attempts = j.attempts + 1, j.updatedAt = CURRENT_TIMESTAMP " +
+           "WHERE j.id = :id AND j.status = 'PENDING'")
+    int claim(@Param("id") Long id);
+
+    /**
+     * Return jobs interrupted by a shutdown or crash to the queue
+     * @return the number of reset jobs
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE TranscodeJob j SET j.status = 'PENDING' WHERE j.status = 'RUNNING'")
+    int resetRunningJobs();
+}
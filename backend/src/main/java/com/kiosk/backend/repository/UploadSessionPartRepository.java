@@ -0,0 +1,24 @@
+package com.kiosk.backend.repository;
+
+import com.kiosk.backend.entity.UploadSessionPart;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface UploadSessionPartRepository extends JpaRepository<UploadSessionPart, Long> {
+    List<UploadSessionPart> findBySessionIdOrderByPartNumberAsc(String sessionId);
+
+    Optional<UploadSessionPart> findBySessionIdAndPartNumber(String sessionId, Integer partNumber);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM UploadSessionPart p WHERE p.sessionId = :sessionId")
+    int deleteBySessionId(@Param("sessionId") String sessionId);
+}
@@ -0,0 +1,32 @@
+package com.kiosk.backend.repository;
+
+import com.kiosk.backend.entity.UploadSession;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface UploadSessionRepository extends JpaRepository<UploadSession, String> {
+    List<UploadSession> findByStatusInAndExpiresAtBefore(List<UploadSession.SessionStatus> statuses, LocalDateTime time);
+
+    /**
+     * Move a session from one state to another
+     * @return 1 if the session was in the expected state, 0 otherwise (e.g. completed concurrently)
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE UploadSession s SET s.status = :to WHERE s.id = :id AND s.status = :from")
+    int transition(@Param("id") String id, @Param("from") UploadSession.SessionStatus from,
+                   @Param("to") UploadSession.SessionStatus to);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE UploadSession s SET s.expiresAt = :expiresAt WHERE s.id = :id AND s.status = 'ACTIVE'")
+    int extendExpiry(@Param("id") String id, @Param("expiresAt") LocalDateTime expiresAt);
+}
@@ -1,10 +1,17 @@
 package com.kiosk.backend.repository;
 
 import com.kiosk.backend.entity.Video;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface VideoRepository extends JpaRepository<Video, Long> {
@@ -17,4 +24,120 @@ public interface VideoRepository extends JpaRepository<Video, Long> {
 
     // Duplicate check method - only check by original filename
     boolean existsByOriginalFilename(String originalFilename);
+
+    // Content deduplication - identical uploads share one S3 object and thumbnail
+    Optional<Video> findFirstByContentHashAndFileSize(String contentHash, Long fileSize);
+
+    /**
+     * Storage key columns of every video that references one of the keys
+     * (as file, thumbnail, kiosk rendition or menu derivative)
+     * @return Rows of [s3Key, thumbnailS3Key, optimizedS3Key, menuThumbnailS3Key, menuDetailS3Key]
+     */
+    @Query("SELECT v.s3Key, v.thumbnailS3Key, v.optimizedS3Key, v.menuThumbnailS3Key, v.menuDetailS3Key FROM Video v " +
+           "WHERE v.s3Key IN :keys OR v.thumbnailS3Key IN :keys OR v.optimizedS3Key IN :keys " +
+           "OR v.menuThumbnailS3Key IN :keys OR v.menuDetailS3Key IN :keys")
+    List<Object[]> findKeyColumnsReferencing(@Param("keys") Collection<String> keys);
+
+    // Storage reconciliation - key projections only, no entity loading
+    @Query("SELECT v.s3Key FROM Video v")
+    List<String> findAllS3Keys();
+
+    @Query("SELECT v.thumbnailS3Key FROM Video v WHERE v.thumbnailS3Key IS NOT NULL")
+    List<String> findAllThumbnailS3Keys();
+
+    @Query("SELECT v.optimizedS3Key FROM Video v WHERE v.optimizedS3Key IS NOT NULL")
+    List<String> findAllOptimizedS3Keys();
+
+    @Query("SELECT v.menuThumbnailS3Key FROM Video v WHERE v.menuThumbnailS3Key IS NOT NULL")
+    List<String> findAllMenuThumbnailS3Keys();
+
+    @Query("SELECT v.menuDetailS3Key FROM Video v WHERE v.menuDetailS3Key IS NOT NULL")
+    List<String> findAllMenuDetailS3Keys();
+
+    /**
+     * Mark videos as downloadable in one statement (menu images referenced by a menu)
+     * @param ids Video IDs; keep the list bounded, every ID is a bind parameter
+     * @return the number of updated records (already downloadable or missing videos are not counted)
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Video v SET v.downloadable = true WHERE v.id IN :ids AND (v.downloadable = false OR v.downloadable IS NULL)")
+    int markDownloadable(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Set only the thumbnail columns, so a background worker cannot overwrite concurrent edits to the row
+     * @return the number of updated records (0 if the video was deleted)
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Video v SET v.thumbnailS3Key = :thumbnailS3Key, v.thumbnailUrl = :thumbnailUrl WHERE v.id = :id")
+    int updateThumbnail(@Param("id") Long id, @Param("thumbnailS3Key") String thumbnailS3Key,
+                        @Param("thumbnailUrl") String thumbnailUrl);
+
+    /**
+     * Images and videos matching the thumbnail regeneration filter, in id order (keyset pagination)
+     * Null filter values match every row.
+     */
+    @Query("SELECT v FROM Video v WHERE v.id > :afterId AND v.mediaType IN :mediaTypes " +
+           "AND (:videoType IS NULL OR v.videoType = :videoType) " +
+           "AND (:uploadedById IS NULL OR v.uploadedById = :uploadedById) " +
+           "AND (:missingOnly = false OR v.thumbnailS3Key IS NULL) ORDER BY v.id")
+    List<Video> findThumbnailRegenerationCandidates(@Param("afterId") Long afterId,
+                                                    @Param("mediaTypes") Collection<Video.MediaType> mediaTypes,
+                                                    @Param("videoType") Video.VideoType videoType,
+                                                    @Param("uploadedById") Long uploadedById,
+                                                    @Param("missingOnly") boolean missingOnly,
+                                                    Pageable pageable);
+
+    /**
+     * Set only the kiosk rendition columns
+     * @return the number of updated records (0 if the video was deleted)
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Video v SET v.optimizedS3Key = :optimizedS3Key, v.optimizedFileSize = :optimizedFileSize WHERE v.id = :id")
+    int updateOptimizedRendition(@Param("id") Long id, @Param("optimizedS3Key") String optimizedS3Key,
+                                 @Param("optimizedFileSize") Long optimizedFileSize);
+
+    /**
+     * Set the menu image derivatives unless the video already has them
+     * @return the number of updated records (0 if the video was deleted or derivatives were stored concurrently)
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Video v SET v.menuThumbnailS3Key = :menuThumbnailS3Key, v.menuDetailS3Key = :menuDetailS3Key, " +
+           "v.menuDetailFileSize = :menuDetailFileSize WHERE v.id = :id AND v.menuThumbnailS3Key IS NULL")
+    int updateMenuDerivatives(@Param("id") Long id, @Param("menuThumbnailS3Key") String menuThumbnailS3Key,
+                              @Param("menuDetailS3Key") String menuDetailS3Key,
+                              @Param("menuDetailFileSize") Long menuDetailFileSize);
+
+    /**
+     * Videos, audio and images without probed media metadata, in id order (keyset pagination)
+     * Rows that failed to probe maxAttempts times are left out
+     */
+    @Query("SELECT v FROM Video v WHERE v.id > :afterId AND v.codec IS NULL AND v.mediaType <> 'DOCUMENT' " +
+           "AND v.metadataProbeAttempts < :maxAttempts ORDER BY v.id")
+    List<Video> findMetadataBackfillCandidates(@Param("afterId") Long afterId, @Param("maxAttempts") int maxAttempts,
+                                               Pageable pageable);
+
+    /**
+     * Count a failed metadata probe of the backfill
+     * @return the number of updated records (0 if the video was deleted)
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Video v SET v.metadataProbeAttempts = v.metadataProbeAttempts + 1 WHERE v.id = :id")
+    int incrementMetadataProbeAttempts(@Param("id") Long id);
+
+    /**
+     * Set only the media metadata columns
+     * @return the number of updated records (0 if the video was deleted)
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Video v SET v.duration = :duration, v.width = :width, v.height = :height, " +
+           "v.bitrate = :bitrate, v.codec = :codec WHERE v.id = :id")
+    int updateMediaMetadata(@Param("id") Long id, @Param("duration") Integer duration,
+                            @Param("width") Integer width, @Param("height") Integer height,
+                            @Param("bitrate") Long bitrate, @Param("codec") String codec);
 }
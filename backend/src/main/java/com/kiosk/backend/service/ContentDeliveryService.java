@@ -0,0 +1,187 @@
+package com.kiosk.backend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Delivers polled responses (menus, kiosk video lists) with content-hash ETags and gzip encoding.
+ * A request whose If-None-Match matches the current content gets 304 Not Modified without a body.
+ * Gzip variants are cached by content hash, so each version of a response is compressed once.
+ * Brotli ({@code br}) is not offered: the JDK has no Brotli encoder, so clients that only accept
+ * {@code br} get the identity encoding.
+ */
+@Service
+@Slf4j
+public class ContentDeliveryService {
+
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    // Smaller responses are sent uncompressed (gzip framing would outweigh the savings)
+    @Value("${delivery.compression.min-size:1024}")
+    private int minCompressSize;
+
+    @Value("${delivery.compression.cache-max-bytes:33554432}")
+    private long cacheMaxBytes;
+
+    // Gzip-encoded content by SHA-256 of the uncompressed content
+    private Cache<String, byte[]> gzipVariants;
+
+    public ContentDeliveryService(ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        gzipVariants = Caffeine.newBuilder()
+                .maximumWeight(cacheMaxBytes)
+                .weigher((String hash, byte[] compressed) -> compressed.length)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, gzipVariants, "gzipVariants");
+        log.info("Compressed response cache initialized (maxBytes: {}, minSize: {})", cacheMaxBytes, minCompressSize);
+    }
+
+    /**
+     * Respond with a JSON body, must be revalidated by the client on every use
+     * @param body Response object (serialized with the application's ObjectMapper)
+     * @param request HTTP request (If-None-Match / Accept-Encoding headers are read from it)
+     * @return 200 with the (possibly gzip-encoded) JSON, or 304 if the client's copy is current
+     */
+    public ResponseEntity<byte[]> json(Object body, HttpServletRequest request) {
+        try {
+            return deliver(objectMapper.writeValueAsBytes(body), null, MediaType.APPLICATION_JSON,
+                    CacheControl.noCache(), request);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize response: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Respond with content validated by its hash
+     * @param content Uncompressed response body
+     * @param contentHash SHA-256 hex of the content if already known, or null to compute it
+     * @param contentType Content type of the body
+     * @param cacheControl Cache-Control header
+     * @param request HTTP request (If-None-Match / Accept-Encoding headers are read from it)
+     * @return 200 with the (possibly gzip-encoded) content, or 304 if the client's copy is current
+     */
+    public ResponseEntity<byte[]> deliver(byte[] content, String contentHash, MediaType contentType,
+                                          CacheControl cacheControl, HttpServletRequest request) {
+        String hash = contentHash != null ? contentHash : sha256(content);
+        boolean gzip = content.length >= minCompressSize && acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+
+        // Each encoding is a different representation, so it gets its own strong ETag
+        String eTag = "\"" + hash + (gzip ? "-gzip" : "") + "\"";
+        if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), hash)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(eTag)
+                    .cacheControl(cacheControl)
+                    .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                    .build();
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(contentType)
+                .cacheControl(cacheControl)
+                .varyBy(HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            byte[] compressed = gzipVariants.get(hash, key -> gzip(content));
+            return response.eTag(eTag)
+                    .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                    .body(compressed);
+        }
+        return response.eTag(eTag).body(content);
+    }
+
+    /**
+     * SHA-256 of content as lowercase hex
+     */
+    public static String sha256(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Check If-None-Match against both encodings of the content (weak comparison, as RFC 9110 requires)
+     */
+    private static boolean matches(String ifNoneMatch, String hash) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            String value = tag.trim();
+            if (value.equals("*")) {
+                return true;
+            }
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            if (value.equals("\"" + hash + "\"") || value.equals("\"" + hash + "-gzip\"")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (!parts[0].trim().equalsIgnoreCase("gzip")) {
+                continue;
+            }
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        return Double.parseDouble(parameter.substring(2)) > 0;
+                    } catch (NumberFormatException e) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static byte[] gzip(byte[] content) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(Math.max(64, content.length / 4));
+        try (GZIPOutputStream gzipStream = new GZIPOutputStream(buffer)) {
+            gzipStream.write(content);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toByteArray();
+    }
+}
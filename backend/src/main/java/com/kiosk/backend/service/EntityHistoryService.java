@@ -99,7 +99,7 @@ public class EntityHistoryService {
      * @param errorMessage Error message if failed
      * @param user User who executed (null for scheduled)
      * @param isManual true if manually executed, false if scheduled
-     * @param batchType Type of batch: "ENTITY_HISTORY" or "KIOSK_EVENT"
+     * @param batchType Type of batch: "ENTITY_HISTORY", "KIOSK_EVENT", "STORAGE_RECONCILIATION", "MEDIA_METADATA_BACKFILL" or "THUMBNAIL_REGENERATION"
      */
     public void recordBatchExecution(LocalDateTime startTime, int deletedCount,
                                      String status, String errorMessage, User user, boolean isManual, String batchType) {
@@ -117,6 +117,18 @@ public class EntityHistoryService {
                 target = "Kiosk event records older than 2 days";
                 fieldName = "kiosk_event_cleanup";
                 description = isManual ? "Manual kiosk event cleanup batch job" : "Automated kiosk event cleanup batch job";
+            } else if ("STORAGE_RECONCILIATION".equals(batchType)) {
+                target = "Storage objects not referenced by any video";
+                fieldName = "storage_reconciliation";
+                description = isManual ? "Manual storage reconciliation batch job" : "Automated storage reconciliation batch job";
+            } else if ("MEDIA_METADATA_BACKFILL".equals(batchType)) {
+                target = "Media files without duration/resolution/codec metadata";
+                fieldName = "media_metadata_backfill";
+                description = isManual ? "Manual media metadata backfill batch job" : "Automated media metadata backfill batch job";
+            } else if ("THUMBNAIL_REGENERATION".equals(batchType)) {
+                target = "Thumbnails of images and videos";
+                fieldName = "thumbnail_regeneration";
+                description = "Manual thumbnail regeneration batch job";
             } else {
                 target = "Non-USER entity history older than 1 month";
                 fieldName = "entity_history_cleanup";
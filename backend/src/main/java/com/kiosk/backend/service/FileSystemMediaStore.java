@@ -0,0 +1,531 @@
+package com.kiosk.backend.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URLEncoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * MediaStore backed by a local directory, for single-node / on-premise deployments and benchmarks.
+ * Files are served by {@link com.kiosk.backend.controller.MediaFileController} through
+ * time-limited URLs signed with HMAC-SHA256 (the local equivalent of S3 presigned URLs).
+ * Enabled with the "local-storage" profile.
+ */
+@Service
+@Profile(FileSystemMediaStore.PROFILE)
+@Slf4j
+public class FileSystemMediaStore implements MediaStore {
+
+    public static final String PROFILE = "local-storage";
+
+    public static final String FILE_ENDPOINT = "/api/media/file";
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private static final int LIST_PAGE_SIZE = 1000;
+
+    // Parts of unfinished multipart uploads (outside the media folders, so never listed as objects)
+    private static final String MULTIPART_DIRECTORY = ".multipart/";
+
+    @Value("${storage.filesystem.root:./media-store}")
+    private String rootDirectory;
+
+    @Value("${storage.filesystem.public-base-url:http://localhost:8080}")
+    private String publicBaseUrl;
+
+    @Value("${storage.filesystem.signing-secret:}")
+    private String signingSecret;
+
+    @Value("${storage.filesystem.io-threads:4}")
+    private int ioThreads;
+
+    private Path root;
+    private SecretKeySpec signingKey;
+    private ExecutorService ioExecutor;
+
+    @PostConstruct
+    public void init() throws IOException {
+        root = Paths.get(rootDirectory).toAbsolutePath().normalize();
+        Files.createDirectories(root);
+
+        byte[] secret;
+        if (signingSecret == null || signingSecret.isBlank()) {
+            // Signed URLs will not survive a restart without a configured secret
+            log.warn("storage.filesystem.signing-secret is not set, using a random key for this run");
+            secret = new byte[32];
+            new SecureRandom().nextBytes(secret);
+        } else {
+            secret = signingSecret.getBytes(StandardCharsets.UTF_8);
+        }
+        signingKey = new SecretKeySpec(secret, HMAC_ALGORITHM);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        ioExecutor = Executors.newFixedThreadPool(Math.max(1, ioThreads), runnable -> {
+            Thread thread = new Thread(runnable, "media-store-io-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        log.info("File system media store initialized at {}", root);
+    }
+
+    @PreDestroy
+    public void cleanup() {
+        if (ioExecutor != null) {
+            ioExecutor.shutdown();
+        }
+    }
+
+    @Override
+    public String uploadStream(InputStream inputStream, String folderPath, String originalFilename,
+                               String contentType, Path teeTarget) throws IOException {
+        String key = newObjectKey(folderPath, originalFilename);
+        Path target = resolve(key);
+        Files.createDirectories(target.getParent());
+
+        Path tempPath = target.resolveSibling(".tmp_" + UUID.randomUUID());
+        try {
+            if (teeTarget == null) {
+                Files.copy(inputStream, tempPath);
+            } else {
+                try (OutputStream out = Files.newOutputStream(tempPath);
+                     OutputStream tee = Files.newOutputStream(teeTarget)) {
+                    byte[] buffer = new byte[64 * 1024];
+                    int read;
+                    while ((read = inputStream.read(buffer)) != -1) {
+                        out.write(buffer, 0, read);
+                        tee.write(buffer, 0, read);
+                    }
+                }
+            }
+            // Readers never observe a partially written file
+            Files.move(tempPath, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(tempPath);
+            log.error("Failed to store file {}: {}", key, e.getMessage(), e);
+            throw new IOException("Failed to store file: " + e.getMessage(), e);
+        }
+
+        log.info("File stored successfully: {}", key);
+        return key;
+    }
+
+    @Override
+    public String uploadFile(MultipartFile file, String folderPath) throws IOException {
+        try (InputStream inputStream = file.getInputStream()) {
+            return uploadStream(inputStream, folderPath, file.getOriginalFilename(), file.getContentType(), null);
+        }
+    }
+
+    @Override
+    public String uploadBytes(byte[] bytes, String folderPath, String filename, String contentType) {
+        String key = newObjectKey(folderPath, filename);
+        writeBytes(bytes, key);
+        return key;
+    }
+
+    @Override
+    public CompletableFuture<String> uploadBytesAsync(byte[] bytes, String key, String contentType) {
+        return CompletableFuture.supplyAsync(() -> {
+            writeBytes(bytes, key);
+            return key;
+        }, ioExecutor);
+    }
+
+    /**
+     * Parts are kept as files under {@link #MULTIPART_DIRECTORY} until the upload is completed or aborted
+     */
+    @Override
+    public MultipartUpload createMultipartUpload(String folderPath, String originalFilename, String contentType) throws IOException {
+        MultipartUpload upload = new MultipartUpload(newObjectKey(folderPath, originalFilename), UUID.randomUUID().toString());
+        Files.createDirectories(partDirectory(upload));
+        return upload;
+    }
+
+    @Override
+    public String uploadPart(MultipartUpload upload, int partNumber, InputStream inputStream, long length) throws IOException {
+        Path partDirectory = partDirectory(upload);
+        if (!Files.isDirectory(partDirectory)) {
+            throw new IOException("Unknown multipart upload: " + upload.uploadId());
+        }
+        Path partPath = partDirectory.resolve(String.valueOf(partNumber));
+        Path tempPath = partDirectory.resolve(".tmp_" + UUID.randomUUID());
+        try {
+            long copied = Files.copy(new RangeInputStream(inputStream, length), tempPath);
+            if (copied != length) {
+                throw new IOException("Part " + partNumber + " ended after " + copied + " of " + length + " bytes");
+            }
+            Files.move(tempPath, partPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempPath);
+        }
+        return "\"" + partNumber + "-" + length + "\"";
+    }
+
+    @Override
+    public void completeMultipartUpload(MultipartUpload upload, Map<Integer, String> partETags) throws IOException {
+        Path partDirectory = partDirectory(upload);
+        Path target = resolve(upload.key());
+        Files.createDirectories(target.getParent());
+
+        Path tempPath = target.resolveSibling(".tmp_" + UUID.randomUUID());
+        try (OutputStream out = Files.newOutputStream(tempPath)) {
+            for (Integer partNumber : partETags.keySet().stream().sorted().toList()) {
+                Files.copy(partDirectory.resolve(String.valueOf(partNumber)), out);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(tempPath);
+            throw new IOException("Failed to assemble multipart upload: " + e.getMessage(), e);
+        }
+        Files.move(tempPath, target, StandardCopyOption.ATOMIC_MOVE);
+        deletePartDirectory(partDirectory);
+        log.info("File stored successfully ({} parts): {}", partETags.size(), upload.key());
+    }
+
+    @Override
+    public void abortMultipartUpload(MultipartUpload upload) {
+        deletePartDirectory(partDirectory(upload));
+    }
+
+    private Path partDirectory(MultipartUpload upload) {
+        return resolve(MULTIPART_DIRECTORY + upload.uploadId());
+    }
+
+    private void deletePartDirectory(Path partDirectory) {
+        if (!Files.isDirectory(partDirectory)) {
+            return;
+        }
+        try (Stream<Path> parts = Files.list(partDirectory)) {
+            for (Path part : parts.toList()) {
+                Files.deleteIfExists(part);
+            }
+            Files.deleteIfExists(partDirectory);
+        } catch (IOException e) {
+            log.warn("Failed to delete multipart upload parts {}: {}", partDirectory, e.getMessage());
+        }
+    }
+
+    @Override
+    public String getFileUrl(String key) {
+        return publicBaseUrl + FILE_ENDPOINT + "?key=" + URLEncoder.encode(key, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Generate a URL signed with HMAC-SHA256 over the key and expiry time
+     * @param key Storage key of the object
+     * @param durationMinutes Duration in minutes for which the URL is valid
+     * @return Signed URL served by {@link #FILE_ENDPOINT}
+     */
+    @Override
+    public String generatePresignedUrl(String key, int durationMinutes) {
+        long expires = Instant.now().getEpochSecond() + durationMinutes * 60L;
+        return getFileUrl(key) + "&expires=" + expires + "&signature=" + sign(key, expires);
+    }
+
+    @Override
+    public Map<String, String> generatePresignedUrls(Collection<String> keys, int durationMinutes) {
+        Map<String, String> urls = new LinkedHashMap<>();
+        keys.stream()
+                .filter(Objects::nonNull)
+                .filter(key -> !key.isEmpty())
+                .distinct()
+                .forEach(key -> urls.put(key, generatePresignedUrl(key, durationMinutes)));
+        return urls;
+    }
+
+    /**
+     * Verify a signed URL produced by {@link #generatePresignedUrl}
+     * @param key Storage key from the URL
+     * @param expires Expiry time (epoch seconds) from the URL
+     * @param signature Signature from the URL
+     * @return true if the signature matches and the URL has not expired
+     */
+    public boolean verifySignature(String key, long expires, String signature) {
+        if (signature == null || Instant.now().getEpochSecond() > expires) {
+            return false;
+        }
+        return MessageDigest.isEqual(
+                sign(key, expires).getBytes(StandardCharsets.US_ASCII),
+                signature.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @Override
+    public void deleteFile(String key) {
+        try {
+            Files.deleteIfExists(resolve(key));
+            log.info("File deleted successfully: {}", key);
+        } catch (IOException e) {
+            log.error("Failed to delete file: {}", e.getMessage(), e);
+            throw new RuntimeException("Failed to delete file: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Map<String, String> deleteFiles(Collection<String> keys) {
+        Map<String, String> failures = new LinkedHashMap<>();
+        for (String key : keys) {
+            try {
+                Files.deleteIfExists(resolve(key));
+            } catch (IOException | IllegalArgumentException e) {
+                failures.put(key, e.getMessage());
+            }
+        }
+        log.info("Deleted {} files ({} failed)", keys.size() - failures.size(), failures.size());
+        return failures;
+    }
+
+    @Override
+    public boolean fileExists(String key) {
+        return Files.isRegularFile(resolve(key));
+    }
+
+    @Override
+    public Long getFileSize(String key) {
+        try {
+            return Files.size(resolve(key));
+        } catch (IOException e) {
+            log.error("Failed to get file size: {}", e.getMessage(), e);
+            throw new RuntimeException("Failed to get file size: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Entity tags are derived from size and modification time, like most static file servers
+     */
+    @Override
+    public ObjectInfo stat(String key) {
+        try {
+            Path path = resolve(key);
+            long size = Files.size(path);
+            Instant lastModified = Files.getLastModifiedTime(path).toInstant();
+            String eTag = "\"" + Long.toHexString(size) + "-" + Long.toHexString(lastModified.toEpochMilli()) + "\"";
+            return new ObjectInfo(size, eTag, lastModified);
+        } catch (IOException e) {
+            log.error("Failed to get file metadata: {}", e.getMessage(), e);
+            throw new RuntimeException("Failed to get file metadata: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public byte[] downloadFile(String key) {
+        try {
+            return Files.readAllBytes(resolve(key));
+        } catch (IOException e) {
+            log.error("Failed to read file: {}", e.getMessage(), e);
+            throw new RuntimeException("Failed to read file: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Files are already local, so the stored file itself is returned
+     */
+    @Override
+    public Path downloadToLocalCache(String key) {
+        Path path = resolve(key);
+        if (!Files.isRegularFile(path)) {
+            throw new RuntimeException("File not found: " + key);
+        }
+        return path;
+    }
+
+    @Override
+    public Optional<Path> findLocalFile(String key, String eTag) {
+        Path path = resolve(key);
+        if (!Files.isRegularFile(path)) {
+            return Optional.empty();
+        }
+        if (eTag != null && !eTag.equals(stat(key).eTag())) {
+            return Optional.empty();
+        }
+        return Optional.of(path);
+    }
+
+    @Override
+    public Optional<FileChannel> openLocalFile(String key, String eTag) throws IOException {
+        if (!Files.isRegularFile(resolve(key))) {
+            return Optional.empty();
+        }
+        if (eTag != null && !eTag.equals(stat(key).eTag())) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(FileChannel.open(resolve(key), StandardOpenOption.READ));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public InputStream openRange(String key, long start, long end, String eTag) {
+        if (eTag != null && !eTag.equals(stat(key).eTag())) {
+            throw new RuntimeException("File changed while reading: " + key);
+        }
+
+        try {
+            SeekableByteChannel channel = Files.newByteChannel(resolve(key), StandardOpenOption.READ);
+            channel.position(start);
+            return new RangeInputStream(Channels.newInputStream(channel), end - start + 1);
+        } catch (IOException e) {
+            log.error("Failed to open file range: {}", e.getMessage(), e);
+            throw new RuntimeException("Failed to read file: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void listObjects(String prefix, Consumer<List<StoredObject>> pageConsumer) {
+        Path start = root.resolve(prefix).normalize();
+        if (!start.startsWith(root) || !Files.isDirectory(start)) {
+            return;
+        }
+
+        try (Stream<Path> paths = Files.walk(start)) {
+            List<StoredObject> page = new ArrayList<>(LIST_PAGE_SIZE);
+            Iterator<Path> iterator = paths.filter(Files::isRegularFile)
+                    .filter(path -> !path.getFileName().toString().startsWith(".tmp_")) // In-progress writes
+                    .iterator();
+            while (iterator.hasNext()) {
+                Path path = iterator.next();
+                String key = root.relativize(path).toString().replace('\\', '/');
+                page.add(new StoredObject(key, Files.size(path), Files.getLastModifiedTime(path).toInstant()));
+                if (page.size() == LIST_PAGE_SIZE) {
+                    pageConsumer.accept(page);
+                    page = new ArrayList<>(LIST_PAGE_SIZE);
+                }
+            }
+            if (!page.isEmpty()) {
+                pageConsumer.accept(page);
+            }
+        } catch (IOException e) {
+            log.error("Failed to list files under {}: {}", prefix, e.getMessage(), e);
+            throw new RuntimeException("Failed to list files: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Map<String, Object> getStorageStats() {
+        Map<String, Object> fileSystem = new LinkedHashMap<>();
+        fileSystem.put("root", root.toString());
+        try {
+            fileSystem.put("usableSpaceBytes", Files.getFileStore(root).getUsableSpace());
+        } catch (IOException e) {
+            log.warn("Failed to read file store usage: {}", e.getMessage());
+        }
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("fileSystem", fileSystem);
+        return stats;
+    }
+
+    /**
+     * Resolve a key inside the storage root, rejecting keys that escape it (e.g. "../")
+     */
+    private Path resolve(String key) {
+        Path path = root.resolve(key).normalize();
+        if (!path.startsWith(root) || path.equals(root)) {
+            throw new IllegalArgumentException("Invalid storage key: " + key);
+        }
+        return path;
+    }
+
+    private void writeBytes(byte[] bytes, String key) {
+        try {
+            Path target = resolve(key);
+            Files.createDirectories(target.getParent());
+            Path tempPath = target.resolveSibling(".tmp_" + UUID.randomUUID());
+            Files.write(tempPath, bytes);
+            Files.move(tempPath, target, StandardCopyOption.ATOMIC_MOVE);
+            log.info("Bytes stored successfully: {}", key);
+        } catch (IOException e) {
+            log.error("Failed to store bytes: {}", e.getMessage(), e);
+            throw new RuntimeException("Failed to store bytes: " + e.getMessage(), e);
+        }
+    }
+
+    private String sign(String key, long expires) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(signingKey);
+            byte[] signature = mac.doFinal((key + "\n" + expires).getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(signature);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to sign URL", e);
+        }
+    }
+
+    /**
+     * Limits a stream to the bytes of the requested range
+     */
+    private static class RangeInputStream extends FilterInputStream {
+        private long remaining;
+
+        RangeInputStream(InputStream in, long length) {
+            super(in);
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = super.read();
+            if (b != -1) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = super.read(buffer, offset, (int) Math.min(length, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+    }
+}
@@ -8,6 +8,7 @@ import com.kiosk.backend.entity.EntityHistory;
 import com.kiosk.backend.entity.Kiosk;
 import com.kiosk.backend.entity.KioskEvent;
 import com.kiosk.backend.entity.KioskVideo;
+import com.kiosk.backend.entity.MenuAssetRef;
 import com.kiosk.backend.entity.Store;
 import com.kiosk.backend.entity.Video;
 import com.kiosk.backend.repository.EntityHistoryRepository;
@@ -41,6 +42,7 @@ public class KioskService {
     private final KioskVideoRepository kioskVideoRepository;
     private final VideoRepository videoRepository;
     private final VideoService videoService;
+    private final MenuImageService menuImageService;
     private final KioskEventService kioskEventService;
     private final SimpMessagingTemplate messagingTemplate;
 
@@ -319,7 +321,7 @@ public class KioskService {
                 // Remove old menu and its images from kiosk_video
                 if (oldMenuId != null) {
                     try {
-                        removeMenuAndImagesFromKiosk(kiosk.getId(), oldMenuId);
+                        removeMenuAndImagesFromKiosks(List.of(kiosk.getId()), oldMenuId);
                     } catch (Exception e) {
                         log.error("Failed to remove old menu {} from kiosk {}: {}", oldMenuId, kiosk.getKioskid(), e.getMessage(), e);
                     }
@@ -327,7 +329,7 @@ public class KioskService {
 
                 // Add new menu XML and images to kiosk_video
                 try {
-                    addMenuAndImagesToKiosk(kiosk.getId(), request.getMenuId(), kiosk.getKioskid());
+                    addMenuAndImagesToKiosks(List.of(kiosk.getId()), request.getMenuId());
                 } catch (Exception e) {
                     log.error("Failed to add new menu {} to kiosk {}: {}", request.getMenuId(), kiosk.getKioskid(), e.getMessage(), e);
                     // Don't fail the entire update if assignment fails
@@ -600,62 +602,7 @@ public class KioskService {
                 .orElseThrow(() -> new RuntimeException("Kiosk not found with id: " + kioskId));
 
         List<KioskVideo> kioskVideos = kioskVideoRepository.findByKioskIdOrderByDisplayOrderAsc(kioskId);
-        return kioskVideos.stream()
-                .map(kv -> {
-                    // Get video details
-                    var video = videoRepository.findById(kv.getVideoId()).orElse(null);
-
-                    // Generate presigned URL for video download (valid for 7 days)
-                    String videoPresignedUrl = null;
-                    if (video != null && video.getS3Key() != null && !video.getS3Key().isEmpty()) {
-                        try {
-                            videoPresignedUrl = videoService.generatePresignedUrl(kv.getVideoId(), 10080); // 7 days
-                        } catch (Exception e) {
-                            log.warn("Failed to generate presigned URL for video {}: {}", kv.getVideoId(), e.getMessage());
-                        }
-                    }
-
-                    // Generate presigned URL for thumbnail if exists
-                    String thumbnailPresignedUrl = null;
-                    if (video != null && video.getThumbnailS3Key() != null && !video.getThumbnailS3Key().isEmpty()) {
-                        try {
-                            thumbnailPresignedUrl = videoService.generateThumbnailPresignedUrl(kv.getVideoId(), 10080); // 7 days
-                        } catch (Exception e) {
-                            log.warn("Failed to generate presigned URL for thumbnail of video {}: {}", kv.getVideoId(), e.getMessage());
-                        }
-                    }
-
-                    // For IMAGE and DOCUMENT types, use presignedUrl field instead of url
-                    String imagePresignedUrl = null;
-                    if (video != null && (video.getMediaType() == Video.MediaType.IMAGE || video.getMediaType() == Video.MediaType.DOCUMENT)) {
-                        imagePresignedUrl = videoPresignedUrl;
-                    }
-
-                    return com.kiosk.backend.dto.KioskVideoDTO.builder()
-                            .id(kv.getId())
-                            .kioskId(kv.getKioskId())
-                            .videoId(kv.getVideoId())
-                            .displayOrder(kv.getDisplayOrder())
-                            .assignedBy(kv.getAssignedBy())
-                            .assignedAt(kv.getAssignedAt())
-                            .downloadStatus(kv.getDownloadStatus())
-                            .sourceType(kv.getSourceType())
-                            .menuId(kv.getMenuId())
-                            .createdAt(kv.getCreatedAt())
-                            // Add video details
-                            .title(video != null ? video.getTitle() : null)
-                            .description(video != null ? video.getDescription() : null)
-                            .fileName(video != null ? video.getOriginalFilename() : null)
-                            .fileSize(video != null ? video.getFileSize() : null)
-                            .duration(video != null ? video.getDuration() : null)
-                            .url(videoPresignedUrl)  // Use presigned URL instead of raw S3 URL
-                            .thumbnailUrl(thumbnailPresignedUrl)
-                            .mediaType(video != null ? video.getMediaType().toString() : null)
-                            .imagePurpose(video != null && video.getImagePurpose() != null ? video.getImagePurpose().toString() : null)
-                            .presignedUrl(imagePresignedUrl)  // For IMAGE and DOCUMENT types
-                            .build();
-                })
-                .collect(Collectors.toList());
+        return toKioskVideoDTOs(kioskVideos);
     }
 
     /**
@@ -668,29 +615,49 @@ public class KioskService {
                 .orElseThrow(() -> new RuntimeException("Kiosk not found with kioskid: " + kioskid));
 
         List<KioskVideo> kioskVideos = kioskVideoRepository.findByKioskIdOrderByDisplayOrderAsc(kiosk.getId());
+        return toKioskVideoDTOs(kioskVideos);
+    }
+
+    /**
+     * Build KioskVideoDTOs with video details and presigned URLs
+     * Loads all videos in one query and signs all URLs in one batch (valid for 7 days)
+     */
+    private List<com.kiosk.backend.dto.KioskVideoDTO> toKioskVideoDTOs(List<KioskVideo> kioskVideos) {
+        List<Long> videoIds = kioskVideos.stream()
+                .map(KioskVideo::getVideoId)
+                .distinct()
+                .collect(Collectors.toList());
+        Map<Long, Video> videosById = videoRepository.findAllById(videoIds).stream()
+                .collect(Collectors.toMap(Video::getId, video -> video));
+
+        Map<String, String> presignedUrls;
+        try {
+            presignedUrls = videoService.generatePresignedUrls(videosById.values(), 10080); // 7 days
+        } catch (Exception e) {
+            log.warn("Failed to generate presigned URLs for {} videos: {}", videosById.size(), e.getMessage());
+            presignedUrls = Map.of();
+        }
+        Map<String, String> urls = presignedUrls;
+
         return kioskVideos.stream()
                 .map(kv -> {
                     // Get video details
-                    var video = videoRepository.findById(kv.getVideoId()).orElse(null);
+                    Video video = videosById.get(kv.getVideoId());
+
+                    // Menu images are served as their 800x600 / 300x300 derivatives when available
+                    boolean menuImage = "MENU_IMAGE".equals(kv.getSourceType());
 
-                    // Generate presigned URL for video download (valid for 7 days)
+                    // Presigned URL for video download (fast-start kiosk rendition when available)
                     String videoPresignedUrl = null;
                     if (video != null && video.getS3Key() != null && !video.getS3Key().isEmpty()) {
-                        try {
-                            videoPresignedUrl = videoService.generatePresignedUrl(kv.getVideoId(), 10080); // 7 days
-                        } catch (Exception e) {
-                            log.warn("Failed to generate presigned URL for video {}: {}", kv.getVideoId(), e.getMessage());
-                        }
+                        videoPresignedUrl = urls.get(VideoService.kioskMediaKey(video, menuImage));
                     }
 
-                    // Generate presigned URL for thumbnail if exists
+                    // Presigned URL for thumbnail if exists
                     String thumbnailPresignedUrl = null;
-                    if (video != null && video.getThumbnailS3Key() != null && !video.getThumbnailS3Key().isEmpty()) {
-                        try {
-                            thumbnailPresignedUrl = videoService.generateThumbnailPresignedUrl(kv.getVideoId(), 10080); // 7 days
-                        } catch (Exception e) {
-                            log.warn("Failed to generate presigned URL for thumbnail of video {}: {}", kv.getVideoId(), e.getMessage());
-                        }
+                    String thumbnailKey = video != null ? VideoService.kioskThumbnailKey(video, menuImage) : null;
+                    if (thumbnailKey != null && !thumbnailKey.isEmpty()) {
+                        thumbnailPresignedUrl = urls.get(thumbnailKey);
                     }
 
                     // For IMAGE and DOCUMENT types, use presignedUrl field instead of url
@@ -714,7 +681,7 @@ public class KioskService {
                             .title(video != null ? video.getTitle() : null)
                             .description(video != null ? video.getDescription() : null)
                             .fileName(video != null ? video.getOriginalFilename() : null)
-                            .fileSize(video != null ? video.getFileSize() : null)
+                            .fileSize(video != null ? VideoService.kioskMediaFileSize(video, menuImage) : null)
                             .duration(video != null ? video.getDuration() : null)
                             .url(videoPresignedUrl)  // Use presigned URL instead of raw S3 URL
                             .thumbnailUrl(thumbnailPresignedUrl)
@@ -967,26 +934,25 @@ public class KioskService {
         log.info("Starting menu migration: {} kiosks will be migrated from menu ID {} to menu ID {}",
                 kiosksToMigrate.size(), oldMenuId, newMenuId);
 
+        // Swap the menu assignments of all kiosks at once (a few statements over menu_asset_refs, no XML reads)
+        List<Long> kioskIds = kiosksToMigrate.stream().map(Kiosk::getId).collect(Collectors.toList());
+        try {
+            removeMenuAndImagesFromKiosks(kioskIds, oldMenuId);
+        } catch (Exception e) {
+            log.error("Failed to remove old menu {} from {} kiosks: {}", oldMenuId, kioskIds.size(), e.getMessage());
+        }
+        try {
+            addMenuAndImagesToKiosks(kioskIds, newMenuId);
+        } catch (Exception e) {
+            log.error("Failed to add new menu {} to {} kiosks: {}", newMenuId, kioskIds.size(), e.getMessage());
+        }
+
         // Update each kiosk to use the new menu ID
         for (Kiosk kiosk : kiosksToMigrate) {
             kiosk.setMenuId(newMenuId);
             kiosk.setMenuFilename(newMenuFilename);
             kioskRepository.save(kiosk);
 
-            // Remove old menu and its images from kiosk_video
-            try {
-                removeMenuAndImagesFromKiosk(kiosk.getId(), oldMenuId);
-            } catch (Exception e) {
-                log.error("Failed to remove old menu {} from kiosk {}: {}", oldMenuId, kiosk.getKioskid(), e.getMessage());
-            }
-
-            // Add new menu XML and images to kiosk_video
-            try {
-                addMenuAndImagesToKiosk(kiosk.getId(), newMenuId, kiosk.getKioskid());
-            } catch (Exception e) {
-                log.error("Failed to add new menu {} to kiosk {}: {}", newMenuId, kiosk.getKioskid(), e.getMessage());
-            }
-
             // Log history
             logHistory(kiosk.getKioskid(), kiosk.getPosid(), "system", "System", "UPDATE",
                 "menuId", oldMenuId.toString(), newMenuId.toString(),
@@ -1041,6 +1007,9 @@ public class KioskService {
                         messagingTemplate.convertAndSend("/topic/kiosk/" + kiosk.getKioskid(), Map.of(
                                 "type", "CONFIG_UPDATE",
                                 "message", message,
+                                // Kiosks can fetch only the changes via GET /api/videos/{newMenuId}/menu-diff?fromMenuId={oldMenuId}
+                                "oldMenuId", oldMenuId,
+                                "newMenuId", newMenuId,
                                 "timestamp", LocalDateTime.now().toString()
                         ));
                         successCount++;
@@ -1072,105 +1041,29 @@ public class KioskService {
 
     /**
      * Remove menu XML and its images from kiosk_video table
+     * The images come from the menu_asset_refs index, so the menu XML is not read.
      */
-    private void removeMenuAndImagesFromKiosk(Long kioskId, Long menuId) {
-        // Remove the menu XML itself from kiosk_video
-        boolean menuRemoved = kioskVideoRepository.deleteByKioskIdAndVideoId(kioskId, menuId) > 0;
-        if (menuRemoved) {
-            log.info("Removed menu {} from kiosk_video for kiosk ID {}", menuId, kioskId);
-        }
-
-        // Extract and remove all images referenced in the menu
-        try {
-            List<Long> menuImageIds = videoService.extractImageIdsFromMenu(menuId);
-            int removedCount = 0;
-            for (Long imageId : menuImageIds) {
-                int deleted = kioskVideoRepository.deleteByKioskIdAndVideoId(kioskId, imageId);
-                removedCount += deleted;
-            }
-            log.info("Removed {} menu images from kiosk_video for kiosk ID {}", removedCount, kioskId);
-        } catch (Exception e) {
-            log.error("Failed to extract/remove menu images for menu {}: {}", menuId, e.getMessage());
-        }
+    private void removeMenuAndImagesFromKiosks(List<Long> kioskIds, Long menuId) {
+        videoService.ensureMenuIndexed(menuId);
+        int removedCount = kioskVideoRepository.deleteMenuAssignments(kioskIds, menuId, MenuAssetRef.AssetKind.IMAGE);
+        log.info("Removed menu {} and its images from kiosk_video for {} kiosks ({} rows)", menuId, kioskIds.size(), removedCount);
     }
 
     /**
      * Add menu XML, its images, and its videos to kiosk_video table
      * Sets sourceType to distinguish between MENU_IMAGE, MENU_VIDEO, and MANUAL additions
+     * (the menu XML itself is MANUAL). Assignments are inserted in one statement from the menu_asset_refs index.
      */
-    private void addMenuAndImagesToKiosk(Long kioskId, Long menuId, String kioskid) {
-        String menuIdStr = String.valueOf(menuId);
-
-        // Add the menu XML itself to kiosk_video
-        boolean alreadyAssigned = kioskVideoRepository.existsByKioskIdAndVideoId(kioskId, menuId);
-        if (!alreadyAssigned) {
-            KioskVideo menuKioskVideo = KioskVideo.builder()
-                .kioskId(kioskId)
-                .videoId(menuId)
-                .assignedAt(LocalDateTime.now())
-                .sourceType("MANUAL") // Menu XML itself is treated as MANUAL
-                .menuId(menuIdStr) // Track which menu this is
-                .build();
-            kioskVideoRepository.save(menuKioskVideo);
-            log.info("Automatically assigned menu XML {} to kiosk {} (menuId={})", menuId, kioskid, menuIdStr);
-        } else {
-            log.debug("Menu XML {} already assigned to kiosk {}", menuId, kioskid);
-        }
-
-        // Extract and add all images referenced in the menu
-        try {
-            List<Long> menuImageIds = videoService.extractImageIdsFromMenu(menuId);
-            log.info("Found {} menu images in menu {}", menuImageIds.size(), menuId);
-
-            int addedCount = 0;
-            for (Long imageId : menuImageIds) {
-                boolean imageAlreadyAssigned = kioskVideoRepository.existsByKioskIdAndVideoId(kioskId, imageId);
-                if (!imageAlreadyAssigned) {
-                    KioskVideo imageKioskVideo = KioskVideo.builder()
-                        .kioskId(kioskId)
-                        .videoId(imageId)
-                        .assignedAt(LocalDateTime.now())
-                        .sourceType("MENU_IMAGE")
-                        .menuId(menuIdStr)
-                        .build();
-                    kioskVideoRepository.save(imageKioskVideo);
-                    addedCount++;
-                    log.debug("Automatically assigned menu image {} to kiosk {} (sourceType=MENU_IMAGE, menuId={})", imageId, kioskid, menuIdStr);
-                } else {
-                    log.debug("Menu image {} already assigned to kiosk {}", imageId, kioskid);
-                }
-            }
-            log.info("Assigned {} new menu images to kiosk {}", addedCount, kioskid);
-        } catch (Exception e) {
-            log.error("Failed to extract/assign menu images for menu {}: {}", menuId, e.getMessage(), e);
-        }
+    private void addMenuAndImagesToKiosks(List<Long> kioskIds, Long menuId) {
+        videoService.ensureMenuIndexed(menuId);
+        int addedCount = kioskVideoRepository.insertMenuAssignments(kioskIds, menuId, String.valueOf(menuId));
+        log.info("Assigned menu {} with its images and videos to {} kiosks ({} new rows)", menuId, kioskIds.size(), addedCount);
 
-        // Extract and add all videos referenced in the menu
+        // Build the kiosk-sized derivatives of images that do not have them yet (e.g. uploaded before)
         try {
-            List<Long> menuVideoIds = videoService.extractVideoIdsFromMenu(menuId);
-            log.info("Found {} menu videos in menu {}", menuVideoIds.size(), menuId);
-
-            int addedCount = 0;
-            for (Long videoId : menuVideoIds) {
-                boolean videoAlreadyAssigned = kioskVideoRepository.existsByKioskIdAndVideoId(kioskId, videoId);
-                if (!videoAlreadyAssigned) {
-                    KioskVideo videoKioskVideo = KioskVideo.builder()
-                        .kioskId(kioskId)
-                        .videoId(videoId)
-                        .assignedAt(LocalDateTime.now())
-                        .sourceType("MENU_VIDEO")
-                        .menuId(menuIdStr)
-                        .build();
-                    kioskVideoRepository.save(videoKioskVideo);
-                    addedCount++;
-                    log.debug("Automatically assigned menu video {} to kiosk {} (sourceType=MENU_VIDEO, menuId={})", videoId, kioskid, menuIdStr);
-                } else {
-                    log.debug("Menu video {} already assigned to kiosk {}", videoId, kioskid);
-                }
-            }
-            log.info("Assigned {} new menu videos to kiosk {}", addedCount, kioskid);
+            menuImageService.requestDerivatives(videoService.getMenuImageIds(menuId));
         } catch (Exception e) {
-            log.error("Failed to extract/assign menu videos for menu {}: {}", menuId, e.getMessage(), e);
+            log.error("Failed to request menu image derivatives for menu {}: {}", menuId, e.getMessage(), e);
         }
     }
 }
@@ -0,0 +1,298 @@
+package com.kiosk.backend.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Bounded on-disk LRU cache for S3 object content.
+ * Entries are keyed by s3Key and validated against the object's ETag, so a replaced object
+ * is never served from a stale copy. Files are read back through memory-mapped buffers.
+ * The index lives in memory; files left by a previous run are removed on startup.
+ * Only files with the cache's own name prefixes are ever removed, so a misconfigured directory loses nothing else.
+ */
+@Component
+@Slf4j
+public class LocalContentCache {
+
+    private static final String ENTRY_PREFIX = "kcc-";
+    private static final String TEMP_PREFIX = "kcc-tmp-";
+
+    @Value("${storage.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${storage.cache.directory:${java.io.tmpdir}/kiosk-content-cache}")
+    private String directory;
+
+    @Value("${storage.cache.max-size-bytes:536870912}")
+    private long maxSizeBytes;
+
+    private Path cacheDir;
+
+    // Access-ordered map: iteration starts at the least recently used entry
+    private final LinkedHashMap<String, CacheEntry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long currentSizeBytes = 0;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    private record CacheEntry(String s3Key, String eTag, Path path, long size) {}
+
+    /**
+     * Writes object content to the given (not yet existing) file
+     */
+    @FunctionalInterface
+    public interface ContentWriter {
+        void writeTo(Path target) throws IOException;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            log.info("Local content cache disabled");
+            return;
+        }
+
+        try {
+            cacheDir = Paths.get(directory);
+            Files.createDirectories(cacheDir);
+
+            // Index is not persisted, so leftovers from a previous run are unreachable - remove them
+            try (Stream<Path> leftovers = Files.list(cacheDir)) {
+                leftovers.filter(path -> path.getFileName().toString().startsWith(ENTRY_PREFIX))
+                        .filter(Files::isRegularFile)
+                        .forEach(this::deleteQuietly);
+            }
+            log.info("Local content cache initialized at {} (max {} bytes)", cacheDir, maxSizeBytes);
+        } catch (IOException e) {
+            log.error("Failed to initialize local content cache at {}: {}", directory, e.getMessage());
+            enabled = false;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Look up a cached file for an object version
+     * @param s3Key S3 key of the object
+     * @param eTag Current ETag of the object
+     * @return Path of the cached content, or empty on a miss (stale entries are dropped)
+     */
+    public synchronized Optional<Path> get(String s3Key, String eTag) {
+        CacheEntry entry = entries.get(s3Key);
+        if (entry != null && entry.eTag().equals(eTag) && Files.exists(entry.path())) {
+            hitCount.incrementAndGet();
+            return Optional.of(entry.path());
+        }
+
+        missCount.incrementAndGet();
+        if (entry != null) {
+            removeEntry(entry);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Look up and open a cached file for an object version under the lock that eviction deletes files under
+     * @param s3Key S3 key of the object
+     * @param eTag Current ETag of the object
+     * @return Open read-only channel over the cached content, or empty on a miss
+     */
+    public synchronized Optional<FileChannel> openEntry(String s3Key, String eTag) throws IOException {
+        Optional<Path> path = get(s3Key, eTag);
+        if (path.isEmpty()) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(FileChannel.open(path.get(), StandardOpenOption.READ));
+        } catch (NoSuchFileException e) {
+            // Deleted behind the cache's back - drop the entry and treat as a miss
+            invalidate(s3Key);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Look up a cached file without recording a hit or miss (used to serve content opportunistically)
+     * @param s3Key S3 key of the object
+     * @return Path of the cached content for any cached version, or empty
+     */
+    public synchronized Optional<Path> peek(String s3Key) {
+        CacheEntry entry = entries.get(s3Key);
+        return entry != null && Files.exists(entry.path()) ? Optional.of(entry.path()) : Optional.empty();
+    }
+
+    /**
+     * Store object content in the cache, evicting least recently used entries to stay under the size cap
+     * @param s3Key S3 key of the object
+     * @param eTag ETag of the stored version
+     * @param writer Writes the content to a temp file inside the cache directory
+     * @return Path of the cached content
+     */
+    public Path put(String s3Key, String eTag, ContentWriter writer) throws IOException {
+        Path tempPath = cacheDir.resolve(TEMP_PREFIX + UUID.randomUUID());
+        Path finalPath = cacheDir.resolve(fileNameFor(s3Key, eTag));
+
+        try {
+            writer.writeTo(tempPath);
+            Files.move(tempPath, finalPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(tempPath);
+            throw e;
+        }
+
+        long size = Files.size(finalPath);
+        synchronized (this) {
+            CacheEntry previous = entries.put(s3Key, new CacheEntry(s3Key, eTag, finalPath, size));
+            if (previous != null) {
+                currentSizeBytes -= previous.size();
+                if (!previous.path().equals(finalPath)) {
+                    deleteQuietly(previous.path());
+                }
+            }
+            currentSizeBytes += size;
+            evictIfNeeded(s3Key);
+        }
+
+        log.debug("Cached {} ({} bytes) at {}", s3Key, size, finalPath);
+        return finalPath;
+    }
+
+    /**
+     * Remove an object from the cache (all versions)
+     * @param s3Key S3 key of the object
+     */
+    public synchronized void invalidate(String s3Key) {
+        CacheEntry entry = entries.get(s3Key);
+        if (entry != null) {
+            removeEntry(entry);
+        }
+    }
+
+    /**
+     * Read a cached file into a byte array through a memory-mapped buffer
+     * @param path Path returned by {@link #get} or {@link #put}
+     * @return File content
+     * @throws java.nio.file.NoSuchFileException if the entry was evicted after it was looked up (treat as a miss)
+     */
+    public byte[] read(Path path) throws IOException {
+        try (FileChannel channel = open(path)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Cached file too large to read into memory: " + path);
+            }
+            byte[] bytes = new byte[(int) size];
+            if (size > 0) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                buffer.get(bytes);
+            }
+            return bytes;
+        }
+    }
+
+    /**
+     * Map a cached file read-only without copying it into the heap
+     * @param path Path returned by {@link #get} or {@link #put}
+     * @return Read-only buffer over the file content
+     * @throws java.nio.file.NoSuchFileException if the entry was evicted after it was looked up (treat as a miss)
+     */
+    public ByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = open(path)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Open a cached file while holding the lock that eviction deletes files under.
+     * An open channel keeps the content readable even if the entry is evicted afterwards.
+     */
+    private synchronized FileChannel open(Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.READ);
+    }
+
+    /**
+     * Get cache statistics
+     * @return Hit/miss/eviction counts and current size
+     */
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("hitCount", hitCount.get());
+        stats.put("missCount", missCount.get());
+        stats.put("evictionCount", evictionCount.get());
+        stats.put("entryCount", entries.size());
+        stats.put("sizeBytes", currentSizeBytes);
+        stats.put("maxSizeBytes", maxSizeBytes);
+        return stats;
+    }
+
+    /**
+     * Evict least recently used entries until the cache fits its size cap.
+     * The entry that was just written is kept even if it alone exceeds the cap.
+     */
+    private void evictIfNeeded(String keepKey) {
+        Iterator<CacheEntry> iterator = entries.values().iterator();
+        while (currentSizeBytes > maxSizeBytes && iterator.hasNext()) {
+            CacheEntry entry = iterator.next();
+            if (entry.s3Key().equals(keepKey)) {
+                continue;
+            }
+            iterator.remove();
+            currentSizeBytes -= entry.size();
+            deleteQuietly(entry.path());
+            evictionCount.incrementAndGet();
+            log.debug("Evicted {} ({} bytes) from local content cache", entry.s3Key(), entry.size());
+        }
+    }
+
+    private void removeEntry(CacheEntry entry) {
+        entries.remove(entry.s3Key());
+        currentSizeBytes -= entry.size();
+        deleteQuietly(entry.path());
+    }
+
+    private String fileNameFor(String s3Key, String eTag) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest((s3Key + "|" + eTag).getBytes(StandardCharsets.UTF_8));
+            return ENTRY_PREFIX + HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            // Files that are still open (e.g. on Windows) are left behind and removed on next startup
+            log.warn("Failed to delete cached file {}: {}", path, e.getMessage());
+        }
+    }
+}
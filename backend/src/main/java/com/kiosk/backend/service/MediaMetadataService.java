@@ -0,0 +1,311 @@
+package com.kiosk.backend.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kiosk.backend.entity.Video;
+import com.kiosk.backend.repository.VideoRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Extracts duration, resolution, bitrate and codec of media files with ffprobe.
+ * ffprobe only reads container headers (and seeks for the index), so uploads are probed
+ * from the spilled file and stored objects from the local cache copy or a presigned URL
+ * without downloading them.
+ */
+@Service
+@Slf4j
+public class MediaMetadataService {
+
+    private static final long FFPROBE_TIMEOUT_SECONDS = 15;
+    private static final int PROBE_URL_MINUTES = 15;
+
+    private final MediaStore mediaStore;
+    private final VideoRepository videoRepository;
+    private final ObjectMapper objectMapper;
+    private final CacheManager cacheManager;
+
+    // Number of concurrent ffprobe processes in the backfill batch
+    @Value("${media.metadata.backfill-parallelism:4}")
+    private int backfillParallelism;
+
+    @Value("${media.metadata.backfill-page-size:100}")
+    private int backfillPageSize;
+
+    // Rows that fail to probe this many times are no longer selected by the backfill
+    @Value("${media.metadata.backfill-max-attempts:3}")
+    private int backfillMaxAttempts;
+
+    // Drains ffprobe stdout while the caller enforces the timeout
+    private final ExecutorService outputReader;
+
+    /**
+     * Media metadata
+     * @param durationSeconds Duration in seconds (rounded), null for still images
+     * @param width Width in pixels, null for audio
+     * @param height Height in pixels, null for audio
+     * @param bitrate Overall bitrate in bits per second, null if unknown
+     * @param codec Codec of the primary stream (video stream if present, otherwise audio)
+     */
+    public record MediaMetadata(Integer durationSeconds, Integer width, Integer height, Long bitrate, String codec) {
+
+        /**
+         * Drop values that are meaningless for the media type (ffprobe reports a frame duration for images)
+         */
+        MediaMetadata forMediaType(Video.MediaType mediaType) {
+            return mediaType == Video.MediaType.IMAGE ? new MediaMetadata(null, width, height, null, codec) : this;
+        }
+    }
+
+    /**
+     * Result of a backfill run
+     * @param processed Number of rows probed
+     * @param updated Number of rows updated with metadata
+     * @param failed Number of rows that could not be probed (retried on later runs up to the attempt limit)
+     * @param elapsedMillis Duration of the run
+     */
+    public record BackfillResult(int processed, int updated, int failed, long elapsedMillis) {}
+
+    public MediaMetadataService(MediaStore mediaStore, VideoRepository videoRepository,
+                                ObjectMapper objectMapper, CacheManager cacheManager) {
+        this.mediaStore = mediaStore;
+        this.videoRepository = videoRepository;
+        this.objectMapper = objectMapper;
+        this.cacheManager = cacheManager;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.outputReader = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "ffprobe-output-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        outputReader.shutdownNow();
+    }
+
+    /**
+     * Check if metadata is extracted for a media type
+     * @param mediaType Media type of the file
+     * @return true for videos, audio and images
+     */
+    public boolean supports(Video.MediaType mediaType) {
+        return mediaType != Video.MediaType.DOCUMENT;
+    }
+
+    /**
+     * Probe a local media file
+     * @param file Local file (e.g., the spilled upload)
+     * @param mediaType Media type of the file
+     * @return Metadata, or null if ffprobe failed
+     */
+    public MediaMetadata probe(Path file, Video.MediaType mediaType) {
+        return probeQuietly(file.toAbsolutePath().toString(), file.toString(), mediaType);
+    }
+
+    /**
+     * Probe a stored media file without downloading it
+     * @param s3Key Storage key of the file
+     * @param mediaType Media type of the file
+     * @return Metadata, or null if ffprobe failed
+     */
+    public MediaMetadata probe(String s3Key, Video.MediaType mediaType) {
+        String input;
+        try {
+            Path localCopy = mediaStore.findLocalFile(s3Key, mediaStore.stat(s3Key).eTag()).orElse(null);
+            input = localCopy != null
+                    ? localCopy.toAbsolutePath().toString()
+                    : mediaStore.generatePresignedUrl(s3Key, PROBE_URL_MINUTES); // ffprobe reads over HTTP with range requests
+        } catch (RuntimeException e) {
+            log.warn("Failed to locate {} for metadata extraction: {}", s3Key, e.getMessage());
+            return null;
+        }
+        return probeQuietly(input, s3Key, mediaType);
+    }
+
+    /**
+     * Fill in metadata for every video, audio and image row that has none yet
+     * Rows are read in pages by id and probed with bounded parallelism.
+     * A failed probe is counted on the row; rows that reached the attempt limit are skipped.
+     * @return Backfill statistics
+     */
+    public BackfillResult backfill() {
+        long startTime = System.currentTimeMillis();
+        int parallelism = Math.max(1, backfillParallelism);
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService probePool = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "metadata-backfill-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        int processed = 0;
+        AtomicInteger updated = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        try {
+            long afterId = 0;
+            while (true) {
+                List<Video> page = videoRepository.findMetadataBackfillCandidates(afterId, backfillMaxAttempts,
+                        PageRequest.of(0, backfillPageSize));
+                if (page.isEmpty()) {
+                    break;
+                }
+
+                List<CompletableFuture<Void>> tasks = new ArrayList<>(page.size());
+                for (Video video : page) {
+                    tasks.add(CompletableFuture.runAsync(() -> {
+                        MediaMetadata metadata = probe(video.getS3Key(), video.getMediaType());
+                        if (metadata == null) {
+                            failed.incrementAndGet();
+                            videoRepository.incrementMetadataProbeAttempts(video.getId());
+                        } else if (saveMetadata(video.getId(), metadata)) {
+                            updated.incrementAndGet();
+                        }
+                    }, probePool));
+                }
+                CompletableFuture.allOf(tasks.toArray(CompletableFuture<?>[]::new)).join();
+
+                processed += page.size();
+                afterId = page.get(page.size() - 1).getId();
+                log.info("Media metadata backfill progress: {} processed, {} updated, {} failed",
+                        processed, updated.get(), failed.get());
+            }
+        } finally {
+            probePool.shutdownNow();
+        }
+
+        BackfillResult result = new BackfillResult(processed, updated.get(), failed.get(),
+                System.currentTimeMillis() - startTime);
+        log.info("Media metadata backfill completed: {} processed, {} updated, {} failed in {}ms",
+                result.processed(), result.updated(), result.failed(), result.elapsedMillis());
+        return result;
+    }
+
+    /**
+     * Store metadata on a video row without touching its other columns
+     * @return true if the row still exists
+     */
+    public boolean saveMetadata(Long videoId, MediaMetadata metadata) {
+        int rows = videoRepository.updateMediaMetadata(videoId, metadata.durationSeconds(),
+                metadata.width(), metadata.height(), metadata.bitrate(), metadata.codec());
+        Cache cache = cacheManager.getCache("videos");
+        if (cache != null) {
+            cache.evict(videoId);
+        }
+        return rows > 0;
+    }
+
+    private MediaMetadata probeQuietly(String input, String description, Video.MediaType mediaType) {
+        try {
+            MediaMetadata metadata = runFfprobe(input).forMediaType(mediaType);
+            log.info("Media metadata for {}: duration={}s, {}x{}, bitrate={}, codec={}", description,
+                    metadata.durationSeconds(), metadata.width(), metadata.height(), metadata.bitrate(), metadata.codec());
+            return metadata;
+        } catch (IOException e) {
+            log.warn("Failed to extract media metadata for {}: {}", description, e.getMessage());
+            return null;
+        }
+    }
+
+    private MediaMetadata runFfprobe(String input) throws IOException {
+        ProcessBuilder processBuilder = new ProcessBuilder(
+            "ffprobe",
+            "-v", "error",
+            "-print_format", "json",
+            "-show_entries", "format=duration,bit_rate:stream=codec_type,codec_name,width,height,duration",
+            input
+        );
+        processBuilder.redirectError(ProcessBuilder.Redirect.DISCARD);
+
+        Process process = processBuilder.start();
+        process.getOutputStream().close();
+        Future<byte[]> output = outputReader.submit(() -> {
+            try (InputStream stdout = process.getInputStream()) {
+                return stdout.readAllBytes();
+            }
+        });
+
+        try {
+            if (!process.waitFor(FFPROBE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new IOException("ffprobe timed out after " + FFPROBE_TIMEOUT_SECONDS + " seconds");
+            }
+            if (process.exitValue() != 0) {
+                throw new IOException("ffprobe failed with exit code " + process.exitValue());
+            }
+            return parse(objectMapper.readTree(output.get(5, TimeUnit.SECONDS)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("ffprobe interrupted", e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IOException("Failed to read ffprobe output", e);
+        } finally {
+            process.destroyForcibly();
+        }
+    }
+
+    private MediaMetadata parse(JsonNode root) {
+        JsonNode videoStream = null;
+        JsonNode audioStream = null;
+        for (JsonNode stream : root.path("streams")) {
+            String codecType = stream.path("codec_type").asText();
+            if (videoStream == null && "video".equals(codecType)) {
+                videoStream = stream;
+            } else if (audioStream == null && "audio".equals(codecType)) {
+                audioStream = stream;
+            }
+        }
+
+        JsonNode format = root.path("format");
+        Double duration = parseDouble(format.path("duration"));
+        if (duration == null && videoStream != null) {
+            duration = parseDouble(videoStream.path("duration"));
+        }
+        if (duration == null && audioStream != null) {
+            duration = parseDouble(audioStream.path("duration"));
+        }
+        Double bitrate = parseDouble(format.path("bit_rate"));
+
+        JsonNode primaryStream = videoStream != null ? videoStream : audioStream;
+        return new MediaMetadata(
+                duration != null ? (int) Math.round(duration) : null,
+                videoStream != null && videoStream.hasNonNull("width") ? videoStream.get("width").asInt() : null,
+                videoStream != null && videoStream.hasNonNull("height") ? videoStream.get("height").asInt() : null,
+                bitrate != null ? bitrate.longValue() : null,
+                primaryStream != null ? primaryStream.path("codec_name").asText("unknown") : "unknown");
+    }
+
+    /**
+     * ffprobe prints numbers as strings and "N/A" when unknown
+     */
+    private static Double parseDouble(JsonNode node) {
+        if (node == null || node.isMissingNode() || node.isNull()) {
+            return null;
+        }
+        try {
+            return Double.parseDouble(node.asText());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
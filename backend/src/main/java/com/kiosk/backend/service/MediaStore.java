@@ -0,0 +1,243 @@
+package com.kiosk.backend.service;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Storage backend for uploaded media (videos, images, audio, documents and thumbnails).
+ * Objects are addressed by storage keys of the form folderPath + UUID + "_" + filename.
+ * The backend is selected by profile: {@link S3Service} by default,
+ * {@link FileSystemMediaStore} with the "local-storage" profile.
+ */
+public interface MediaStore {
+
+    /**
+     * Object metadata used for conditional and range requests
+     * @param contentLength Size in bytes
+     * @param eTag Strong entity tag (quoted)
+     * @param lastModified Last modification time, or null if unknown
+     */
+    record ObjectInfo(long contentLength, String eTag, Instant lastModified) {}
+
+    /**
+     * Entry of an object listing
+     * @param key Storage key
+     * @param size Size in bytes
+     * @param lastModified Last modification time
+     */
+    record StoredObject(String key, long size, Instant lastModified) {}
+
+    /**
+     * Upload assembled from separately uploaded parts
+     * @param key Storage key of the object once the upload is completed
+     * @param uploadId Backend id of the upload
+     */
+    record MultipartUpload(String key, String uploadId) {}
+
+    /**
+     * Upload a stream under a new key
+     * @param inputStream Stream to upload (not closed by this method)
+     * @param folderPath Folder path (e.g., "videos/")
+     * @param originalFilename Original filename used to build the key
+     * @param contentType Content type of the stream
+     * @param teeTarget Optional local file that receives a copy of every byte read, or null
+     * @return Storage key of the uploaded file
+     */
+    String uploadStream(InputStream inputStream, String folderPath, String originalFilename,
+                        String contentType, Path teeTarget) throws IOException;
+
+    /**
+     * Upload a multipart file under a new key
+     * @param file MultipartFile to upload
+     * @param folderPath Folder path (e.g., "videos/")
+     * @return Storage key of the uploaded file
+     */
+    String uploadFile(MultipartFile file, String folderPath) throws IOException;
+
+    /**
+     * Start an upload that is assembled from parts, which may arrive in any order and in parallel
+     * @param folderPath Folder path (e.g., "videos/")
+     * @param originalFilename Original filename used to build the key
+     * @param contentType Content type of the object
+     * @return Handle of the upload
+     */
+    MultipartUpload createMultipartUpload(String folderPath, String originalFilename, String contentType) throws IOException;
+
+    /**
+     * Upload one part of a multipart upload, replacing an earlier upload of the same part
+     * Every part except the last must be at least 5MB (S3 limit).
+     * @param upload Handle of the upload
+     * @param partNumber Part number (1-10000)
+     * @param inputStream Part content (not closed by this method)
+     * @param length Exact length of the part in bytes
+     * @return Entity tag of the part, needed to complete the upload
+     */
+    String uploadPart(MultipartUpload upload, int partNumber, InputStream inputStream, long length) throws IOException;
+
+    /**
+     * Assemble the uploaded parts into the object
+     * @param upload Handle of the upload
+     * @param partETags Entity tag of every part by part number
+     */
+    void completeMultipartUpload(MultipartUpload upload, Map<Integer, String> partETags) throws IOException;
+
+    /**
+     * Discard a multipart upload and its parts
+     * @param upload Handle of the upload
+     */
+    void abortMultipartUpload(MultipartUpload upload);
+
+    /**
+     * Upload a byte array under a new key
+     * @param bytes Byte array to upload
+     * @param folderPath Folder path (e.g., "thumbnails/")
+     * @param filename Filename for the object
+     * @param contentType Content type (e.g., "image/jpeg")
+     * @return Storage key of the uploaded file
+     */
+    String uploadBytes(byte[] bytes, String folderPath, String filename, String contentType);
+
+    /**
+     * Upload a byte array asynchronously under a caller-chosen key
+     * @param bytes Byte array to upload
+     * @param key Target key (see {@link #newObjectKey})
+     * @param contentType Content type (e.g., "image/jpeg")
+     * @return Future completing with the key
+     */
+    CompletableFuture<String> uploadBytesAsync(byte[] bytes, String key, String contentType);
+
+    /**
+     * Build a unique key for a new object
+     * @param folderPath Folder path (e.g., "thumbnails/")
+     * @param filename Filename for the object
+     * @return Key in the form folderPath + UUID + "_" + filename
+     */
+    default String newObjectKey(String folderPath, String filename) {
+        return folderPath + UUID.randomUUID().toString() + "_" + filename;
+    }
+
+    /**
+     * Get the canonical (unsigned) URL of an object, stored on the entity
+     * @param key Storage key of the object
+     * @return URL of the object
+     */
+    String getFileUrl(String key);
+
+    /**
+     * Generate a time-limited URL for reading an object
+     * @param key Storage key of the object
+     * @param durationMinutes Duration in minutes for which the URL is valid
+     * @return Signed URL
+     */
+    String generatePresignedUrl(String key, int durationMinutes);
+
+    /**
+     * Generate time-limited URLs for many objects at once
+     * @param keys Storage keys of the objects (null/empty keys and duplicates are ignored)
+     * @param durationMinutes Duration in minutes for which the URLs are valid
+     * @return Map of key to signed URL; keys that fail to sign are omitted
+     */
+    Map<String, String> generatePresignedUrls(Collection<String> keys, int durationMinutes);
+
+    /**
+     * Delete an object
+     * @param key Storage key of the file to delete
+     */
+    void deleteFile(String key);
+
+    /**
+     * Delete many objects in as few requests as the backend allows
+     * Missing objects count as deleted.
+     * @param keys Storage keys of the files to delete
+     * @return Map of key to error message for the keys that could not be deleted
+     */
+    Map<String, String> deleteFiles(Collection<String> keys);
+
+    /**
+     * Check if an object exists
+     * @param key Storage key to check
+     * @return true if the object exists, false otherwise
+     */
+    boolean fileExists(String key);
+
+    /**
+     * Get object size in bytes
+     * @param key Storage key of the file
+     * @return File size in bytes
+     */
+    Long getFileSize(String key);
+
+    /**
+     * Get object metadata
+     * @param key Storage key of the file
+     * @return Size, entity tag and last-modified time
+     */
+    ObjectInfo stat(String key);
+
+    /**
+     * Download an object as byte array
+     * @param key Storage key of the file to download
+     * @return Byte array of the file content
+     */
+    byte[] downloadFile(String key);
+
+    /**
+     * Get a local file holding the object's current content, downloading it if necessary
+     * @param key Storage key of the file
+     * @return Path of the local file, or null if the backend keeps no local copy
+     */
+    Path downloadToLocalCache(String key);
+
+    /**
+     * Find a local file holding the given version of an object without downloading it
+     * @param key Storage key of the file
+     * @param eTag Expected entity tag
+     * @return Path of the local file, or empty if no current local copy exists
+     */
+    Optional<Path> findLocalFile(String key, String eTag);
+
+    /**
+     * Open a local file holding the given version of an object without downloading it
+     * The file is looked up and opened atomically, so a concurrent cache eviction cannot delete it in between;
+     * the open channel stays readable even if the file is evicted afterwards. The caller must close the channel.
+     * @param key Storage key of the file
+     * @param eTag Expected entity tag
+     * @return Open read-only channel, or empty if no current local copy exists
+     */
+    Optional<FileChannel> openLocalFile(String key, String eTag) throws IOException;
+
+    /**
+     * Open a byte range of an object as a stream. The caller must close the returned stream.
+     * @param key Storage key of the file
+     * @param start First byte (inclusive)
+     * @param end Last byte (inclusive)
+     * @param eTag Expected entity tag; the request fails if the object changed (null to skip the check)
+     * @return Stream over the requested bytes
+     */
+    InputStream openRange(String key, long start, long end, String eTag);
+
+    /**
+     * List all objects under a prefix, one page at a time, without materializing the whole listing
+     * @param prefix Key prefix (e.g., "videos/")
+     * @param pageConsumer Receives each page of objects
+     */
+    void listObjects(String prefix, Consumer<List<StoredObject>> pageConsumer);
+
+    /**
+     * Get backend statistics for monitoring
+     * @return Named statistics sections
+     */
+    Map<String, Object> getStorageStats();
+}
@@ -0,0 +1,196 @@
+package com.kiosk.backend.service;
+
+import com.kiosk.backend.entity.Video;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Streams media content to HTTP clients with Range / If-Range support.
+ * Content is copied from the media store to the servlet output stream through a fixed-size buffer,
+ * or transferred from a local file (content cache or file system store) when a current copy is present,
+ * so the file is never held in the heap.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MediaStreamingService {
+
+    private static final int BUFFER_SIZE = 64 * 1024; // 64KB
+
+    private final MediaStore mediaStore;
+
+    /**
+     * Stream a video's file content, honoring Range and If-Range request headers
+     * @param video Video entity to stream
+     * @param request HTTP request (Range / If-Range headers are read from it)
+     * @param response HTTP response to write status, headers and content to
+     */
+    public void stream(Video video, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        stream(video.getS3Key(), video.getContentType(),
+                video.getOriginalFilename() != null ? video.getOriginalFilename() : video.getFilename(),
+                request, response);
+    }
+
+    /**
+     * Stream a stored object, honoring Range and If-Range request headers
+     * @param key Storage key of the object
+     * @param contentType Content type to send (null for application/octet-stream)
+     * @param filename Filename for the Content-Disposition header
+     * @param request HTTP request (Range / If-Range headers are read from it)
+     * @param response HTTP response to write status, headers and content to
+     */
+    public void stream(String key, String contentType, String filename,
+                       HttpServletRequest request, HttpServletResponse response) throws IOException {
+        MediaStore.ObjectInfo info = mediaStore.stat(key);
+        long contentLength = info.contentLength();
+        String eTag = info.eTag();
+        long lastModified = info.lastModified() != null ? info.lastModified().toEpochMilli() : -1;
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (eTag != null) {
+            response.setHeader(HttpHeaders.ETAG, eTag);
+        }
+        if (lastModified >= 0) {
+            response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+        }
+        response.setContentType(contentType != null ? contentType : "application/octet-stream");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.inline()
+                .filename(filename, StandardCharsets.UTF_8)
+                .build()
+                .toString());
+
+        long start = 0;
+        long end = contentLength - 1;
+
+        HttpRange range = resolveRange(request, eTag, lastModified);
+        if (range != null) {
+            try {
+                start = range.getRangeStart(contentLength);
+                end = range.getRangeEnd(contentLength);
+            } catch (IllegalArgumentException e) {
+                start = contentLength; // Mark as unsatisfiable below
+            }
+
+            if (start >= contentLength || start > end) {
+                log.debug("Unsatisfiable range {} for {} ({} bytes)", request.getHeader(HttpHeaders.RANGE),
+                        key, contentLength);
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + contentLength);
+                response.setContentLength(0);
+                return;
+            }
+
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + contentLength);
+        } else {
+            response.setStatus(HttpServletResponse.SC_OK);
+        }
+
+        long length = end - start + 1;
+        response.setContentLengthLong(Math.max(length, 0));
+        if (length <= 0 || "HEAD".equalsIgnoreCase(request.getMethod())) {
+            return;
+        }
+
+        // Opened under the cache lock, so an eviction after this point cannot fail the response
+        Optional<FileChannel> localFile = mediaStore.openLocalFile(key, eTag);
+        if (localFile.isPresent()) {
+            log.debug("Streaming {} bytes {}-{} from local file", key, start, end);
+            try (FileChannel channel = localFile.get()) {
+                transferFromFile(channel, key, start, length, response.getOutputStream());
+            }
+        } else {
+            log.debug("Streaming {} bytes {}-{} from media store", key, start, end);
+            try (InputStream in = mediaStore.openRange(key, start, end, eTag)) {
+                copy(in, response.getOutputStream());
+            }
+        }
+        response.flushBuffer();
+    }
+
+    /**
+     * Determine the single byte range to serve, or null to serve the whole file.
+     * Multi-range requests and ranges whose If-Range validator no longer matches fall back to the whole file.
+     */
+    private HttpRange resolveRange(HttpServletRequest request, String eTag, long lastModified) {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null || rangeHeader.isBlank()) {
+            return null;
+        }
+
+        if (!ifRangeMatches(request, eTag, lastModified)) {
+            return null;
+        }
+
+        List<HttpRange> ranges;
+        try {
+            ranges = HttpRange.parseRanges(rangeHeader);
+        } catch (IllegalArgumentException e) {
+            // Syntactically invalid Range headers are ignored (RFC 9110)
+            log.debug("Ignoring invalid Range header: {}", rangeHeader);
+            return null;
+        }
+        return ranges.size() == 1 ? ranges.get(0) : null;
+    }
+
+    /**
+     * If-Range holds either an entity tag (strong comparison) or an HTTP date (must equal Last-Modified)
+     */
+    private boolean ifRangeMatches(HttpServletRequest request, String eTag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null || ifRange.isBlank()) {
+            return true;
+        }
+
+        String value = ifRange.trim();
+        if (value.startsWith("\"") || value.startsWith("W/")) {
+            return eTag != null && !value.startsWith("W/") && value.equals(eTag);
+        }
+
+        try {
+            long ifRangeDate = request.getDateHeader(HttpHeaders.IF_RANGE);
+            // Exact match only (RFC 9110 13.1.5); HTTP dates have second precision
+            return lastModified >= 0 && ifRangeDate >= 0 && lastModified / 1000 == ifRangeDate / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private void transferFromFile(FileChannel channel, String key, long position, long count, OutputStream out) throws IOException {
+        WritableByteChannel target = Channels.newChannel(out);
+        long remaining = count;
+        long offset = position;
+        while (remaining > 0) {
+            long transferred = channel.transferTo(offset, remaining, target);
+            if (transferred <= 0) {
+                throw new IOException("Cached file ended before the requested range: " + key);
+            }
+            offset += transferred;
+            remaining -= transferred;
+        }
+    }
+
+    private void copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+    }
+}
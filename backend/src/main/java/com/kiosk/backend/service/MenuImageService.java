@@ -0,0 +1,340 @@
+package com.kiosk.backend.service;
+
+import com.kiosk.backend.entity.Video;
+import com.kiosk.backend.repository.VideoRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builds the menu image derivatives recommended by the coffee menu schema:
+ * a {@value #THUMBNAIL_WIDTH}x{@value #THUMBNAIL_HEIGHT} grid thumbnail and a
+ * {@value #DETAIL_WIDTH}x{@value #DETAIL_HEIGHT} detail image, center-cropped and encoded as WebP
+ * (JPEG if the installed FFmpeg has no WebP encoder). Smaller images are cropped but never upscaled, and a
+ * derivative that is not smaller than the original is replaced by the original's key.
+ * Kiosks download these instead of the original upload.
+ * New MENU images get them from the thumbnail job's local copy; images of a menu that is assigned
+ * to a kiosk get missing derivatives in the background.
+ */
+@Service
+@Slf4j
+public class MenuImageService {
+
+    public static final String DERIVATIVE_FOLDER = "images/menu/";
+
+    public static final int THUMBNAIL_WIDTH = 300;
+    public static final int THUMBNAIL_HEIGHT = 300;
+    public static final int DETAIL_WIDTH = 800;
+    public static final int DETAIL_HEIGHT = 600;
+
+    private static final long FFMPEG_TIMEOUT_SECONDS = 30;
+    private static final int MAX_ERROR_OUTPUT = 1000;
+
+    // Vector and animated images are kept as uploaded
+    private static final Set<String> UNSUPPORTED_CONTENT_TYPES = Set.of("image/svg+xml", "image/gif");
+
+    private final MediaStore mediaStore;
+    private final VideoRepository videoRepository;
+    private final StorageDeletionQueue storageDeletionQueue;
+    private final CacheManager cacheManager;
+
+    // webp or jpeg
+    @Value("${menu.images.format:webp}")
+    private String format;
+
+    // WebP quality 0-100 (JPEG uses the matching FFmpeg q:v scale)
+    @Value("${menu.images.quality:80}")
+    private int quality;
+
+    @Value("${menu.images.workers:1}")
+    private int workers;
+
+    @Value("${menu.images.work-directory:${java.io.tmpdir}/kiosk-menu-images}")
+    private String workDirectory;
+
+    private Path workDir;
+    private ExecutorService workerPool;
+
+    // Set once FFmpeg reports that libwebp is missing, so later images go straight to JPEG
+    private final AtomicBoolean webpUnavailable = new AtomicBoolean();
+
+    // Video IDs queued in the pool (a menu is often assigned to many kiosks at once)
+    private final Set<Long> requestedVideos = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Stored derivatives of a menu image
+     * @param thumbnailS3Key Storage key of the grid thumbnail
+     * @param detailS3Key Storage key of the detail image
+     * @param detailFileSize Size of the detail image in bytes
+     */
+    public record Derivatives(String thumbnailS3Key, String detailS3Key, long detailFileSize) {}
+
+    public MenuImageService(MediaStore mediaStore, VideoRepository videoRepository,
+                            StorageDeletionQueue storageDeletionQueue, CacheManager cacheManager) {
+        this.mediaStore = mediaStore;
+        this.videoRepository = videoRepository;
+        this.storageDeletionQueue = storageDeletionQueue;
+        this.cacheManager = cacheManager;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        workDir = Paths.get(workDirectory).toAbsolutePath().normalize();
+        Files.createDirectories(workDir);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        workerPool = Executors.newFixedThreadPool(Math.max(1, workers), runnable -> {
+            Thread thread = new Thread(runnable, "menu-image-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workerPool.shutdownNow();
+    }
+
+    /**
+     * Check if derivatives are still missing for an image
+     * @param video Video entity
+     * @return true for raster images without derivatives
+     */
+    public boolean needsDerivatives(Video video) {
+        return video.getMediaType() == Video.MediaType.IMAGE
+                && video.getMenuThumbnailS3Key() == null
+                && (video.getContentType() == null || !UNSUPPORTED_CONTENT_TYPES.contains(video.getContentType().toLowerCase()));
+    }
+
+    /**
+     * Build and store the derivatives of a menu image, logging instead of throwing on failure
+     * (kiosks keep using the original until the derivatives exist)
+     * @param video Video entity
+     * @param source Local copy of the original, or null to read it from storage
+     * @return true if the derivatives were stored
+     */
+    public boolean createDerivativesQuietly(Video video, Path source) {
+        try {
+            return createDerivatives(video, source);
+        } catch (Exception e) {
+            log.warn("Failed to build menu image derivatives for video ID {}: {}", video.getId(), e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Build missing derivatives for images in the background
+     * @param videoIds IDs of images referenced by a menu
+     */
+    public void requestDerivatives(Collection<Long> videoIds) {
+        List<Video> pending = new ArrayList<>();
+        for (Video video : videoRepository.findAllById(videoIds)) {
+            if (needsDerivatives(video) && requestedVideos.add(video.getId())) {
+                pending.add(video);
+            }
+        }
+        for (Video video : pending) {
+            try {
+                workerPool.execute(() -> {
+                    try {
+                        createDerivativesQuietly(video, null);
+                    } finally {
+                        requestedVideos.remove(video.getId());
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                requestedVideos.remove(video.getId());
+                log.warn("Menu image worker pool is shut down, skipping video ID {}", video.getId());
+            }
+        }
+        if (!pending.isEmpty()) {
+            log.info("Queued menu image derivatives for {} images", pending.size());
+        }
+    }
+
+    private boolean createDerivatives(Video video, Path source) throws IOException {
+        long startTime = System.currentTimeMillis();
+        Path workFile = null;
+        try {
+            if (source == null || !Files.isRegularFile(source)) {
+                MediaStore.ObjectInfo info = mediaStore.stat(video.getS3Key());
+                source = mediaStore.findLocalFile(video.getS3Key(), info.eTag()).orElse(null);
+                if (source == null) {
+                    if (info.contentLength() == 0) {
+                        throw new IOException("Stored file is empty");
+                    }
+                    workFile = Files.createTempFile(workDir, "menu_source_", ".img");
+                    try (InputStream inputStream = mediaStore.openRange(video.getS3Key(), 0, info.contentLength() - 1, info.eTag())) {
+                        Files.copy(inputStream, workFile, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                    source = workFile;
+                }
+            }
+
+            // Only keys stored here are cleaned up on failure; the original's key may stand in for a derivative
+            List<String> storedKeys = new ArrayList<>(2);
+            try {
+                byte[] thumbnail = render(source, THUMBNAIL_WIDTH, THUMBNAIL_HEIGHT);
+                String thumbnailKey = storeIfSmaller(video, thumbnail, THUMBNAIL_WIDTH, THUMBNAIL_HEIGHT, storedKeys);
+                byte[] detail = render(source, DETAIL_WIDTH, DETAIL_HEIGHT);
+                String detailKey = storeIfSmaller(video, detail, DETAIL_WIDTH, DETAIL_HEIGHT, storedKeys);
+
+                Derivatives derivatives = new Derivatives(thumbnailKey, detailKey,
+                        detailKey.equals(video.getS3Key()) ? video.getFileSize() : detail.length);
+                if (videoRepository.updateMenuDerivatives(video.getId(), derivatives.thumbnailS3Key(),
+                        derivatives.detailS3Key(), derivatives.detailFileSize()) == 0) {
+                    // Video deleted, or derivatives stored by another worker in the meantime
+                    storageDeletionQueue.enqueue(storedKeys);
+                    return false;
+                }
+                evictVideoCache(video.getId());
+                log.info("Menu image derivatives for video ID {} built in {}ms ({} -> {} + {} bytes, {} stored)", video.getId(),
+                        System.currentTimeMillis() - startTime, video.getFileSize(), thumbnail.length, detail.length, storedKeys.size());
+                return true;
+            } catch (IOException | RuntimeException e) {
+                storageDeletionQueue.enqueue(storedKeys);
+                throw e;
+            }
+        } finally {
+            if (workFile != null) {
+                Files.deleteIfExists(workFile);
+            }
+        }
+    }
+
+    /**
+     * Store a derivative, or return the original's key if the derivative would not save any bytes
+     */
+    private String storeIfSmaller(Video video, byte[] bytes, int width, int height, List<String> storedKeys) {
+        if (video.getFileSize() != null && bytes.length >= video.getFileSize()) {
+            log.debug("{}x{} derivative of video ID {} is not smaller than the original, using the original", width, height, video.getId());
+            return video.getS3Key();
+        }
+        String key = store(video, bytes, width, height);
+        storedKeys.add(key);
+        return key;
+    }
+
+    private String store(Video video, byte[] bytes, int width, int height) {
+        boolean webp = useWebp();
+        return mediaStore.uploadBytes(bytes, DERIVATIVE_FOLDER,
+                derivativeFilename(video.getOriginalFilename(), width, height, webp ? ".webp" : ".jpg"),
+                webp ? "image/webp" : "image/jpeg");
+    }
+
+    /**
+     * Center-crop an image to the width x height aspect ratio and scale it down to width x height
+     * (images smaller than the target keep their resolution)
+     */
+    private byte[] render(Path source, int width, int height) throws IOException {
+        if (useWebp()) {
+            try {
+                return runFfmpeg(source, width, height, true);
+            } catch (IOException e) {
+                if (e.getMessage() == null || !e.getMessage().contains("libwebp")) {
+                    throw e;
+                }
+                webpUnavailable.set(true);
+                log.warn("FFmpeg has no WebP encoder, menu image derivatives are stored as JPEG");
+            }
+        }
+        return runFfmpeg(source, width, height, false);
+    }
+
+    private boolean useWebp() {
+        return "webp".equalsIgnoreCase(format) && !webpUnavailable.get();
+    }
+
+    private byte[] runFfmpeg(Path source, int width, int height, boolean webp) throws IOException {
+        Path output = workDir.resolve("menu_" + UUID.randomUUID() + (webp ? ".webp" : ".jpg"));
+        Path errorLog = output.resolveSibling(output.getFileName() + ".log");
+
+        List<String> command = new ArrayList<>(List.of(
+            "ffmpeg", "-nostdin", "-loglevel", "error", "-y",
+            "-i", source.toAbsolutePath().toString(),
+            "-frames:v", "1",
+            "-vf", "crop=w='min(iw,ih*" + width + "/" + height + ")':h='min(ih,iw*" + height + "/" + width + ")',"
+                    + "scale=w='min(" + width + ",iw)':h='min(" + height + ",ih)'"
+        ));
+        if (webp) {
+            command.addAll(List.of("-c:v", "libwebp", "-quality", String.valueOf(quality), "-compression_level", "4"));
+        } else {
+            // Map quality 0-100 onto the mjpeg q:v scale 31-2 (2 is best)
+            int qscale = Math.max(2, Math.min(31, 31 - Math.round(quality * 29 / 100f)));
+            command.addAll(List.of("-c:v", "mjpeg", "-q:v", String.valueOf(qscale)));
+        }
+        command.add(output.toString());
+
+        ProcessBuilder processBuilder = new ProcessBuilder(command);
+        processBuilder.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+        processBuilder.redirectError(errorLog.toFile());
+
+        Process process = processBuilder.start();
+        try {
+            if (!process.waitFor(FFMPEG_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new IOException("FFmpeg timed out after " + FFMPEG_TIMEOUT_SECONDS + " seconds");
+            }
+            if (process.exitValue() != 0) {
+                throw new IOException("FFmpeg failed with exit code " + process.exitValue() + ": " + readErrorOutput(errorLog));
+            }
+            if (!Files.isRegularFile(output) || Files.size(output) == 0) {
+                throw new IOException("FFmpeg produced no output");
+            }
+            return Files.readAllBytes(output);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("FFmpeg interrupted", e);
+        } finally {
+            process.destroyForcibly();
+            Files.deleteIfExists(output);
+            Files.deleteIfExists(errorLog);
+        }
+    }
+
+    private void evictVideoCache(Long videoId) {
+        Cache cache = cacheManager.getCache("videos");
+        if (cache != null) {
+            cache.evict(videoId);
+        }
+    }
+
+    private static String readErrorOutput(Path errorLog) {
+        try {
+            String errorOutput = Files.readString(errorLog, StandardCharsets.UTF_8).trim();
+            return errorOutput.length() > MAX_ERROR_OUTPUT ? errorOutput.substring(errorOutput.length() - MAX_ERROR_OUTPUT) : errorOutput;
+        } catch (IOException e) {
+            return "(no error output)";
+        }
+    }
+
+    private static String derivativeFilename(String originalFilename, int width, int height, String extension) {
+        String name = originalFilename != null ? originalFilename : "menu";
+        int lastDotIndex = name.lastIndexOf(".");
+        String baseName = lastDotIndex > 0 ? name.substring(0, lastDotIndex) : name;
+        return baseName + "_" + width + "x" + height + extension;
+    }
+}
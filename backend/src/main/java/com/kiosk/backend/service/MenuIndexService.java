@@ -0,0 +1,179 @@
+package com.kiosk.backend.service;
+
+import com.kiosk.backend.entity.MenuAssetRef;
+import com.kiosk.backend.repository.MenuAssetRefRepository;
+import com.kiosk.backend.repository.VideoRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Menu index: the images and videos each menu references (menu_asset_refs), the downloadable flag of its images
+ * and its first version.
+ * References and downloadable flags are written in the upload's transaction and roll back with it.
+ * The version is recorded after the upload completes, on a single recorder thread in its own transaction,
+ * so recording it never holds a second connection for the request and a failure cannot undo the index.
+ */
+@Service
+@Slf4j
+public class MenuIndexService {
+
+    private static final String VIDEOS_CACHE = "videos";
+
+    // IDs per bulk UPDATE; a power of two, so in_clause_parameter_padding reuses one statement for every full chunk
+    private static final int BULK_UPDATE_CHUNK_SIZE = 512;
+
+    private final MenuAssetRefRepository menuAssetRefRepository;
+    private final VideoRepository videoRepository;
+    private final MenuVersionService menuVersionService;
+    private final CacheManager cacheManager;
+
+    private final ExecutorService versionExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "menu-version-recorder");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public MenuIndexService(MenuAssetRefRepository menuAssetRefRepository, VideoRepository videoRepository,
+                            MenuVersionService menuVersionService, CacheManager cacheManager) {
+        this.menuAssetRefRepository = menuAssetRefRepository;
+        this.videoRepository = videoRepository;
+        this.menuVersionService = menuVersionService;
+        this.cacheManager = cacheManager;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        versionExecutor.shutdown();
+    }
+
+    /**
+     * Index an uploaded menu: store its references, mark its images as downloadable and record its first version
+     * Joins the upload's transaction; the version is recorded once the upload has committed.
+     * @param menuId Menu video ID
+     * @param references Assets referenced by the menu
+     * @param structure Items and layout hash of the menu
+     */
+    @Transactional
+    public void indexMenu(Long menuId, MenuXmlParser.MenuReferences references, MenuXmlParser.MenuStructure structure) {
+        saveAssetRefs(menuId, references);
+        markImagesAsDownloadable(references.imageIds());
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            evictVideos(references.imageIds());
+            submitVersionTask(menuId, () -> menuVersionService.recordVersion(menuId, references, structure));
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    evictVideos(references.imageIds());
+                    submitVersionTask(menuId, () -> menuVersionService.recordVersion(menuId, references, structure));
+                }
+            }
+        });
+    }
+
+    /**
+     * Make a replacement menu the next version of the menu it replaces, once the menu update has committed
+     * Runs on the recorder thread after the replacement menu's version was recorded
+     * @param previousMenuId Menu that was replaced
+     * @param menuId Replacement menu
+     */
+    public void linkVersionAfterCommit(Long previousMenuId, Long menuId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            submitVersionTask(menuId, () -> menuVersionService.linkVersion(previousMenuId, menuId));
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    submitVersionTask(menuId, () -> menuVersionService.linkVersion(previousMenuId, menuId));
+                }
+            }
+        });
+    }
+
+    /**
+     * Replace the menu_asset_refs rows of a menu (joins the caller's transaction)
+     * @param menuId Menu video ID
+     * @param references Assets referenced by the menu
+     */
+    @Transactional
+    public void saveAssetRefs(Long menuId, MenuXmlParser.MenuReferences references) {
+        List<MenuAssetRef> refs = new ArrayList<>();
+        addAssetRefs(refs, menuId, references.imageIds(), MenuAssetRef.AssetKind.IMAGE);
+        addAssetRefs(refs, menuId, references.videoIds(), MenuAssetRef.AssetKind.VIDEO);
+        menuAssetRefRepository.deleteByMenuId(menuId);
+        menuAssetRefRepository.saveAll(refs);
+        log.info("Indexed menu {}: {} images, {} videos", menuId,
+                refs.stream().filter(ref -> ref.getKind() == MenuAssetRef.AssetKind.IMAGE).count(),
+                refs.stream().filter(ref -> ref.getKind() == MenuAssetRef.AssetKind.VIDEO).count());
+    }
+
+    /**
+     * Mark menu images as downloadable
+     * This allows kiosks to automatically download menu images through the existing sync mechanism
+     * Set-based: one UPDATE per chunk of IDs instead of a load and save per image
+     * @param imageIds Image IDs referenced by the menu
+     */
+    private void markImagesAsDownloadable(List<Long> imageIds) {
+        if (imageIds.isEmpty()) {
+            return;
+        }
+
+        int updated = 0;
+        for (int from = 0; from < imageIds.size(); from += BULK_UPDATE_CHUNK_SIZE) {
+            updated += videoRepository.markDownloadable(imageIds.subList(from, Math.min(from + BULK_UPDATE_CHUNK_SIZE, imageIds.size())));
+        }
+        log.info("Marked {} of {} menu images as downloadable (others were already downloadable or missing)",
+                updated, imageIds.size());
+    }
+
+    /**
+     * The bulk UPDATE bypasses the entity cache, so cached copies would still read downloadable = false
+     * Evicted after commit, so a concurrent read cannot cache the row again before the update is visible
+     */
+    private void evictVideos(List<Long> videoIds) {
+        Cache videosCache = cacheManager.getCache(VIDEOS_CACHE);
+        if (videosCache != null) {
+            videoIds.forEach(videosCache::evict);
+        }
+    }
+
+    private void submitVersionTask(Long menuId, Runnable task) {
+        try {
+            versionExecutor.execute(() -> {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    // The version is recorded again from storage when the menu is next replaced
+                    log.error("Failed to update version of menu {}: {}", menuId, e.getMessage(), e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("Menu version recorder is shut down, version of menu {} is not updated", menuId);
+        }
+    }
+
+    private static void addAssetRefs(List<MenuAssetRef> refs, Long menuId, List<Long> assetIds, MenuAssetRef.AssetKind kind) {
+        // The same asset may appear several times in a menu, but is indexed once per kind
+        for (Long assetId : new LinkedHashSet<>(assetIds)) {
+            refs.add(MenuAssetRef.builder().menuId(menuId).assetId(assetId).kind(kind).build());
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.kiosk.backend.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.kiosk.backend.entity.Video;
+import com.kiosk.backend.repository.VideoRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Renders XML documents (menus) with their S3 URLs replaced by presigned URLs.
+ * Rendered documents are cached as UTF-8 bytes per (document, URL duration) for one presign window:
+ * the same fraction of the URL lifetime that {@link S3Service} reuses a presigned URL for.
+ * Within a window a menu is served without downloading, scanning or signing it again;
+ * deleting or updating the document evicts it.
+ */
+@Service
+@Slf4j
+public class MenuRenderService {
+
+    // Format: https://bucket.s3.region.amazonaws.com/key
+    private static final Pattern S3_URL_PATTERN = Pattern.compile("https://[^/]+\\.s3\\.[^/]+\\.amazonaws\\.com/([^<\\s\"']+)");
+
+    private final VideoRepository videoRepository;
+    private final MediaStore mediaStore;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${menu.render-cache.max-size:200}")
+    private long maxSize;
+
+    // Same setting as the presigned URL cache, so a rendered menu never outlives the URLs it reuses
+    @Value("${aws.s3.presign-cache.reuse-fraction:0.5}")
+    private double reuseFraction;
+
+    private Cache<RenderKey, RenderedMenu> renderedMenus;
+
+    private record RenderKey(Long videoId, int durationMinutes) {}
+
+    /**
+     * XML document with presigned URLs
+     * @param content Rewritten document, UTF-8 encoded
+     * @param validUntil End of the presign window (epoch millis); the URLs stay valid at least until then
+     * @param contentHash SHA-256 of content (ETag of the rendered document)
+     */
+    public record RenderedMenu(byte[] content, long validUntil, String contentHash) {
+
+        /**
+         * Rewritten document as text (for JSON responses)
+         */
+        public String text() {
+            return new String(content, StandardCharsets.UTF_8);
+        }
+    }
+
+    public MenuRenderService(VideoRepository videoRepository, MediaStore mediaStore, MeterRegistry meterRegistry) {
+        this.videoRepository = videoRepository;
+        this.mediaStore = mediaStore;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        renderedMenus = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<RenderKey, RenderedMenu>() {
+                    @Override
+                    public long expireAfterCreate(RenderKey key, RenderedMenu menu, long currentTime) {
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, menu.validUntil() - System.currentTimeMillis()));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(RenderKey key, RenderedMenu menu, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, menu, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(RenderKey key, RenderedMenu menu, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, renderedMenus, "renderedMenus");
+        log.info("Rendered menu cache initialized (maxSize: {}, reuseFraction: {})", maxSize, effectiveReuseFraction());
+    }
+
+    /**
+     * Get an XML document with presigned URLs, rendering it if the cached copy is missing or its window has passed
+     * @param videoId Video ID of the XML document
+     * @param durationMinutes Validity of the presigned URLs
+     * @return Rendered document
+     */
+    public RenderedMenu render(Long videoId, int durationMinutes) {
+        return renderedMenus.get(new RenderKey(videoId, durationMinutes), key -> load(key.videoId(), key.durationMinutes()));
+    }
+
+    /**
+     * Drop the rendered copies of a document (after it was deleted or updated)
+     * @param videoId Video ID of the XML document
+     */
+    public void evict(Long videoId) {
+        renderedMenus.asMap().keySet().removeIf(key -> key.videoId().equals(videoId));
+    }
+
+    /**
+     * Replace all S3 URLs in content with presigned URLs
+     * Distinct URLs are signed in one batch; URLs that cannot be signed are kept as they are.
+     * @param content Content with S3 URLs
+     * @param durationMinutes Duration in minutes for which the presigned URLs are valid
+     * @return Content with presigned URLs
+     */
+    public String replaceS3Urls(String content, int durationMinutes) {
+        if (content == null || content.isEmpty() || !content.contains("amazonaws.com")) {
+            return content;
+        }
+
+        Set<String> s3Keys = new LinkedHashSet<>();
+        Matcher matcher = S3_URL_PATTERN.matcher(content);
+        while (matcher.find()) {
+            s3Keys.add(matcher.group(1));
+        }
+        if (s3Keys.isEmpty()) {
+            return content;
+        }
+
+        Map<String, String> presignedUrls = mediaStore.generatePresignedUrls(s3Keys, durationMinutes);
+        if (presignedUrls.size() < s3Keys.size()) {
+            log.warn("Failed to presign {} of {} S3 URLs, keeping the original URLs", s3Keys.size() - presignedUrls.size(), s3Keys.size());
+        }
+
+        StringBuilder result = new StringBuilder(content.length() + s3Keys.size() * 512);
+        matcher.reset();
+        while (matcher.find()) {
+            String presignedUrl = presignedUrls.getOrDefault(matcher.group(1), matcher.group(0));
+            matcher.appendReplacement(result, Matcher.quoteReplacement(presignedUrl));
+        }
+        matcher.appendTail(result);
+        return result.toString();
+    }
+
+    private RenderedMenu load(Long videoId, int durationMinutes) {
+        long startTime = System.currentTimeMillis();
+        Video video = videoRepository.findById(videoId)
+                .orElseThrow(() -> new RuntimeException("Video not found with id: " + videoId));
+
+        String content = new String(mediaStore.downloadFile(video.getS3Key()), StandardCharsets.UTF_8);
+        String rendered = replaceS3Urls(content, durationMinutes);
+        byte[] bytes = rendered.getBytes(StandardCharsets.UTF_8);
+
+        // Windows are aligned to the clock, so every document signed in a window expires from the cache together.
+        // A reused presigned URL has at least (1 - reuseFraction) of its lifetime left, so the window never exceeds that.
+        double windowFraction = Math.min(effectiveReuseFraction(), 1.0 - effectiveReuseFraction());
+        long windowMillis = Math.max(60_000L, (long) (TimeUnit.MINUTES.toMillis(durationMinutes) * windowFraction));
+        long validUntil = (startTime / windowMillis + 1) * windowMillis;
+
+        log.info("Rendered XML document {} ({} bytes) in {}ms", videoId, bytes.length, System.currentTimeMillis() - startTime);
+        return new RenderedMenu(bytes, validUntil, ContentDeliveryService.sha256(bytes));
+    }
+
+    private double effectiveReuseFraction() {
+        return Math.min(Math.max(reuseFraction, 0.0), 0.9);
+    }
+}
@@ -0,0 +1,319 @@
+package com.kiosk.backend.service;
+
+import com.kiosk.backend.entity.MenuAssetRef;
+import com.kiosk.backend.entity.MenuVersion;
+import com.kiosk.backend.entity.MenuVersionAsset;
+import com.kiosk.backend.entity.MenuVersionItem;
+import com.kiosk.backend.entity.Video;
+import com.kiosk.backend.repository.MenuVersionAssetRepository;
+import com.kiosk.backend.repository.MenuVersionItemRepository;
+import com.kiosk.backend.repository.MenuVersionRepository;
+import com.kiosk.backend.repository.VideoRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.xml.stream.XMLStreamException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Menu versions: the item-level structure of every uploaded menu, linked across menu updates.
+ * Updating a menu replaces its video with a new one; the new menu becomes the next version of the old
+ * menu's lineage, so a kiosk still on the old menu can fetch only the items and assets that changed.
+ */
+@Service
+@Slf4j
+public class MenuVersionService {
+
+    // Validity of presigned URLs in item content (same as the full menu XML)
+    private static final int CONTENT_URL_DURATION_MINUTES = 10080;
+
+    private static final int MAX_ITEM_ID_LENGTH = 255;
+    private static final int MAX_CATEGORY_LENGTH = 100;
+
+    private final MenuVersionRepository menuVersionRepository;
+    private final MenuVersionItemRepository menuVersionItemRepository;
+    private final MenuVersionAssetRepository menuVersionAssetRepository;
+    private final VideoRepository videoRepository;
+    private final MediaStore mediaStore;
+    private final MenuXmlParser menuXmlParser;
+    private final MenuRenderService menuRenderService;
+
+    /**
+     * Difference between two versions of a menu
+     * @param fromMenuId Menu the kiosk has
+     * @param toMenuId Current menu
+     * @param fromVersion Version number of the kiosk's menu (null if unknown)
+     * @param toVersion Version number of the current menu
+     * @param fullDownload true if the menus are not versions of the same menu; the kiosk must download the whole XML
+     * @param layoutChanged true if anything outside the items changed (metadata, categories, actions)
+     * @param addedItems Items only in the current menu, with their XML
+     * @param changedItems Items whose XML changed, with their new XML
+     * @param removedItemIds Items no longer in the menu (stored item IDs, see {@link ItemChange})
+     * @param addedImageIds Images the kiosk does not have yet
+     * @param removedImageIds Images the current menu no longer uses
+     * @param addedVideoIds Videos the kiosk does not have yet
+     * @param removedVideoIds Videos the current menu no longer uses
+     */
+    public record MenuDiff(Long fromMenuId, Long toMenuId, Integer fromVersion, Integer toVersion,
+                           boolean fullDownload, boolean layoutChanged,
+                           List<ItemChange> addedItems, List<ItemChange> changedItems, List<String> removedItemIds,
+                           List<Long> addedImageIds, List<Long> removedImageIds,
+                           List<Long> addedVideoIds, List<Long> removedVideoIds) {}
+
+    /**
+     * Added or changed menu item
+     * @param itemId id attribute of the item; IDs longer than 255 characters are stored as a prefix,
+     *               "~" and the SHA-256 hex of the whole ID
+     * @param category category attribute of the item
+     * @param content Item XML, S3 URLs replaced by presigned URLs
+     */
+    public record ItemChange(String itemId, String category, String content) {}
+
+    public MenuVersionService(MenuVersionRepository menuVersionRepository,
+                              MenuVersionItemRepository menuVersionItemRepository,
+                              MenuVersionAssetRepository menuVersionAssetRepository,
+                              VideoRepository videoRepository, MediaStore mediaStore,
+                              MenuXmlParser menuXmlParser, MenuRenderService menuRenderService) {
+        this.menuVersionRepository = menuVersionRepository;
+        this.menuVersionItemRepository = menuVersionItemRepository;
+        this.menuVersionAssetRepository = menuVersionAssetRepository;
+        this.videoRepository = videoRepository;
+        this.mediaStore = mediaStore;
+        this.menuXmlParser = menuXmlParser;
+        this.menuRenderService = menuRenderService;
+    }
+
+    /**
+     * Record the first version of an uploaded menu
+     * Called by {@link MenuIndexService} after the upload has committed
+     * @param menuId Menu video ID
+     * @param references Assets referenced by the menu
+     * @param structure Items and layout hash of the menu
+     * @return Stored version (the existing one if the menu was already recorded)
+     */
+    @Transactional
+    public MenuVersion recordVersion(Long menuId, MenuXmlParser.MenuReferences references,
+                                     MenuXmlParser.MenuStructure structure) {
+        MenuVersion existing = menuVersionRepository.findByMenuId(menuId).orElse(null);
+        if (existing != null) {
+            return existing;
+        }
+        return saveVersion(menuId, references, structure);
+    }
+
+    /**
+     * Get the version of a menu, recording it from storage if the menu was uploaded before versions existed
+     * Runs in its own transaction: a menu update catches a failure here, which must not mark the update
+     * transaction rollback-only
+     * @param menuId Menu video ID
+     * @return Stored version
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public MenuVersion ensureVersion(Long menuId) {
+        MenuVersion existing = menuVersionRepository.findByMenuId(menuId).orElse(null);
+        if (existing != null) {
+            return existing;
+        }
+        Video menu = videoRepository.findById(menuId)
+                .orElseThrow(() -> new RuntimeException("Menu not found with id: " + menuId));
+        // Checked before downloading: the whole object is read into memory
+        if (!isMenu(menu)) {
+            throw new IllegalArgumentException("Video " + menuId + " is not a menu XML document");
+        }
+        byte[] xmlBytes = mediaStore.downloadFile(menu.getS3Key());
+        try {
+            return saveVersion(menuId, menuXmlParser.parse(xmlBytes),
+                    menuXmlParser.parseStructure(new java.io.ByteArrayInputStream(xmlBytes)));
+        } catch (XMLStreamException e) {
+            throw new RuntimeException("Failed to parse menu " + menuId + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Make a newly uploaded menu the next version of the menu it replaces
+     * Runs in its own transaction, like {@link #ensureVersion(Long)}; called by {@link MenuIndexService} after the
+     * menu update has committed, once the version of the replacement menu was recorded
+     * @param previousMenuId Menu that was replaced (its version must have been recorded before it was deleted)
+     * @param menuId Replacement menu
+     * @return Version of the replacement menu
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public MenuVersion linkVersion(Long previousMenuId, Long menuId) {
+        MenuVersion current = ensureVersion(menuId);
+        MenuVersion previous = menuVersionRepository.findByMenuId(previousMenuId).orElse(null);
+        if (previous == null) {
+            log.warn("No version recorded for menu {}, menu {} starts a new lineage", previousMenuId, menuId);
+            return current;
+        }
+        if (!current.getLineageId().equals(previous.getLineageId())) {
+            current.setLineageId(previous.getLineageId());
+            current.setVersion(menuVersionRepository.findLatestVersionNumber(previous.getLineageId()) + 1);
+            current = menuVersionRepository.save(current);
+        }
+        log.info("Menu {} is version {} of menu lineage {} (replaces menu {})",
+                menuId, current.getVersion(), current.getLineageId(), previousMenuId);
+        return current;
+    }
+
+    /**
+     * Compare the menu a kiosk has with the current menu
+     * Read-only: the version of the current menu is recorded when it is uploaded, not here
+     * @param fromMenuId Menu the kiosk has
+     * @param toMenuId Current menu
+     * @return Added, changed and removed items and assets
+     * @throws IllegalArgumentException if the current menu is not a menu XML document
+     * @throws IllegalStateException if no version of the current menu is recorded (yet)
+     */
+    @Transactional(readOnly = true)
+    public MenuDiff diff(Long fromMenuId, Long toMenuId) {
+        Video menu = videoRepository.findById(toMenuId)
+                .orElseThrow(() -> new RuntimeException("Menu not found with id: " + toMenuId));
+        if (!isMenu(menu)) {
+            throw new IllegalArgumentException("Video " + toMenuId + " is not a menu XML document");
+        }
+        MenuVersion to = menuVersionRepository.findByMenuId(toMenuId)
+                .orElseThrow(() -> new IllegalStateException("No version recorded for menu " + toMenuId));
+        MenuVersion from = menuVersionRepository.findByMenuId(fromMenuId).orElse(null);
+        if (from == null || !from.getLineageId().equals(to.getLineageId())) {
+            return new MenuDiff(fromMenuId, toMenuId, from != null ? from.getVersion() : null, to.getVersion(),
+                    true, true, List.of(), List.of(), List.of(), List.of(), List.of(), List.of(), List.of());
+        }
+
+        Map<String, MenuVersionItem> fromItems = itemsById(from);
+        Map<String, MenuVersionItem> toItems = itemsById(to);
+        List<ItemChange> addedItems = new ArrayList<>();
+        List<ItemChange> changedItems = new ArrayList<>();
+        for (MenuVersionItem item : toItems.values()) {
+            MenuVersionItem previous = fromItems.get(item.getItemId());
+            if (previous == null) {
+                addedItems.add(toChange(item));
+            } else if (!previous.getContentHash().equals(item.getContentHash())) {
+                changedItems.add(toChange(item));
+            }
+        }
+        List<String> removedItemIds = fromItems.keySet().stream()
+                .filter(itemId -> !toItems.containsKey(itemId))
+                .collect(Collectors.toList());
+
+        List<MenuVersionAsset> fromAssets = menuVersionAssetRepository.findByVersionIdOrderByIdAsc(from.getId());
+        List<MenuVersionAsset> toAssets = menuVersionAssetRepository.findByVersionIdOrderByIdAsc(to.getId());
+
+        MenuDiff diff = new MenuDiff(fromMenuId, toMenuId, from.getVersion(), to.getVersion(), false,
+                !from.getLayoutHash().equals(to.getLayoutHash()),
+                addedItems, changedItems, removedItemIds,
+                difference(toAssets, fromAssets, MenuAssetRef.AssetKind.IMAGE),
+                difference(fromAssets, toAssets, MenuAssetRef.AssetKind.IMAGE),
+                difference(toAssets, fromAssets, MenuAssetRef.AssetKind.VIDEO),
+                difference(fromAssets, toAssets, MenuAssetRef.AssetKind.VIDEO));
+        log.info("Menu diff {} (v{}) -> {} (v{}): {} added, {} changed, {} removed items",
+                fromMenuId, from.getVersion(), toMenuId, to.getVersion(),
+                addedItems.size(), changedItems.size(), removedItemIds.size());
+        return diff;
+    }
+
+    private MenuVersion saveVersion(Long menuId, MenuXmlParser.MenuReferences references,
+                                    MenuXmlParser.MenuStructure structure) {
+        MenuVersion version = menuVersionRepository.save(MenuVersion.builder()
+                .menuId(menuId)
+                .lineageId(menuId)
+                .version(1)
+                .layoutHash(structure.layoutHash())
+                .itemCount(structure.items().size())
+                .build());
+
+        List<MenuVersionItem> items = new ArrayList<>(structure.items().size());
+        Set<String> storedItemIds = new HashSet<>();
+        for (MenuXmlParser.MenuItem item : structure.items()) {
+            String itemId = storedItemId(item.itemId());
+            if (!storedItemIds.add(itemId)) {
+                log.warn("Duplicate stored item id {} in menu {}, keeping the first occurrence", itemId, menuId);
+                continue;
+            }
+            items.add(MenuVersionItem.builder()
+                    .versionId(version.getId())
+                    .itemId(itemId)
+                    .category(truncate(item.category(), MAX_CATEGORY_LENGTH))
+                    .contentHash(item.contentHash())
+                    .content(item.content())
+                    .build());
+        }
+        menuVersionItemRepository.saveAll(items);
+
+        List<MenuVersionAsset> assets = new ArrayList<>();
+        addAssets(assets, version.getId(), references.imageIds(), MenuAssetRef.AssetKind.IMAGE);
+        addAssets(assets, version.getId(), references.videoIds(), MenuAssetRef.AssetKind.VIDEO);
+        menuVersionAssetRepository.saveAll(assets);
+
+        log.info("Recorded menu version for menu {}: {} items, {} assets", menuId, items.size(), assets.size());
+        return version;
+    }
+
+    /**
+     * Menus are XML documents; menus uploaded before image purposes existed are recognized by their content type
+     */
+    private static boolean isMenu(Video video) {
+        return video.getMediaType() == Video.MediaType.DOCUMENT
+                && (video.getImagePurpose() == Video.ImagePurpose.MENU
+                    || (video.getContentType() != null && video.getContentType().toLowerCase().contains("xml")));
+    }
+
+    private Map<String, MenuVersionItem> itemsById(MenuVersion version) {
+        return menuVersionItemRepository.findByVersionIdOrderByIdAsc(version.getId()).stream()
+                .collect(Collectors.toMap(MenuVersionItem::getItemId, Function.identity(), (first, second) -> first, LinkedHashMap::new));
+    }
+
+    private ItemChange toChange(MenuVersionItem item) {
+        return new ItemChange(item.getItemId(), item.getCategory(),
+                menuRenderService.replaceS3Urls(item.getContent(), CONTENT_URL_DURATION_MINUTES));
+    }
+
+    /**
+     * Asset IDs of one kind in the first list but not in the second
+     */
+    private static List<Long> difference(List<MenuVersionAsset> assets, List<MenuVersionAsset> others, MenuAssetRef.AssetKind kind) {
+        Set<Long> otherIds = others.stream()
+                .filter(asset -> asset.getKind() == kind)
+                .map(MenuVersionAsset::getAssetId)
+                .collect(Collectors.toSet());
+        return assets.stream()
+                .filter(asset -> asset.getKind() == kind && !otherIds.contains(asset.getAssetId()))
+                .map(MenuVersionAsset::getAssetId)
+                .collect(Collectors.toList());
+    }
+
+    private static void addAssets(List<MenuVersionAsset> assets, Long versionId, List<Long> assetIds, MenuAssetRef.AssetKind kind) {
+        for (Long assetId : new LinkedHashSet<>(assetIds)) {
+            assets.add(MenuVersionAsset.builder().versionId(versionId).assetId(assetId).kind(kind).build());
+        }
+    }
+
+    /**
+     * Item IDs that do not fit the column keep a prefix and get the SHA-256 of the whole ID appended,
+     * so two long IDs that share a prefix stay distinct within a version
+     */
+    private static String storedItemId(String itemId) {
+        if (itemId.length() <= MAX_ITEM_ID_LENGTH) {
+            return itemId;
+        }
+        String hash = MenuXmlParser.sha256(itemId);
+        int prefixLength = MAX_ITEM_ID_LENGTH - hash.length() - 1;
+        if (Character.isHighSurrogate(itemId.charAt(prefixLength - 1))) {
+            prefixLength--; // Do not split a surrogate pair
+        }
+        return itemId.substring(0, prefixLength) + "~" + hash;
+    }
+
+    private static String truncate(String value, int maxLength) {
+        return value != null && value.length() > maxLength ? value.substring(0, maxLength) : value;
+    }
+}
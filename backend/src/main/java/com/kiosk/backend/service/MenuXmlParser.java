@@ -0,0 +1,377 @@
+package com.kiosk.backend.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Streaming (StAX) parser for kiosk menu XML.
+ * Collects every image ID, video ID and S3 URL a menu references in a single pass over the stream,
+ * without building a document tree, and splits a menu into its items for version comparison.
+ * DTDs and external entities are disabled.
+ */
+@Service
+@Slf4j
+public class MenuXmlParser {
+
+    // Same format as VideoService#replaceS3UrlsWithPresignedUrls: https://bucket.s3.region.amazonaws.com/key
+    private static final Pattern S3_URL_PATTERN = Pattern.compile("https://[^/]+\\.s3\\.[^/]+\\.amazonaws\\.com/([^<\\s\"']+)");
+
+    // Actions whose videoId attribute is referenced, in reporting order
+    private static final List<String> ACTION_TYPES = List.of("addToCart", "checkout", "increaseQuantity", "decreaseQuantity", "cancelItem");
+
+    // XMLInputFactory is not guaranteed to be thread-safe, so each thread keeps one configured instance
+    private static final ThreadLocal<XMLInputFactory> INPUT_FACTORIES = ThreadLocal.withInitial(MenuXmlParser::createInputFactory);
+    private static final ThreadLocal<XMLOutputFactory> OUTPUT_FACTORIES = ThreadLocal.withInitial(XMLOutputFactory::newFactory);
+
+    /**
+     * Assets referenced by a menu
+     * @param imageIds Image IDs from imageId elements, in document order
+     * @param videoIds Video IDs from the metadata, categories, items and actions (in that order)
+     * @param s3Urls Distinct S3 URLs found in element text and attributes, in document order
+     */
+    public record MenuReferences(List<Long> imageIds, List<Long> videoIds, List<String> s3Urls) {
+
+        public static MenuReferences empty() {
+            return new MenuReferences(List.of(), List.of(), List.of());
+        }
+    }
+
+    /**
+     * Item-level structure of a menu, used to compare menu versions
+     * @param items Outermost menu items (&lt;item&gt; elements) in document order, first occurrence per item ID;
+     *              nested items are part of the content of the item that contains them
+     * @param layoutHash SHA-256 of everything outside the items (metadata, categories, actions)
+     */
+    public record MenuStructure(List<MenuItem> items, String layoutHash) {}
+
+    /**
+     * One menu item
+     * @param itemId id attribute ("#n" for the n-th item without one)
+     * @param category category attribute
+     * @param content Normalized item XML (no comments or whitespace between elements)
+     * @param contentHash SHA-256 of the normalized item XML
+     */
+    public record MenuItem(String itemId, String category, String content, String contentHash) {}
+
+    /**
+     * Parse menu XML held in memory
+     * @param xmlBytes XML file bytes
+     * @return Referenced assets
+     */
+    public MenuReferences parse(byte[] xmlBytes) throws XMLStreamException {
+        return parse(new ByteArrayInputStream(xmlBytes));
+    }
+
+    /**
+     * Parse menu XML from a stream (not closed by this method)
+     * @param inputStream XML content; the encoding is taken from the XML declaration
+     * @return Referenced assets
+     */
+    public MenuReferences parse(InputStream inputStream) throws XMLStreamException {
+        List<Long> imageIds = new ArrayList<>();
+        List<Long> metadataVideoIds = new ArrayList<>(1);
+        List<Long> categoryVideoIds = new ArrayList<>();
+        List<Long> itemVideoIds = new ArrayList<>();
+        Map<String, Long> actionVideoIds = new HashMap<>();
+        Set<String> s3Urls = new LinkedHashSet<>();
+
+        // Only the first <metadata> and <actions> element count. Each <item>, nested ones included, contributes
+        // its first descendant <videoId>, in the document order of the items (like getElementsByTagName("item")):
+        // a slot is reserved when the item starts and filled by the first <videoId> that ends inside it
+        int depth = 0;
+        int metadataDepth = -1;
+        int actionsDepth = -1;
+        boolean metadataSeen = false;
+        boolean metadataVideoSeen = false;
+        boolean actionsSeen = false;
+        Deque<int[]> openItems = new ArrayDeque<>(); // {depth, slot} of the enclosing <item> elements
+        BitSet resolvedItemSlots = new BitSet();
+        Set<String> actionTypesSeen = new LinkedHashSet<>();
+
+        // Text of the <imageId> / <videoId> element being read
+        String capturedElement = null;
+        StringBuilder capturedText = new StringBuilder();
+
+        XMLStreamReader reader = INPUT_FACTORIES.get().createXMLStreamReader(inputStream);
+        try {
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT -> {
+                        depth++;
+                        String name = reader.getLocalName();
+                        for (int i = 0; i < reader.getAttributeCount(); i++) {
+                            collectS3Urls(reader.getAttributeValue(i), s3Urls);
+                        }
+
+                        switch (name) {
+                            case "metadata" -> {
+                                if (!metadataSeen) {
+                                    metadataSeen = true;
+                                    metadataDepth = depth;
+                                }
+                            }
+                            case "actions" -> {
+                                if (!actionsSeen) {
+                                    actionsSeen = true;
+                                    actionsDepth = depth;
+                                }
+                            }
+                            case "item" -> {
+                                openItems.push(new int[] {depth, itemVideoIds.size()});
+                                itemVideoIds.add(null);
+                            }
+                            case "category" -> addId(reader.getAttributeValue(null, "videoId"), categoryVideoIds, "category");
+                            case "imageId", "videoId" -> {
+                                capturedElement = name;
+                                capturedText.setLength(0);
+                            }
+                            default -> {
+                                if (actionsDepth >= 0 && ACTION_TYPES.contains(name) && actionTypesSeen.add(name)) {
+                                    String videoId = reader.getAttributeValue(null, "videoId");
+                                    List<Long> parsed = new ArrayList<>(1);
+                                    addId(videoId, parsed, "action " + name);
+                                    if (!parsed.isEmpty()) {
+                                        actionVideoIds.put(name, parsed.get(0));
+                                    }
+                                }
+                            }
+                        }
+                    }
+                    case XMLStreamConstants.CHARACTERS, XMLStreamConstants.CDATA -> {
+                        if (!reader.isWhiteSpace()) {
+                            String text = reader.getText();
+                            if (capturedElement != null) {
+                                capturedText.append(text);
+                            }
+                            collectS3Urls(text, s3Urls);
+                        }
+                    }
+                    case XMLStreamConstants.END_ELEMENT -> {
+                        String name = reader.getLocalName();
+                        if (name.equals(capturedElement)) {
+                            if ("imageId".equals(name)) {
+                                addId(capturedText.toString(), imageIds, "imageId");
+                            } else {
+                                if (metadataDepth >= 0 && !metadataVideoSeen) {
+                                    metadataVideoSeen = true;
+                                    addId(capturedText.toString(), metadataVideoIds, "metadata");
+                                }
+                                if (!openItems.isEmpty()) {
+                                    Long videoId = null;
+                                    boolean parsed = false;
+                                    for (int[] item : openItems) {
+                                        if (!resolvedItemSlots.get(item[1])) {
+                                            if (!parsed) {
+                                                videoId = parseId(capturedText.toString(), "item");
+                                                parsed = true;
+                                            }
+                                            resolvedItemSlots.set(item[1]);
+                                            itemVideoIds.set(item[1], videoId);
+                                        }
+                                    }
+                                }
+                            }
+                            capturedElement = null;
+                        }
+
+                        if (depth == metadataDepth) {
+                            metadataDepth = -1;
+                        } else if (depth == actionsDepth) {
+                            actionsDepth = -1;
+                        }
+                        if (!openItems.isEmpty() && openItems.peek()[0] == depth) {
+                            openItems.pop();
+                        }
+                        depth--;
+                    }
+                    default -> {
+                        // Comments, processing instructions and the document events carry no references
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+
+        List<Long> videoIds = new ArrayList<>(metadataVideoIds.size() + categoryVideoIds.size()
+                + itemVideoIds.size() + actionVideoIds.size());
+        videoIds.addAll(metadataVideoIds);
+        videoIds.addAll(categoryVideoIds);
+        for (Long videoId : itemVideoIds) {
+            if (videoId != null) { // Items without a (valid) videoId
+                videoIds.add(videoId);
+            }
+        }
+        for (String actionType : ACTION_TYPES) {
+            Long videoId = actionVideoIds.get(actionType);
+            if (videoId != null) {
+                videoIds.add(videoId);
+            }
+        }
+
+        log.info("Parsed menu XML: {} imageIds, {} videoIds, {} S3 URLs", imageIds.size(), videoIds.size(), s3Urls.size());
+        // Immutable, since parsed references are cached and shared between callers
+        return new MenuReferences(List.copyOf(imageIds), List.copyOf(videoIds), List.copyOf(s3Urls));
+    }
+
+    /**
+     * Split menu XML into its items and the rest of the document
+     * Comments, processing instructions and whitespace between elements are dropped,
+     * so reformatting a menu does not count as a change.
+     * @param inputStream XML content (not closed by this method)
+     * @return Items and layout hash
+     */
+    public MenuStructure parseStructure(InputStream inputStream) throws XMLStreamException {
+        Map<String, MenuItem> items = new LinkedHashMap<>();
+        StringWriter layout = new StringWriter();
+        XMLEventWriter layoutWriter = OUTPUT_FACTORIES.get().createXMLEventWriter(layout);
+
+        // Item being copied, from its <item> start element to the matching end element
+        StringWriter itemContent = null;
+        XMLEventWriter itemWriter = null;
+        String itemId = null;
+        String itemCategory = null;
+        int itemDepth = -1;
+        int depth = 0;
+        int position = 0;
+
+        XMLEventReader reader = INPUT_FACTORIES.get().createXMLEventReader(inputStream);
+        try {
+            while (reader.hasNext()) {
+                XMLEvent event = reader.nextEvent();
+                switch (event.getEventType()) {
+                    case XMLStreamConstants.START_ELEMENT -> {
+                        depth++;
+                        StartElement start = event.asStartElement();
+                        if (itemWriter == null && "item".equals(start.getName().getLocalPart())) {
+                            position++;
+                            String id = attributeValue(start, "id");
+                            itemId = id != null && !id.isBlank() ? id.trim() : "#" + position;
+                            itemCategory = attributeValue(start, "category");
+                            itemDepth = depth;
+                            itemContent = new StringWriter();
+                            itemWriter = OUTPUT_FACTORIES.get().createXMLEventWriter(itemContent);
+                        }
+                        (itemWriter != null ? itemWriter : layoutWriter).add(event);
+                    }
+                    case XMLStreamConstants.END_ELEMENT -> {
+                        (itemWriter != null ? itemWriter : layoutWriter).add(event);
+                        if (itemWriter != null && depth == itemDepth) {
+                            itemWriter.flush();
+                            String content = itemContent.toString();
+                            if (items.putIfAbsent(itemId, new MenuItem(itemId, itemCategory, content, sha256(content))) != null) {
+                                log.warn("Duplicate menu item id {}, keeping the first occurrence", itemId);
+                            }
+                            itemWriter = null;
+                            itemDepth = -1;
+                        }
+                        depth--;
+                    }
+                    case XMLStreamConstants.CHARACTERS, XMLStreamConstants.CDATA -> {
+                        if (!event.asCharacters().isWhiteSpace()) {
+                            (itemWriter != null ? itemWriter : layoutWriter).add(event);
+                        }
+                    }
+                    default -> {
+                        // Document events, comments and processing instructions are not part of the structure
+                    }
+                }
+            }
+            layoutWriter.flush();
+        } finally {
+            reader.close();
+        }
+
+        return new MenuStructure(List.copyOf(items.values()), sha256(layout.toString()));
+    }
+
+    private static String attributeValue(StartElement element, String name) {
+        Attribute attribute = element.getAttributeByName(new QName(name));
+        return attribute != null ? attribute.getValue() : null;
+    }
+
+    static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static void addId(String value, List<Long> target, String source) {
+        Long id = parseId(value, source);
+        if (id != null) {
+            target.add(id);
+        }
+    }
+
+    private static Long parseId(String value, String source) {
+        if (value == null || value.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            log.warn("Invalid id format in {}: {}", source, value);
+            return null;
+        }
+    }
+
+    private static void collectS3Urls(String text, Set<String> s3Urls) {
+        if (text == null || !text.contains("amazonaws.com")) {
+            return;
+        }
+        Matcher matcher = S3_URL_PATTERN.matcher(text);
+        while (matcher.find()) {
+            s3Urls.add(matcher.group());
+        }
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        // No DTDs or external entities (XXE), only the predefined XML entities are expanded
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        try {
+            factory.setProperty(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+        } catch (IllegalArgumentException e) {
+            log.debug("StAX implementation does not support {}", XMLConstants.ACCESS_EXTERNAL_DTD);
+        }
+        // Adjacent text is reported as one event, so element text and URLs are never split
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+}
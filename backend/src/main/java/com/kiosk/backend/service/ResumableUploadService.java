@@ -0,0 +1,417 @@
+package com.kiosk.backend.service;
+
+import com.kiosk.backend.entity.UploadSession;
+import com.kiosk.backend.entity.UploadSessionPart;
+import com.kiosk.backend.entity.Video;
+import com.kiosk.backend.repository.UploadSessionPartRepository;
+import com.kiosk.backend.repository.UploadSessionRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Resumable chunked uploads for large media files.
+ * A client creates a session, PUTs chunks 1..N (in any order, in parallel, retrying failed ones) and completes it.
+ * Every chunk is streamed straight into one storage multipart part, so server memory stays constant
+ * regardless of the file size. Session and part state live in the database.
+ * Chunks are also written to a local assembly file at their offset, which is used after completion
+ * for hashing, deduplication, metadata and the thumbnail/rendition jobs like the spill file of a regular upload.
+ */
+@Service
+@Slf4j
+public class ResumableUploadService {
+
+    private static final long MIN_CHUNK_SIZE = 5L * 1024 * 1024; // S3 minimum part size
+    private static final int MAX_CHUNKS = 10000; // S3 maximum part count
+
+    private final UploadSessionRepository uploadSessionRepository;
+    private final UploadSessionPartRepository uploadSessionPartRepository;
+    private final MediaStore mediaStore;
+    private final VideoService videoService;
+    private final StorageDeletionQueue storageDeletionQueue;
+
+    @Value("${upload.resumable.chunk-size:8388608}")
+    private long chunkSize;
+
+    @Value("${upload.resumable.max-file-size:2147483648}")
+    private long maxFileSize;
+
+    @Value("${upload.resumable.session-ttl-hours:24}")
+    private long sessionTtlHours;
+
+    @Value("${upload.resumable.work-directory:${java.io.tmpdir}/kiosk-resumable-uploads}")
+    private String workDirectory;
+
+    private Path workDir;
+
+    public ResumableUploadService(UploadSessionRepository uploadSessionRepository,
+                                  UploadSessionPartRepository uploadSessionPartRepository,
+                                  MediaStore mediaStore,
+                                  VideoService videoService,
+                                  StorageDeletionQueue storageDeletionQueue) {
+        this.uploadSessionRepository = uploadSessionRepository;
+        this.uploadSessionPartRepository = uploadSessionPartRepository;
+        this.mediaStore = mediaStore;
+        this.videoService = videoService;
+        this.storageDeletionQueue = storageDeletionQueue;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        workDir = Paths.get(workDirectory).toAbsolutePath().normalize();
+        Files.createDirectories(workDir);
+        chunkSize = Math.max(MIN_CHUNK_SIZE, chunkSize);
+    }
+
+    /**
+     * Start a resumable upload
+     * @param uploadedById User ID of the uploader
+     * @param videoType UPLOAD or AI_GENERATED
+     * @param mediaType Media type of the file
+     * @param imagePurpose Purpose of the image (optional)
+     * @param originalFilename Original filename
+     * @param contentType Content type of the file
+     * @param fileSize Total file size in bytes
+     * @param title Title of the video
+     * @param description Description of the video
+     * @return Created session (chunk size and count tell the client how to split the file)
+     */
+    public UploadSession createSession(Long uploadedById, Video.VideoType videoType, Video.MediaType mediaType,
+                                       Video.ImagePurpose imagePurpose, String originalFilename, String contentType,
+                                       long fileSize, String title, String description) throws IOException {
+        videoService.validateResumableUpload(originalFilename, contentType, fileSize, maxFileSize, title, description, mediaType);
+
+        // Grow the chunk size for very large files so the part count stays within the S3 limit
+        long sessionChunkSize = Math.max(chunkSize, (fileSize + MAX_CHUNKS - 1) / MAX_CHUNKS);
+        int chunkCount = (int) ((fileSize + sessionChunkSize - 1) / sessionChunkSize);
+
+        MediaStore.MultipartUpload upload = mediaStore.createMultipartUpload(
+                videoService.storageFolder(videoType, mediaType), originalFilename, contentType);
+
+        UploadSession session;
+        try {
+            session = uploadSessionRepository.save(UploadSession.builder()
+                    .id(UUID.randomUUID().toString())
+                    .uploadedById(uploadedById)
+                    .videoType(videoType)
+                    .mediaType(mediaType)
+                    .imagePurpose(imagePurpose)
+                    .title(title)
+                    .description(description)
+                    .originalFilename(originalFilename)
+                    .contentType(contentType)
+                    .fileSize(fileSize)
+                    .chunkSize((int) sessionChunkSize)
+                    .chunkCount(chunkCount)
+                    .storageKey(upload.key())
+                    .storageUploadId(upload.uploadId())
+                    .expiresAt(LocalDateTime.now().plusHours(sessionTtlHours))
+                    .build());
+        } catch (RuntimeException e) {
+            // No session row refers to the multipart upload, so expiry would never abort it
+            mediaStore.abortMultipartUpload(upload);
+            throw e;
+        }
+        log.info("Created upload session {} for {} ({} bytes, {} chunks of {} bytes) by user ID {}",
+                session.getId(), originalFilename, fileSize, chunkCount, sessionChunkSize, uploadedById);
+        return session;
+    }
+
+    /**
+     * Receive one chunk, streaming it to its storage part and the local assembly file
+     * Re-sending a chunk replaces the earlier copy, so clients simply retry failed chunks.
+     * @param sessionId Session ID
+     * @param userId User ID of the caller (must own the session)
+     * @param chunkNumber 1-based chunk number
+     * @param inputStream Chunk content (the request body)
+     * @param contentLength Declared length of the body, or -1 if unknown
+     * @return Number of chunks received so far
+     */
+    public int uploadChunk(String sessionId, Long userId, int chunkNumber, InputStream inputStream, long contentLength) throws IOException {
+        UploadSession session = getOwnedSession(sessionId, userId);
+        if (session.getStatus() != UploadSession.SessionStatus.ACTIVE) {
+            throw new IllegalStateException("Upload session is " + session.getStatus());
+        }
+        if (chunkNumber < 1 || chunkNumber > session.getChunkCount()) {
+            throw new IllegalArgumentException("Chunk number must be between 1 and " + session.getChunkCount());
+        }
+        long offset = (long) (chunkNumber - 1) * session.getChunkSize();
+        long expectedLength = Math.min(session.getChunkSize(), session.getFileSize() - offset);
+        if (contentLength >= 0 && contentLength != expectedLength) {
+            throw new IllegalArgumentException("Chunk " + chunkNumber + " must be " + expectedLength + " bytes, got " + contentLength);
+        }
+
+        String eTag;
+        try (FileChannel assembly = FileChannel.open(assemblyPath(session), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            AssemblyTeeInputStream tee = new AssemblyTeeInputStream(inputStream, assembly, offset);
+            eTag = mediaStore.uploadPart(toMultipartUpload(session), chunkNumber, tee, expectedLength);
+            if (tee.getCount() != expectedLength) {
+                throw new IOException("Chunk " + chunkNumber + " ended after " + tee.getCount() + " of " + expectedLength + " bytes");
+            }
+        }
+
+        savePart(sessionId, chunkNumber, eTag, expectedLength);
+        uploadSessionRepository.extendExpiry(sessionId, LocalDateTime.now().plusHours(sessionTtlHours));
+        return uploadSessionPartRepository.findBySessionIdOrderByPartNumberAsc(sessionId).size();
+    }
+
+    /**
+     * Assemble all chunks and create the video
+     * @param sessionId Session ID
+     * @param userId User ID of the caller (must own the session)
+     * @return Created video
+     */
+    public Video completeSession(String sessionId, Long userId) throws IOException {
+        UploadSession session = getOwnedSession(sessionId, userId);
+        if (uploadSessionRepository.transition(sessionId, UploadSession.SessionStatus.ACTIVE, UploadSession.SessionStatus.COMPLETING) == 0) {
+            throw new IllegalStateException("Upload session is " + session.getStatus());
+        }
+
+        List<UploadSessionPart> parts = uploadSessionPartRepository.findBySessionIdOrderByPartNumberAsc(sessionId);
+        if (parts.size() != session.getChunkCount()) {
+            uploadSessionRepository.transition(sessionId, UploadSession.SessionStatus.COMPLETING, UploadSession.SessionStatus.ACTIVE);
+            throw new IllegalArgumentException("Missing chunks: received " + parts.size() + " of " + session.getChunkCount());
+        }
+
+        Map<Integer, String> partETags = new LinkedHashMap<>();
+        parts.forEach(part -> partETags.put(part.getPartNumber(), part.getETag()));
+        try {
+            mediaStore.completeMultipartUpload(toMultipartUpload(session), partETags);
+        } catch (IOException | RuntimeException e) {
+            // Parts are still there - the client may retry the completion
+            uploadSessionRepository.transition(sessionId, UploadSession.SessionStatus.COMPLETING, UploadSession.SessionStatus.ACTIVE);
+            throw e;
+        }
+
+        Path assembly = assemblyPath(session);
+        try {
+            if (!Files.isRegularFile(assembly) || Files.size(assembly) != session.getFileSize()) {
+                // Local copy lost (e.g. work directory cleared) - stream the assembled object back
+                log.warn("Local copy of upload session {} is missing, reading the stored object", sessionId);
+                try (InputStream inputStream = mediaStore.openRange(session.getStorageKey(), 0, session.getFileSize() - 1, null)) {
+                    Files.copy(inputStream, assembly, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+
+            Video video = videoService.saveResumableUpload(session, assembly, sha256(assembly));
+
+            session.setStatus(UploadSession.SessionStatus.COMPLETED);
+            session.setVideoId(video.getId());
+            uploadSessionRepository.save(session);
+            uploadSessionPartRepository.deleteBySessionId(sessionId);
+            log.info("Upload session {} completed as video ID {}", sessionId, video.getId());
+            return video;
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to complete upload session {}: {}", sessionId, e.getMessage(), e);
+            markAborted(session);
+            storageDeletionQueue.enqueue(List.of(session.getStorageKey()));
+            throw e;
+        } finally {
+            deleteAssembly(assembly);
+        }
+    }
+
+    /**
+     * Cancel an upload and discard its chunks
+     * @param sessionId Session ID
+     * @param userId User ID of the caller (must own the session)
+     */
+    public void abortSession(String sessionId, Long userId) {
+        UploadSession session = getOwnedSession(sessionId, userId);
+        if (uploadSessionRepository.transition(sessionId, UploadSession.SessionStatus.ACTIVE, UploadSession.SessionStatus.ABORTED) == 0) {
+            throw new IllegalStateException("Upload session is " + session.getStatus());
+        }
+        discard(session);
+        log.info("Upload session {} aborted by user ID {}", sessionId, userId);
+    }
+
+    /**
+     * Get the state of a session, including the chunks received so far (to resume an interrupted upload)
+     * @param sessionId Session ID
+     * @param userId User ID of the caller (must own the session)
+     * @return Session state
+     */
+    public Map<String, Object> getSessionStatus(String sessionId, Long userId) {
+        UploadSession session = getOwnedSession(sessionId, userId);
+        List<UploadSessionPart> parts = uploadSessionPartRepository.findBySessionIdOrderByPartNumberAsc(sessionId);
+
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("sessionId", session.getId());
+        status.put("status", session.getStatus().toString());
+        status.put("fileName", session.getOriginalFilename());
+        status.put("fileSize", session.getFileSize());
+        status.put("chunkSize", session.getChunkSize());
+        status.put("chunkCount", session.getChunkCount());
+        status.put("receivedChunks", parts.stream().map(UploadSessionPart::getPartNumber).toList());
+        status.put("receivedBytes", parts.stream().mapToLong(UploadSessionPart::getSize).sum());
+        status.put("expiresAt", session.getExpiresAt().toString());
+        status.put("videoId", session.getVideoId());
+        return status;
+    }
+
+    /**
+     * Abort sessions that received no chunk within the TTL (abandoned uploads)
+     */
+    @Scheduled(fixedDelayString = "${upload.resumable.cleanup-interval-ms:3600000}",
+               initialDelayString = "${upload.resumable.cleanup-interval-ms:3600000}")
+    public void abortExpiredSessions() {
+        List<UploadSession> expired = uploadSessionRepository.findByStatusInAndExpiresAtBefore(
+                List.of(UploadSession.SessionStatus.ACTIVE, UploadSession.SessionStatus.COMPLETING), LocalDateTime.now());
+        for (UploadSession session : expired) {
+            if (uploadSessionRepository.transition(session.getId(), session.getStatus(), UploadSession.SessionStatus.ABORTED) > 0) {
+                discard(session);
+                log.info("Upload session {} expired, discarded its chunks", session.getId());
+            }
+        }
+    }
+
+    private UploadSession getOwnedSession(String sessionId, Long userId) {
+        UploadSession session = uploadSessionRepository.findById(sessionId)
+                .orElseThrow(() -> new IllegalArgumentException("Upload session not found: " + sessionId));
+        if (!session.getUploadedById().equals(userId)) {
+            throw new IllegalArgumentException("Upload session not found: " + sessionId);
+        }
+        return session;
+    }
+
+    /**
+     * Record a received chunk, replacing an earlier upload of the same chunk
+     */
+    private void savePart(String sessionId, int chunkNumber, String eTag, long size) {
+        UploadSessionPart part = uploadSessionPartRepository.findBySessionIdAndPartNumber(sessionId, chunkNumber)
+                .orElseGet(() -> UploadSessionPart.builder().sessionId(sessionId).partNumber(chunkNumber).build());
+        part.setETag(eTag);
+        part.setSize(size);
+        try {
+            uploadSessionPartRepository.save(part);
+        } catch (DataIntegrityViolationException e) {
+            // Same chunk sent twice concurrently - keep the latest part
+            UploadSessionPart existing = uploadSessionPartRepository.findBySessionIdAndPartNumber(sessionId, chunkNumber)
+                    .orElseThrow(() -> e);
+            existing.setETag(eTag);
+            existing.setSize(size);
+            uploadSessionPartRepository.save(existing);
+        }
+    }
+
+    private void discard(UploadSession session) {
+        mediaStore.abortMultipartUpload(toMultipartUpload(session));
+        uploadSessionPartRepository.deleteBySessionId(session.getId());
+        deleteAssembly(assemblyPath(session));
+    }
+
+    private void markAborted(UploadSession session) {
+        try {
+            session.setStatus(UploadSession.SessionStatus.ABORTED);
+            uploadSessionRepository.save(session);
+            uploadSessionPartRepository.deleteBySessionId(session.getId());
+        } catch (RuntimeException e) {
+            log.warn("Failed to mark upload session {} as aborted: {}", session.getId(), e.getMessage());
+        }
+    }
+
+    private MediaStore.MultipartUpload toMultipartUpload(UploadSession session) {
+        return new MediaStore.MultipartUpload(session.getStorageKey(), session.getStorageUploadId());
+    }
+
+    private Path assemblyPath(UploadSession session) {
+        String filename = session.getOriginalFilename();
+        int lastDotIndex = filename.lastIndexOf(".");
+        String extension = lastDotIndex >= 0 ? filename.substring(lastDotIndex) : ".tmp";
+        return workDir.resolve("upload_" + session.getId() + extension);
+    }
+
+    private void deleteAssembly(Path assembly) {
+        try {
+            Files.deleteIfExists(assembly);
+        } catch (IOException e) {
+            log.warn("Failed to delete upload assembly file {}: {}", assembly, e.getMessage());
+        }
+    }
+
+    private static String sha256(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        try (InputStream inputStream = new DigestInputStream(Files.newInputStream(file), digest)) {
+            inputStream.transferTo(java.io.OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Copies every byte read by the storage client into the assembly file at the chunk's offset
+     */
+    private static class AssemblyTeeInputStream extends FilterInputStream {
+        private final FileChannel assembly;
+        private long position;
+        private long count;
+
+        AssemblyTeeInputStream(InputStream in, FileChannel assembly, long offset) {
+            super(in);
+            this.assembly = assembly;
+            this.position = offset;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                write(buffer, offset, read);
+            }
+            return read;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false; // Replaying bytes would write them twice
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        private void write(byte[] buffer, int offset, int length) throws IOException {
+            ByteBuffer source = ByteBuffer.wrap(buffer, offset, length);
+            while (source.hasRemaining()) {
+                position += assembly.write(source, position);
+            }
+            count += length;
+        }
+    }
+}
@@ -1,13 +1,27 @@
 package com.kiosk.backend.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.core.exception.SdkException;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.*;
 import software.amazon.awssdk.services.s3.presigner.S3Presigner;
@@ -16,13 +30,45 @@ import software.amazon.awssdk.services.s3.presigner.model.PresignedGetObjectRequ
 
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
 import java.time.Duration;
-import java.util.UUID;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 @Service
+@Profile("!" + FileSystemMediaStore.PROFILE)
 @Slf4j
-public class S3Service {
+public class S3Service implements MediaStore {
 
     @Value("${aws.s3.bucket-name}")
     private String bucketName;
@@ -36,11 +82,81 @@ public class S3Service {
     @Value("${aws.s3.secret-key}")
     private String secretKey;
 
+    // Multipart upload tuning (S3 requires every part except the last to be at least 5MB)
+    @Value("${aws.s3.multipart.part-size:8388608}")
+    private int multipartPartSize;
+
+    @Value("${aws.s3.multipart.concurrency:4}")
+    private int multipartConcurrency;
+
+    @Value("${aws.s3.multipart.max-retries:3}")
+    private int multipartMaxRetries;
+
+    private static final int MIN_PART_SIZE = 5 * 1024 * 1024; // 5MB
+
+    private static final int MAX_DELETE_BATCH_SIZE = 1000; // DeleteObjects limit
+
+    // Presigned URL cache - a URL is reused until this fraction of its lifetime has passed
+    @Value("${aws.s3.presign-cache.max-size:10000}")
+    private long presignCacheMaxSize;
+
+    @Value("${aws.s3.presign-cache.reuse-fraction:0.5}")
+    private double presignReuseFraction;
+
+    // Threads used to sign cache misses of bulk presign requests (0 = number of CPU cores)
+    @Value("${aws.s3.presign-parallelism:0}")
+    private int presignParallelism;
+
+    // Async client: cap on concurrent requests and per-operation timeout
+    @Value("${aws.s3.async.max-in-flight:32}")
+    private int asyncMaxInFlight;
+
+    @Value("${aws.s3.async.timeout-seconds:60}")
+    private long asyncTimeoutSeconds;
+
+    private final MeterRegistry meterRegistry;
+    private final LocalContentCache localContentCache;
+
     private S3Client s3Client;
+    private S3AsyncClient s3AsyncClient;
+    private Semaphore asyncPermits;
+    private final ConcurrentLinkedQueue<PendingAsyncRequest<?>> pendingAsyncRequests = new ConcurrentLinkedQueue<>();
     private S3Presigner s3Presigner;
+    private ExecutorService partUploadExecutor;
+    private ExecutorService presignExecutor;
+    private Cache<PresignCacheKey, String> presignedUrlCache;
+
+    // Time source of the presigned URL cache (replaced in tests to expire entries without waiting)
+    private Ticker presignCacheTicker = Ticker.systemTicker();
+
+    // S3 key -> durations its URLs may be cached under, so invalidating a key touches only its own entries
+    // Sets are only read or modified inside compute/remove on this map
+    private final ConcurrentHashMap<String, Set<Integer>> presignedDurationsByKey = new ConcurrentHashMap<>();
+
+    /**
+     * Cache key for presigned URLs: the same object signed for a different duration is a different URL
+     */
+    private record PresignCacheKey(String s3Key, int durationMinutes) {}
+
+    /**
+     * Async request waiting for an in-flight permit
+     * @param operation Description for log and error messages
+     * @param request Issues the request once a permit is held
+     * @param result Future returned to the caller
+     * @param queuedAt System.nanoTime() when the request was queued
+     */
+    private record PendingAsyncRequest<T>(String operation, Supplier<CompletableFuture<T>> request,
+                                          CompletableFuture<T> result, long queuedAt) {}
+
+    public S3Service(MeterRegistry meterRegistry, LocalContentCache localContentCache) {
+        this.meterRegistry = meterRegistry;
+        this.localContentCache = localContentCache;
+    }
 
     @PostConstruct
     public void init() {
+        initPresignedUrlCache();
+
         // Skip S3 initialization if credentials are not provided (for local dev without AWS)
         if (accessKey == null || accessKey.trim().isEmpty() ||
             secretKey == null || secretKey.trim().isEmpty()) {
@@ -57,11 +173,43 @@ public class S3Service {
                     .credentialsProvider(StaticCredentialsProvider.create(awsCredentials))
                     .build();
 
+            this.s3AsyncClient = S3AsyncClient.builder()
+                    .region(Region.of(region))
+                    .credentialsProvider(StaticCredentialsProvider.create(awsCredentials))
+                    .overrideConfiguration(ClientOverrideConfiguration.builder()
+                            .apiCallTimeout(Duration.ofSeconds(asyncTimeoutSeconds))
+                            .build())
+                    .build();
+            this.asyncPermits = new Semaphore(Math.max(1, asyncMaxInFlight));
+
             this.s3Presigner = S3Presigner.builder()
                     .region(Region.of(region))
                     .credentialsProvider(StaticCredentialsProvider.create(awsCredentials))
                     .build();
 
+            if (multipartPartSize < MIN_PART_SIZE) {
+                log.warn("Multipart part size {} is below the S3 minimum, using {}", multipartPartSize, MIN_PART_SIZE);
+                multipartPartSize = MIN_PART_SIZE;
+            }
+            multipartConcurrency = Math.max(1, multipartConcurrency);
+
+            // Shared pool for part uploads - bounds concurrent S3 connections across all uploads
+            AtomicInteger threadCounter = new AtomicInteger();
+            this.partUploadExecutor = Executors.newFixedThreadPool(multipartConcurrency, runnable -> {
+                Thread thread = new Thread(runnable, "s3-part-upload-" + threadCounter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+
+            // Presigning is CPU-bound (HMAC), so bulk signing is bounded by core count
+            int presignThreads = presignParallelism > 0 ? presignParallelism : Runtime.getRuntime().availableProcessors();
+            AtomicInteger presignThreadCounter = new AtomicInteger();
+            this.presignExecutor = Executors.newFixedThreadPool(presignThreads, runnable -> {
+                Thread thread = new Thread(runnable, "s3-presign-" + presignThreadCounter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+
             log.info("S3 Client initialized for bucket: {} in region: {}", bucketName, region);
         } catch (Exception e) {
             log.error("Failed to initialize S3 Client: {}", e.getMessage(), e);
@@ -69,11 +217,57 @@ public class S3Service {
         }
     }
 
+    /**
+     * Build the presigned URL cache with a per-entry expiry derived from each URL's signature duration
+     */
+    private void initPresignedUrlCache() {
+        double reuseFraction = Math.min(Math.max(presignReuseFraction, 0.0), 0.9);
+
+        this.presignedUrlCache = Caffeine.newBuilder()
+                .maximumSize(presignCacheMaxSize)
+                .ticker(presignCacheTicker)
+                .expireAfter(new Expiry<PresignCacheKey, String>() {
+                    @Override
+                    public long expireAfterCreate(PresignCacheKey key, String url, long currentTime) {
+                        return (long) (Duration.ofMinutes(key.durationMinutes()).toNanos() * reuseFraction);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(PresignCacheKey key, String url, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, url, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(PresignCacheKey key, String url, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .removalListener((PresignCacheKey key, String url, RemovalCause cause) -> {
+                    if (key != null) {
+                        unindexPresignedUrl(key);
+                    }
+                })
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, presignedUrlCache, "presignedUrls");
+        log.info("Presigned URL cache initialized (maxSize: {}, reuseFraction: {})", presignCacheMaxSize, reuseFraction);
+    }
+
     @PreDestroy
     public void cleanup() {
+        if (partUploadExecutor != null) {
+            partUploadExecutor.shutdown();
+        }
+        if (presignExecutor != null) {
+            presignExecutor.shutdown();
+        }
         if (s3Client != null) {
             s3Client.close();
         }
+        if (s3AsyncClient != null) {
+            s3AsyncClient.close();
+        }
         if (s3Presigner != null) {
             s3Presigner.close();
         }
@@ -86,14 +280,21 @@ public class S3Service {
      * @param folderPath Folder path in S3 (e.g., "videos/")
      * @return S3 key of the uploaded file
      */
+    @Override
     public String uploadFile(MultipartFile file, String folderPath) throws IOException {
         if (s3Client == null) {
             throw new IOException("S3 is not configured. Please set AWS_ACCESS_KEY_ID and AWS_SECRET_ACCESS_KEY environment variables.");
         }
 
+        // Large files go through the streaming multipart path to keep heap usage bounded
+        if (file.getSize() > multipartPartSize) {
+            try (InputStream inputStream = file.getInputStream()) {
+                return uploadStream(inputStream, folderPath, file.getOriginalFilename(), file.getContentType(), null);
+            }
+        }
+
         String originalFilename = file.getOriginalFilename();
-        String uniqueFilename = UUID.randomUUID().toString() + "_" + originalFilename;
-        String s3Key = folderPath + uniqueFilename;
+        String s3Key = newObjectKey(folderPath, originalFilename);
 
         try {
             PutObjectRequest putObjectRequest = PutObjectRequest.builder()
@@ -108,12 +309,267 @@ public class S3Service {
 
             log.info("File uploaded successfully to S3: {}", s3Key);
             return s3Key;
-        } catch (S3Exception e) {
+        } catch (SdkException e) {
+            log.error("Failed to upload file to S3: {}", e.getMessage(), e);
+            throw new IOException("Failed to upload file to S3: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Upload a stream to S3 using fixed-size multipart parts uploaded in parallel.
+     * The stream is read exactly once; at most {@code aws.s3.multipart.concurrency} part buffers
+     * are held in memory per upload. Content that fits in a single part is sent with one PutObject.
+     * @param inputStream Stream to upload (not closed by this method)
+     * @param folderPath Folder path in S3 (e.g., "videos/")
+     * @param originalFilename Original filename used to build the S3 key
+     * @param contentType Content type of the stream
+     * @param teeTarget Optional local file that receives a copy of every byte read (spill-to-disk tee), or null
+     * @return S3 key of the uploaded file
+     */
+    @Override
+    public String uploadStream(InputStream inputStream, String folderPath, String originalFilename,
+                               String contentType, Path teeTarget) throws IOException {
+        if (s3Client == null) {
+            throw new IOException("S3 is not configured. Please set AWS_ACCESS_KEY_ID and AWS_SECRET_ACCESS_KEY environment variables.");
+        }
+
+        String s3Key = newObjectKey(folderPath, originalFilename);
+
+        try (OutputStream tee = teeTarget != null ? Files.newOutputStream(teeTarget) : OutputStream.nullOutputStream()) {
+            byte[] firstPart = new byte[multipartPartSize];
+            int firstLength = inputStream.readNBytes(firstPart, 0, multipartPartSize);
+            tee.write(firstPart, 0, firstLength);
+
+            // Small content - a single PutObject is cheaper than a multipart upload
+            if (firstLength < multipartPartSize) {
+                PutObjectRequest putObjectRequest = PutObjectRequest.builder()
+                        .bucket(bucketName)
+                        .key(s3Key)
+                        .contentType(contentType)
+                        .contentLength((long) firstLength)
+                        .build();
+                s3Client.putObject(putObjectRequest,
+                        RequestBody.fromInputStream(new ByteArrayInputStream(firstPart, 0, firstLength), firstLength));
+                log.info("File uploaded successfully to S3 (single part): {}", s3Key);
+                return s3Key;
+            }
+
+            String uploadId = s3Client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                    .bucket(bucketName)
+                    .key(s3Key)
+                    .contentType(contentType)
+                    .build()).uploadId();
+
+            try {
+                List<CompletedPart> completedParts = uploadParts(inputStream, s3Key, uploadId, firstPart, tee);
+
+                s3Client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                        .bucket(bucketName)
+                        .key(s3Key)
+                        .uploadId(uploadId)
+                        .multipartUpload(CompletedMultipartUpload.builder().parts(completedParts).build())
+                        .build());
+
+                log.info("File uploaded successfully to S3 (multipart, {} parts): {}", completedParts.size(), s3Key);
+                return s3Key;
+            } catch (Exception e) {
+                abortMultipartUpload(s3Key, uploadId);
+                if (e instanceof IOException ioException) {
+                    throw ioException;
+                }
+                throw new IOException("Failed to upload file to S3: " + e.getMessage(), e);
+            }
+        } catch (SdkException e) {
             log.error("Failed to upload file to S3: {}", e.getMessage(), e);
             throw new IOException("Failed to upload file to S3: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Read the remaining stream into part buffers and upload them on the shared part executor.
+     * Buffers are recycled through a bounded pool, so the reader blocks while all buffers are in flight.
+     */
+    private List<CompletedPart> uploadParts(InputStream inputStream, String s3Key, String uploadId,
+                                            byte[] firstPart, OutputStream tee) throws IOException {
+        BlockingQueue<byte[]> bufferPool = new ArrayBlockingQueue<>(multipartConcurrency);
+        List<CompletableFuture<CompletedPart>> futures = new ArrayList<>();
+        int allocatedBuffers = 1;
+        int partNumber = 1;
+        byte[] buffer = firstPart;
+        int length = multipartPartSize;
+
+        try {
+            while (length > 0) {
+                futures.add(submitPart(s3Key, uploadId, partNumber++, buffer, length, bufferPool));
+
+                // Fail fast instead of reading the rest of the stream when a part has already failed
+                if (futures.stream().anyMatch(CompletableFuture::isCompletedExceptionally)) {
+                    break;
+                }
+
+                buffer = bufferPool.poll();
+                if (buffer == null) {
+                    if (allocatedBuffers < multipartConcurrency) {
+                        buffer = new byte[multipartPartSize];
+                        allocatedBuffers++;
+                    } else {
+                        buffer = bufferPool.take();
+                    }
+                }
+
+                length = inputStream.readNBytes(buffer, 0, multipartPartSize);
+                tee.write(buffer, 0, length);
+            }
+
+            CompletableFuture.allOf(futures.toArray(CompletableFuture<?>[]::new)).join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Multipart upload interrupted", e);
+        } catch (CompletionException e) {
+            throw new IOException("Failed to upload part to S3: " + e.getCause().getMessage(), e.getCause());
+        }
+
+        List<CompletedPart> completedParts = new ArrayList<>(futures.size());
+        for (CompletableFuture<CompletedPart> future : futures) {
+            completedParts.add(future.join());
+        }
+        completedParts.sort(Comparator.comparing(CompletedPart::partNumber));
+        return completedParts;
+    }
+
+    /**
+     * Upload a single part with retries, returning the buffer to the pool when done
+     */
+    private CompletableFuture<CompletedPart> submitPart(String s3Key, String uploadId, int partNumber,
+                                                        byte[] buffer, int length, BlockingQueue<byte[]> bufferPool) {
+        CompletableFuture<CompletedPart> result = new CompletableFuture<>();
+        uploadPartAttempt(s3Key, uploadId, partNumber, buffer, length, 1, result);
+        return result.whenComplete((part, error) -> bufferPool.offer(buffer));
+    }
+
+    /**
+     * Run one attempt on the part executor; a failed attempt is rescheduled after a backoff delay
+     * instead of sleeping, so retries do not hold one of the bounded upload threads
+     */
+    private void uploadPartAttempt(String s3Key, String uploadId, int partNumber, byte[] buffer, int length,
+                                   int attempt, CompletableFuture<CompletedPart> result) {
+        try {
+            partUploadExecutor.execute(() -> {
+                try {
+                    UploadPartResponse response = s3Client.uploadPart(UploadPartRequest.builder()
+                                    .bucket(bucketName)
+                                    .key(s3Key)
+                                    .uploadId(uploadId)
+                                    .partNumber(partNumber)
+                                    .contentLength((long) length)
+                                    .build(),
+                            RequestBody.fromInputStream(new ByteArrayInputStream(buffer, 0, length), length));
+
+                    log.debug("Uploaded part {} ({} bytes) of {}", partNumber, length, s3Key);
+                    result.complete(CompletedPart.builder().partNumber(partNumber).eTag(response.eTag()).build());
+                } catch (SdkException e) {
+                    log.warn("Part {} of {} failed (attempt {}/{}): {}",
+                            partNumber, s3Key, attempt, multipartMaxRetries, e.getMessage());
+                    if (attempt >= multipartMaxRetries) {
+                        result.completeExceptionally(e);
+                        return;
+                    }
+                    CompletableFuture.delayedExecutor(200L * attempt, TimeUnit.MILLISECONDS).execute(() ->
+                            uploadPartAttempt(s3Key, uploadId, partNumber, buffer, length, attempt + 1, result));
+                } catch (RuntimeException e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e); // Executor shut down
+        }
+    }
+
+    @Override
+    public MultipartUpload createMultipartUpload(String folderPath, String originalFilename, String contentType) throws IOException {
+        if (s3Client == null) {
+            throw new IOException("S3 is not configured. Please set AWS_ACCESS_KEY_ID and AWS_SECRET_ACCESS_KEY environment variables.");
+        }
+
+        String s3Key = newObjectKey(folderPath, originalFilename);
+        try {
+            String uploadId = s3Client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                    .bucket(bucketName)
+                    .key(s3Key)
+                    .contentType(contentType)
+                    .build()).uploadId();
+            log.info("Started multipart upload for: {}", s3Key);
+            return new MultipartUpload(s3Key, uploadId);
+        } catch (SdkException e) {
+            log.error("Failed to start multipart upload: {}", e.getMessage(), e);
+            throw new IOException("Failed to start multipart upload: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Upload one part, streaming it from the caller's stream (no part buffer)
+     */
+    @Override
+    public String uploadPart(MultipartUpload upload, int partNumber, InputStream inputStream, long length) throws IOException {
+        try {
+            UploadPartResponse response = s3Client.uploadPart(UploadPartRequest.builder()
+                            .bucket(bucketName)
+                            .key(upload.key())
+                            .uploadId(upload.uploadId())
+                            .partNumber(partNumber)
+                            .contentLength(length)
+                            .build(),
+                    RequestBody.fromInputStream(inputStream, length));
+            log.debug("Uploaded part {} ({} bytes) of {}", partNumber, length, upload.key());
+            return response.eTag();
+        } catch (SdkException e) {
+            log.error("Failed to upload part {} of {}: {}", partNumber, upload.key(), e.getMessage());
+            throw new IOException("Failed to upload part to S3: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void completeMultipartUpload(MultipartUpload upload, Map<Integer, String> partETags) throws IOException {
+        List<CompletedPart> completedParts = partETags.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .map(entry -> CompletedPart.builder().partNumber(entry.getKey()).eTag(entry.getValue()).build())
+                .collect(Collectors.toList());
+        try {
+            s3Client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                    .bucket(bucketName)
+                    .key(upload.key())
+                    .uploadId(upload.uploadId())
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(completedParts).build())
+                    .build());
+            log.info("File uploaded successfully to S3 (multipart, {} parts): {}", completedParts.size(), upload.key());
+        } catch (SdkException e) {
+            log.error("Failed to complete multipart upload for {}: {}", upload.key(), e.getMessage(), e);
+            throw new IOException("Failed to complete multipart upload: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void abortMultipartUpload(MultipartUpload upload) {
+        abortMultipartUpload(upload.key(), upload.uploadId());
+    }
+
+    /**
+     * Abort a multipart upload so S3 discards already-uploaded parts
+     */
+    private void abortMultipartUpload(String s3Key, String uploadId) {
+        try {
+            s3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                    .bucket(bucketName)
+                    .key(s3Key)
+                    .uploadId(uploadId)
+                    .build());
+            log.warn("Aborted multipart upload for: {}", s3Key);
+        } catch (SdkException e) {
+            // Never mask the failure that caused the abort
+            log.error("Failed to abort multipart upload {} for {}: {}", uploadId, s3Key, e.getMessage());
+        }
+    }
+
     /**
      * Upload a byte array to S3 (for thumbnails)
      * @param bytes Byte array to upload
@@ -122,13 +578,13 @@ public class S3Service {
      * @param contentType Content type (e.g., "image/jpeg")
      * @return S3 key of the uploaded file
      */
+    @Override
     public String uploadBytes(byte[] bytes, String folderPath, String filename, String contentType) {
         if (s3Client == null) {
             throw new RuntimeException("S3 is not configured. Please set AWS credentials.");
         }
 
-        String uniqueFilename = UUID.randomUUID().toString() + "_" + filename;
-        String s3Key = folderPath + uniqueFilename;
+        String s3Key = newObjectKey(folderPath, filename);
 
         try {
             PutObjectRequest putObjectRequest = PutObjectRequest.builder()
@@ -142,7 +598,7 @@ public class S3Service {
 
             log.info("Bytes uploaded successfully to S3: {}", s3Key);
             return s3Key;
-        } catch (S3Exception e) {
+        } catch (SdkException e) {
             log.error("Failed to upload bytes to S3: {}", e.getMessage(), e);
             throw new RuntimeException("Failed to upload bytes to S3: " + e.getMessage(), e);
         }
@@ -153,21 +609,89 @@ public class S3Service {
      * @param s3Key S3 key of the object
      * @return Public URL
      */
+    @Override
     public String getFileUrl(String s3Key) {
         return String.format("https://%s.s3.%s.amazonaws.com/%s", bucketName, region, s3Key);
     }
 
     /**
      * Generate a presigned URL for temporary access to a private object
+     * URLs are cached per (s3Key, duration) and reused until part of their lifetime has passed,
+     * so repeated list requests do not re-sign every object
      * @param s3Key S3 key of the object
      * @param durationMinutes Duration in minutes for which the URL is valid
      * @return Presigned URL
      */
+    @Override
     public String generatePresignedUrl(String s3Key, int durationMinutes) {
         if (s3Presigner == null) {
             throw new RuntimeException("S3 is not configured. Please set AWS credentials.");
         }
 
+        PresignCacheKey cacheKey = new PresignCacheKey(s3Key, durationMinutes);
+        String url = presignedUrlCache.get(cacheKey, key -> signGetObject(key.s3Key(), key.durationMinutes()));
+        indexPresignedUrl(cacheKey);
+        return url;
+    }
+
+    /**
+     * Generate presigned URLs for many objects at once
+     * Cached URLs are returned directly; the remaining keys are signed in parallel on a bounded executor.
+     * Keys that fail to sign are omitted from the result.
+     * @param s3Keys S3 keys of the objects (null/empty keys and duplicates are ignored)
+     * @param durationMinutes Duration in minutes for which the URLs are valid
+     * @return Map of S3 key to presigned URL
+     */
+    @Override
+    public Map<String, String> generatePresignedUrls(Collection<String> s3Keys, int durationMinutes) {
+        if (s3Presigner == null) {
+            throw new RuntimeException("S3 is not configured. Please set AWS credentials.");
+        }
+
+        Set<PresignCacheKey> cacheKeys = s3Keys.stream()
+                .filter(key -> key != null && !key.isEmpty())
+                .map(key -> new PresignCacheKey(key, durationMinutes))
+                .collect(Collectors.toSet());
+        if (cacheKeys.isEmpty()) {
+            return new HashMap<>();
+        }
+
+        Map<PresignCacheKey, String> urls = presignedUrlCache.getAll(cacheKeys, this::signAll);
+
+        Map<String, String> result = new HashMap<>(urls.size() * 2);
+        urls.forEach((key, url) -> {
+            indexPresignedUrl(key);
+            result.put(key.s3Key(), url);
+        });
+        return result;
+    }
+
+    /**
+     * Bulk loader for the presigned URL cache - signs all missing keys in parallel
+     */
+    private Map<PresignCacheKey, String> signAll(Set<? extends PresignCacheKey> keys) {
+        Map<PresignCacheKey, CompletableFuture<String>> futures = new HashMap<>(keys.size() * 2);
+        for (PresignCacheKey key : keys) {
+            futures.put(key, CompletableFuture.supplyAsync(
+                    () -> signGetObject(key.s3Key(), key.durationMinutes()), presignExecutor));
+        }
+
+        Map<PresignCacheKey, String> signed = new HashMap<>(keys.size() * 2);
+        futures.forEach((key, future) -> {
+            try {
+                signed.put(key, future.join());
+            } catch (CompletionException e) {
+                log.warn("Failed to generate presigned URL for {}: {}", key.s3Key(), e.getCause().getMessage());
+            }
+        });
+        log.debug("Signed {} presigned URLs in bulk ({} failed)", signed.size(), keys.size() - signed.size());
+        return signed;
+    }
+
+    /**
+     * Sign a GetObject request (SigV4) without consulting the cache
+     */
+    private String signGetObject(String s3Key, int durationMinutes) {
         try {
             GetObjectRequest getObjectRequest = GetObjectRequest.builder()
                     .bucket(bucketName)
@@ -182,18 +706,71 @@ public class S3Service {
             PresignedGetObjectRequest presignedRequest = s3Presigner.presignGetObject(presignRequest);
             String url = presignedRequest.url().toString();
 
-            log.info("Generated presigned URL for: {}", s3Key);
+            log.debug("Generated presigned URL for: {}", s3Key);
             return url;
-        } catch (S3Exception e) {
+        } catch (SdkException e) {
             log.error("Failed to generate presigned URL: {}", e.getMessage(), e);
             throw new RuntimeException("Failed to generate presigned URL: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Drop all cached presigned URLs for an object (e.g. after it has been deleted)
+     * @param s3Key S3 key of the object
+     */
+    public void invalidatePresignedUrls(String s3Key) {
+        Set<Integer> durations = presignedDurationsByKey.remove(s3Key);
+        if (durations != null) {
+            for (Integer durationMinutes : durations) {
+                presignedUrlCache.invalidate(new PresignCacheKey(s3Key, durationMinutes));
+            }
+        }
+    }
+
+    /**
+     * Record that a URL is cached for a key and duration
+     * Called after the URL is in the cache, so a concurrent removal of an older entry cannot drop it from the index
+     */
+    private void indexPresignedUrl(PresignCacheKey key) {
+        presignedDurationsByKey.compute(key.s3Key(), (s3Key, durations) -> {
+            Set<Integer> result = durations != null ? durations : new HashSet<>(4);
+            result.add(key.durationMinutes());
+            return result;
+        });
+    }
+
+    /**
+     * Drop a removed cache entry from the index unless the URL has been cached again in the meantime
+     */
+    private void unindexPresignedUrl(PresignCacheKey key) {
+        presignedDurationsByKey.computeIfPresent(key.s3Key(), (s3Key, durations) -> {
+            if (!presignedUrlCache.asMap().containsKey(key)) {
+                durations.remove(key.durationMinutes());
+            }
+            return durations.isEmpty() ? null : durations;
+        });
+    }
+
+    /**
+     * Get presigned URL cache statistics
+     * @return Hit/miss counts, hit rate and current size
+     */
+    public Map<String, Object> getPresignedUrlCacheStats() {
+        CacheStats stats = presignedUrlCache.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("hitCount", stats.hitCount());
+        result.put("missCount", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("evictionCount", stats.evictionCount());
+        result.put("size", presignedUrlCache.estimatedSize());
+        return result;
+    }
+
     /**
      * Delete a file from S3
      * @param s3Key S3 key of the file to delete
      */
+    @Override
     public void deleteFile(String s3Key) {
         try {
             DeleteObjectRequest deleteObjectRequest = DeleteObjectRequest.builder()
@@ -202,18 +779,90 @@ public class S3Service {
                     .build();
 
             s3Client.deleteObject(deleteObjectRequest);
+            invalidatePresignedUrls(s3Key);
+            localContentCache.invalidate(s3Key);
             log.info("File deleted successfully from S3: {}", s3Key);
-        } catch (S3Exception e) {
+        } catch (SdkException e) {
             log.error("Failed to delete file from S3: {}", e.getMessage(), e);
             throw new RuntimeException("Failed to delete file from S3: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Delete many files with the multi-object DeleteObjects API (up to 1000 keys per request)
+     * @param s3Keys S3 keys of the files to delete
+     * @return Map of S3 key to error message for the keys that could not be deleted
+     */
+    @Override
+    public Map<String, String> deleteFiles(Collection<String> s3Keys) {
+        if (s3Client == null) {
+            throw new RuntimeException("S3 is not configured. Please set AWS credentials.");
+        }
+
+        List<String> keys = new ArrayList<>(s3Keys);
+        Map<String, String> failures = new LinkedHashMap<>();
+        for (int from = 0; from < keys.size(); from += MAX_DELETE_BATCH_SIZE) {
+            List<String> batch = keys.subList(from, Math.min(from + MAX_DELETE_BATCH_SIZE, keys.size()));
+            try {
+                DeleteObjectsResponse response = s3Client.deleteObjects(DeleteObjectsRequest.builder()
+                        .bucket(bucketName)
+                        .delete(Delete.builder()
+                                .objects(batch.stream()
+                                        .map(key -> ObjectIdentifier.builder().key(key).build())
+                                        .collect(Collectors.toList()))
+                                .quiet(true) // Only errors are reported back
+                                .build())
+                        .build());
+                response.errors().forEach(error -> failures.put(error.key(), error.code() + ": " + error.message()));
+            } catch (SdkException e) {
+                log.error("Failed to delete batch of {} files from S3: {}", batch.size(), e.getMessage(), e);
+                batch.forEach(key -> failures.put(key, e.getMessage()));
+            }
+        }
+
+        keys.stream()
+                .filter(key -> !failures.containsKey(key))
+                .forEach(key -> {
+                    invalidatePresignedUrls(key);
+                    localContentCache.invalidate(key);
+                });
+        log.info("Deleted {} files from S3 ({} failed)", keys.size() - failures.size(), failures.size());
+        return failures;
+    }
+
+    /**
+     * List objects with paginated ListObjectsV2 requests (1000 keys per page)
+     * @param prefix Key prefix (e.g., "videos/")
+     * @param pageConsumer Receives each page of objects
+     */
+    @Override
+    public void listObjects(String prefix, Consumer<List<StoredObject>> pageConsumer) {
+        if (s3Client == null) {
+            throw new RuntimeException("S3 is not configured. Please set AWS credentials.");
+        }
+
+        try {
+            ListObjectsV2Request request = ListObjectsV2Request.builder()
+                    .bucket(bucketName)
+                    .prefix(prefix)
+                    .build();
+            for (ListObjectsV2Response page : s3Client.listObjectsV2Paginator(request)) {
+                pageConsumer.accept(page.contents().stream()
+                        .map(object -> new StoredObject(object.key(), object.size(), object.lastModified()))
+                        .collect(Collectors.toList()));
+            }
+        } catch (SdkException e) {
+            log.error("Failed to list objects under {}: {}", prefix, e.getMessage(), e);
+            throw new RuntimeException("Failed to list objects from S3: " + e.getMessage(), e);
+        }
+    }
+
     /**
      * Check if a file exists in S3
      * @param s3Key S3 key to check
      * @return true if file exists, false otherwise
      */
+    @Override
     public boolean fileExists(String s3Key) {
         try {
             HeadObjectRequest headObjectRequest = HeadObjectRequest.builder()
@@ -236,6 +885,7 @@ public class S3Service {
      * @param s3Key S3 key of the file
      * @return File size in bytes
      */
+    @Override
     public Long getFileSize(String s3Key) {
         try {
             HeadObjectRequest headObjectRequest = HeadObjectRequest.builder()
@@ -245,7 +895,7 @@ public class S3Service {
 
             HeadObjectResponse response = s3Client.headObject(headObjectRequest);
             return response.contentLength();
-        } catch (S3Exception e) {
+        } catch (SdkException e) {
             log.error("Failed to get file size: {}", e.getMessage(), e);
             throw new RuntimeException("Failed to get file size: " + e.getMessage(), e);
         }
@@ -256,7 +906,20 @@ public class S3Service {
      * @param s3Key S3 key of the file to download
      * @return Byte array of the file content
      */
+    @Override
     public byte[] downloadFile(String s3Key) {
+        if (localContentCache.isEnabled()) {
+            try {
+                return localContentCache.read(downloadToLocalCache(s3Key));
+            } catch (NoSuchFileException e) {
+                // Evicted between lookup and read - download directly instead
+                log.debug("Cached copy of {} was evicted before it was read", s3Key);
+            } catch (IOException e) {
+                log.error("Failed to read cached file for {}: {}", s3Key, e.getMessage(), e);
+                throw new RuntimeException("Failed to download file from S3: " + e.getMessage(), e);
+            }
+        }
+
         try {
             GetObjectRequest getObjectRequest = GetObjectRequest.builder()
                     .bucket(bucketName)
@@ -266,9 +929,239 @@ public class S3Service {
             byte[] bytes = s3Client.getObjectAsBytes(getObjectRequest).asByteArray();
             log.info("File downloaded successfully from S3: {}", s3Key);
             return bytes;
-        } catch (S3Exception e) {
+        } catch (SdkException e) {
+            log.error("Failed to download file from S3: {}", e.getMessage(), e);
+            throw new RuntimeException("Failed to download file from S3: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Download a file into the local content cache, or reuse the cached copy if its ETag still matches.
+     * Only a HEAD request is made when the cached copy is current.
+     * @param s3Key S3 key of the file to download
+     * @return Path of the cached file, or null if the local cache is disabled
+     */
+    @Override
+    public Path downloadToLocalCache(String s3Key) {
+        if (!localContentCache.isEnabled()) {
+            return null;
+        }
+
+        try {
+            HeadObjectResponse head = s3Client.headObject(HeadObjectRequest.builder()
+                    .bucket(bucketName)
+                    .key(s3Key)
+                    .build());
+            String eTag = head.eTag();
+
+            Optional<Path> cached = localContentCache.get(s3Key, eTag);
+            if (cached.isPresent()) {
+                log.debug("Local cache hit for {}", s3Key);
+                return cached.get();
+            }
+
+            // ifMatch guards against the object being replaced between HEAD and GET
+            Path path = localContentCache.put(s3Key, eTag, target -> s3Client.getObject(GetObjectRequest.builder()
+                            .bucket(bucketName)
+                            .key(s3Key)
+                            .ifMatch(eTag)
+                            .build(),
+                    target));
+            log.info("File downloaded successfully from S3 into local cache: {}", s3Key);
+            return path;
+        } catch (SdkException e) {
             log.error("Failed to download file from S3: {}", e.getMessage(), e);
             throw new RuntimeException("Failed to download file from S3: " + e.getMessage(), e);
+        } catch (IOException e) {
+            log.error("Failed to write file to local cache: {}", e.getMessage(), e);
+            throw new RuntimeException("Failed to download file from S3: " + e.getMessage(), e);
         }
     }
+
+    /**
+     * Get object metadata (HEAD request)
+     * @param s3Key S3 key of the file
+     * @return Object metadata including ETag, size and last-modified time
+     */
+    public HeadObjectResponse headObject(String s3Key) {
+        try {
+            return s3Client.headObject(HeadObjectRequest.builder()
+                    .bucket(bucketName)
+                    .key(s3Key)
+                    .build());
+        } catch (SdkException e) {
+            log.error("Failed to get object metadata: {}", e.getMessage(), e);
+            throw new RuntimeException("Failed to get object metadata: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Open a byte range of an object as a stream without buffering it in memory.
+     * The caller must close the returned stream.
+     * @param s3Key S3 key of the file
+     * @param start First byte (inclusive)
+     * @param end Last byte (inclusive)
+     * @param eTag Expected ETag; the request fails if the object changed (null to skip the check)
+     * @return Stream over the requested bytes
+     */
+    @Override
+    public ResponseInputStream<GetObjectResponse> openRange(String s3Key, long start, long end, String eTag) {
+        try {
+            return s3Client.getObject(GetObjectRequest.builder()
+                    .bucket(bucketName)
+                    .key(s3Key)
+                    .range("bytes=" + start + "-" + end)
+                    .ifMatch(eTag)
+                    .build());
+        } catch (SdkException e) {
+            log.error("Failed to open object range from S3: {}", e.getMessage(), e);
+            throw new RuntimeException("Failed to download file from S3: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Find a current copy of an object in the local content cache without downloading it
+     * @param s3Key S3 key of the file
+     * @param eTag Current ETag of the object
+     * @return Path of the cached file, or empty if not cached (or the cache is disabled)
+     */
+    @Override
+    public Optional<Path> findLocalFile(String s3Key, String eTag) {
+        if (!localContentCache.isEnabled()) {
+            return Optional.empty();
+        }
+        return localContentCache.get(s3Key, eTag);
+    }
+
+    /**
+     * Open a current copy of an object from the local content cache without downloading it
+     * @param s3Key S3 key of the file
+     * @param eTag Current ETag of the object
+     * @return Open channel over the cached file, or empty if not cached (or the cache is disabled)
+     */
+    @Override
+    public Optional<FileChannel> openLocalFile(String s3Key, String eTag) throws IOException {
+        if (!localContentCache.isEnabled()) {
+            return Optional.empty();
+        }
+        return localContentCache.openEntry(s3Key, eTag);
+    }
+
+    /**
+     * Get object metadata from a HEAD request
+     * @param s3Key S3 key of the file
+     * @return Size, ETag and last-modified time
+     */
+    @Override
+    public ObjectInfo stat(String s3Key) {
+        HeadObjectResponse head = headObject(s3Key);
+        return new ObjectInfo(head.contentLength(), head.eTag(), head.lastModified());
+    }
+
+    /**
+     * Get presigned URL cache and local content cache statistics
+     * @return Statistics keyed by cache name
+     */
+    @Override
+    public Map<String, Object> getStorageStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("presignedUrlCache", getPresignedUrlCacheStats());
+        stats.put("localContentCache", getLocalContentCacheStats());
+        return stats;
+    }
+
+    /**
+     * Get local content cache statistics
+     * @return Hit/miss/eviction counts and current size
+     */
+    public Map<String, Object> getLocalContentCacheStats() {
+        return localContentCache.getStats();
+    }
+
+    /**
+     * Run an async S3 operation while holding one of the in-flight permits.
+     * Requests over the cap are queued and started from the completion of an earlier request,
+     * so the calling thread never blocks; a request that waited longer than the timeout fails instead of starting.
+     */
+    private <T> CompletableFuture<T> withAsyncPermit(String operation, Supplier<CompletableFuture<T>> request) {
+        if (s3AsyncClient == null) {
+            return CompletableFuture.failedFuture(
+                    new IllegalStateException("S3 is not configured. Please set AWS credentials."));
+        }
+
+        PendingAsyncRequest<T> pending = new PendingAsyncRequest<>(operation, request, new CompletableFuture<>(), System.nanoTime());
+        pendingAsyncRequests.add(pending);
+        startPendingAsyncRequests();
+        return pending.result();
+    }
+
+    /**
+     * Start queued requests while permits are available.
+     * A permit taken when the queue turned out empty is released and the queue re-checked,
+     * so a request queued concurrently is never left waiting without a permit holder to start it.
+     */
+    private void startPendingAsyncRequests() {
+        while (!pendingAsyncRequests.isEmpty() && asyncPermits.tryAcquire()) {
+            PendingAsyncRequest<?> pending = pendingAsyncRequests.poll();
+            if (pending == null) {
+                asyncPermits.release();
+                continue;
+            }
+            startAsyncRequest(pending);
+        }
+    }
+
+    private <T> void startAsyncRequest(PendingAsyncRequest<T> pending) {
+        CompletableFuture<T> result = pending.result();
+        if (result.isDone()) {
+            // Cancelled by the caller while queued
+            asyncPermits.release();
+            return;
+        }
+        if (System.nanoTime() - pending.queuedAt() > TimeUnit.SECONDS.toNanos(asyncTimeoutSeconds)) {
+            asyncPermits.release();
+            result.completeExceptionally(new IllegalStateException(
+                    "Too many in-flight S3 requests, timed out waiting to " + pending.operation()));
+            return;
+        }
+
+        CompletableFuture<T> response;
+        try {
+            response = pending.request().get();
+        } catch (RuntimeException e) {
+            response = CompletableFuture.failedFuture(e);
+        }
+        response.whenComplete((value, error) -> {
+            asyncPermits.release();
+            startPendingAsyncRequests();
+            if (error != null) {
+                log.error("Async S3 {} failed: {}", pending.operation(), error.getMessage());
+                result.completeExceptionally(error);
+            } else {
+                result.complete(value);
+            }
+        });
+    }
+
+    /**
+     * Upload a byte array to S3 asynchronously under a caller-chosen key
+     * @param bytes Byte array to upload
+     * @param s3Key Target S3 key (see {@link #newObjectKey})
+     * @param contentType Content type (e.g., "image/jpeg")
+     * @return Future completing with the S3 key
+     */
+    @Override
+    public CompletableFuture<String> uploadBytesAsync(byte[] bytes, String s3Key, String contentType) {
+        return withAsyncPermit("upload " + s3Key, () -> s3AsyncClient.putObject(PutObjectRequest.builder()
+                                .bucket(bucketName)
+                                .key(s3Key)
+                                .contentType(contentType)
+                                .contentLength((long) bytes.length)
+                                .build(),
+                        AsyncRequestBody.fromBytes(bytes))
+                .thenApply(response -> {
+                    log.info("Bytes uploaded successfully to S3 (async): {}", s3Key);
+                    return s3Key;
+                }));
+    }
 }
@@ -0,0 +1,252 @@
+package com.kiosk.backend.service;
+
+import com.kiosk.backend.entity.PendingStorageDeletion;
+import com.kiosk.backend.repository.PendingStorageDeletionRepository;
+import com.kiosk.backend.repository.VideoRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import jakarta.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * Persistent queue of storage objects to delete.
+ * Keys are enqueued inside the caller's transaction and flushed in batches
+ * (one DeleteObjects call per 1000 keys on S3) off the request thread.
+ * Failed keys are retried with exponential backoff; rows left over from a crash are picked up by the periodic flush.
+ * References are checked again at flush time: a deduplicated upload may have reused a key after it was queued.
+ */
+@Service
+@Slf4j
+public class StorageDeletionQueue {
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final PendingStorageDeletionRepository pendingStorageDeletionRepository;
+    private final MediaStore mediaStore;
+    private final VideoRepository videoRepository;
+
+    @Value("${storage.deletion-queue.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${storage.deletion-queue.max-backoff-minutes:60}")
+    private long maxBackoffMinutes;
+
+    // Single flusher thread - flush requests coalesce instead of running concurrently
+    private final ExecutorService flushExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "storage-deletion-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private final AtomicLong deletedCount = new AtomicLong();
+    private final AtomicLong failedAttemptCount = new AtomicLong();
+
+    public StorageDeletionQueue(PendingStorageDeletionRepository pendingStorageDeletionRepository,
+                                MediaStore mediaStore,
+                                VideoRepository videoRepository) {
+        this.pendingStorageDeletionRepository = pendingStorageDeletionRepository;
+        this.mediaStore = mediaStore;
+        this.videoRepository = videoRepository;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushExecutor.shutdown();
+    }
+
+    /**
+     * Queue storage keys for deletion.
+     * Within a transaction the keys are persisted with it and flushed after commit,
+     * so a rollback keeps the objects and a crash after commit still deletes them.
+     * @param keys Storage keys to delete (null/empty keys are ignored)
+     */
+    public void enqueue(Collection<String> keys) {
+        LocalDateTime now = LocalDateTime.now();
+        List<PendingStorageDeletion> deletions = keys.stream()
+                .filter(Objects::nonNull)
+                .filter(key -> !key.isEmpty())
+                .distinct()
+                .map(key -> PendingStorageDeletion.builder()
+                        .storageKey(key)
+                        .nextAttemptAt(now)
+                        .build())
+                .collect(Collectors.toList());
+        if (deletions.isEmpty()) {
+            return;
+        }
+
+        pendingStorageDeletionRepository.saveAll(deletions);
+        log.info("Queued {} storage objects for deletion", deletions.size());
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    requestFlush();
+                }
+            });
+        } else {
+            requestFlush();
+        }
+    }
+
+    /**
+     * Flush the queue asynchronously
+     */
+    public void requestFlush() {
+        flushExecutor.execute(this::flush);
+    }
+
+    /**
+     * Periodic flush - retries failed deletions and recovers rows left by a crash
+     */
+    @Scheduled(fixedDelayString = "${storage.deletion-queue.flush-interval-ms:60000}",
+               initialDelayString = "${storage.deletion-queue.flush-interval-ms:60000}")
+    public void scheduledFlush() {
+        flush();
+    }
+
+    /**
+     * Delete all due keys in batches
+     * @return Number of objects deleted
+     */
+    public int flush() {
+        if (!flushLock.tryLock()) {
+            return 0; // Another flush is already draining the queue
+        }
+
+        int deleted = 0;
+        try {
+            while (true) {
+                List<PendingStorageDeletion> fetched = pendingStorageDeletionRepository
+                        .findByNextAttemptAtLessThanEqualOrderByIdAsc(LocalDateTime.now(), PageRequest.of(0, batchSize));
+                if (fetched.isEmpty()) {
+                    break;
+                }
+
+                // A key referenced again (deduplicated upload) is dropped from the queue instead of deleted
+                Set<String> referenced = findReferencedKeys(fetched.stream()
+                        .map(PendingStorageDeletion::getStorageKey)
+                        .collect(Collectors.toSet()));
+                List<PendingStorageDeletion> due = new ArrayList<>();
+                List<PendingStorageDeletion> cancelled = new ArrayList<>();
+                for (PendingStorageDeletion deletion : fetched) {
+                    (referenced.contains(deletion.getStorageKey()) ? cancelled : due).add(deletion);
+                }
+                if (!cancelled.isEmpty()) {
+                    pendingStorageDeletionRepository.deleteAllInBatch(cancelled);
+                    log.info("Skipped deletion of {} storage objects that are referenced again", cancelled.size());
+                }
+
+                List<String> keys = due.stream()
+                        .map(PendingStorageDeletion::getStorageKey)
+                        .distinct()
+                        .collect(Collectors.toList());
+                Map<String, String> failures;
+                try {
+                    failures = keys.isEmpty() ? Map.of() : mediaStore.deleteFiles(keys);
+                } catch (RuntimeException e) {
+                    log.error("Storage deletion batch failed: {}", e.getMessage(), e);
+                    failures = new LinkedHashMap<>();
+                    for (PendingStorageDeletion deletion : due) {
+                        failures.put(deletion.getStorageKey(), e.getMessage());
+                    }
+                }
+
+                List<PendingStorageDeletion> completed = new ArrayList<>();
+                List<PendingStorageDeletion> retried = new ArrayList<>();
+                for (PendingStorageDeletion deletion : due) {
+                    String error = failures.get(deletion.getStorageKey());
+                    if (error == null) {
+                        completed.add(deletion);
+                    } else {
+                        scheduleRetry(deletion, error);
+                        retried.add(deletion);
+                    }
+                }
+
+                pendingStorageDeletionRepository.deleteAllInBatch(completed);
+                pendingStorageDeletionRepository.saveAll(retried);
+                deleted += completed.size();
+                deletedCount.addAndGet(completed.size());
+                failedAttemptCount.addAndGet(retried.size());
+
+                if (!retried.isEmpty()) {
+                    log.warn("{} storage deletions failed and will be retried", retried.size());
+                }
+                if (fetched.size() < batchSize) {
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            log.error("Error while flushing storage deletion queue", e);
+        } finally {
+            flushLock.unlock();
+        }
+
+        if (deleted > 0) {
+            log.info("Storage deletion queue flushed: {} objects deleted", deleted);
+        }
+        return deleted;
+    }
+
+    /**
+     * Get queue statistics
+     * @return Pending row count and lifetime deleted/failed counters
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pending", pendingStorageDeletionRepository.count());
+        stats.put("deletedCount", deletedCount.get());
+        stats.put("failedAttemptCount", failedAttemptCount.get());
+        return stats;
+    }
+
+    /**
+     * Keys that a video still references (as file, thumbnail, kiosk rendition or menu derivative)
+     */
+    private Set<String> findReferencedKeys(Collection<String> keys) {
+        Set<String> referenced = new HashSet<>();
+        for (Object[] columns : videoRepository.findKeyColumnsReferencing(keys)) {
+            for (Object column : columns) {
+                if (column != null && keys.contains(column)) {
+                    referenced.add((String) column);
+                }
+            }
+        }
+        return referenced;
+    }
+
+    /**
+     * Exponential backoff: 1, 2, 4, ... minutes, capped at storage.deletion-queue.max-backoff-minutes
+     */
+    private void scheduleRetry(PendingStorageDeletion deletion, String error) {
+        int attempts = deletion.getAttempts() + 1;
+        long backoffMinutes = Math.min(maxBackoffMinutes, 1L << Math.min(attempts - 1, 20));
+        deletion.setAttempts(attempts);
+        deletion.setLastError(error != null && error.length() > MAX_ERROR_LENGTH
+                ? error.substring(0, MAX_ERROR_LENGTH)
+                : error);
+        deletion.setNextAttemptAt(LocalDateTime.now().plusMinutes(backoffMinutes));
+    }
+}
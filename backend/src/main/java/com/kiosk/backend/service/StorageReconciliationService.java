@@ -0,0 +1,133 @@
+package com.kiosk.backend.service;
+
+import com.kiosk.backend.repository.PendingStorageDeletionRepository;
+import com.kiosk.backend.repository.VideoRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Finds storage objects that no Video row references (left behind by failed uploads or deletes)
+ * and hands them to the {@link StorageDeletionQueue}.
+ * Known keys are held as a sorted array of 64-bit hashes rather than a set of strings;
+ * a hash collision can only make an orphan look referenced, never the other way around.
+ */
+@Service
+@Slf4j
+public class StorageReconciliationService {
+
+    private final VideoRepository videoRepository;
+    private final PendingStorageDeletionRepository pendingStorageDeletionRepository;
+    private final MediaStore mediaStore;
+    private final StorageDeletionQueue storageDeletionQueue;
+
+    @Value("${storage.reconciliation.prefixes:videos/,images/,audios/,documents/,thumbnails/}")
+    private List<String> prefixes;
+
+    // Objects younger than this may belong to an upload whose DB row is not saved yet
+    @Value("${storage.reconciliation.grace-period-hours:24}")
+    private long gracePeriodHours;
+
+    @Value("${storage.reconciliation.dry-run:false}")
+    private boolean dryRun;
+
+    /**
+     * Result of a reconciliation run
+     * @param scannedObjects Number of objects listed
+     * @param orphanedObjects Number of unreferenced objects past the grace period
+     * @param reclaimedBytes Total size of the orphaned objects
+     * @param dryRun true if orphans were only reported, not queued for deletion
+     */
+    public record ReconciliationResult(long scannedObjects, int orphanedObjects, long reclaimedBytes, boolean dryRun) {}
+
+    public StorageReconciliationService(VideoRepository videoRepository,
+                                        PendingStorageDeletionRepository pendingStorageDeletionRepository,
+                                        MediaStore mediaStore,
+                                        StorageDeletionQueue storageDeletionQueue) {
+        this.videoRepository = videoRepository;
+        this.pendingStorageDeletionRepository = pendingStorageDeletionRepository;
+        this.mediaStore = mediaStore;
+        this.storageDeletionQueue = storageDeletionQueue;
+    }
+
+    /**
+     * Scan all configured prefixes and queue unreferenced objects for deletion
+     * @return Scan statistics including bytes reclaimed
+     */
+    public ReconciliationResult reconcile() {
+        long[] knownKeys = loadKnownKeyHashes();
+        Instant cutoff = Instant.now().minus(Duration.ofHours(gracePeriodHours));
+
+        long[] scanned = {0};
+        long[] reclaimedBytes = {0};
+        List<String> orphans = new ArrayList<>();
+
+        for (String prefix : prefixes) {
+            mediaStore.listObjects(prefix, page -> {
+                scanned[0] += page.size();
+                for (MediaStore.StoredObject object : page) {
+                    if (object.lastModified() == null || object.lastModified().isAfter(cutoff)) {
+                        continue;
+                    }
+                    if (Arrays.binarySearch(knownKeys, keyHash(object.key())) < 0) {
+                        orphans.add(object.key());
+                        reclaimedBytes[0] += object.size();
+                        log.debug("Orphaned storage object: {} ({} bytes)", object.key(), object.size());
+                    }
+                }
+            });
+        }
+
+        if (!dryRun && !orphans.isEmpty()) {
+            storageDeletionQueue.enqueue(orphans);
+        }
+
+        log.info("Storage reconciliation {}: scanned {} objects, {} orphaned, {} bytes {}",
+                dryRun ? "(dry run)" : "completed", scanned[0], orphans.size(), reclaimedBytes[0],
+                dryRun ? "reclaimable" : "queued for deletion");
+        return new ReconciliationResult(scanned[0], orphans.size(), reclaimedBytes[0], dryRun);
+    }
+
+    /**
+     * Load every referenced key (files, thumbnails, kiosk renditions, menu derivatives and keys already queued for deletion) as sorted hashes
+     */
+    private long[] loadKnownKeyHashes() {
+        List<String> videoKeys = videoRepository.findAllS3Keys();
+        List<String> thumbnailKeys = videoRepository.findAllThumbnailS3Keys();
+        List<String> optimizedKeys = videoRepository.findAllOptimizedS3Keys();
+        List<String> menuThumbnailKeys = videoRepository.findAllMenuThumbnailS3Keys();
+        List<String> menuDetailKeys = videoRepository.findAllMenuDetailS3Keys();
+        List<String> pendingKeys = pendingStorageDeletionRepository.findAllStorageKeys();
+
+        long[] hashes = new long[videoKeys.size() + thumbnailKeys.size() + optimizedKeys.size()
+                + menuThumbnailKeys.size() + menuDetailKeys.size() + pendingKeys.size()];
+        int index = 0;
+        for (Collection<String> keys : List.of(videoKeys, thumbnailKeys, optimizedKeys, menuThumbnailKeys, menuDetailKeys, pendingKeys)) {
+            for (String key : keys) {
+                hashes[index++] = keyHash(key);
+            }
+        }
+        Arrays.sort(hashes);
+        log.debug("Loaded {} known storage keys", hashes.length);
+        return hashes;
+    }
+
+    /**
+     * 64-bit FNV-1a hash of a storage key
+     */
+    private static long keyHash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
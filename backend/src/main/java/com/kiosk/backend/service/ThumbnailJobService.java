@@ -0,0 +1,378 @@
+package com.kiosk.backend.service;
+
+import com.kiosk.backend.entity.ThumbnailJob;
+import com.kiosk.backend.entity.Video;
+import com.kiosk.backend.repository.ThumbnailJobRepository;
+import com.kiosk.backend.repository.VideoRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Persistent thumbnail job queue.
+ * Uploads enqueue a job (with the local copy of the upload) in their transaction and return immediately;
+ * a fixed pool of workers sized to the CPU cores runs FFmpeg, stores the thumbnail on the video
+ * and notifies admins over STOMP on {@link #ADMIN_TOPIC}.
+ * Jobs interrupted by a restart are picked up again on startup, failed jobs are retried by the periodic sweep.
+ */
+@Service
+@Slf4j
+public class ThumbnailJobService {
+
+    public static final String ADMIN_TOPIC = "/topic/admin/thumbnails";
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+    private static final int NOTIFICATION_URL_MINUTES = 10080; // 7 days, same as the video detail API
+
+    private final ThumbnailJobRepository thumbnailJobRepository;
+    private final VideoRepository videoRepository;
+    private final MediaStore mediaStore;
+    private final ThumbnailService thumbnailService;
+    private final MenuImageService menuImageService;
+    private final StorageDeletionQueue storageDeletionQueue;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final CacheManager cacheManager;
+
+    // Number of concurrent FFmpeg processes (0 = CPU cores)
+    @Value("${thumbnail.jobs.workers:0}")
+    private int workers;
+
+    @Value("${thumbnail.jobs.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${thumbnail.jobs.work-directory:${java.io.tmpdir}/kiosk-thumbnail-jobs}")
+    private String workDirectory;
+
+    private Path workDir;
+    private ExecutorService workerPool;
+    private int poolSize;
+
+    // Jobs submitted to the pool and not finished yet - the sweep must not submit them twice
+    private final Set<Long> dispatchedJobs = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong completedCount = new AtomicLong();
+    private final AtomicLong failedAttemptCount = new AtomicLong();
+
+    public ThumbnailJobService(ThumbnailJobRepository thumbnailJobRepository,
+                               VideoRepository videoRepository,
+                               MediaStore mediaStore,
+                               ThumbnailService thumbnailService,
+                               MenuImageService menuImageService,
+                               StorageDeletionQueue storageDeletionQueue,
+                               SimpMessagingTemplate messagingTemplate,
+                               CacheManager cacheManager) {
+        this.thumbnailJobRepository = thumbnailJobRepository;
+        this.videoRepository = videoRepository;
+        this.mediaStore = mediaStore;
+        this.thumbnailService = thumbnailService;
+        this.menuImageService = menuImageService;
+        this.storageDeletionQueue = storageDeletionQueue;
+        this.messagingTemplate = messagingTemplate;
+        this.cacheManager = cacheManager;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        workDir = Paths.get(workDirectory).toAbsolutePath().normalize();
+        Files.createDirectories(workDir);
+
+        poolSize = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadCount = new AtomicInteger();
+        workerPool = Executors.newFixedThreadPool(poolSize, runnable -> {
+            Thread thread = new Thread(runnable, "thumbnail-worker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        log.info("Thumbnail job queue initialized with {} workers, work directory {}", poolSize, workDir);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Interrupted jobs stay RUNNING and are reset on the next startup
+        workerPool.shutdownNow();
+    }
+
+    /**
+     * Recover jobs left by a previous run and remove work files that no job references
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverJobs() {
+        try {
+            int reset = thumbnailJobRepository.resetRunningJobs();
+            if (reset > 0) {
+                log.info("Reset {} interrupted thumbnail jobs", reset);
+            }
+            deleteStaleWorkFiles();
+            dispatchPendingJobs();
+        } catch (Exception e) {
+            log.error("Failed to recover thumbnail jobs", e);
+        }
+    }
+
+    /**
+     * Queue thumbnail generation for a saved video.
+     * The local copy of the upload is moved into the work directory so the worker does not have to download it again.
+     * Within a transaction the job is persisted with it and dispatched after commit.
+     * @param video Saved video (IMAGE or VIDEO)
+     * @param sourceFile Local copy of the upload (moved by this method), or null to fetch the original from storage
+     * @param thumbnailFolder Storage folder for the thumbnail
+     * @return Persisted job
+     */
+    public ThumbnailJob enqueue(Video video, Path sourceFile, String thumbnailFolder) {
+        Path source = sourceFile != null ? moveToWorkDir(sourceFile) : null;
+
+        ThumbnailJob job = thumbnailJobRepository.save(ThumbnailJob.builder()
+                .videoId(video.getId())
+                .thumbnailFolder(thumbnailFolder)
+                .sourcePath(source != null ? source.toString() : null)
+                .build());
+        log.info("Queued thumbnail job {} for video ID {}", job.getId(), video.getId());
+
+        Long jobId = job.getId();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED) {
+                        dispatch(jobId);
+                    } else {
+                        deleteWorkFile(source);
+                    }
+                }
+            });
+        } else {
+            dispatch(jobId);
+        }
+        return job;
+    }
+
+    /**
+     * Periodic sweep - retries failed attempts and picks up jobs whose dispatch was lost
+     */
+    @Scheduled(fixedDelayString = "${thumbnail.jobs.sweep-interval-ms:60000}",
+               initialDelayString = "${thumbnail.jobs.sweep-interval-ms:60000}")
+    public void dispatchPendingJobs() {
+        List<ThumbnailJob> pending = thumbnailJobRepository.findByStatusOrderByIdAsc(ThumbnailJob.JobStatus.PENDING);
+        for (ThumbnailJob job : pending) {
+            dispatch(job.getId());
+        }
+    }
+
+    /**
+     * Get queue statistics
+     * @return Job counts by state, worker count and lifetime counters
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("workers", poolSize);
+        stats.put("pending", thumbnailJobRepository.countByStatus(ThumbnailJob.JobStatus.PENDING));
+        stats.put("running", thumbnailJobRepository.countByStatus(ThumbnailJob.JobStatus.RUNNING));
+        stats.put("failed", thumbnailJobRepository.countByStatus(ThumbnailJob.JobStatus.FAILED));
+        stats.put("completedCount", completedCount.get());
+        stats.put("failedAttemptCount", failedAttemptCount.get());
+        return stats;
+    }
+
+    private void dispatch(Long jobId) {
+        if (!dispatchedJobs.add(jobId)) {
+            return; // Already queued in the pool
+        }
+        try {
+            workerPool.execute(() -> {
+                try {
+                    process(jobId);
+                } finally {
+                    dispatchedJobs.remove(jobId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            dispatchedJobs.remove(jobId);
+            log.warn("Thumbnail worker pool is shut down, job {} stays pending", jobId);
+        }
+    }
+
+    private void process(Long jobId) {
+        // Conditional update, so a job is never processed by two workers
+        if (thumbnailJobRepository.claim(jobId) == 0) {
+            return;
+        }
+        ThumbnailJob job = thumbnailJobRepository.findById(jobId).orElse(null);
+        if (job == null) {
+            return;
+        }
+
+        Video video = videoRepository.findById(job.getVideoId()).orElse(null);
+        if (video == null) {
+            log.info("Video ID {} was deleted, dropping thumbnail job {}", job.getVideoId(), jobId);
+            finish(job, ThumbnailJob.JobStatus.COMPLETED, null);
+            return;
+        }
+        if (video.getThumbnailS3Key() != null) {
+            // Thumbnail was set in the meantime (e.g. regenerated manually)
+            finish(job, ThumbnailJob.JobStatus.COMPLETED, null);
+            return;
+        }
+
+        try {
+            long startTime = System.currentTimeMillis();
+            Path source = job.getSourcePath() != null ? Paths.get(job.getSourcePath()) : null;
+            String thumbnailS3Key;
+            if (source != null && Files.isRegularFile(source)) {
+                thumbnailS3Key = thumbnailService.createThumbnail(video.getMediaType(), source,
+                        video.getS3Key(), video.getContentType(), job.getThumbnailFolder());
+            } else {
+                // Local copy lost (e.g. tmp cleared on restart) - read the original from storage
+                thumbnailS3Key = thumbnailService.createThumbnail(video.getMediaType(),
+                        video.getS3Key(), video.getContentType(), job.getThumbnailFolder());
+            }
+            String thumbnailUrl = mediaStore.getFileUrl(thumbnailS3Key);
+
+            if (videoRepository.updateThumbnail(video.getId(), thumbnailS3Key, thumbnailUrl) == 0) {
+                // Video deleted while the thumbnail was being generated
+                storageDeletionQueue.enqueue(List.of(thumbnailS3Key));
+                finish(job, ThumbnailJob.JobStatus.COMPLETED, null);
+                return;
+            }
+            evictVideoCache(video.getId());
+
+            // MENU images also get their kiosk derivatives from the same local copy
+            if (video.getImagePurpose() == Video.ImagePurpose.MENU && menuImageService.needsDerivatives(video)) {
+                menuImageService.createDerivativesQuietly(video, source);
+            }
+
+            finish(job, ThumbnailJob.JobStatus.COMPLETED, null);
+            completedCount.incrementAndGet();
+            log.info("Thumbnail job {} completed for video ID {} in {}ms",
+                    jobId, video.getId(), System.currentTimeMillis() - startTime);
+
+            notifyAdmins("THUMBNAIL_READY", video, mediaStore.generatePresignedUrl(thumbnailS3Key, NOTIFICATION_URL_MINUTES), null);
+        } catch (Exception e) {
+            failedAttemptCount.incrementAndGet();
+            String error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            if (job.getAttempts() >= maxAttempts) {
+                log.error("Thumbnail job {} for video ID {} failed after {} attempts", jobId, video.getId(), job.getAttempts(), e);
+                finish(job, ThumbnailJob.JobStatus.FAILED, error);
+                notifyAdmins("THUMBNAIL_FAILED", video, null, error);
+            } else {
+                log.warn("Thumbnail job {} for video ID {} failed (attempt {}/{}), will be retried: {}",
+                        jobId, video.getId(), job.getAttempts(), maxAttempts, error);
+                job.setStatus(ThumbnailJob.JobStatus.PENDING);
+                job.setLastError(truncateError(error));
+                thumbnailJobRepository.save(job);
+            }
+        }
+    }
+
+    /**
+     * Move a job to a final state and release its local copy of the upload
+     */
+    private void finish(ThumbnailJob job, ThumbnailJob.JobStatus status, String error) {
+        deleteWorkFile(job.getSourcePath() != null ? Paths.get(job.getSourcePath()) : null);
+        job.setStatus(status);
+        job.setSourcePath(null);
+        job.setLastError(truncateError(error));
+        thumbnailJobRepository.save(job);
+    }
+
+    private void notifyAdmins(String type, Video video, String thumbnailUrl, String error) {
+        try {
+            Map<String, Object> message = new HashMap<>();
+            message.put("type", type);
+            message.put("videoId", video.getId());
+            message.put("title", video.getTitle());
+            message.put("timestamp", LocalDateTime.now().toString());
+            if (thumbnailUrl != null) {
+                message.put("thumbnailUrl", thumbnailUrl);
+            }
+            if (error != null) {
+                message.put("error", error);
+            }
+            messagingTemplate.convertAndSend(ADMIN_TOPIC, message);
+        } catch (Exception e) {
+            log.warn("Failed to send thumbnail notification for video ID {}: {}", video.getId(), e.getMessage());
+        }
+    }
+
+    private void evictVideoCache(Long videoId) {
+        Cache cache = cacheManager.getCache("videos");
+        if (cache != null) {
+            cache.evict(videoId);
+        }
+    }
+
+    private Path moveToWorkDir(Path sourceFile) {
+        Path target = workDir.resolve("job_" + UUID.randomUUID() + extensionOf(sourceFile.getFileName().toString()));
+        try {
+            Files.move(sourceFile, target, StandardCopyOption.REPLACE_EXISTING);
+            return target;
+        } catch (IOException e) {
+            log.warn("Failed to keep local copy for thumbnail job, worker will download the original: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Delete files in the work directory that belong to no pending job (e.g. from rolled back uploads)
+     */
+    private void deleteStaleWorkFiles() throws IOException {
+        Set<String> referenced = new HashSet<>(thumbnailJobRepository.findSourcePathsByStatusIn(
+                List.of(ThumbnailJob.JobStatus.PENDING, ThumbnailJob.JobStatus.RUNNING)));
+        try (Stream<Path> files = Files.list(workDir)) {
+            files.filter(path -> !referenced.contains(path.toString()))
+                    .forEach(this::deleteWorkFile);
+        }
+    }
+
+    private void deleteWorkFile(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Failed to delete thumbnail work file {}: {}", path, e.getMessage());
+        }
+    }
+
+    private static String extensionOf(String filename) {
+        int lastDotIndex = filename.lastIndexOf(".");
+        int lastSlashIndex = filename.lastIndexOf("/");
+        return lastDotIndex > lastSlashIndex ? filename.substring(lastDotIndex) : ".tmp";
+    }
+
+    private static String truncateError(String error) {
+        return error != null && error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+    }
+}
@@ -0,0 +1,322 @@
+package com.kiosk.backend.service;
+
+import com.kiosk.backend.entity.BatchCheckpoint;
+import com.kiosk.backend.entity.Video;
+import com.kiosk.backend.repository.BatchCheckpointRepository;
+import com.kiosk.backend.repository.VideoRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Regenerates the thumbnails of many videos and images at once (e.g. after the thumbnail size changed).
+ * Rows are processed page by page in id order on a bounded worker pool; after every page the last id
+ * is saved as a {@link BatchCheckpoint}, so an interrupted run resumes where it stopped.
+ * Originals are streamed from storage to a work file instead of being buffered in the heap.
+ * A run executes in the background, one at a time; its progress is read from the checkpoint.
+ */
+@Service
+@Slf4j
+public class ThumbnailRegenerationService {
+
+    public static final String BATCH_TYPE = "THUMBNAIL_REGENERATION";
+
+    private final VideoRepository videoRepository;
+    private final VideoService videoService;
+    private final ThumbnailService thumbnailService;
+    private final MediaStore mediaStore;
+    private final BatchCheckpointRepository batchCheckpointRepository;
+
+    // Number of concurrent thumbnail generations (each may run one FFmpeg process)
+    @Value("${thumbnail.regeneration.parallelism:4}")
+    private int parallelism;
+
+    @Value("${thumbnail.regeneration.page-size:50}")
+    private int pageSize;
+
+    @Value("${thumbnail.regeneration.work-directory:${java.io.tmpdir}/kiosk-thumbnail-regeneration}")
+    private String workDirectory;
+
+    private Path workDir;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    // ID and failure of the current or last run (not persisted, only for progress polling)
+    private volatile String currentRunId;
+    private volatile String lastError;
+
+    private final ExecutorService runExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "thumbnail-regeneration-runner");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Selection of videos to regenerate
+     * @param mediaType IMAGE or VIDEO, or null for both
+     * @param videoType Video type, or null for all
+     * @param uploadedById Uploader, or null for all
+     * @param missingOnly Only videos without a thumbnail
+     */
+    public record RegenerationFilter(Video.MediaType mediaType, Video.VideoType videoType, Long uploadedById, boolean missingOnly) {
+
+        /**
+         * Stable description of the filter, stored with the checkpoint
+         */
+        String describe() {
+            return "mediaType=" + mediaType + ",videoType=" + videoType + ",uploadedById=" + uploadedById + ",missingOnly=" + missingOnly;
+        }
+    }
+
+    /**
+     * Result of a regeneration run
+     * @param processed Number of rows processed, including earlier runs that were resumed
+     * @param regenerated Number of thumbnails replaced
+     * @param failed Number of rows whose thumbnail could not be generated
+     * @param resumed Whether the run continued from a checkpoint
+     * @param elapsedMillis Duration of this run
+     * @param bytesDownloaded Bytes streamed from storage in this run
+     * @param itemsPerSecond Rows processed per second in this run
+     */
+    public record RegenerationResult(int processed, int regenerated, int failed, boolean resumed,
+                                     long elapsedMillis, long bytesDownloaded, double itemsPerSecond) {}
+
+    /**
+     * A started regeneration run
+     * @param runId ID reported by the progress endpoint while the run is current
+     * @param result Completes with the run statistics, or exceptionally if the run failed
+     */
+    public record RegenerationRun(String runId, CompletableFuture<RegenerationResult> result) {}
+
+    public ThumbnailRegenerationService(VideoRepository videoRepository, VideoService videoService,
+                                        ThumbnailService thumbnailService, MediaStore mediaStore,
+                                        BatchCheckpointRepository batchCheckpointRepository) {
+        this.videoRepository = videoRepository;
+        this.videoService = videoService;
+        this.thumbnailService = thumbnailService;
+        this.mediaStore = mediaStore;
+        this.batchCheckpointRepository = batchCheckpointRepository;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        workDir = Paths.get(workDirectory).toAbsolutePath().normalize();
+        Files.createDirectories(workDir);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Interrupts the run; it resumes from its checkpoint when started again
+        runExecutor.shutdownNow();
+    }
+
+    /**
+     * Start regenerating thumbnails for all images and videos matching a filter in the background
+     * Continues from the saved checkpoint if the previous run with the same filter did not finish.
+     * @param filter Selection of videos
+     * @param restart Ignore the checkpoint and start from the first row
+     * @return The started run
+     * @throws IllegalStateException if a regeneration is already running
+     */
+    public RegenerationRun start(RegenerationFilter filter, boolean restart) {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("Thumbnail regeneration is already running");
+        }
+        String runId = UUID.randomUUID().toString();
+        currentRunId = runId;
+        lastError = null;
+        CompletableFuture<RegenerationResult> result;
+        try {
+            result = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return run(filter, restart);
+                } catch (RuntimeException e) {
+                    lastError = e.getMessage();
+                    throw e;
+                } finally {
+                    running.set(false);
+                }
+            }, runExecutor);
+        } catch (RejectedExecutionException e) {
+            running.set(false);
+            throw new IllegalStateException("Thumbnail regeneration is shutting down");
+        }
+        return new RegenerationRun(runId, result);
+    }
+
+    /**
+     * Get the progress of the current or last regeneration run
+     * @return Checkpoint values, or null if no run was recorded
+     */
+    public Map<String, Object> getProgress() {
+        BatchCheckpoint checkpoint = batchCheckpointRepository.findById(BATCH_TYPE).orElse(null);
+        if (checkpoint == null) {
+            return null;
+        }
+        Map<String, Object> progress = new LinkedHashMap<>();
+        progress.put("runId", currentRunId);
+        progress.put("running", running.get());
+        progress.put("error", lastError);
+        progress.put("completed", checkpoint.getCompleted());
+        progress.put("parameters", checkpoint.getParameters());
+        progress.put("lastProcessedId", checkpoint.getLastProcessedId());
+        progress.put("processed", checkpoint.getProcessed());
+        progress.put("regenerated", checkpoint.getSucceeded());
+        progress.put("failed", checkpoint.getFailed());
+        progress.put("startedAt", checkpoint.getStartedAt());
+        progress.put("updatedAt", checkpoint.getUpdatedAt());
+        return progress;
+    }
+
+    private RegenerationResult run(RegenerationFilter filter, boolean restart) {
+        long startTime = System.currentTimeMillis();
+        List<Video.MediaType> mediaTypes = filter.mediaType() != null
+                ? List.of(filter.mediaType())
+                : List.of(Video.MediaType.IMAGE, Video.MediaType.VIDEO);
+
+        BatchCheckpoint checkpoint = batchCheckpointRepository.findById(BATCH_TYPE).orElse(null);
+        boolean resumed = !restart && checkpoint != null && !checkpoint.getCompleted()
+                && filter.describe().equals(checkpoint.getParameters());
+        if (resumed) {
+            log.info("Resuming thumbnail regeneration after video ID {} ({} processed so far)",
+                    checkpoint.getLastProcessedId(), checkpoint.getProcessed());
+        } else {
+            checkpoint = BatchCheckpoint.builder()
+                    .batchType(BATCH_TYPE)
+                    .parameters(filter.describe())
+                    .startedAt(LocalDateTime.now())
+                    .build();
+            // Saved right away, so progress polling never reports the previous run
+            checkpoint = batchCheckpointRepository.save(checkpoint);
+        }
+        int processedBefore = checkpoint.getProcessed();
+
+        AtomicInteger regenerated = new AtomicInteger(checkpoint.getSucceeded());
+        AtomicInteger failed = new AtomicInteger(checkpoint.getFailed());
+        AtomicLong bytesDownloaded = new AtomicLong();
+        int processed = processedBefore;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService workerPool = Executors.newFixedThreadPool(Math.max(1, parallelism), runnable -> {
+            Thread thread = new Thread(runnable, "thumbnail-regeneration-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            long afterId = checkpoint.getLastProcessedId();
+            while (true) {
+                List<Video> page = videoRepository.findThumbnailRegenerationCandidates(afterId, mediaTypes,
+                        filter.videoType(), filter.uploadedById(), filter.missingOnly(), PageRequest.of(0, pageSize));
+                if (page.isEmpty()) {
+                    break;
+                }
+
+                List<CompletableFuture<Void>> tasks = new ArrayList<>(page.size());
+                for (Video video : page) {
+                    tasks.add(CompletableFuture.runAsync(() -> {
+                        if (regenerateOne(video, bytesDownloaded)) {
+                            regenerated.incrementAndGet();
+                        } else {
+                            failed.incrementAndGet();
+                        }
+                    }, workerPool));
+                }
+                CompletableFuture.allOf(tasks.toArray(CompletableFuture<?>[]::new)).join();
+
+                // Whole page done - safe to move the checkpoint past it
+                processed += page.size();
+                afterId = page.get(page.size() - 1).getId();
+                checkpoint.setLastProcessedId(afterId);
+                checkpoint.setProcessed(processed);
+                checkpoint.setSucceeded(regenerated.get());
+                checkpoint.setFailed(failed.get());
+                checkpoint = batchCheckpointRepository.save(checkpoint);
+
+                long elapsed = Math.max(1, System.currentTimeMillis() - startTime);
+                log.info("Thumbnail regeneration progress: {} processed, {} regenerated, {} failed ({} items/s, {} MB/s)",
+                        processed, regenerated.get(), failed.get(),
+                        String.format("%.2f", (processed - processedBefore) * 1000.0 / elapsed),
+                        String.format("%.2f", bytesDownloaded.get() / 1024.0 / 1024.0 * 1000.0 / elapsed));
+            }
+
+            checkpoint.setCompleted(true);
+            batchCheckpointRepository.save(checkpoint);
+        } finally {
+            workerPool.shutdownNow();
+        }
+
+        long elapsedMillis = System.currentTimeMillis() - startTime;
+        RegenerationResult result = new RegenerationResult(processed, regenerated.get(), failed.get(), resumed,
+                elapsedMillis, bytesDownloaded.get(), (processed - processedBefore) * 1000.0 / Math.max(1, elapsedMillis));
+        log.info("Thumbnail regeneration completed: {} processed, {} regenerated, {} failed in {}ms ({} items/s)",
+                result.processed(), result.regenerated(), result.failed(), result.elapsedMillis(),
+                String.format("%.2f", result.itemsPerSecond()));
+        return result;
+    }
+
+    /**
+     * Regenerate the thumbnail of one video
+     * @return true if the new thumbnail was stored
+     */
+    private boolean regenerateOne(Video video, AtomicLong bytesDownloaded) {
+        Path workFile = null;
+        try {
+            MediaStore.ObjectInfo info = mediaStore.stat(video.getS3Key());
+            Path source = mediaStore.findLocalFile(video.getS3Key(), info.eTag()).orElse(null);
+            if (source == null) {
+                if (info.contentLength() == 0) {
+                    throw new IOException("Stored file is empty");
+                }
+                workFile = Files.createTempFile(workDir, "regen_", extensionOf(video.getS3Key()));
+                try (InputStream inputStream = mediaStore.openRange(video.getS3Key(), 0, info.contentLength() - 1, info.eTag())) {
+                    bytesDownloaded.addAndGet(Files.copy(inputStream, workFile, StandardCopyOption.REPLACE_EXISTING));
+                }
+                source = workFile;
+            }
+
+            ThumbnailService.Thumbnail thumbnail = thumbnailService.generateThumbnail(
+                    video.getMediaType(), source, video.getS3Key(), video.getContentType());
+            return videoService.storeRegeneratedThumbnail(video, thumbnail);
+        } catch (Exception e) {
+            log.warn("Failed to regenerate thumbnail for video ID {}: {}", video.getId(), e.getMessage());
+            return false;
+        } finally {
+            if (workFile != null) {
+                try {
+                    Files.deleteIfExists(workFile);
+                } catch (IOException e) {
+                    log.warn("Failed to delete regeneration work file {}: {}", workFile, e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static String extensionOf(String filename) {
+        int lastDotIndex = filename.lastIndexOf(".");
+        int lastSlashIndex = filename.lastIndexOf("/");
+        return lastDotIndex > lastSlashIndex ? filename.substring(lastDotIndex) : ".tmp";
+    }
+}
@@ -0,0 +1,529 @@
+package com.kiosk.backend.service;
+
+import com.kiosk.backend.entity.Video;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import jakarta.annotation.PreDestroy;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates thumbnails from media files and stores them.
+ * Images are scaled in-process with subsampled ImageIO decoding; videos use FFmpeg, which reads
+ * the file (or stdin) and writes the JPEG frame to stdout, so no temp files are written per thumbnail.
+ * Thumbnails are {@value #THUMBNAIL_WIDTH}px wide JPEGs.
+ */
+@Service
+@Slf4j
+public class ThumbnailService {
+
+    // Seek before -i: FFmpeg seeks on the input and decodes a single frame instead of the first second
+    private static final String THUMBNAIL_SEEK_POSITION = "00:00:01.000";
+    private static final long FFMPEG_TIMEOUT_SECONDS = 30;
+    private static final int MAX_ERROR_OUTPUT = 4096;
+    private static final int MAX_RETAINED_BUFFER_SIZE = 4 * 1024 * 1024;
+
+    private static final int THUMBNAIL_WIDTH = 320;
+    private static final float JPEG_QUALITY = 0.85f;
+
+    // FFmpeg stdout is collected into a per-thread buffer that is reused across thumbnails
+    private static final ThreadLocal<FrameBuffer> FRAME_BUFFERS = ThreadLocal.withInitial(FrameBuffer::new);
+
+    /**
+     * Generated thumbnail content
+     * @param bytes Encoded image
+     * @param filename Filename for the stored thumbnail
+     * @param contentType Content type of the encoded image
+     */
+    public record Thumbnail(byte[] bytes, String filename, String contentType) {}
+
+    private final MediaStore mediaStore;
+
+    // Feeds stdin and drains stderr of running FFmpeg processes
+    private final ExecutorService pipeExecutor;
+    private final ScheduledExecutorService timeoutExecutor;
+
+    public ThumbnailService(MediaStore mediaStore) {
+        this.mediaStore = mediaStore;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.pipeExecutor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "ffmpeg-pipe-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.timeoutExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ffmpeg-timeout");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pipeExecutor.shutdownNow();
+        timeoutExecutor.shutdownNow();
+    }
+
+    /**
+     * Check if thumbnails are generated for a media type
+     * @param mediaType Media type of the upload
+     * @return true for images and videos
+     */
+    public boolean supports(Video.MediaType mediaType) {
+        return mediaType == Video.MediaType.IMAGE || mediaType == Video.MediaType.VIDEO;
+    }
+
+    /**
+     * Generate a thumbnail from a local copy of a media file and store it
+     * @param mediaType Media type of the file (IMAGE or VIDEO)
+     * @param sourcePath Local copy of the file
+     * @param s3Key Storage key of the original file (used to derive the thumbnail name)
+     * @param contentType Content type of the original file
+     * @param thumbnailFolder Storage folder for the thumbnail
+     * @return Storage key of the thumbnail
+     * @throws IOException if the source cannot be read or no thumbnail could be generated
+     */
+    public String createThumbnail(Video.MediaType mediaType, Path sourcePath, String s3Key,
+                                  String contentType, String thumbnailFolder) throws IOException {
+        return storeThumbnail(generateThumbnail(mediaType, sourcePath, s3Key, contentType), thumbnailFolder);
+    }
+
+    /**
+     * Generate a thumbnail from a stored media file and store it
+     * @param mediaType Media type of the file (IMAGE or VIDEO)
+     * @param s3Key Storage key of the original file
+     * @param contentType Content type of the original file
+     * @param thumbnailFolder Storage folder for the thumbnail
+     * @return Storage key of the thumbnail
+     * @throws IOException if no thumbnail could be generated
+     */
+    public String createThumbnail(Video.MediaType mediaType, String s3Key,
+                                  String contentType, String thumbnailFolder) throws IOException {
+        return storeThumbnail(generateThumbnail(mediaType, s3Key, contentType), thumbnailFolder);
+    }
+
+    /**
+     * Store a generated thumbnail
+     * @param thumbnail Generated thumbnail
+     * @param thumbnailFolder Storage folder for the thumbnail
+     * @return Storage key of the thumbnail
+     */
+    public String storeThumbnail(Thumbnail thumbnail, String thumbnailFolder) {
+        String thumbnailS3Key = mediaStore.uploadBytes(thumbnail.bytes(), thumbnailFolder,
+                thumbnail.filename(), thumbnail.contentType());
+        log.info("Thumbnail uploaded successfully: {}", thumbnailS3Key);
+        return thumbnailS3Key;
+    }
+
+    /**
+     * Generate a thumbnail from a local copy of a media file
+     * @param mediaType Media type of the file (IMAGE or VIDEO)
+     * @param sourcePath Local copy of the file
+     * @param sourceName Storage key or filename of the original (used to derive the thumbnail name)
+     * @param contentType Content type of the original file
+     * @return Generated thumbnail
+     * @throws IOException if the source cannot be read or no thumbnail could be generated
+     */
+    public Thumbnail generateThumbnail(Video.MediaType mediaType, Path sourcePath, String sourceName,
+                                       String contentType) throws IOException {
+        if (mediaType == Video.MediaType.IMAGE) {
+            return imageThumbnail(sourcePath.toFile(), sourceName, contentType, () -> Files.readAllBytes(sourcePath));
+        } else if (mediaType == Video.MediaType.VIDEO) {
+            return new Thumbnail(extractVideoFrame(sourcePath), thumbnailFilename(sourceName, ".jpg"), "image/jpeg");
+        }
+        throw new IllegalArgumentException("Thumbnails are not supported for media type: " + mediaType);
+    }
+
+    /**
+     * Generate a thumbnail from a stored media file
+     * Uses the local content cache copy when available, otherwise streams the object.
+     * @param mediaType Media type of the file (IMAGE or VIDEO)
+     * @param s3Key Storage key of the original file
+     * @param contentType Content type of the original file
+     * @return Generated thumbnail
+     * @throws IOException if no thumbnail could be generated
+     */
+    public Thumbnail generateThumbnail(Video.MediaType mediaType, String s3Key, String contentType) throws IOException {
+        if (mediaType == Video.MediaType.IMAGE) {
+            Path localCopy = mediaStore.downloadToLocalCache(s3Key);
+            if (localCopy != null) {
+                return generateThumbnail(mediaType, localCopy, s3Key, contentType);
+            }
+            long size = mediaStore.getFileSize(s3Key);
+            try (InputStream inputStream = mediaStore.openRange(s3Key, 0, size - 1, null)) {
+                return imageThumbnail(inputStream, s3Key, contentType, () -> mediaStore.downloadFile(s3Key));
+            }
+        } else if (mediaType == Video.MediaType.VIDEO) {
+            return new Thumbnail(extractVideoFrameFromStorage(s3Key), thumbnailFilename(s3Key, ".jpg"), "image/jpeg");
+        }
+        throw new IllegalArgumentException("Thumbnails are not supported for media type: " + mediaType);
+    }
+
+    /**
+     * Generate a thumbnail from an image already held in memory
+     * @param imageBytes Image content
+     * @param sourceName Filename of the image (used to derive the thumbnail name)
+     * @param contentType Content type of the image
+     * @return Generated thumbnail
+     */
+    public Thumbnail generateImageThumbnail(byte[] imageBytes, String sourceName, String contentType) {
+        try {
+            return imageThumbnail(new ByteArrayInputStream(imageBytes), sourceName, contentType, () -> imageBytes);
+        } catch (IOException e) {
+            // Cannot happen for in-memory input, the original is used if decoding fails
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Scale an image to a JPEG thumbnail, falling back to the original for formats ImageIO cannot decode
+     * (e.g. WebP, CMYK JPEG)
+     * @param input File or InputStream accepted by {@link ImageIO#createImageInputStream}
+     */
+    private Thumbnail imageThumbnail(Object input, String sourceName, String contentType,
+                                     OriginalContent original) throws IOException {
+        byte[] scaled = null;
+        try {
+            scaled = scaleImage(input);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to scale image {}, using original as thumbnail: {}", sourceName, e.getMessage());
+        }
+
+        if (scaled == null) {
+            log.info("Using original image as thumbnail: {}", sourceName);
+            return new Thumbnail(original.get(), thumbnailFilename(sourceName, extensionOf(sourceName, ".jpg")), contentType);
+        }
+        log.info("Image thumbnail generated: {} bytes", scaled.length);
+        return new Thumbnail(scaled, thumbnailFilename(sourceName, ".jpg"), "image/jpeg");
+    }
+
+    /**
+     * Decode an image subsampled close to the thumbnail width and encode it as JPEG
+     * The full-resolution raster is never materialized: the reader skips pixels while decoding.
+     * @return JPEG bytes, or null if no ImageIO reader supports the format
+     */
+    private byte[] scaleImage(Object input) throws IOException {
+        try (ImageInputStream imageInput = ImageIO.createImageInputStream(input)) {
+            if (imageInput == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(imageInput);
+            if (!readers.hasNext()) {
+                return null;
+            }
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(imageInput, true, true);
+                int width = reader.getWidth(0);
+
+                // Read every n-th pixel so the decoded raster is between 2x and 4x the thumbnail width
+                int subsampling = Math.max(1, width / (THUMBNAIL_WIDTH * 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+
+                BufferedImage decoded = reader.read(0, param);
+                return encodeJpeg(resize(decoded));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Scale down to the thumbnail width in halving steps (bilinear), flattening transparency onto white
+     */
+    private BufferedImage resize(BufferedImage source) {
+        int targetWidth = Math.min(THUMBNAIL_WIDTH, source.getWidth());
+        int targetHeight = Math.max(1, (int) Math.round((double) source.getHeight() * targetWidth / source.getWidth()));
+
+        BufferedImage current = source;
+        int width = source.getWidth();
+        int height = source.getHeight();
+        while (width / 2 >= targetWidth) {
+            width /= 2;
+            height = Math.max(1, height / 2);
+            current = draw(current, width, height);
+        }
+        return draw(current, targetWidth, targetHeight);
+    }
+
+    private BufferedImage draw(BufferedImage source, int width, int height) {
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    private byte[] encodeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (ImageOutputStream imageOutput = new MemoryCacheImageOutputStream(output)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+            writer.setOutput(imageOutput);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * Build the thumbnail filename: original name without extension + "_thumb" + extension
+     */
+    private static String thumbnailFilename(String sourceName, String extension) {
+        String filenameWithExt = sourceName.substring(sourceName.lastIndexOf("/") + 1);
+        int lastDotIndex = filenameWithExt.lastIndexOf(".");
+        String filenameWithoutExt = (lastDotIndex > 0)
+            ? filenameWithExt.substring(0, lastDotIndex)
+            : filenameWithExt;
+        return filenameWithoutExt + "_thumb" + extension;
+    }
+
+    private static String extensionOf(String sourceName, String defaultExtension) {
+        String filename = sourceName.substring(sourceName.lastIndexOf("/") + 1);
+        int lastDotIndex = filename.lastIndexOf(".");
+        return lastDotIndex > 0 ? filename.substring(lastDotIndex) : defaultExtension;
+    }
+
+    /**
+     * Extract a JPEG thumbnail frame (320px wide) from a local video file
+     * Uses the frame at 1 second, or the first frame for shorter videos
+     * @param videoPath Local video file
+     * @return JPEG bytes
+     * @throws IOException if FFmpeg fails, times out or produces no frame
+     */
+    public byte[] extractVideoFrame(Path videoPath) throws IOException {
+        // Convert path to absolute string with forward slashes for FFmpeg compatibility on Windows
+        String input = videoPath.toAbsolutePath().toString().replace("\\", "/");
+
+        byte[] frame = runFfmpeg(input, null, THUMBNAIL_SEEK_POSITION);
+        if (frame.length == 0) {
+            // Video is shorter than the seek position
+            frame = runFfmpeg(input, null, "0");
+        }
+        if (frame.length == 0) {
+            throw new IOException("FFmpeg produced no frame for " + videoPath);
+        }
+        log.info("Thumbnail generated successfully, size: {} bytes", frame.length);
+        return frame;
+    }
+
+    /**
+     * Extract a JPEG thumbnail frame from a video stream fed to FFmpeg's stdin
+     * FFmpeg stops reading once the frame is decoded, so usually only the head of the stream is consumed.
+     * @param videoStream Video content (not closed by this method)
+     * @return JPEG bytes
+     * @throws IOException if FFmpeg fails, times out or produces no frame
+     *         (e.g. MP4 files whose index is at the end cannot be decoded from a pipe)
+     */
+    public byte[] extractVideoFrame(InputStream videoStream) throws IOException {
+        byte[] frame = runFfmpeg("pipe:0", videoStream, THUMBNAIL_SEEK_POSITION);
+        if (frame.length == 0) {
+            throw new IOException("FFmpeg produced no frame from stream");
+        }
+        log.info("Thumbnail generated from stream, size: {} bytes", frame.length);
+        return frame;
+    }
+
+    /**
+     * Extract a JPEG thumbnail frame from a stored video
+     * Uses the local content cache copy when available, otherwise streams the object into FFmpeg.
+     * Falls back to a temporary local copy for files that cannot be decoded from a pipe.
+     * @param s3Key Storage key of the video
+     * @return JPEG bytes
+     * @throws IOException if no frame could be extracted
+     */
+    public byte[] extractVideoFrameFromStorage(String s3Key) throws IOException {
+        Path localCopy = mediaStore.downloadToLocalCache(s3Key);
+        if (localCopy != null) {
+            return extractVideoFrame(localCopy);
+        }
+
+        long size = mediaStore.getFileSize(s3Key);
+        try (InputStream inputStream = mediaStore.openRange(s3Key, 0, size - 1, null)) {
+            return extractVideoFrame(inputStream);
+        } catch (InterruptedIOException e) {
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            log.info("Streaming thumbnail extraction failed for {} ({}), retrying from a local copy", s3Key, e.getMessage());
+        }
+
+        Path tempVideoPath = Files.createTempFile("video_", extensionOf(s3Key, ".mp4"));
+        try {
+            try (InputStream inputStream = mediaStore.openRange(s3Key, 0, size - 1, null)) {
+                Files.copy(inputStream, tempVideoPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return extractVideoFrame(tempVideoPath);
+        } finally {
+            Files.deleteIfExists(tempVideoPath);
+        }
+    }
+
+    /**
+     * Run FFmpeg to extract one frame as JPEG on stdout
+     * @param input Input file path, or "pipe:0" to read from stdin
+     * @param stdin Stream copied to FFmpeg's stdin, or null
+     * @param seekPosition Input seek position
+     * @return JPEG bytes, empty if the input has no frame at the seek position
+     */
+    private byte[] runFfmpeg(String input, InputStream stdin, String seekPosition) throws IOException {
+        ProcessBuilder processBuilder = new ProcessBuilder(List.of(
+            "ffmpeg",
+            "-loglevel", "error",  // Only output errors
+            "-ss", seekPosition,
+            "-i", input,
+            "-frames:v", "1",
+            "-vf", "scale=320:-1",
+            "-q:v", "2",  // High quality JPEG (scale 2-31, 2 is best)
+            "-f", "image2pipe",
+            "-c:v", "mjpeg",
+            "pipe:1"
+        ));
+
+        Process process = processBuilder.start();
+        ScheduledFuture<?> timeout = timeoutExecutor.schedule(() -> {
+            process.destroyForcibly();
+        }, FFMPEG_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        // stderr is drained concurrently so a chatty FFmpeg never blocks on a full pipe
+        Future<String> errorOutput = pipeExecutor.submit(() -> readErrorOutput(process.getErrorStream()));
+        Future<?> feeder = null;
+        if (stdin != null) {
+            feeder = pipeExecutor.submit(() -> feedStdin(stdin, process.getOutputStream()));
+        } else {
+            process.getOutputStream().close();
+        }
+
+        FrameBuffer buffer = FRAME_BUFFERS.get();
+        buffer.reset();
+        try {
+            try (InputStream stdout = process.getInputStream()) {
+                stdout.transferTo(buffer);
+            }
+            if (!process.waitFor(FFMPEG_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+            boolean timedOut = !timeout.cancel(false);
+            if (timedOut) {
+                log.warn("FFmpeg thumbnail generation timed out after {} seconds", FFMPEG_TIMEOUT_SECONDS);
+                throw new IOException("FFmpeg thumbnail generation timed out");
+            }
+
+            int exitCode = process.exitValue();
+            if (exitCode != 0) {
+                String errorMsg = awaitQuietly(errorOutput);
+                log.error("FFmpeg failed - Exit code: {}, Error output: {}", exitCode, errorMsg);
+                throw new IOException("Failed to generate thumbnail with FFmpeg, exit code: " + exitCode +
+                        (errorMsg.isEmpty() ? "" : ", error: " + errorMsg));
+            }
+            return buffer.toByteArray();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Thumbnail generation interrupted");
+        } finally {
+            process.destroyForcibly();
+            timeout.cancel(false);
+            if (feeder != null) {
+                awaitQuietly(feeder);
+            }
+            if (buffer.capacity() > MAX_RETAINED_BUFFER_SIZE) {
+                FRAME_BUFFERS.remove();
+            }
+        }
+    }
+
+    private Void feedStdin(InputStream source, OutputStream stdin) {
+        try (OutputStream out = stdin) {
+            source.transferTo(out);
+        } catch (IOException e) {
+            // FFmpeg closes stdin as soon as it has the frame - a broken pipe is expected
+            log.debug("FFmpeg stdin closed: {}", e.getMessage());
+        }
+        return null;
+    }
+
+    private String readErrorOutput(InputStream stderr) throws IOException {
+        byte[] head = stderr.readNBytes(MAX_ERROR_OUTPUT);
+        stderr.transferTo(OutputStream.nullOutputStream());
+        return new String(head, StandardCharsets.UTF_8).trim();
+    }
+
+    private String awaitQuietly(Future<?> future) {
+        try {
+            Object result = future.get(5, TimeUnit.SECONDS);
+            return result != null ? result.toString() : "";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "";
+        } catch (ExecutionException | TimeoutException e) {
+            future.cancel(true);
+            return "";
+        }
+    }
+
+    /**
+     * ByteArrayOutputStream whose backing array survives reset() and can be reused
+     */
+    private static class FrameBuffer extends ByteArrayOutputStream {
+        FrameBuffer() {
+            super(64 * 1024);
+        }
+
+        int capacity() {
+            return buf.length;
+        }
+    }
+
+    /**
+     * Supplies the original content when an image cannot be scaled
+     */
+    @FunctionalInterface
+    private interface OriginalContent {
+        byte[] get() throws IOException;
+    }
+}
@@ -0,0 +1,380 @@
+package com.kiosk.backend.service;
+
+import com.kiosk.backend.entity.TranscodeJob;
+import com.kiosk.backend.entity.Video;
+import com.kiosk.backend.repository.TranscodeJobRepository;
+import com.kiosk.backend.repository.VideoRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Persistent kiosk rendition queue, running next to the thumbnail queue.
+ * Video uploads enqueue a job (with a local copy of the upload) in their transaction; a small worker pool
+ * builds the fast-start rendition with {@link TranscodeService}, stores it on the video
+ * and notifies admins over STOMP on {@link #ADMIN_TOPIC}.
+ * The pool is kept small because a remux or re-encode is far heavier than a thumbnail.
+ */
+@Service
+@Slf4j
+public class TranscodeJobService {
+
+    public static final String ADMIN_TOPIC = "/topic/admin/transcoding";
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final TranscodeJobRepository transcodeJobRepository;
+    private final VideoRepository videoRepository;
+    private final TranscodeService transcodeService;
+    private final StorageDeletionQueue storageDeletionQueue;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final CacheManager cacheManager;
+
+    // Number of concurrent FFmpeg transcodes
+    @Value("${transcoding.workers:1}")
+    private int workers;
+
+    @Value("${transcoding.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${transcoding.work-directory:${java.io.tmpdir}/kiosk-transcode-jobs}")
+    private String workDirectory;
+
+    private Path workDir;
+    private ExecutorService workerPool;
+    private int poolSize;
+
+    // Jobs submitted to the pool and not finished yet - the sweep must not submit them twice
+    private final Set<Long> dispatchedJobs = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong completedCount = new AtomicLong();
+    private final AtomicLong renditionCount = new AtomicLong();
+    private final AtomicLong failedAttemptCount = new AtomicLong();
+
+    public TranscodeJobService(TranscodeJobRepository transcodeJobRepository,
+                               VideoRepository videoRepository,
+                               TranscodeService transcodeService,
+                               StorageDeletionQueue storageDeletionQueue,
+                               SimpMessagingTemplate messagingTemplate,
+                               CacheManager cacheManager) {
+        this.transcodeJobRepository = transcodeJobRepository;
+        this.videoRepository = videoRepository;
+        this.transcodeService = transcodeService;
+        this.storageDeletionQueue = storageDeletionQueue;
+        this.messagingTemplate = messagingTemplate;
+        this.cacheManager = cacheManager;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        workDir = Paths.get(workDirectory).toAbsolutePath().normalize();
+        Files.createDirectories(workDir);
+
+        poolSize = Math.max(1, workers);
+        AtomicInteger threadCount = new AtomicInteger();
+        workerPool = Executors.newFixedThreadPool(poolSize, runnable -> {
+            Thread thread = new Thread(runnable, "transcode-worker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        log.info("Transcode job queue initialized with {} workers, work directory {}", poolSize, workDir);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Interrupted jobs stay RUNNING and are reset on the next startup
+        workerPool.shutdownNow();
+    }
+
+    /**
+     * Recover jobs left by a previous run and remove work files that no job references
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverJobs() {
+        try {
+            int reset = transcodeJobRepository.resetRunningJobs();
+            if (reset > 0) {
+                log.info("Reset {} interrupted transcode jobs", reset);
+            }
+            deleteStaleWorkFiles();
+            dispatchPendingJobs();
+        } catch (Exception e) {
+            log.error("Failed to recover transcode jobs", e);
+        }
+    }
+
+    /**
+     * Check if uploads of a video need a transcode job
+     * @param video Video entity
+     * @return true for MP4/MOV videos without a kiosk rendition
+     */
+    public boolean needsRendition(Video video) {
+        return video.getOptimizedS3Key() == null && transcodeService.supports(video);
+    }
+
+    /**
+     * Queue a kiosk rendition for a saved video.
+     * The local copy of the upload is linked (or copied) into the work directory, leaving the file in place
+     * for the thumbnail job. Within a transaction the job is persisted with it and dispatched after commit.
+     * @param video Saved MP4/MOV video
+     * @param sourceFile Local copy of the upload (left in place), or null to read the original from storage
+     * @return Persisted job
+     */
+    public TranscodeJob enqueue(Video video, Path sourceFile) {
+        Path source = sourceFile != null ? linkToWorkDir(sourceFile) : null;
+
+        TranscodeJob job = transcodeJobRepository.save(TranscodeJob.builder()
+                .videoId(video.getId())
+                .sourcePath(source != null ? source.toString() : null)
+                .build());
+        log.info("Queued transcode job {} for video ID {}", job.getId(), video.getId());
+
+        Long jobId = job.getId();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED) {
+                        dispatch(jobId);
+                    } else {
+                        deleteWorkFile(source);
+                    }
+                }
+            });
+        } else {
+            dispatch(jobId);
+        }
+        return job;
+    }
+
+    /**
+     * Periodic sweep - retries failed attempts and picks up jobs whose dispatch was lost
+     */
+    @Scheduled(fixedDelayString = "${transcoding.sweep-interval-ms:60000}",
+               initialDelayString = "${transcoding.sweep-interval-ms:60000}")
+    public void dispatchPendingJobs() {
+        List<TranscodeJob> pending = transcodeJobRepository.findByStatusOrderByIdAsc(TranscodeJob.JobStatus.PENDING);
+        for (TranscodeJob job : pending) {
+            dispatch(job.getId());
+        }
+    }
+
+    /**
+     * Get queue statistics
+     * @return Job counts by state, worker count and lifetime counters
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("workers", poolSize);
+        stats.put("pending", transcodeJobRepository.countByStatus(TranscodeJob.JobStatus.PENDING));
+        stats.put("running", transcodeJobRepository.countByStatus(TranscodeJob.JobStatus.RUNNING));
+        stats.put("failed", transcodeJobRepository.countByStatus(TranscodeJob.JobStatus.FAILED));
+        stats.put("completedCount", completedCount.get());
+        stats.put("renditionCount", renditionCount.get());
+        stats.put("failedAttemptCount", failedAttemptCount.get());
+        return stats;
+    }
+
+    private void dispatch(Long jobId) {
+        if (!dispatchedJobs.add(jobId)) {
+            return; // Already queued in the pool
+        }
+        try {
+            workerPool.execute(() -> {
+                try {
+                    process(jobId);
+                } finally {
+                    dispatchedJobs.remove(jobId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            dispatchedJobs.remove(jobId);
+            log.warn("Transcode worker pool is shut down, job {} stays pending", jobId);
+        }
+    }
+
+    private void process(Long jobId) {
+        // Conditional update, so a job is never processed by two workers
+        if (transcodeJobRepository.claim(jobId) == 0) {
+            return;
+        }
+        TranscodeJob job = transcodeJobRepository.findById(jobId).orElse(null);
+        if (job == null) {
+            return;
+        }
+
+        Video video = videoRepository.findById(job.getVideoId()).orElse(null);
+        if (video == null) {
+            log.info("Video ID {} was deleted, dropping transcode job {}", job.getVideoId(), jobId);
+            finish(job, TranscodeJob.JobStatus.COMPLETED, null);
+            return;
+        }
+        if (video.getOptimizedS3Key() != null) {
+            finish(job, TranscodeJob.JobStatus.COMPLETED, null);
+            return;
+        }
+
+        try {
+            Path source = job.getSourcePath() != null ? Paths.get(job.getSourcePath()) : null;
+            TranscodeService.Rendition rendition = transcodeService.createRendition(video, source, workDir);
+            if (rendition == null) {
+                // Original is already kiosk-ready
+                finish(job, TranscodeJob.JobStatus.COMPLETED, null);
+                completedCount.incrementAndGet();
+                return;
+            }
+
+            if (videoRepository.updateOptimizedRendition(video.getId(), rendition.s3Key(), rendition.fileSize()) == 0) {
+                // Video deleted while the rendition was being built
+                storageDeletionQueue.enqueue(List.of(rendition.s3Key()));
+                finish(job, TranscodeJob.JobStatus.COMPLETED, null);
+                return;
+            }
+            evictVideoCache(video.getId());
+
+            finish(job, TranscodeJob.JobStatus.COMPLETED, null);
+            completedCount.incrementAndGet();
+            renditionCount.incrementAndGet();
+            log.info("Transcode job {} completed for video ID {}: {}", jobId, video.getId(), rendition.s3Key());
+
+            notifyAdmins("TRANSCODE_READY", video, rendition, null);
+        } catch (Exception e) {
+            failedAttemptCount.incrementAndGet();
+            String error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            if (job.getAttempts() >= maxAttempts) {
+                // Kiosks keep downloading the original
+                log.error("Transcode job {} for video ID {} failed after {} attempts", jobId, video.getId(), job.getAttempts(), e);
+                finish(job, TranscodeJob.JobStatus.FAILED, error);
+                notifyAdmins("TRANSCODE_FAILED", video, null, error);
+            } else {
+                log.warn("Transcode job {} for video ID {} failed (attempt {}/{}), will be retried: {}",
+                        jobId, video.getId(), job.getAttempts(), maxAttempts, error);
+                job.setStatus(TranscodeJob.JobStatus.PENDING);
+                job.setLastError(truncateError(error));
+                transcodeJobRepository.save(job);
+            }
+        }
+    }
+
+    /**
+     * Move a job to a final state and release its local copy of the upload
+     */
+    private void finish(TranscodeJob job, TranscodeJob.JobStatus status, String error) {
+        deleteWorkFile(job.getSourcePath() != null ? Paths.get(job.getSourcePath()) : null);
+        job.setStatus(status);
+        job.setSourcePath(null);
+        job.setLastError(truncateError(error));
+        transcodeJobRepository.save(job);
+    }
+
+    private void notifyAdmins(String type, Video video, TranscodeService.Rendition rendition, String error) {
+        try {
+            Map<String, Object> message = new HashMap<>();
+            message.put("type", type);
+            message.put("videoId", video.getId());
+            message.put("title", video.getTitle());
+            message.put("timestamp", LocalDateTime.now().toString());
+            if (rendition != null) {
+                message.put("originalFileSize", video.getFileSize());
+                message.put("optimizedFileSize", rendition.fileSize());
+            }
+            if (error != null) {
+                message.put("error", error);
+            }
+            messagingTemplate.convertAndSend(ADMIN_TOPIC, message);
+        } catch (Exception e) {
+            log.warn("Failed to send transcode notification for video ID {}: {}", video.getId(), e.getMessage());
+        }
+    }
+
+    private void evictVideoCache(Long videoId) {
+        Cache cache = cacheManager.getCache("videos");
+        if (cache != null) {
+            cache.evict(videoId);
+        }
+    }
+
+    /**
+     * Hard-link the upload into the work directory (no copy on the same file system), copying as a fallback
+     */
+    private Path linkToWorkDir(Path sourceFile) {
+        Path target = workDir.resolve("job_" + UUID.randomUUID() + extensionOf(sourceFile.getFileName().toString()));
+        try {
+            Files.createLink(target, sourceFile);
+            return target;
+        } catch (IOException | UnsupportedOperationException e) {
+            try {
+                Files.copy(sourceFile, target);
+                return target;
+            } catch (IOException copyError) {
+                log.warn("Failed to keep local copy for transcode job, worker will read the original from storage: {}",
+                        copyError.getMessage());
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Delete files in the work directory that belong to no pending job (e.g. from rolled back uploads)
+     */
+    private void deleteStaleWorkFiles() throws IOException {
+        Set<String> referenced = new HashSet<>(transcodeJobRepository.findSourcePathsByStatusIn(
+                List.of(TranscodeJob.JobStatus.PENDING, TranscodeJob.JobStatus.RUNNING)));
+        try (Stream<Path> files = Files.list(workDir)) {
+            files.filter(path -> !referenced.contains(path.toString()))
+                    .forEach(this::deleteWorkFile);
+        }
+    }
+
+    private void deleteWorkFile(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Failed to delete transcode work file {}: {}", path, e.getMessage());
+        }
+    }
+
+    private static String extensionOf(String filename) {
+        int lastDotIndex = filename.lastIndexOf(".");
+        int lastSlashIndex = filename.lastIndexOf("/");
+        return lastDotIndex > lastSlashIndex ? filename.substring(lastDotIndex) : ".tmp";
+    }
+
+    private static String truncateError(String error) {
+        return error != null && error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+    }
+}
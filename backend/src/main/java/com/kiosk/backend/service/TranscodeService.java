@@ -0,0 +1,283 @@
+package com.kiosk.backend.service;
+
+import com.kiosk.backend.entity.Video;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds kiosk playback renditions of MP4/MOV videos with FFmpeg.
+ * Kiosks start playing while a video is still downloading, which needs the index (moov box) in front of
+ * the media data; phones and editing tools often write it at the end. Such files are remuxed with
+ * +faststart (stream copy, no quality loss). With re-encoding enabled, videos above the configured
+ * resolution or bitrate are re-encoded to H.264/AAC in the same pass.
+ */
+@Service
+@Slf4j
+public class TranscodeService {
+
+    public static final String OPTIMIZED_FOLDER = "videos/optimized/";
+
+    private static final int SOURCE_URL_MINUTES = 180;
+    private static final int MAX_BOXES_SCANNED = 64;
+    private static final int MAX_ERROR_OUTPUT = 1000;
+    private static final long AUDIO_BITRATE = 128_000;
+    private static final Set<String> ISO_BMFF_EXTENSIONS = Set.of(".mp4", ".m4v", ".mov");
+    private static final Set<String> ISO_BMFF_CONTENT_TYPES = Set.of("video/mp4", "video/quicktime", "video/x-m4v");
+
+    private final MediaStore mediaStore;
+
+    @Value("${transcoding.timeout-minutes:30}")
+    private long timeoutMinutes;
+
+    @Value("${transcoding.reencode.enabled:false}")
+    private boolean reencodeEnabled;
+
+    // Shorter side in pixels (1080 = Full HD in landscape and portrait)
+    @Value("${transcoding.reencode.max-resolution:1080}")
+    private int maxResolution;
+
+    // Overall bits per second
+    @Value("${transcoding.reencode.max-bitrate:8000000}")
+    private long maxBitrate;
+
+    @Value("${transcoding.reencode.crf:23}")
+    private int crf;
+
+    /**
+     * Stored kiosk rendition
+     * @param s3Key Storage key of the rendition
+     * @param fileSize Size of the rendition in bytes
+     */
+    public record Rendition(String s3Key, long fileSize) {}
+
+    /**
+     * Reads up to length bytes at an offset of a media file (fewer at the end of the file)
+     */
+    @FunctionalInterface
+    private interface HeaderReader {
+        byte[] read(long offset, int length) throws IOException;
+    }
+
+    public TranscodeService(MediaStore mediaStore) {
+        this.mediaStore = mediaStore;
+    }
+
+    /**
+     * Check if a kiosk rendition can be built for a video
+     * @param video Video entity
+     * @return true for MP4/MOV videos
+     */
+    public boolean supports(Video video) {
+        if (video.getMediaType() != Video.MediaType.VIDEO) {
+            return false;
+        }
+        String contentType = video.getContentType() != null ? video.getContentType().toLowerCase() : "";
+        return ISO_BMFF_CONTENT_TYPES.contains(contentType) || ISO_BMFF_EXTENSIONS.contains(extensionOf(video.getS3Key()));
+    }
+
+    /**
+     * Build and store the kiosk rendition of a video
+     * @param video Video entity (metadata is used to decide on re-encoding)
+     * @param source Local copy of the original, or null to read the original from storage
+     * @param outputDir Directory for the intermediate output file
+     * @return Stored rendition, or null if the original is already kiosk-ready
+     */
+    public Rendition createRendition(Video video, Path source, Path outputDir) throws IOException {
+        String input;
+        boolean fastStart;
+        if (source != null && Files.isRegularFile(source)) {
+            input = source.toAbsolutePath().toString();
+            fastStart = isFastStart(source);
+        } else {
+            MediaStore.ObjectInfo info = mediaStore.stat(video.getS3Key());
+            Path localCopy = mediaStore.findLocalFile(video.getS3Key(), info.eTag()).orElse(null);
+            if (localCopy != null) {
+                input = localCopy.toAbsolutePath().toString();
+                fastStart = isFastStart(localCopy);
+            } else {
+                // FFmpeg reads over HTTP with range requests, so the original is never downloaded as a whole
+                input = mediaStore.generatePresignedUrl(video.getS3Key(), SOURCE_URL_MINUTES);
+                fastStart = isFastStart((offset, length) -> {
+                    try (InputStream inputStream = mediaStore.openRange(video.getS3Key(), offset, offset + length - 1, info.eTag())) {
+                        return inputStream.readNBytes(length);
+                    }
+                }, info.contentLength());
+            }
+        }
+
+        boolean reencode = needsReencode(video);
+        if (fastStart && !reencode) {
+            log.info("Video ID {} is already fast-start, kiosks use the original", video.getId());
+            return null;
+        }
+
+        String extension = ISO_BMFF_EXTENSIONS.contains(extensionOf(video.getS3Key())) ? extensionOf(video.getS3Key()) : ".mp4";
+        Path output = outputDir.resolve("rendition_" + UUID.randomUUID() + extension);
+        try {
+            long startTime = System.currentTimeMillis();
+            runFfmpeg(input, output, reencode);
+            long fileSize = Files.size(output);
+            log.info("Built {} rendition of video ID {} in {}ms ({} -> {} bytes)", reencode ? "re-encoded" : "fast-start",
+                    video.getId(), System.currentTimeMillis() - startTime, video.getFileSize(), fileSize);
+
+            if (fastStart && video.getFileSize() != null && fileSize >= video.getFileSize()) {
+                log.info("Re-encoded rendition of video ID {} is not smaller than the original, kiosks use the original", video.getId());
+                return null;
+            }
+
+            String contentType = video.getContentType() != null ? video.getContentType() : "video/mp4";
+            String s3Key;
+            try (InputStream inputStream = Files.newInputStream(output)) {
+                s3Key = mediaStore.uploadStream(inputStream, OPTIMIZED_FOLDER,
+                        renditionFilename(video.getOriginalFilename(), extension), contentType, null);
+            }
+            return new Rendition(s3Key, fileSize);
+        } finally {
+            Files.deleteIfExists(output);
+        }
+    }
+
+    private boolean needsReencode(Video video) {
+        if (!reencodeEnabled) {
+            return false;
+        }
+        boolean oversized = maxResolution > 0 && video.getWidth() != null && video.getHeight() != null
+                && Math.min(video.getWidth(), video.getHeight()) > maxResolution;
+        boolean overBitrate = maxBitrate > 0 && video.getBitrate() != null && video.getBitrate() > maxBitrate;
+        return oversized || overBitrate;
+    }
+
+    /**
+     * Check if the moov box comes before the mdat box of a local MP4/MOV file
+     */
+    private boolean isFastStart(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return isFastStart((offset, length) -> {
+                ByteBuffer buffer = ByteBuffer.allocate(length);
+                while (buffer.hasRemaining() && channel.read(buffer, offset + buffer.position()) > 0) {
+                    // Keep reading until the header is complete or the file ends
+                }
+                byte[] bytes = new byte[buffer.position()];
+                buffer.flip().get(bytes);
+                return bytes;
+            }, channel.size());
+        }
+    }
+
+    /**
+     * Walk the top-level box headers (size + type, 64-bit size if size is 1) until moov or mdat appears
+     * Files that cannot be parsed count as not fast-start, so they are remuxed.
+     */
+    private boolean isFastStart(HeaderReader reader, long fileSize) throws IOException {
+        long offset = 0;
+        for (int i = 0; i < MAX_BOXES_SCANNED && offset + 8 <= fileSize; i++) {
+            ByteBuffer header = ByteBuffer.wrap(reader.read(offset, 16));
+            if (header.remaining() < 8) {
+                return false;
+            }
+            long boxSize = Integer.toUnsignedLong(header.getInt());
+            byte[] type = new byte[4];
+            header.get(type);
+            String boxType = new String(type, StandardCharsets.ISO_8859_1);
+
+            if ("moov".equals(boxType)) {
+                return true;
+            }
+            if ("mdat".equals(boxType)) {
+                return false;
+            }
+            if (boxSize == 1) {
+                if (header.remaining() < 8) {
+                    return false;
+                }
+                boxSize = header.getLong();
+            }
+            if (boxSize < 8) {
+                return false; // Size 0 (box runs to the end of the file) or corrupt header
+            }
+            offset += boxSize;
+        }
+        return false;
+    }
+
+    private void runFfmpeg(String input, Path output, boolean reencode) throws IOException {
+        List<String> command = new ArrayList<>(List.of("ffmpeg", "-nostdin", "-loglevel", "error", "-y", "-i", input));
+        if (reencode) {
+            long videoBitrate = Math.max(maxBitrate - AUDIO_BITRATE, maxBitrate / 2);
+            command.addAll(List.of(
+                "-c:v", "libx264", "-preset", "veryfast", "-crf", String.valueOf(crf),
+                "-maxrate", String.valueOf(videoBitrate), "-bufsize", String.valueOf(videoBitrate * 2),
+                "-vf", "scale='if(gt(iw,ih),-2,min(" + maxResolution + ",iw))':'if(gt(iw,ih),min(" + maxResolution + ",ih),-2)'",
+                "-pix_fmt", "yuv420p",
+                "-c:a", "aac", "-b:a", String.valueOf(AUDIO_BITRATE)
+            ));
+        } else {
+            command.addAll(List.of("-c", "copy"));
+        }
+        command.addAll(List.of("-movflags", "+faststart", output.toString()));
+
+        Path errorLog = output.resolveSibling(output.getFileName() + ".log");
+        ProcessBuilder processBuilder = new ProcessBuilder(command);
+        processBuilder.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+        processBuilder.redirectError(errorLog.toFile());
+
+        Process process = processBuilder.start();
+        try {
+            if (!process.waitFor(timeoutMinutes, TimeUnit.MINUTES)) {
+                throw new IOException("FFmpeg timed out after " + timeoutMinutes + " minutes");
+            }
+            if (process.exitValue() != 0) {
+                throw new IOException("FFmpeg failed with exit code " + process.exitValue() + ": " + readErrorOutput(errorLog));
+            }
+            if (!Files.isRegularFile(output) || Files.size(output) == 0) {
+                throw new IOException("FFmpeg produced no output");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("FFmpeg interrupted", e);
+        } finally {
+            process.destroyForcibly();
+            Files.deleteIfExists(errorLog);
+        }
+    }
+
+    private static String readErrorOutput(Path errorLog) {
+        try {
+            String errorOutput = Files.readString(errorLog, StandardCharsets.UTF_8).trim();
+            return errorOutput.length() > MAX_ERROR_OUTPUT ? errorOutput.substring(errorOutput.length() - MAX_ERROR_OUTPUT) : errorOutput;
+        } catch (IOException e) {
+            return "(no error output)";
+        }
+    }
+
+    private static String renditionFilename(String originalFilename, String extension) {
+        String name = originalFilename != null ? originalFilename : "video";
+        int lastDotIndex = name.lastIndexOf(".");
+        String baseName = lastDotIndex > 0 ? name.substring(0, lastDotIndex) : name;
+        return baseName + "_kiosk" + extension;
+    }
+
+    private static String extensionOf(String filename) {
+        if (filename == null) {
+            return "";
+        }
+        int lastDotIndex = filename.lastIndexOf(".");
+        int lastSlashIndex = filename.lastIndexOf("/");
+        return lastDotIndex > lastSlashIndex ? filename.substring(lastDotIndex).toLowerCase() : "";
+    }
+}
@@ -1,13 +1,18 @@
 package com.kiosk.backend.service;
 
 import com.kiosk.backend.entity.KioskVideo;
+import com.kiosk.backend.entity.MenuAssetRef;
+import com.kiosk.backend.entity.UploadSession;
 import com.kiosk.backend.entity.User;
 import com.kiosk.backend.entity.Video;
 import com.kiosk.backend.repository.KioskVideoRepository;
+import com.kiosk.backend.repository.MenuAssetRefRepository;
 import com.kiosk.backend.repository.UserRepository;
 import com.kiosk.backend.repository.VideoRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
@@ -19,7 +24,16 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
 
 @Service
 @Slf4j
@@ -28,15 +42,40 @@ public class VideoService {
     private final VideoRepository videoRepository;
     private final UserRepository userRepository;
     private final KioskVideoRepository kioskVideoRepository;
-    private final S3Service s3Service;
+    private final MediaStore mediaStore;
+    private final StorageDeletionQueue storageDeletionQueue;
+    private final ThumbnailService thumbnailService;
+    private final ThumbnailJobService thumbnailJobService;
+    private final TranscodeJobService transcodeJobService;
+    private final MediaMetadataService mediaMetadataService;
+    private final MenuXmlParser menuXmlParser;
+    private final MenuAssetRefRepository menuAssetRefRepository;
+    private final MenuRenderService menuRenderService;
+    private final MenuIndexService menuIndexService;
+    private final CacheManager cacheManager;
 
     public VideoService(VideoRepository videoRepository, UserRepository userRepository,
                        KioskVideoRepository kioskVideoRepository,
-                       S3Service s3Service) {
+                       MediaStore mediaStore, StorageDeletionQueue storageDeletionQueue,
+                       ThumbnailService thumbnailService, ThumbnailJobService thumbnailJobService,
+                       TranscodeJobService transcodeJobService, MediaMetadataService mediaMetadataService,
+                       MenuXmlParser menuXmlParser, MenuAssetRefRepository menuAssetRefRepository,
+                       MenuRenderService menuRenderService, MenuIndexService menuIndexService,
+                       CacheManager cacheManager) {
         this.videoRepository = videoRepository;
         this.userRepository = userRepository;
         this.kioskVideoRepository = kioskVideoRepository;
-        this.s3Service = s3Service;
+        this.mediaStore = mediaStore;
+        this.storageDeletionQueue = storageDeletionQueue;
+        this.thumbnailService = thumbnailService;
+        this.thumbnailJobService = thumbnailJobService;
+        this.transcodeJobService = transcodeJobService;
+        this.mediaMetadataService = mediaMetadataService;
+        this.menuXmlParser = menuXmlParser;
+        this.menuAssetRefRepository = menuAssetRefRepository;
+        this.menuRenderService = menuRenderService;
+        this.menuIndexService = menuIndexService;
+        this.cacheManager = cacheManager;
     }
 
     // S3 folder structure
@@ -49,6 +88,9 @@ public class VideoService {
     private static final String DOCUMENT_FOLDER = "documents/";
     private static final String THUMBNAIL_UPLOAD_FOLDER = "thumbnails/uploads/";
     private static final String THUMBNAIL_AI_FOLDER = "thumbnails/ai/";
+
+    // Parsed menu references by menu video ID (a menu's XML is never replaced under the same ID)
+    private static final String MENU_REFERENCES_CACHE = "menuReferences";
     private static final long MAX_FILE_SIZE = 100 * 1024 * 1024; // 100MB
 
     // Database column length limits
@@ -96,163 +138,114 @@ public class VideoService {
     );
 
     /**
-     * Generate a thumbnail from a video file
-     * @param videoFile Video file to extract thumbnail from
-     * @return Byte array of the thumbnail image (JPEG), or null if failed
+     * Create a temp file that receives a copy of the upload while it streams to S3
      */
-    private byte[] generateThumbnail(MultipartFile videoFile) {
-        Path tempVideoPath = null;
-        Path tempThumbnailPath = null;
+    private Path createSpillFile(String originalFilename) throws IOException {
+        String extension = originalFilename != null && originalFilename.contains(".")
+            ? originalFilename.substring(originalFilename.lastIndexOf("."))
+            : ".tmp";
+        return Files.createTempFile("upload_", extension);
+    }
 
+    private void deleteSpillFile(Path spillPath) {
         try {
-            // Create temporary files
-            String originalFilename = videoFile.getOriginalFilename();
-            String extension = originalFilename != null && originalFilename.contains(".")
-                ? originalFilename.substring(originalFilename.lastIndexOf("."))
-                : ".mp4";
-
-            tempVideoPath = Files.createTempFile("video_", extension);
-            tempThumbnailPath = Files.createTempFile("thumbnail_", ".jpg");
-
-            // Save uploaded video to temp file
-            videoFile.transferTo(tempVideoPath.toFile());
-
-            // Use FFmpeg to extract thumbnail at 1 second
-            // Use -loglevel error to minimize output and prevent buffer issues
-            ProcessBuilder processBuilder = new ProcessBuilder(
-                "ffmpeg",
-                "-loglevel", "error",  // Only output errors, drastically reduces output
-                "-i", tempVideoPath.toString(),
-                "-ss", "00:00:01.000",
-                "-vframes", "1",
-                "-vf", "scale=320:-1",
-                "-y",
-                tempThumbnailPath.toString()
-            );
-
-            // Discard stdout/stderr to prevent buffer blocking
-            processBuilder.redirectOutput(ProcessBuilder.Redirect.DISCARD);
-            processBuilder.redirectError(ProcessBuilder.Redirect.DISCARD);
-
-            Process process = processBuilder.start();
-
-            // Wait for FFmpeg process with 30 second timeout
-            boolean completed = process.waitFor(30, java.util.concurrent.TimeUnit.SECONDS);
-
-            if (!completed) {
-                log.warn("FFmpeg thumbnail generation timed out after 30 seconds");
-                process.destroyForcibly();
-                return null;
-            }
-
-            int exitCode = process.exitValue();
-
-            if (exitCode == 0 && Files.exists(tempThumbnailPath)) {
-                byte[] thumbnailBytes = Files.readAllBytes(tempThumbnailPath);
-                log.info("Thumbnail generated successfully, size: {} bytes", thumbnailBytes.length);
-                return thumbnailBytes;
-            } else {
-                log.warn("FFmpeg failed to generate thumbnail, exit code: {}", exitCode);
-                return null;
-            }
-        } catch (Exception e) {
-            log.error("Failed to generate thumbnail: {}", e.getMessage());
-            return null;
-        } finally {
-            // Clean up temporary files
-            try {
-                if (tempVideoPath != null && Files.exists(tempVideoPath)) {
-                    Files.delete(tempVideoPath);
-                }
-                if (tempThumbnailPath != null && Files.exists(tempThumbnailPath)) {
-                    Files.delete(tempThumbnailPath);
-                }
-            } catch (IOException e) {
-                log.error("Failed to delete temporary files: {}", e.getMessage());
-            }
+            Files.deleteIfExists(spillPath);
+        } catch (IOException e) {
+            log.warn("Failed to delete spilled upload file {}: {}", spillPath, e.getMessage());
         }
     }
 
     /**
-     * Generate a thumbnail from video bytes
-     * This version accepts byte array instead of MultipartFile to avoid InputStream exhaustion
-     * @param videoBytes Video file bytes
-     * @param originalFilename Original filename for extension detection
-     * @return Byte array of the thumbnail image (JPEG), or null if failed
+     * Copy an upload to its spill file, computing the SHA-256 content hash in the same pass
+     * @return Hex-encoded SHA-256 of the content
      */
-    private byte[] generateThumbnailFromBytes(byte[] videoBytes, String originalFilename) {
-        Path tempVideoPath = null;
-        Path tempThumbnailPath = null;
+    private String spillAndHash(MultipartFile file, Path spillPath) throws IOException {
+        MessageDigest digest = sha256();
+        try (java.io.InputStream inputStream = new DigestInputStream(file.getInputStream(), digest)) {
+            Files.copy(inputStream, spillPath, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
 
+    private static MessageDigest sha256() {
         try {
-            // Create temporary files
-            String extension = originalFilename != null && originalFilename.contains(".")
-                ? originalFilename.substring(originalFilename.lastIndexOf("."))
-                : ".mp4";
-
-            tempVideoPath = Files.createTempFile("video_", extension);
-            tempThumbnailPath = Files.createTempFile("thumbnail_", ".jpg");
-
-            // Write bytes to temp file
-            Files.write(tempVideoPath, videoBytes);
-            log.info("Video bytes written to temp file: {} ({} bytes)", tempVideoPath, videoBytes.length);
-
-            // Use FFmpeg to extract thumbnail at 1 second
-            // Use -loglevel error to minimize output and prevent buffer issues
-            ProcessBuilder processBuilder = new ProcessBuilder(
-                "ffmpeg",
-                "-loglevel", "error",  // Only output errors, drastically reduces output
-                "-i", tempVideoPath.toString(),
-                "-ss", "00:00:01.000",
-                "-vframes", "1",
-                "-vf", "scale=320:-1",
-                "-y",
-                tempThumbnailPath.toString()
-            );
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
 
-            // Discard stdout/stderr to prevent buffer blocking
-            processBuilder.redirectOutput(ProcessBuilder.Redirect.DISCARD);
-            processBuilder.redirectError(ProcessBuilder.Redirect.DISCARD);
+    /**
+     * Find an existing upload with identical content, whose S3 object and thumbnail can be reused
+     * @return Matching video, or null if the content is new
+     */
+    private Video findDuplicateContent(String contentHash, long fileSize) {
+        return videoRepository.findFirstByContentHashAndFileSize(contentHash, fileSize).orElse(null);
+    }
 
-            Process process = processBuilder.start();
-            log.info("FFmpeg process started for thumbnail generation");
+    /**
+     * Get duration, resolution, bitrate and codec of an upload
+     * Duplicates reuse the metadata of the matching video; new content is probed from the spill file.
+     * @return Metadata, or null if not applicable or extraction failed
+     */
+    private MediaMetadataService.MediaMetadata extractMetadata(Video duplicate, Video.MediaType mediaType, Path spillPath) {
+        if (!mediaMetadataService.supports(mediaType)) {
+            return null;
+        }
+        if (duplicate != null && duplicate.getCodec() != null) {
+            return new MediaMetadataService.MediaMetadata(duplicate.getDuration(), duplicate.getWidth(),
+                    duplicate.getHeight(), duplicate.getBitrate(), duplicate.getCodec());
+        }
+        return mediaMetadataService.probe(spillPath, mediaType);
+    }
 
-            // Wait for FFmpeg process with 30 second timeout
-            boolean completed = process.waitFor(30, java.util.concurrent.TimeUnit.SECONDS);
+    private void applyMetadata(Video.VideoBuilder videoBuilder, MediaMetadataService.MediaMetadata metadata) {
+        if (metadata != null) {
+            videoBuilder.duration(metadata.durationSeconds())
+                    .width(metadata.width())
+                    .height(metadata.height())
+                    .bitrate(metadata.bitrate())
+                    .codec(metadata.codec());
+        }
+    }
 
-            if (!completed) {
-                log.warn("FFmpeg thumbnail generation timed out after 30 seconds");
-                process.destroyForcibly();
-                return null;
-            }
+    /**
+     * Reuse the kiosk rendition and menu image derivatives of a duplicate upload
+     */
+    private void applyRendition(Video.VideoBuilder videoBuilder, Video duplicate) {
+        if (duplicate != null && duplicate.getOptimizedS3Key() != null) {
+            videoBuilder.optimizedS3Key(duplicate.getOptimizedS3Key())
+                    .optimizedFileSize(duplicate.getOptimizedFileSize());
+        }
+        if (duplicate != null && duplicate.getMenuThumbnailS3Key() != null) {
+            videoBuilder.menuThumbnailS3Key(duplicate.getMenuThumbnailS3Key())
+                    .menuDetailS3Key(duplicate.getMenuDetailS3Key())
+                    .menuDetailFileSize(duplicate.getMenuDetailFileSize());
+        }
+    }
 
-            int exitCode = process.exitValue();
-            log.info("FFmpeg process completed with exit code: {}", exitCode);
+    /**
+     * Queue storage objects for deletion unless a video still references them (as file, thumbnail, kiosk rendition or menu derivative)
+     * Deduplicated uploads share objects, so this must run after the referencing row was changed or removed.
+     * @param keys Storage keys that lost a reference (null/empty keys are ignored)
+     */
+    private void deleteUnreferencedObjects(String... keys) {
+        Set<String> candidates = java.util.Arrays.stream(keys)
+                .filter(key -> key != null && !key.isEmpty())
+                .collect(java.util.stream.Collectors.toCollection(java.util.LinkedHashSet::new));
+        if (candidates.isEmpty()) {
+            return;
+        }
 
-            if (exitCode == 0 && Files.exists(tempThumbnailPath)) {
-                byte[] thumbnailBytes = Files.readAllBytes(tempThumbnailPath);
-                log.info("Thumbnail generated successfully, size: {} bytes", thumbnailBytes.length);
-                return thumbnailBytes;
-            } else {
-                log.warn("FFmpeg failed to generate thumbnail, exit code: {}", exitCode);
-                return null;
-            }
-        } catch (Exception e) {
-            log.error("Failed to generate thumbnail from bytes: {}", e.getMessage(), e);
-            return null;
-        } finally {
-            // Clean up temporary files
-            try {
-                if (tempVideoPath != null && Files.exists(tempVideoPath)) {
-                    Files.delete(tempVideoPath);
-                }
-                if (tempThumbnailPath != null && Files.exists(tempThumbnailPath)) {
-                    Files.delete(tempThumbnailPath);
+        // One query for all keys and key columns instead of a count per key and column
+        for (Object[] columns : videoRepository.findKeyColumnsReferencing(candidates)) {
+            for (Object column : columns) {
+                if (column != null) {
+                    candidates.remove(column);
                 }
-            } catch (IOException e) {
-                log.error("Failed to delete temporary files: {}", e.getMessage());
             }
         }
+        storageDeletionQueue.enqueue(candidates);
     }
 
     /**
@@ -279,150 +272,101 @@ public class VideoService {
 
         // Determine mediaType based on contentType (BEFORE duplicate check for better error message)
         String contentType = file.getContentType();
-        Video.MediaType mediaType = Video.MediaType.VIDEO; // default
-        if (contentType != null) {
-            String lowerContentType = contentType.toLowerCase();
-            if (lowerContentType.startsWith("image/")) {
-                mediaType = Video.MediaType.IMAGE;
-            } else if (lowerContentType.startsWith("audio/")) {
-                mediaType = Video.MediaType.AUDIO;
-            } else if (lowerContentType.contains("xml")) {
-                mediaType = Video.MediaType.DOCUMENT;
-            }
-        }
+        Video.MediaType mediaType = detectMediaType(contentType);
 
         // Check for duplicate by original filename (with media-type-specific error message)
         String originalFilename = file.getOriginalFilename();
-        if (originalFilename != null && videoRepository.existsByOriginalFilename(originalFilename)) {
-            String mediaTypeKorean = switch (mediaType) {
-                case VIDEO -> "영상";
-                case IMAGE -> "이미지";
-                case AUDIO -> "음성";
-                case DOCUMENT -> "문서";
-            };
-            log.warn("Duplicate {} file detected: {}", mediaTypeKorean, originalFilename);
-            throw new IllegalArgumentException(
-                String.format("동일한 파일명의 %s이 이미 업로드되어 있습니다: %s", mediaTypeKorean, originalFilename)
-            );
-        }
+        checkDuplicateFilename(originalFilename, mediaType);
 
-        // Read file bytes ONCE to avoid MultipartFile InputStream exhaustion
-        // MultipartFile.getInputStream() can only be read once, so we need to cache the bytes
-        byte[] fileBytes = file.getBytes();
-        log.info("File bytes cached: {} bytes", fileBytes.length);
+        // Determine S3 folder based on media type
+        String s3Folder = storageFolder(Video.VideoType.UPLOAD, mediaType);
 
-        // Generate thumbnail BEFORE S3 upload (using cached bytes)
-        byte[] thumbnailBytes = null;
+        // Spill the upload to local disk ONCE while hashing it; the spill feeds S3, thumbnails and menu processing
+        // This avoids holding the whole file in the heap (MultipartFile.getBytes())
+        Path spillPath = createSpillFile(originalFilename);
         try {
-            // For images, use the original image as thumbnail
-            if (mediaType == Video.MediaType.IMAGE) {
-                thumbnailBytes = fileBytes;
-                log.info("Using original image as thumbnail");
-            } else if (mediaType == Video.MediaType.VIDEO) {
-                // For videos, generate thumbnail using FFmpeg
-                log.info("Generating thumbnail from video bytes...");
-                thumbnailBytes = generateThumbnailFromBytes(fileBytes, file.getOriginalFilename());
-                if (thumbnailBytes != null) {
-                    log.info("Thumbnail generated successfully: {} bytes", thumbnailBytes.length);
-                } else {
-                    log.warn("Thumbnail generation returned null");
-                }
+            String contentHash = spillAndHash(file, spillPath);
+            Video duplicate = findDuplicateContent(contentHash, file.getSize());
+
+            String s3Key;
+            String thumbnailS3Key;
+            String thumbnailUrl;
+            if (duplicate != null) {
+                // Identical content already stored - reuse its S3 object and thumbnail
+                log.info("Duplicate content detected (matches video ID {}), reusing S3 object: {}", duplicate.getId(), duplicate.getS3Key());
+                s3Key = duplicate.getS3Key();
+                thumbnailS3Key = duplicate.getThumbnailS3Key();
+                thumbnailUrl = duplicate.getThumbnailUrl();
             } else {
-                // For audio and documents, no thumbnail needed
-                log.info("{} file detected, skipping thumbnail generation", mediaType);
-            }
-        } catch (Exception e) {
-            log.error("Failed to generate thumbnail, continuing without thumbnail: {}", e.getMessage(), e);
-            thumbnailBytes = null;
-        }
-
-        // Determine S3 folder based on media type
-        String s3Folder = switch (mediaType) {
-            case VIDEO -> VIDEO_UPLOAD_FOLDER;
-            case IMAGE -> IMAGE_UPLOAD_FOLDER;
-            case AUDIO -> AUDIO_UPLOAD_FOLDER;
-            case DOCUMENT -> DOCUMENT_FOLDER;
-        };
-
-        // Upload file to S3 (appropriate folder based on media type)
-        log.info("Uploading {} file to S3 folder: {}", mediaType, s3Folder);
-        String s3Key = s3Service.uploadFile(file, s3Folder);
-        String s3Url = s3Service.getFileUrl(s3Key);
-        log.info("File uploaded to S3: {}", s3Key);
+                log.info("Uploading {} file to S3 folder: {}", mediaType, s3Folder);
+                try (java.io.InputStream inputStream = Files.newInputStream(spillPath)) {
+                    s3Key = mediaStore.uploadStream(inputStream, s3Folder, originalFilename, contentType, null);
+                }
+                log.info("File uploaded to S3: {}", s3Key);
 
-        // Upload thumbnail to S3 if generated
-        String thumbnailS3Key = null;
-        String thumbnailUrl = null;
-        if (thumbnailBytes != null) {
-            try {
-                // Remove file extension and add _thumb with appropriate extension
-                String filenameWithExt = extractFilename(s3Key);
-                int lastDotIndex = filenameWithExt.lastIndexOf(".");
-                String filenameWithoutExt = (lastDotIndex > 0)
-                    ? filenameWithExt.substring(0, lastDotIndex)
-                    : filenameWithExt;
-                String extension = (mediaType == Video.MediaType.IMAGE)
-                    ? filenameWithExt.substring(lastDotIndex)
-                    : ".jpg";
-                String thumbnailFilename = filenameWithoutExt + "_thumb" + extension;
-
-                String thumbContentType = (mediaType == Video.MediaType.IMAGE)
-                    ? contentType
-                    : "image/jpeg";
-                thumbnailS3Key = s3Service.uploadBytes(thumbnailBytes, THUMBNAIL_UPLOAD_FOLDER, thumbnailFilename, thumbContentType);
-                thumbnailUrl = s3Service.getFileUrl(thumbnailS3Key);
-                log.info("Thumbnail uploaded successfully: {}", thumbnailS3Key);
-            } catch (Exception e) {
-                log.error("Failed to upload thumbnail to S3, continuing without thumbnail: {}", e.getMessage(), e);
+                // Thumbnail is generated by the background job queue after the row is saved
+                thumbnailS3Key = null;
+                thumbnailUrl = null;
+            }
+            String s3Url = mediaStore.getFileUrl(s3Key);
+
+            // Save metadata to database with UPLOAD type
+            log.info("Saving video metadata to database...");
+
+            // IMAGE and DOCUMENT types are always downloadable
+            // VIDEO type uses downloadable flag to distinguish between REFERENCE (edit-only) and downloadable
+            boolean isDownloadable = (mediaType == Video.MediaType.IMAGE || mediaType == Video.MediaType.DOCUMENT);
+
+            Video.VideoBuilder videoBuilder = Video.builder()
+                    .videoType(Video.VideoType.UPLOAD)
+                    .mediaType(mediaType)
+                    .filename(truncate(extractFilename(s3Key), MAX_FILENAME_LENGTH))
+                    .originalFilename(truncate(file.getOriginalFilename(), MAX_FILENAME_LENGTH))
+                    .fileSize(file.getSize())
+                    .contentType(file.getContentType())
+                    .contentHash(contentHash)
+                    .s3Key(s3Key)
+                    .s3Url(s3Url)
+                    .thumbnailS3Key(thumbnailS3Key)
+                    .thumbnailUrl(thumbnailUrl)
+                    .uploadedById(uploadedById)
+                    .title(truncate(title, MAX_TITLE_LENGTH))
+                    .description(description) // TEXT column - no limit
+                    .downloadable(isDownloadable); // Auto-set for IMAGE and DOCUMENT
+
+            // Set imagePurpose if provided (for any media type, including XML files)
+            if (imagePurpose != null) {
+                videoBuilder.imagePurpose(imagePurpose);
             }
-        }
 
-        // Save metadata to database with UPLOAD type
-        log.info("Saving video metadata to database...");
+            applyMetadata(videoBuilder, extractMetadata(duplicate, mediaType, spillPath));
+            applyRendition(videoBuilder, duplicate);
 
-        // IMAGE and DOCUMENT types are always downloadable
-        // VIDEO type uses downloadable flag to distinguish between REFERENCE (edit-only) and downloadable
-        boolean isDownloadable = (mediaType == Video.MediaType.IMAGE || mediaType == Video.MediaType.DOCUMENT);
+            log.info("Media type: {}, Auto-downloadable: {}", mediaType, isDownloadable);
 
-        Video.VideoBuilder videoBuilder = Video.builder()
-                .videoType(Video.VideoType.UPLOAD)
-                .mediaType(mediaType)
-                .filename(truncate(extractFilename(s3Key), MAX_FILENAME_LENGTH))
-                .originalFilename(truncate(file.getOriginalFilename(), MAX_FILENAME_LENGTH))
-                .fileSize(file.getSize())
-                .contentType(file.getContentType())
-                .s3Key(s3Key)
-                .s3Url(s3Url)
-                .thumbnailS3Key(thumbnailS3Key)
-                .thumbnailUrl(thumbnailUrl)
-                .uploadedById(uploadedById)
-                .title(truncate(title, MAX_TITLE_LENGTH))
-                .description(description) // TEXT column - no limit
-                .downloadable(isDownloadable); // Auto-set for IMAGE and DOCUMENT
+            Video video = videoBuilder.build();
 
-        // Set imagePurpose if provided (for any media type, including XML files)
-        if (imagePurpose != null) {
-            videoBuilder.imagePurpose(imagePurpose);
-        }
+            Video savedVideo = videoRepository.save(video);
+            log.info("Video uploaded successfully: {} (ID: {}) by user ID {}", savedVideo.getOriginalFilename(), savedVideo.getId(), uploadedById);
 
-        log.info("Media type: {}, Auto-downloadable: {}", mediaType, isDownloadable);
-
-        Video video = videoBuilder.build();
+            // If this is a menu XML file, index its images and videos and mark the images as downloadable
+            if (mediaType == Video.MediaType.DOCUMENT && imagePurpose == Video.ImagePurpose.MENU) {
+                indexMenuXml(savedVideo.getId(), spillPath);
+            }
 
-        Video savedVideo = videoRepository.save(video);
-        log.info("Video uploaded successfully: {} (ID: {}) by user ID {}", savedVideo.getOriginalFilename(), savedVideo.getId(), uploadedById);
+            // Rendition job links the spill file, so it must be queued before the thumbnail job moves it
+            if (transcodeJobService.needsRendition(savedVideo)) {
+                transcodeJobService.enqueue(savedVideo, spillPath);
+            }
 
-        // If this is a menu XML file, extract imageIds and mark them as downloadable
-        if (mediaType == Video.MediaType.DOCUMENT && imagePurpose == Video.ImagePurpose.MENU) {
-            try {
-                markMenuImagesAsDownloadable(fileBytes);
-            } catch (Exception e) {
-                log.error("Failed to mark menu images as downloadable: {}", e.getMessage(), e);
-                // Don't fail the upload, just log the error
+            if (thumbnailS3Key == null && (mediaType == Video.MediaType.IMAGE || mediaType == Video.MediaType.VIDEO)) {
+                thumbnailJobService.enqueue(savedVideo, spillPath, THUMBNAIL_UPLOAD_FOLDER);
             }
-        }
 
-        return savedVideo;
+            return savedVideo;
+        } finally {
+            deleteSpillFile(spillPath);
+        }
     }
 
     /**
@@ -479,95 +423,75 @@ public class VideoService {
                 throw new IllegalArgumentException("Unsupported media type: " + mediaType);
         }
 
-        // Read file bytes ONCE to avoid MultipartFile InputStream exhaustion
-        byte[] fileBytes = file.getBytes();
-        log.info("AI content file bytes cached: {} bytes", fileBytes.length);
-
-        // Generate thumbnail BEFORE S3 upload (for images and videos only)
-        byte[] thumbnailBytes = null;
-        if (thumbnailFolder != null) {
-            try {
-                // For images, use the original image as thumbnail
-                if (mediaType == Video.MediaType.IMAGE) {
-                    thumbnailBytes = fileBytes;
-                    log.info("Using original image as thumbnail for AI content");
-                } else if (mediaType == Video.MediaType.VIDEO) {
-                    // For videos, generate thumbnail using FFmpeg
-                    log.info("Generating thumbnail from AI video bytes...");
-                    thumbnailBytes = generateThumbnailFromBytes(fileBytes, file.getOriginalFilename());
-                    if (thumbnailBytes != null) {
-                        log.info("AI video thumbnail generated successfully: {} bytes", thumbnailBytes.length);
-                    } else {
-                        log.warn("AI video thumbnail generation returned null");
-                    }
+        // Spill content to local disk ONCE while hashing it; the spill feeds S3 and the thumbnail job
+        Path spillPath = createSpillFile(originalFilename);
+        try {
+            String contentHash = spillAndHash(file, spillPath);
+            Video duplicate = findDuplicateContent(contentHash, file.getSize());
+
+            String s3Key;
+            String thumbnailS3Key = null;
+            String thumbnailUrl = null;
+            if (duplicate != null) {
+                // Identical content already stored - reuse its S3 object and thumbnail
+                log.info("Duplicate AI content detected (matches video ID {}), reusing S3 object: {}", duplicate.getId(), duplicate.getS3Key());
+                s3Key = duplicate.getS3Key();
+                thumbnailS3Key = duplicate.getThumbnailS3Key();
+                thumbnailUrl = duplicate.getThumbnailUrl();
+            } else {
+                log.info("Uploading AI content to S3...");
+                try (java.io.InputStream inputStream = Files.newInputStream(spillPath)) {
+                    s3Key = mediaStore.uploadStream(inputStream, s3Folder, originalFilename, file.getContentType(), null);
                 }
-            } catch (Exception e) {
-                log.error("Failed to generate AI content thumbnail, continuing without thumbnail: {}", e.getMessage(), e);
-                thumbnailBytes = null;
+                log.info("AI content uploaded to S3: {}", s3Key);
             }
-        }
-
-        // Upload content to S3
-        log.info("Uploading AI content to S3...");
-        String s3Key = s3Service.uploadFile(file, s3Folder);
-        String s3Url = s3Service.getFileUrl(s3Key);
-        log.info("AI content uploaded to S3: {}", s3Key);
-
-        // Upload thumbnail to S3 if generated
-        String thumbnailS3Key = null;
-        String thumbnailUrl = null;
-        if (thumbnailBytes != null) {
-            try {
-                // Remove file extension and add _thumb with appropriate extension
-                String filenameWithExt = extractFilename(s3Key);
-                int lastDotIndex = filenameWithExt.lastIndexOf(".");
-                String filenameWithoutExt = (lastDotIndex > 0)
-                    ? filenameWithExt.substring(0, lastDotIndex)
-                    : filenameWithExt;
-                String extension = (mediaType == Video.MediaType.IMAGE)
-                    ? filenameWithExt.substring(lastDotIndex)
-                    : ".jpg";
-                String thumbnailFilename = filenameWithoutExt + "_thumb" + extension;
-
-                String thumbContentType = (mediaType == Video.MediaType.IMAGE)
-                    ? file.getContentType()
-                    : "image/jpeg";
-                thumbnailS3Key = s3Service.uploadBytes(thumbnailBytes, thumbnailFolder, thumbnailFilename, thumbContentType);
-                thumbnailUrl = s3Service.getFileUrl(thumbnailS3Key);
-                log.info("AI content thumbnail uploaded successfully: {}", thumbnailS3Key);
-            } catch (Exception e) {
-                log.error("Failed to upload AI content thumbnail to S3, continuing without thumbnail: {}", e.getMessage(), e);
+            String s3Url = mediaStore.getFileUrl(s3Key);
+
+            // Save metadata to database with AI_GENERATED type
+            log.info("Saving AI content metadata to database...");
+            Video.VideoBuilder videoBuilder = Video.builder()
+                    .videoType(Video.VideoType.AI_GENERATED)
+                    .mediaType(mediaType)
+                    .filename(truncate(extractFilename(s3Key), MAX_FILENAME_LENGTH))
+                    .originalFilename(truncate(file.getOriginalFilename(), MAX_FILENAME_LENGTH))
+                    .fileSize(file.getSize())
+                    .contentType(file.getContentType())
+                    .contentHash(contentHash)
+                    .s3Key(s3Key)
+                    .s3Url(s3Url)
+                    .thumbnailS3Key(thumbnailS3Key)
+                    .thumbnailUrl(thumbnailUrl)
+                    .uploadedById(uploadedById)
+                    .title(truncate(title, MAX_TITLE_LENGTH))
+                    .description(description); // TEXT column - no limit
+
+            applyMetadata(videoBuilder, extractMetadata(duplicate, mediaType, spillPath));
+            applyRendition(videoBuilder, duplicate);
+
+            // Set imagePurpose if provided (for any media type, including XML files)
+            if (imagePurpose != null) {
+                videoBuilder.imagePurpose(imagePurpose);
             }
-        }
 
-        // Save metadata to database with AI_GENERATED type
-        log.info("Saving AI content metadata to database...");
-        Video.VideoBuilder videoBuilder = Video.builder()
-                .videoType(Video.VideoType.AI_GENERATED)
-                .mediaType(mediaType)
-                .filename(truncate(extractFilename(s3Key), MAX_FILENAME_LENGTH))
-                .originalFilename(truncate(file.getOriginalFilename(), MAX_FILENAME_LENGTH))
-                .fileSize(file.getSize())
-                .contentType(file.getContentType())
-                .s3Key(s3Key)
-                .s3Url(s3Url)
-                .thumbnailS3Key(thumbnailS3Key)
-                .thumbnailUrl(thumbnailUrl)
-                .uploadedById(uploadedById)
-                .title(truncate(title, MAX_TITLE_LENGTH))
-                .description(description); // TEXT column - no limit
+            Video video = videoBuilder.build();
 
-        // Set imagePurpose if provided (for any media type, including XML files)
-        if (imagePurpose != null) {
-            videoBuilder.imagePurpose(imagePurpose);
-        }
+            Video savedVideo = videoRepository.save(video);
+            log.info("AI-generated {} uploaded successfully: {} (ID: {}) by user ID {}", mediaType, savedVideo.getOriginalFilename(), savedVideo.getId(), uploadedById);
 
-        Video video = videoBuilder.build();
+            // Rendition job links the spill file, so it must be queued before the thumbnail job moves it
+            if (transcodeJobService.needsRendition(savedVideo)) {
+                transcodeJobService.enqueue(savedVideo, spillPath);
+            }
 
-        Video savedVideo = videoRepository.save(video);
-        log.info("AI-generated {} uploaded successfully: {} (ID: {}) by user ID {}", mediaType, savedVideo.getOriginalFilename(), savedVideo.getId(), uploadedById);
+            // Thumbnails for images and videos only, generated by the background job queue
+            if (thumbnailFolder != null && thumbnailS3Key == null) {
+                thumbnailJobService.enqueue(savedVideo, spillPath, thumbnailFolder);
+            }
 
-        return savedVideo;
+            return savedVideo;
+        } finally {
+            deleteSpillFile(spillPath);
+        }
     }
 
     /**
@@ -629,17 +553,42 @@ public class VideoService {
         String extension = contentType.contains("png") ? ".png" : ".jpg";
         String filename = "runway_" + timestamp + extension;
 
-        // Upload image to S3 (AI folder since it's AI-generated)
-        log.info("Uploading Runway image to S3...");
-        String s3Key = s3Service.uploadBytes(imageBytes, IMAGE_AI_FOLDER, filename, contentType);
-        String s3Url = s3Service.getFileUrl(s3Key);
-        log.info("Image uploaded to S3: {}", s3Key);
+        String contentHash = HexFormat.of().formatHex(sha256().digest(imageBytes));
+        Video duplicate = findDuplicateContent(contentHash, fileSize);
 
-        // For images, use the original image as thumbnail
-        String thumbnailFilename = filename.replace(extension, "_thumb" + extension);
-        String thumbnailS3Key = s3Service.uploadBytes(imageBytes, THUMBNAIL_AI_FOLDER, thumbnailFilename, contentType);
-        String thumbnailUrl = s3Service.getFileUrl(thumbnailS3Key);
-        log.info("Thumbnail uploaded to S3: {}", thumbnailS3Key);
+        String s3Key;
+        String thumbnailS3Key;
+        if (duplicate != null) {
+            // Identical content already stored - reuse its S3 object and thumbnail
+            log.info("Duplicate content detected (matches video ID {}), reusing S3 object: {}", duplicate.getId(), duplicate.getS3Key());
+            s3Key = duplicate.getS3Key();
+            thumbnailS3Key = duplicate.getThumbnailS3Key();
+        } else {
+            // Upload image (AI folder since it's AI-generated) and its thumbnail to S3 concurrently
+            log.info("Uploading Runway image and thumbnail to S3...");
+            ThumbnailService.Thumbnail thumbnail = thumbnailService.generateImageThumbnail(imageBytes, filename, contentType);
+            java.util.concurrent.CompletableFuture<String> imageUpload = mediaStore.uploadBytesAsync(
+                    imageBytes, mediaStore.newObjectKey(IMAGE_AI_FOLDER, filename), contentType);
+            java.util.concurrent.CompletableFuture<String> thumbnailUpload = mediaStore.uploadBytesAsync(
+                    thumbnail.bytes(), mediaStore.newObjectKey(THUMBNAIL_AI_FOLDER, thumbnail.filename()), thumbnail.contentType());
+
+            try {
+                java.util.concurrent.CompletableFuture.allOf(imageUpload, thumbnailUpload).join();
+            } catch (java.util.concurrent.CompletionException e) {
+                // Both uploads have finished; the one that succeeded would be orphaned.
+                // IOException does not roll back the transaction, so the queued key is deleted after commit.
+                storageDeletionQueue.enqueue(java.util.stream.Stream.of(imageUpload, thumbnailUpload)
+                        .filter(upload -> !upload.isCompletedExceptionally())
+                        .map(java.util.concurrent.CompletableFuture::join)
+                        .toList());
+                throw new IOException("Failed to upload Runway image to S3: " + e.getCause().getMessage(), e.getCause());
+            }
+            s3Key = imageUpload.join();
+            thumbnailS3Key = thumbnailUpload.join();
+        }
+        String s3Url = mediaStore.getFileUrl(s3Key);
+        String thumbnailUrl = thumbnailS3Key != null ? mediaStore.getFileUrl(thumbnailS3Key) : null;
+        log.info("Image stored in S3: {}, thumbnail: {}", s3Key, thumbnailS3Key);
 
         // Save metadata to database with AI_GENERATED type
         log.info("Saving Runway image metadata to database...");
@@ -650,6 +599,7 @@ public class VideoService {
                 .originalFilename(truncate(filename, MAX_FILENAME_LENGTH))
                 .fileSize(fileSize)
                 .contentType(contentType)
+                .contentHash(contentHash)
                 .s3Key(s3Key)
                 .s3Url(s3Url)
                 .thumbnailS3Key(thumbnailS3Key)
@@ -733,6 +683,15 @@ public class VideoService {
                 .orElseThrow(() -> new RuntimeException("Video not found with id: " + id));
     }
 
+    /**
+     * Get videos by IDs in a single query (missing IDs are skipped)
+     * @param ids Video IDs
+     * @return Videos found
+     */
+    public List<Video> getVideosByIds(Collection<Long> ids) {
+        return videoRepository.findAllById(ids);
+    }
+
     /**
      * Download video file content from S3
      * @param id Video ID
@@ -740,7 +699,7 @@ public class VideoService {
      */
     public byte[] downloadVideoFile(Long id) {
         Video video = getVideoById(id);
-        return s3Service.downloadFile(video.getS3Key());
+        return mediaStore.downloadFile(video.getS3Key());
     }
 
     /**
@@ -751,7 +710,62 @@ public class VideoService {
      */
     public String generatePresignedUrl(Long id, int durationMinutes) {
         Video video = getVideoById(id);
-        return s3Service.generatePresignedUrl(video.getS3Key(), durationMinutes);
+        return mediaStore.generatePresignedUrl(video.getS3Key(), durationMinutes);
+    }
+
+    /**
+     * Get the storage key kiosks download for a video
+     * @param video Video entity
+     * @return Key of the fast-start kiosk rendition or menu detail image if one exists, otherwise the original file
+     */
+    public static String kioskMediaKey(Video video) {
+        return kioskMediaKey(video, false);
+    }
+
+    /**
+     * Get the storage key kiosks download for a video
+     * @param video Video entity
+     * @param menuImage Whether the kiosk received the file through a menu (MENU_IMAGE assignment)
+     * @return Key of the menu detail image for menu images, of the fast-start kiosk rendition if one exists,
+     *         otherwise of the original file
+     */
+    public static String kioskMediaKey(Video video, boolean menuImage) {
+        if (usesMenuDerivatives(video, menuImage)) {
+            return video.getMenuDetailS3Key();
+        }
+        return video.getOptimizedS3Key() != null ? video.getOptimizedS3Key() : video.getS3Key();
+    }
+
+    /**
+     * Get the size of the file kiosks download for a video
+     * @param video Video entity
+     * @param menuImage Whether the kiosk received the file through a menu (MENU_IMAGE assignment)
+     * @return Size of the file returned by {@link #kioskMediaKey(Video, boolean)}
+     */
+    public static Long kioskMediaFileSize(Video video, boolean menuImage) {
+        if (usesMenuDerivatives(video, menuImage) && video.getMenuDetailFileSize() != null) {
+            return video.getMenuDetailFileSize();
+        }
+        return video.getOptimizedS3Key() != null && video.getOptimizedFileSize() != null
+                ? video.getOptimizedFileSize() : video.getFileSize();
+    }
+
+    /**
+     * Get the thumbnail key kiosks use for a video
+     * @param video Video entity
+     * @param menuImage Whether the kiosk received the file through a menu (MENU_IMAGE assignment)
+     * @return Key of the 300x300 menu thumbnail for menu images, otherwise of the regular thumbnail (may be null)
+     */
+    public static String kioskThumbnailKey(Video video, boolean menuImage) {
+        return usesMenuDerivatives(video, menuImage) ? video.getMenuThumbnailS3Key() : video.getThumbnailS3Key();
+    }
+
+    /**
+     * Menu derivatives replace the original for MENU-purpose images and for images assigned through a menu
+     */
+    private static boolean usesMenuDerivatives(Video video, boolean menuImage) {
+        return video.getMenuDetailS3Key() != null
+                && (menuImage || video.getImagePurpose() == Video.ImagePurpose.MENU);
     }
 
     /**
@@ -765,7 +779,45 @@ public class VideoService {
         if (video.getThumbnailS3Key() == null || video.getThumbnailS3Key().isEmpty()) {
             return null;
         }
-        return s3Service.generatePresignedUrl(video.getThumbnailS3Key(), durationMinutes);
+        return mediaStore.generatePresignedUrl(video.getThumbnailS3Key(), durationMinutes);
+    }
+
+    /**
+     * Generate presigned URLs for the media files and thumbnails of many videos in one call
+     * Avoids a getVideoById lookup and a separate signature per element in list endpoints
+     * @param videos Videos to sign
+     * @param durationMinutes Duration in minutes for which the URLs are valid
+     * @return Map of S3 key (media, kiosk rendition, menu derivative or thumbnail) to presigned URL
+     */
+    public Map<String, String> generatePresignedUrls(Collection<Video> videos, int durationMinutes) {
+        return generatePresignedUrls(videos, durationMinutes, video -> true);
+    }
+
+    /**
+     * Generate presigned URLs for thumbnails of all videos and for the media files of videos matching a filter
+     * @param videos Videos to sign
+     * @param durationMinutes Duration in minutes for which the URLs are valid
+     * @param includeMedia Which videos also need their media file signed (thumbnails are always signed)
+     * @return Map of S3 key (media, kiosk rendition, menu derivative or thumbnail) to presigned URL
+     */
+    public Map<String, String> generatePresignedUrls(Collection<Video> videos, int durationMinutes, Predicate<Video> includeMedia) {
+        List<String> s3Keys = new ArrayList<>(videos.size() * 2);
+        for (Video video : videos) {
+            if (includeMedia.test(video)) {
+                s3Keys.add(video.getS3Key());
+                if (video.getOptimizedS3Key() != null) {
+                    s3Keys.add(video.getOptimizedS3Key());
+                }
+                if (video.getMenuDetailS3Key() != null) {
+                    s3Keys.add(video.getMenuDetailS3Key());
+                }
+            }
+            s3Keys.add(video.getThumbnailS3Key());
+            if (video.getMenuThumbnailS3Key() != null) {
+                s3Keys.add(video.getMenuThumbnailS3Key());
+            }
+        }
+        return mediaStore.generatePresignedUrls(s3Keys, durationMinutes);
     }
 
     /**
@@ -800,27 +852,13 @@ public class VideoService {
             throw new RuntimeException("Failed to delete kiosk-video mappings", e);
         }
 
-        // Delete from S3
-        try {
-            s3Service.deleteFile(video.getS3Key());
-        } catch (Exception e) {
-            log.error("Failed to delete file from S3: {}", video.getS3Key(), e);
-            throw new RuntimeException("Failed to delete video file from storage", e);
-        }
-
-        // Delete thumbnail from S3 if exists
-        if (video.getThumbnailS3Key() != null && !video.getThumbnailS3Key().isEmpty()) {
-            try {
-                s3Service.deleteFile(video.getThumbnailS3Key());
-                log.info("Deleted thumbnail from S3: {}", video.getThumbnailS3Key());
-            } catch (Exception e) {
-                log.warn("Failed to delete thumbnail from S3: {}", video.getThumbnailS3Key(), e);
-                // Don't throw exception for thumbnail deletion failure
-            }
-        }
-
-        // Delete from database
+        // Delete from database, then queue the file and its thumbnail for deletion from storage
+        // The queue is persisted in this transaction and flushed in batches after commit
         videoRepository.deleteById(id);
+        deleteUnreferencedObjects(video.getS3Key(), video.getThumbnailS3Key(), video.getOptimizedS3Key(),
+                video.getMenuThumbnailS3Key(), video.getMenuDetailS3Key());
+        menuAssetRefRepository.deleteByMenuId(id);
+        evictMenuCaches(id);
         log.info("Video deleted successfully: {} by user ID {}", video.getOriginalFilename(), requestingUserId);
     }
 
@@ -865,6 +903,7 @@ public class VideoService {
             }
         }
         Video updatedVideo = videoRepository.save(video);
+        evictMenuCaches(id);
         log.info("Video updated: {} by user ID {}", id, requestingUserId);
 
         return updatedVideo;
@@ -945,152 +984,15 @@ public class VideoService {
             throw new RuntimeException("Cannot generate thumbnail for audio files");
         }
 
-        // Check if the file is an image (use the original image as thumbnail instead)
-        if (video.getMediaType() == Video.MediaType.IMAGE) {
-            log.info("Video ID {} is an image, using original as thumbnail", id);
-            try {
-                // Download image from S3
-                byte[] imageBytes = s3Service.downloadFile(video.getS3Key());
-
-                // Delete old thumbnail from S3 if exists
-                if (video.getThumbnailS3Key() != null) {
-                    try {
-                        s3Service.deleteFile(video.getThumbnailS3Key());
-                    } catch (Exception e) {
-                        log.warn("Failed to delete old thumbnail from S3: {}", video.getThumbnailS3Key(), e);
-                    }
-                }
-
-                // Upload new thumbnail to S3 (same as original for images)
-                String filenameWithExt = extractFilename(video.getS3Key());
-                int lastDotIndex = filenameWithExt.lastIndexOf(".");
-                String filenameWithoutExt = (lastDotIndex > 0)
-                    ? filenameWithExt.substring(0, lastDotIndex)
-                    : filenameWithExt;
-                String extension = (lastDotIndex > 0) ? filenameWithExt.substring(lastDotIndex) : ".jpg";
-                String thumbnailFilename = filenameWithoutExt + "_thumb" + extension;
-
-                String thumbnailS3Key = s3Service.uploadBytes(imageBytes, THUMBNAIL_UPLOAD_FOLDER, thumbnailFilename, contentType);
-                String thumbnailUrl = s3Service.getFileUrl(thumbnailS3Key);
-
-                // Update video entity
-                video.setThumbnailS3Key(thumbnailS3Key);
-                video.setThumbnailUrl(thumbnailUrl);
-
-                Video updatedVideo = videoRepository.save(video);
-                log.info("Thumbnail regenerated successfully for image: {} by user ID {}", id, requestingUserId);
-                return updatedVideo;
-            } catch (Exception e) {
-                log.error("Failed to regenerate thumbnail for image: {}", id, e);
-                throw new RuntimeException("Failed to regenerate thumbnail: " + e.getMessage());
-            }
-        }
-
         try {
-            // Download video from S3
-            byte[] videoBytes = s3Service.downloadFile(video.getS3Key());
-
-            // Create temp file for video with proper extension
-            String extension = video.getOriginalFilename() != null && video.getOriginalFilename().contains(".")
-                ? video.getOriginalFilename().substring(video.getOriginalFilename().lastIndexOf("."))
-                : ".mp4";
-
-            Path tempVideoPath = Files.createTempFile("video_", extension);
-            Files.write(tempVideoPath, videoBytes);
-
-            // Generate new thumbnail
-            Path tempThumbnailPath = Files.createTempFile("thumbnail_", ".jpg");
-
-            // Convert paths to absolute strings for FFmpeg (Windows-compatible)
-            // Use forward slashes for FFmpeg compatibility on Windows
-            String videoPathStr = tempVideoPath.toAbsolutePath().toString().replace("\\", "/");
-            String thumbnailPathStr = tempThumbnailPath.toAbsolutePath().toString().replace("\\", "/");
-
-            log.info("Regenerating thumbnail - Video path: {}, Thumbnail path: {}", videoPathStr, thumbnailPathStr);
-
-            // Use -loglevel error to minimize output and prevent buffer issues
-            ProcessBuilder processBuilder = new ProcessBuilder(
-                "ffmpeg",
-                "-loglevel", "error",  // Only output errors
-                "-ss", "00:00:00.100",  // Seek to 0.1 second (works better for short videos)
-                "-i", videoPathStr,
-                "-vframes", "1",
-                "-vf", "scale=320:-1",
-                "-q:v", "2",  // High quality JPEG (scale 2-31, 2 is best)
-                "-y",
-                thumbnailPathStr
-            );
-
-            // Capture stderr to log FFmpeg errors
-            processBuilder.redirectOutput(ProcessBuilder.Redirect.DISCARD);
-            Process process = processBuilder.start();
-
-            // Capture stderr for error logging
-            StringBuilder errorOutput = new StringBuilder();
-            try (java.io.BufferedReader errorReader = new java.io.BufferedReader(
-                    new java.io.InputStreamReader(process.getErrorStream()))) {
-                String line;
-                while ((line = errorReader.readLine()) != null) {
-                    errorOutput.append(line).append("\n");
-                }
-            }
-
-            // Wait for FFmpeg process with 30 second timeout
-            boolean completed = process.waitFor(30, java.util.concurrent.TimeUnit.SECONDS);
-
-            if (!completed) {
-                log.warn("FFmpeg thumbnail regeneration timed out after 30 seconds");
-                process.destroyForcibly();
-                throw new RuntimeException("FFmpeg thumbnail regeneration timed out");
-            }
-
-            int exitCode = process.exitValue();
-
-            if (exitCode != 0 || !Files.exists(tempThumbnailPath)) {
-                String errorMsg = errorOutput.toString().trim();
-                log.error("FFmpeg failed - Exit code: {}, Thumbnail exists: {}, Error output: {}",
-                         exitCode, Files.exists(tempThumbnailPath), errorMsg);
-                throw new RuntimeException("Failed to generate thumbnail with FFmpeg, exit code: " + exitCode +
-                                         (errorMsg.isEmpty() ? "" : ", error: " + errorMsg));
-            }
-
-            byte[] thumbnailBytes = Files.readAllBytes(tempThumbnailPath);
-
-            // Delete old thumbnail from S3 if exists
-            if (video.getThumbnailS3Key() != null) {
-                try {
-                    s3Service.deleteFile(video.getThumbnailS3Key());
-                } catch (Exception e) {
-                    log.warn("Failed to delete old thumbnail from S3: {}", video.getThumbnailS3Key(), e);
-                }
-            }
-
-            // Upload new thumbnail to S3
-            String filenameWithExt = extractFilename(video.getS3Key());
-            int lastDotIndex = filenameWithExt.lastIndexOf(".");
-            String filenameWithoutExt = (lastDotIndex > 0)
-                ? filenameWithExt.substring(0, lastDotIndex)
-                : filenameWithExt;
-            String thumbnailFilename = filenameWithoutExt + "_thumb.jpg";
-
-            String thumbnailS3Key = s3Service.uploadBytes(thumbnailBytes, THUMBNAIL_UPLOAD_FOLDER, thumbnailFilename, "image/jpeg");
-            String thumbnailUrl = s3Service.getFileUrl(thumbnailS3Key);
-
-            // Update video entity
-            video.setThumbnailS3Key(thumbnailS3Key);
-            video.setThumbnailUrl(thumbnailUrl);
-
-            Video updatedVideo = videoRepository.save(video);
-            log.info("Thumbnail regenerated successfully for video: {} by user ID {}", id, requestingUserId);
-
-            // Clean up temp files
-            try {
-                Files.deleteIfExists(tempVideoPath);
-                Files.deleteIfExists(tempThumbnailPath);
-            } catch (IOException e) {
-                log.warn("Failed to delete temporary files", e);
-            }
-
+            // Images are scaled in-process; for videos FFmpeg reads the local content cache copy,
+            // or the object streamed through stdin
+            ThumbnailService.Thumbnail thumbnail = thumbnailService.generateThumbnail(
+                    video.getMediaType(), video.getS3Key(), contentType);
+
+            Video updatedVideo = replaceThumbnail(video, thumbnail);
+            log.info("Thumbnail regenerated successfully for {}: {} by user ID {}",
+                    video.getMediaType(), id, requestingUserId);
             return updatedVideo;
         } catch (Exception e) {
             log.error("Failed to regenerate thumbnail for video: {}", id, e);
@@ -1098,6 +1000,46 @@ public class VideoService {
         }
     }
 
+    /**
+     * Upload a new thumbnail, point the video at it and queue the old one for deletion
+     * @param video Video whose thumbnail is being replaced
+     * @param thumbnail New thumbnail
+     * @return Updated Video entity
+     */
+    private Video replaceThumbnail(Video video, ThumbnailService.Thumbnail thumbnail) {
+        String oldThumbnailS3Key = video.getThumbnailS3Key();
+        String thumbnailS3Key = thumbnailService.storeThumbnail(thumbnail, THUMBNAIL_UPLOAD_FOLDER);
+
+        // Update video entity
+        video.setThumbnailS3Key(thumbnailS3Key);
+        video.setThumbnailUrl(mediaStore.getFileUrl(thumbnailS3Key));
+        Video updatedVideo = videoRepository.save(video);
+
+        deleteUnreferencedObjects(oldThumbnailS3Key);
+        return updatedVideo;
+    }
+
+    /**
+     * Store a regenerated thumbnail and release the old one, without touching the other columns of the video
+     * Used by batch jobs whose entity may be stale by the time the thumbnail is ready.
+     * @param video Video whose thumbnail was regenerated
+     * @param thumbnail New thumbnail
+     * @return true if the video still exists
+     */
+    @CacheEvict(cacheNames = "videos", key = "#video.id")
+    public boolean storeRegeneratedThumbnail(Video video, ThumbnailService.Thumbnail thumbnail) {
+        String thumbnailFolder = video.getVideoType() == Video.VideoType.AI_GENERATED ? THUMBNAIL_AI_FOLDER : THUMBNAIL_UPLOAD_FOLDER;
+        String thumbnailS3Key = thumbnailService.storeThumbnail(thumbnail, thumbnailFolder);
+
+        if (videoRepository.updateThumbnail(video.getId(), thumbnailS3Key, mediaStore.getFileUrl(thumbnailS3Key)) == 0) {
+            // Video deleted in the meantime
+            storageDeletionQueue.enqueue(List.of(thumbnailS3Key));
+            return false;
+        }
+        deleteUnreferencedObjects(video.getThumbnailS3Key());
+        return true;
+    }
+
     /**
      * Validate uploaded file
      * @param file File to validate
@@ -1106,24 +1048,174 @@ public class VideoService {
         if (file == null || file.isEmpty()) {
             throw new IllegalArgumentException("File is empty");
         }
+        validateFile(file.getOriginalFilename(), file.getContentType(), file.getSize(), MAX_FILE_SIZE);
+    }
 
-        if (file.getSize() > MAX_FILE_SIZE) {
+    private void validateFile(String originalFilename, String contentType, long fileSize, long maxFileSize) {
+        if (fileSize > maxFileSize) {
             throw new IllegalArgumentException(
-                    String.format("File size exceeds maximum allowed size of %d MB", MAX_FILE_SIZE / 1024 / 1024));
+                    String.format("File size exceeds maximum allowed size of %d MB", maxFileSize / 1024 / 1024));
         }
 
-        String contentType = file.getContentType();
         if (contentType == null || !ALLOWED_CONTENT_TYPES.contains(contentType.toLowerCase())) {
             throw new IllegalArgumentException(
                     "Invalid file type. Allowed types: " + String.join(", ", ALLOWED_CONTENT_TYPES));
         }
 
-        String originalFilename = file.getOriginalFilename();
         if (originalFilename == null || originalFilename.trim().isEmpty()) {
             throw new IllegalArgumentException("File name is required");
         }
     }
 
+    /**
+     * Reject an upload whose original filename is already used (with media-type-specific error message)
+     */
+    private void checkDuplicateFilename(String originalFilename, Video.MediaType mediaType) {
+        if (originalFilename != null && videoRepository.existsByOriginalFilename(originalFilename)) {
+            String mediaTypeKorean = switch (mediaType) {
+                case VIDEO -> "영상";
+                case IMAGE -> "이미지";
+                case AUDIO -> "음성";
+                case DOCUMENT -> "문서";
+            };
+            log.warn("Duplicate {} file detected: {}", mediaTypeKorean, originalFilename);
+            throw new IllegalArgumentException(
+                String.format("동일한 파일명의 %s이 이미 업로드되어 있습니다: %s", mediaTypeKorean, originalFilename)
+            );
+        }
+    }
+
+    /**
+     * Determine the media type of an upload from its content type
+     * @param contentType Content type of the upload
+     * @return IMAGE, AUDIO or DOCUMENT by content type, VIDEO otherwise
+     */
+    public static Video.MediaType detectMediaType(String contentType) {
+        if (contentType != null) {
+            String lowerContentType = contentType.toLowerCase();
+            if (lowerContentType.startsWith("image/")) {
+                return Video.MediaType.IMAGE;
+            } else if (lowerContentType.startsWith("audio/")) {
+                return Video.MediaType.AUDIO;
+            } else if (lowerContentType.contains("xml")) {
+                return Video.MediaType.DOCUMENT;
+            }
+        }
+        return Video.MediaType.VIDEO;
+    }
+
+    /**
+     * Get the storage folder for new content
+     * @param videoType UPLOAD or AI_GENERATED
+     * @param mediaType Media type of the content
+     * @return Storage folder (e.g., "videos/uploads/")
+     */
+    public String storageFolder(Video.VideoType videoType, Video.MediaType mediaType) {
+        boolean aiGenerated = videoType == Video.VideoType.AI_GENERATED;
+        return switch (mediaType) {
+            case VIDEO -> aiGenerated ? VIDEO_AI_FOLDER : VIDEO_UPLOAD_FOLDER;
+            case IMAGE -> aiGenerated ? IMAGE_AI_FOLDER : IMAGE_UPLOAD_FOLDER;
+            case AUDIO -> aiGenerated ? AUDIO_AI_FOLDER : AUDIO_UPLOAD_FOLDER;
+            case DOCUMENT -> DOCUMENT_FOLDER;
+        };
+    }
+
+    /**
+     * Validate a resumable upload before any content is received
+     * @param originalFilename Original filename
+     * @param contentType Content type of the file
+     * @param fileSize Declared file size in bytes
+     * @param maxFileSize Size limit for resumable uploads
+     * @param title Title of the video
+     * @param description Description of the video
+     * @param mediaType Media type of the file
+     */
+    public void validateResumableUpload(String originalFilename, String contentType, long fileSize, long maxFileSize,
+                                        String title, String description, Video.MediaType mediaType) {
+        if (fileSize <= 0) {
+            throw new IllegalArgumentException("File is empty");
+        }
+        validateFile(originalFilename, contentType, fileSize, maxFileSize);
+
+        if (title == null || title.trim().isEmpty()) {
+            throw new IllegalArgumentException("Title is required");
+        }
+        if (description == null || description.trim().isEmpty()) {
+            throw new IllegalArgumentException("Description is required");
+        }
+        checkDuplicateFilename(originalFilename, mediaType);
+    }
+
+    /**
+     * Create the video row for a completed resumable upload
+     * The content is already stored under the session's storage key; a local copy is used for hashing,
+     * metadata extraction and the thumbnail/rendition jobs, exactly like a regular upload.
+     * @param session Completed upload session
+     * @param localFile Local copy of the uploaded content (moved or deleted by the background jobs)
+     * @param contentHash Hex-encoded SHA-256 of the content
+     * @return Saved Video entity
+     */
+    @Transactional
+    public Video saveResumableUpload(UploadSession session, Path localFile, String contentHash) {
+        Video.MediaType mediaType = session.getMediaType();
+        Video duplicate = findDuplicateContent(contentHash, session.getFileSize());
+
+        String s3Key = session.getStorageKey();
+        String thumbnailS3Key = null;
+        String thumbnailUrl = null;
+        if (duplicate != null) {
+            // Identical content already stored - reuse its object and drop the one just assembled
+            log.info("Duplicate content detected (matches video ID {}), reusing S3 object: {}", duplicate.getId(), duplicate.getS3Key());
+            s3Key = duplicate.getS3Key();
+            thumbnailS3Key = duplicate.getThumbnailS3Key();
+            thumbnailUrl = duplicate.getThumbnailUrl();
+            storageDeletionQueue.enqueue(List.of(session.getStorageKey()));
+        }
+
+        // Same rule as uploadVideo: uploaded IMAGE and DOCUMENT types are always downloadable
+        boolean isDownloadable = session.getVideoType() == Video.VideoType.UPLOAD
+                && (mediaType == Video.MediaType.IMAGE || mediaType == Video.MediaType.DOCUMENT);
+
+        Video.VideoBuilder videoBuilder = Video.builder()
+                .videoType(session.getVideoType())
+                .mediaType(mediaType)
+                .filename(truncate(extractFilename(s3Key), MAX_FILENAME_LENGTH))
+                .originalFilename(truncate(session.getOriginalFilename(), MAX_FILENAME_LENGTH))
+                .fileSize(session.getFileSize())
+                .contentType(session.getContentType())
+                .contentHash(contentHash)
+                .s3Key(s3Key)
+                .s3Url(mediaStore.getFileUrl(s3Key))
+                .thumbnailS3Key(thumbnailS3Key)
+                .thumbnailUrl(thumbnailUrl)
+                .uploadedById(session.getUploadedById())
+                .title(truncate(session.getTitle(), MAX_TITLE_LENGTH))
+                .description(session.getDescription())
+                .downloadable(isDownloadable);
+        if (session.getImagePurpose() != null) {
+            videoBuilder.imagePurpose(session.getImagePurpose());
+        }
+        applyMetadata(videoBuilder, extractMetadata(duplicate, mediaType, localFile));
+        applyRendition(videoBuilder, duplicate);
+
+        Video savedVideo = videoRepository.save(videoBuilder.build());
+        log.info("Resumable upload saved: {} (ID: {}) by user ID {}", savedVideo.getOriginalFilename(), savedVideo.getId(), session.getUploadedById());
+
+        if (mediaType == Video.MediaType.DOCUMENT && session.getImagePurpose() == Video.ImagePurpose.MENU) {
+            indexMenuXml(savedVideo.getId(), localFile);
+        }
+
+        // Rendition job links the local file, so it must be queued before the thumbnail job moves it
+        if (transcodeJobService.needsRendition(savedVideo)) {
+            transcodeJobService.enqueue(savedVideo, localFile);
+        }
+        if (thumbnailS3Key == null && (mediaType == Video.MediaType.IMAGE || mediaType == Video.MediaType.VIDEO)) {
+            thumbnailJobService.enqueue(savedVideo, localFile,
+                    session.getVideoType() == Video.VideoType.AI_GENERATED ? THUMBNAIL_AI_FOLDER : THUMBNAIL_UPLOAD_FOLDER);
+        }
+        return savedVideo;
+    }
+
     /**
      * Extract filename from S3 key
      * @param s3Key S3 key (e.g., "videos/uuid_filename.mp4")
@@ -1159,8 +1251,8 @@ public class VideoService {
         }
 
         // Upload audio to S3 (audios/uploads folder)
-        String s3Key = s3Service.uploadFile(file, AUDIO_UPLOAD_FOLDER);
-        String s3Url = s3Service.getFileUrl(s3Key);
+        String s3Key = mediaStore.uploadFile(file, AUDIO_UPLOAD_FOLDER);
+        String s3Url = mediaStore.getFileUrl(s3Key);
 
         log.info("Uploaded audio to S3: {}", s3Key);
 
@@ -1213,8 +1305,8 @@ public class VideoService {
         }
 
         // Upload audio to S3 (audios/ai folder since TTS is AI-generated)
-        String s3Key = s3Service.uploadFile(file, AUDIO_AI_FOLDER);
-        String s3Url = s3Service.getFileUrl(s3Key);
+        String s3Key = mediaStore.uploadFile(file, AUDIO_AI_FOLDER);
+        String s3Url = mediaStore.getFileUrl(s3Key);
 
         log.info("Uploaded TTS audio to S3: {}", s3Key);
 
@@ -1245,7 +1337,7 @@ public class VideoService {
      * Generate presigned download URL for a video/audio file
      */
     public String getPresignedDownloadUrl(String s3Key) {
-        return s3Service.generatePresignedUrl(s3Key, 60); // 60 minutes validity
+        return mediaStore.generatePresignedUrl(s3Key, 60); // 60 minutes validity
     }
 
     /**
@@ -1256,61 +1348,33 @@ public class VideoService {
      * @return Content with presigned URLs
      */
     public String replaceS3UrlsWithPresignedUrls(String content, int durationMinutes) {
-        if (content == null || content.isEmpty()) {
-            return content;
-        }
-
-        // Pattern to match S3 URLs in format: https://bucket.s3.region.amazonaws.com/key
-        java.util.regex.Pattern pattern = java.util.regex.Pattern.compile(
-            "https://[^/]+\\.s3\\.[^/]+\\.amazonaws\\.com/([^<\\s\"']+)"
-        );
-        java.util.regex.Matcher matcher = pattern.matcher(content);
-
-        StringBuffer result = new StringBuffer();
-        while (matcher.find()) {
-            String s3Url = matcher.group(0);
-            String s3Key = matcher.group(1);
-
-            try {
-                // Generate presigned URL for this S3 key
-                String presignedUrl = s3Service.generatePresignedUrl(s3Key, durationMinutes);
-                // Replace the original URL with presigned URL
-                matcher.appendReplacement(result, java.util.regex.Matcher.quoteReplacement(presignedUrl));
-                log.debug("Replaced S3 URL with presigned URL: {} -> {}", s3Url, presignedUrl);
-            } catch (Exception e) {
-                log.warn("Failed to generate presigned URL for S3 key: {}, keeping original URL", s3Key, e);
-                // Keep the original URL if presigned URL generation fails
-                matcher.appendReplacement(result, java.util.regex.Matcher.quoteReplacement(s3Url));
-            }
-        }
-        matcher.appendTail(result);
-
-        return result.toString();
+        return menuRenderService.replaceS3Urls(content, durationMinutes);
     }
 
     /**
-     * Extract imageIds from menu XML and mark them as downloadable
-     * This allows kiosks to automatically download menu images through the existing sync mechanism
-     * @param xmlBytes XML file bytes
+     * Parse an uploaded menu XML once: store its references in menu_asset_refs, mark its images as downloadable
+     * and record its first version
+     * A menu that cannot be parsed is uploaded without an index. The index is written in the upload's transaction,
+     * so a database failure fails the upload instead of being logged and leaving the transaction rollback-only.
+     * @param menuId Menu video ID
+     * @param xmlFile Local copy of the menu XML
      */
-    private void markMenuImagesAsDownloadable(byte[] xmlBytes) throws Exception {
-        List<Long> imageIds = extractImageIdsFromMenuXml(xmlBytes);
-
-        for (Long imageId : imageIds) {
-            // Find video by ID and set downloadable to true
-            videoRepository.findById(imageId).ifPresentOrElse(
-                video -> {
-                    if (!video.getDownloadable()) {
-                        video.setDownloadable(true);
-                        videoRepository.save(video);
-                        log.info("Marked image {} as downloadable (title: {})", imageId, video.getTitle());
-                    } else {
-                        log.debug("Image {} is already downloadable", imageId);
-                    }
-                },
-                () -> log.warn("Image {} not found in database, skipping", imageId)
-            );
+    private void indexMenuXml(Long menuId, Path xmlFile) {
+        MenuXmlParser.MenuReferences references;
+        MenuXmlParser.MenuStructure structure;
+        try {
+            try (java.io.InputStream inputStream = Files.newInputStream(xmlFile)) {
+                references = menuXmlParser.parse(inputStream);
+            }
+            // Parsed now, since the version is recorded after commit, when the local copy may be gone
+            try (java.io.InputStream inputStream = Files.newInputStream(xmlFile)) {
+                structure = menuXmlParser.parseStructure(inputStream);
+            }
+        } catch (IOException | javax.xml.stream.XMLStreamException e) {
+            log.error("Failed to parse menu XML {}, menu is not indexed: {}", menuId, e.getMessage(), e);
+            return;
         }
+        menuIndexService.indexMenu(menuId, references, structure);
     }
 
     /**
@@ -1319,33 +1383,7 @@ public class VideoService {
      * @return List of image IDs found in the XML
      */
     public List<Long> extractImageIdsFromMenuXml(byte[] xmlBytes) throws Exception {
-        List<Long> imageIds = new java.util.ArrayList<>();
-
-        // Parse XML
-        javax.xml.parsers.DocumentBuilderFactory factory = javax.xml.parsers.DocumentBuilderFactory.newInstance();
-        javax.xml.parsers.DocumentBuilder builder = factory.newDocumentBuilder();
-        org.w3c.dom.Document doc = builder.parse(new java.io.ByteArrayInputStream(xmlBytes));
-
-        // Find all <imageId> elements
-        org.w3c.dom.NodeList imageIdNodes = doc.getElementsByTagName("imageId");
-
-        log.info("Found {} imageId elements in menu XML", imageIdNodes.getLength());
-
-        for (int i = 0; i < imageIdNodes.getLength(); i++) {
-            org.w3c.dom.Node node = imageIdNodes.item(i);
-            String imageIdStr = node.getTextContent();
-
-            if (imageIdStr != null && !imageIdStr.trim().isEmpty()) {
-                try {
-                    Long imageId = Long.parseLong(imageIdStr.trim());
-                    imageIds.add(imageId);
-                } catch (NumberFormatException e) {
-                    log.warn("Invalid imageId format: {}", imageIdStr);
-                }
-            }
-        }
-
-        return imageIds;
+        return menuXmlParser.parse(xmlBytes).imageIds();
     }
 
     /**
@@ -1354,134 +1392,109 @@ public class VideoService {
      * @return List of image IDs found in the menu XML
      */
     public List<Long> extractImageIdsFromMenu(Long menuId) {
-        try {
-            Video menuVideo = videoRepository.findById(menuId)
-                .orElseThrow(() -> new RuntimeException("Menu not found with id: " + menuId));
-
-            // Download the XML content from S3
-            byte[] xmlBytes = s3Service.downloadFile(menuVideo.getS3Key());
-
-            return extractImageIdsFromMenuXml(xmlBytes);
-        } catch (Exception e) {
-            log.error("Failed to extract imageIds from menu {}: {}", menuId, e.getMessage(), e);
-            return new java.util.ArrayList<>();
-        }
+        return extractMenuReferences(menuId).imageIds();
     }
 
     /**
      * Extract videoIds from menu XML
-     * Looks for videoId in menu metadata, categories, and menu items
+     * Looks for videoId in menu metadata, categories, menu items and actions
      * @param xmlBytes XML file bytes
      * @return List of video IDs found in the XML
      */
     public List<Long> extractVideoIdsFromMenuXml(byte[] xmlBytes) throws Exception {
-        List<Long> videoIds = new java.util.ArrayList<>();
-
-        // Parse XML
-        javax.xml.parsers.DocumentBuilderFactory factory = javax.xml.parsers.DocumentBuilderFactory.newInstance();
-        javax.xml.parsers.DocumentBuilder builder = factory.newDocumentBuilder();
-        org.w3c.dom.Document doc = builder.parse(new java.io.ByteArrayInputStream(xmlBytes));
-
-        // Find videoId in menu metadata
-        org.w3c.dom.NodeList metadataNodes = doc.getElementsByTagName("metadata");
-        if (metadataNodes.getLength() > 0) {
-            org.w3c.dom.Element metadataElement = (org.w3c.dom.Element) metadataNodes.item(0);
-            org.w3c.dom.NodeList videoIdNodes = metadataElement.getElementsByTagName("videoId");
-            if (videoIdNodes.getLength() > 0) {
-                String videoIdStr = videoIdNodes.item(0).getTextContent();
-                if (videoIdStr != null && !videoIdStr.trim().isEmpty()) {
-                    try {
-                        Long videoId = Long.parseLong(videoIdStr.trim());
-                        videoIds.add(videoId);
-                        log.debug("Found menu metadata videoId: {}", videoId);
-                    } catch (NumberFormatException e) {
-                        log.warn("Invalid videoId format in metadata: {}", videoIdStr);
-                    }
-                }
-            }
-        }
+        return menuXmlParser.parse(xmlBytes).videoIds();
+    }
 
-        // Find videoId attributes in categories
-        org.w3c.dom.NodeList categoryNodes = doc.getElementsByTagName("category");
-        for (int i = 0; i < categoryNodes.getLength(); i++) {
-            org.w3c.dom.Element categoryElement = (org.w3c.dom.Element) categoryNodes.item(i);
-            String videoIdStr = categoryElement.getAttribute("videoId");
-            if (videoIdStr != null && !videoIdStr.trim().isEmpty()) {
-                try {
-                    Long videoId = Long.parseLong(videoIdStr.trim());
-                    videoIds.add(videoId);
-                    log.debug("Found category videoId: {}", videoId);
-                } catch (NumberFormatException e) {
-                    log.warn("Invalid videoId format in category: {}", videoIdStr);
-                }
-            }
-        }
+    /**
+     * Extract videoIds from menu XML by menu video ID
+     * @param menuId Menu video ID
+     * @return List of video IDs found in the menu XML
+     */
+    public List<Long> extractVideoIdsFromMenu(Long menuId) {
+        return extractMenuReferences(menuId).videoIds();
+    }
 
-        // Find videoId elements in menu items
-        org.w3c.dom.NodeList itemNodes = doc.getElementsByTagName("item");
-        for (int i = 0; i < itemNodes.getLength(); i++) {
-            org.w3c.dom.Element itemElement = (org.w3c.dom.Element) itemNodes.item(i);
-            org.w3c.dom.NodeList videoIdNodes = itemElement.getElementsByTagName("videoId");
-            if (videoIdNodes.getLength() > 0) {
-                String videoIdStr = videoIdNodes.item(0).getTextContent();
-                if (videoIdStr != null && !videoIdStr.trim().isEmpty()) {
-                    try {
-                        Long videoId = Long.parseLong(videoIdStr.trim());
-                        videoIds.add(videoId);
-                        log.debug("Found item videoId: {}", videoId);
-                    } catch (NumberFormatException e) {
-                        log.warn("Invalid videoId format in item: {}", videoIdStr);
-                    }
-                }
+    /**
+     * Extract all images, videos and S3 URLs referenced by a menu in one streaming pass
+     * Results are cached per menu ID, so assigning one menu to many kiosks reads and parses it once.
+     * The XML is read from the local content cache when available, otherwise streamed from storage.
+     * @param menuId Menu video ID
+     * @return Referenced assets (empty if the menu cannot be read)
+     */
+    public MenuXmlParser.MenuReferences extractMenuReferences(Long menuId) {
+        try {
+            Cache cache = cacheManager.getCache(MENU_REFERENCES_CACHE);
+            if (cache == null) {
+                return loadMenuReferences(menuId);
             }
+            // Concurrent callers for the same menu wait for one load; failures are not cached
+            return cache.get(menuId, () -> loadMenuReferences(menuId));
+        } catch (Exception e) {
+            Throwable cause = e instanceof Cache.ValueRetrievalException && e.getCause() != null ? e.getCause() : e;
+            log.error("Failed to extract references from menu {}: {}", menuId, cause.getMessage(), cause);
+            return MenuXmlParser.MenuReferences.empty();
         }
+    }
 
-        // Find videoId attributes in actions section
-        org.w3c.dom.NodeList actionsNodes = doc.getElementsByTagName("actions");
-        if (actionsNodes.getLength() > 0) {
-            org.w3c.dom.Element actionsElement = (org.w3c.dom.Element) actionsNodes.item(0);
-            String[] actionTypes = {"addToCart", "checkout", "increaseQuantity", "decreaseQuantity", "cancelItem"};
-
-            for (String actionType : actionTypes) {
-                org.w3c.dom.NodeList actionNodes = actionsElement.getElementsByTagName(actionType);
-                if (actionNodes.getLength() > 0) {
-                    org.w3c.dom.Element actionElement = (org.w3c.dom.Element) actionNodes.item(0);
-                    String videoIdStr = actionElement.getAttribute("videoId");
-                    if (videoIdStr != null && !videoIdStr.trim().isEmpty()) {
-                        try {
-                            Long videoId = Long.parseLong(videoIdStr.trim());
-                            videoIds.add(videoId);
-                            log.debug("Found action {} videoId: {}", actionType, videoId);
-                        } catch (NumberFormatException e) {
-                            log.warn("Invalid videoId format in action {}: {}", actionType, videoIdStr);
-                        }
-                    }
-                }
-            }
+    /**
+     * Make sure a menu's references are in menu_asset_refs
+     * Menus uploaded before the index existed are parsed once here; indexed menus cost one query.
+     * @param menuId Menu video ID
+     */
+    @Transactional
+    public void ensureMenuIndexed(Long menuId) {
+        if (menuAssetRefRepository.existsByMenuId(menuId)) {
+            return;
+        }
+        MenuXmlParser.MenuReferences references = extractMenuReferences(menuId);
+        if (!references.imageIds().isEmpty() || !references.videoIds().isEmpty()) {
+            menuIndexService.saveAssetRefs(menuId, references);
         }
+    }
 
-        log.info("Extracted {} videoIds from menu XML", videoIds.size());
-        return videoIds;
+    /**
+     * Get the images referenced by a menu from menu_asset_refs
+     * @param menuId Menu video ID (must be indexed, see {@link #ensureMenuIndexed(Long)})
+     * @return Image IDs in document order
+     */
+    public List<Long> getMenuImageIds(Long menuId) {
+        return menuAssetRefRepository.findAssetIds(menuId, MenuAssetRef.AssetKind.IMAGE);
     }
 
     /**
-     * Extract videoIds from menu XML by menu video ID
-     * @param menuId Menu video ID
-     * @return List of video IDs found in the menu XML
+     * Find the menus that reference an image or video
+     * @param assetId Video ID of the image or video
+     * @return IDs of the menus referencing it
      */
-    public List<Long> extractVideoIdsFromMenu(Long menuId) {
-        try {
-            Video menuVideo = videoRepository.findById(menuId)
-                .orElseThrow(() -> new RuntimeException("Menu not found with id: " + menuId));
+    public List<Long> findMenusReferencingAsset(Long assetId) {
+        return menuAssetRefRepository.findMenuIdsByAssetId(assetId);
+    }
 
-            // Download the XML content from S3
-            byte[] xmlBytes = s3Service.downloadFile(menuVideo.getS3Key());
+    private MenuXmlParser.MenuReferences loadMenuReferences(Long menuId) throws Exception {
+        Video menuVideo = videoRepository.findById(menuId)
+            .orElseThrow(() -> new RuntimeException("Menu not found with id: " + menuId));
 
-            return extractVideoIdsFromMenuXml(xmlBytes);
-        } catch (Exception e) {
-            log.error("Failed to extract videoIds from menu {}: {}", menuId, e.getMessage(), e);
-            return new java.util.ArrayList<>();
+        MediaStore.ObjectInfo info = mediaStore.stat(menuVideo.getS3Key());
+        java.nio.channels.FileChannel localCopy = mediaStore.openLocalFile(menuVideo.getS3Key(), info.eTag()).orElse(null);
+        if (localCopy != null) {
+            try (java.io.InputStream inputStream = java.nio.channels.Channels.newInputStream(localCopy)) {
+                return menuXmlParser.parse(inputStream);
+            }
+        }
+        if (info.contentLength() == 0) {
+            throw new IOException("Menu XML is empty");
+        }
+        try (java.io.InputStream inputStream = mediaStore.openRange(menuVideo.getS3Key(), 0, info.contentLength() - 1, info.eTag())) {
+            return menuXmlParser.parse(inputStream);
+        }
+    }
+
+    private void evictMenuCaches(Long menuId) {
+        Cache cache = cacheManager.getCache(MENU_REFERENCES_CACHE);
+        if (cache != null) {
+            cache.evict(menuId);
         }
+        menuRenderService.evict(menuId);
     }
 
 }
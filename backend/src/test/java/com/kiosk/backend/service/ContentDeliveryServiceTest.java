@@ -0,0 +1,123 @@
+package com.kiosk.backend.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ContentDeliveryServiceTest {
+
+    private static final byte[] CONTENT = "<menu><item id=\"a\"/><item id=\"b\"/></menu>".getBytes(StandardCharsets.UTF_8);
+    private static final String HASH = ContentDeliveryService.sha256(CONTENT);
+
+    private ContentDeliveryService service;
+    private MockHttpServletRequest request;
+
+    @BeforeEach
+    void setUp() {
+        service = new ContentDeliveryService(new ObjectMapper(), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "minCompressSize", 16);
+        ReflectionTestUtils.setField(service, "cacheMaxBytes", 1024L * 1024);
+        service.init();
+        request = new MockHttpServletRequest("GET", "/api/menus/1");
+    }
+
+    private ResponseEntity<byte[]> deliver(byte[] content) {
+        return service.deliver(content, null, MediaType.APPLICATION_XML, CacheControl.noCache(), request);
+    }
+
+    private static byte[] gunzip(byte[] compressed) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return in.readAllBytes();
+        }
+    }
+
+    @Test
+    void compressesWhenClientAcceptsGzip() throws IOException {
+        request.addHeader(HttpHeaders.ACCEPT_ENCODING, "br, gzip;q=0.8");
+
+        ResponseEntity<byte[]> response = deliver(CONTENT);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+        assertThat(response.getHeaders().getETag()).isEqualTo("\"" + HASH + "-gzip\"");
+        assertThat(response.getHeaders().getVary()).containsExactly(HttpHeaders.ACCEPT_ENCODING);
+        assertThat(gunzip(response.getBody())).isEqualTo(CONTENT);
+    }
+
+    @Test
+    void sendsIdentityWhenGzipIsRefused() {
+        request.addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip;q=0");
+
+        ResponseEntity<byte[]> response = deliver(CONTENT);
+
+        assertThat(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)).isNull();
+        assertThat(response.getHeaders().getETag()).isEqualTo("\"" + HASH + "\"");
+        assertThat(response.getBody()).isEqualTo(CONTENT);
+    }
+
+    @Test
+    void sendsIdentityWhenOnlyBrotliIsAccepted() {
+        request.addHeader(HttpHeaders.ACCEPT_ENCODING, "br");
+
+        ResponseEntity<byte[]> response = deliver(CONTENT);
+
+        assertThat(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)).isNull();
+        assertThat(response.getBody()).isEqualTo(CONTENT);
+    }
+
+    @Test
+    void sendsSmallContentUncompressed() {
+        request.addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip");
+
+        ResponseEntity<byte[]> response = deliver("[]".getBytes(StandardCharsets.UTF_8));
+
+        assertThat(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)).isNull();
+    }
+
+    @Test
+    void notModifiedWhenIfNoneMatchNamesEitherEncoding() {
+        request.addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"" + HASH + "\"");
+
+        ResponseEntity<byte[]> response = deliver(CONTENT);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(response.getBody()).isNull();
+        assertThat(response.getHeaders().getETag()).isEqualTo("\"" + HASH + "-gzip\"");
+        assertThat(response.getHeaders().getVary()).containsExactly(HttpHeaders.ACCEPT_ENCODING);
+    }
+
+    @Test
+    void notModifiedForWeakIfNoneMatch() {
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"other\", W/\"" + HASH + "-gzip\"");
+
+        ResponseEntity<byte[]> response = deliver(CONTENT);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+    }
+
+    @Test
+    void sendsContentWhenIfNoneMatchIsStale() {
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"other\"");
+
+        ResponseEntity<byte[]> response = deliver(CONTENT);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody()).isEqualTo(CONTENT);
+    }
+}
@@ -0,0 +1,108 @@
+package com.kiosk.backend.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LocalContentCacheTest {
+
+    private static final String ETAG = "\"v1\"";
+
+    @TempDir
+    Path cacheDir;
+
+    private LocalContentCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = newCache(10);
+    }
+
+    private LocalContentCache newCache(long maxSizeBytes) {
+        LocalContentCache contentCache = new LocalContentCache();
+        ReflectionTestUtils.setField(contentCache, "enabled", true);
+        ReflectionTestUtils.setField(contentCache, "directory", cacheDir.toString());
+        ReflectionTestUtils.setField(contentCache, "maxSizeBytes", maxSizeBytes);
+        contentCache.init();
+        return contentCache;
+    }
+
+    private Path put(String key, String eTag, byte[] content) throws IOException {
+        return cache.put(key, eTag, target -> Files.write(target, content));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedEntryWhenOverCapacity() throws IOException {
+        put("a", ETAG, new byte[4]);
+        Path b = put("b", ETAG, new byte[4]);
+        assertThat(cache.get("a", ETAG)).isPresent(); // a is now more recently used than b
+
+        put("c", ETAG, new byte[4]);
+
+        assertThat(cache.get("a", ETAG)).isPresent();
+        assertThat(cache.get("b", ETAG)).isEmpty();
+        assertThat(cache.get("c", ETAG)).isPresent();
+        assertThat(b).doesNotExist();
+        assertThat(cache.getStats())
+                .containsEntry("evictionCount", 1L)
+                .containsEntry("sizeBytes", 8L);
+    }
+
+    @Test
+    void keepsNewEntryLargerThanCapacity() throws IOException {
+        put("a", ETAG, new byte[4]);
+
+        Path big = put("big", ETAG, new byte[20]);
+
+        assertThat(cache.get("big", ETAG)).contains(big);
+        assertThat(cache.get("a", ETAG)).isEmpty();
+    }
+
+    @Test
+    void staleETagIsMissAndDropsEntry() throws IOException {
+        Path path = put("a", ETAG, new byte[] {1, 2, 3});
+
+        assertThat(cache.get("a", "\"v2\"")).isEmpty();
+
+        assertThat(path).doesNotExist();
+        assertThat(cache.get("a", ETAG)).isEmpty();
+        assertThat(cache.getStats()).containsEntry("entryCount", 0);
+    }
+
+    @Test
+    void openEntryStaysReadableAfterInvalidation() throws IOException {
+        put("a", ETAG, new byte[] {1, 2, 3});
+
+        Optional<FileChannel> opened = cache.openEntry("a", ETAG);
+        assertThat(opened).isPresent();
+        cache.invalidate("a");
+
+        try (FileChannel channel = opened.get()) {
+            ByteBuffer buffer = ByteBuffer.allocate(3);
+            channel.read(buffer, 0);
+            assertThat(buffer.array()).containsExactly(1, 2, 3);
+        }
+        assertThat(cache.openEntry("a", ETAG)).isEmpty();
+    }
+
+    @Test
+    void initRemovesOnlyOwnLeftovers() throws IOException {
+        Path leftover = Files.write(cacheDir.resolve("kcc-leftover"), new byte[] {1});
+        Path foreign = Files.write(cacheDir.resolve("notes.txt"), new byte[] {1});
+
+        newCache(10);
+
+        assertThat(leftover).doesNotExist();
+        assertThat(foreign).exists();
+    }
+}
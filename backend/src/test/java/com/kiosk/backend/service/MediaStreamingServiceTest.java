@@ -0,0 +1,156 @@
+package com.kiosk.backend.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MediaStreamingServiceTest {
+
+    private static final String KEY = "videos/a.mp4";
+    private static final String ETAG = "\"abc\"";
+    private static final Instant LAST_MODIFIED = Instant.parse("2026-01-01T10:00:00Z");
+    private static final byte[] CONTENT = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9};
+
+    private MediaStore mediaStore;
+    private MediaStreamingService service;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        mediaStore = mock(MediaStore.class);
+        when(mediaStore.stat(KEY)).thenReturn(new MediaStore.ObjectInfo(CONTENT.length, ETAG, LAST_MODIFIED));
+        when(mediaStore.openLocalFile(any(), any())).thenReturn(Optional.empty());
+        when(mediaStore.openRange(eq(KEY), anyLong(), anyLong(), any())).thenAnswer(invocation -> {
+            long start = invocation.getArgument(1);
+            long end = invocation.getArgument(2);
+            return new ByteArrayInputStream(Arrays.copyOfRange(CONTENT, (int) start, (int) end + 1));
+        });
+
+        service = new MediaStreamingService(mediaStore);
+        request = new MockHttpServletRequest("GET", "/api/videos/1/stream");
+        response = new MockHttpServletResponse();
+    }
+
+    private void stream() throws IOException {
+        service.stream(KEY, "video/mp4", "a.mp4", request, response);
+    }
+
+    private static String httpDate(Instant instant) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(instant.atOffset(ZoneOffset.UTC));
+    }
+
+    @Test
+    void servesWholeFileWithoutRange() throws IOException {
+        stream();
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getContentAsByteArray()).isEqualTo(CONTENT);
+        assertThat(response.getHeader(HttpHeaders.ACCEPT_RANGES)).isEqualTo("bytes");
+        assertThat(response.getHeader(HttpHeaders.ETAG)).isEqualTo(ETAG);
+    }
+
+    @Test
+    void servesSingleRange() throws IOException {
+        request.addHeader(HttpHeaders.RANGE, "bytes=2-5");
+
+        stream();
+
+        assertThat(response.getStatus()).isEqualTo(206);
+        assertThat(response.getHeader(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes 2-5/10");
+        assertThat(response.getContentAsByteArray()).containsExactly(2, 3, 4, 5);
+        verify(mediaStore).openRange(KEY, 2, 5, ETAG);
+    }
+
+    @Test
+    void servesRangeWhenIfRangeETagMatches() throws IOException {
+        request.addHeader(HttpHeaders.RANGE, "bytes=2-5");
+        request.addHeader(HttpHeaders.IF_RANGE, ETAG);
+
+        stream();
+
+        assertThat(response.getStatus()).isEqualTo(206);
+    }
+
+    @Test
+    void servesWholeFileWhenIfRangeETagDiffers() throws IOException {
+        request.addHeader(HttpHeaders.RANGE, "bytes=2-5");
+        request.addHeader(HttpHeaders.IF_RANGE, "\"other\"");
+
+        stream();
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getContentAsByteArray()).isEqualTo(CONTENT);
+    }
+
+    @Test
+    void servesWholeFileForWeakIfRangeETag() throws IOException {
+        // If-Range requires strong comparison, a weak validator never matches
+        request.addHeader(HttpHeaders.RANGE, "bytes=2-5");
+        request.addHeader(HttpHeaders.IF_RANGE, "W/" + ETAG);
+
+        stream();
+
+        assertThat(response.getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    void servesRangeWhenIfRangeDateEqualsLastModified() throws IOException {
+        request.addHeader(HttpHeaders.RANGE, "bytes=2-5");
+        request.addHeader(HttpHeaders.IF_RANGE, httpDate(LAST_MODIFIED));
+
+        stream();
+
+        assertThat(response.getStatus()).isEqualTo(206);
+    }
+
+    @Test
+    void servesWholeFileWhenIfRangeDateDiffers() throws IOException {
+        request.addHeader(HttpHeaders.RANGE, "bytes=2-5");
+        request.addHeader(HttpHeaders.IF_RANGE, httpDate(LAST_MODIFIED.plusSeconds(1)));
+
+        stream();
+
+        assertThat(response.getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    void rejectsUnsatisfiableRange() throws IOException {
+        request.addHeader(HttpHeaders.RANGE, "bytes=20-30");
+
+        stream();
+
+        assertThat(response.getStatus()).isEqualTo(416);
+        assertThat(response.getHeader(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes */10");
+        verify(mediaStore, never()).openRange(any(), anyLong(), anyLong(), any());
+    }
+
+    @Test
+    void servesWholeFileForMultipleRanges() throws IOException {
+        request.addHeader(HttpHeaders.RANGE, "bytes=0-1,4-5");
+
+        stream();
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getContentAsByteArray()).isEqualTo(CONTENT);
+    }
+}
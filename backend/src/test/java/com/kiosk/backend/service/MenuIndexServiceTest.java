@@ -0,0 +1,98 @@
+package com.kiosk.backend.service;
+
+import com.kiosk.backend.repository.MenuAssetRefRepository;
+import com.kiosk.backend.repository.VideoRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MenuIndexServiceTest {
+
+    private static final Long MENU_ID = 5L;
+    private static final MenuXmlParser.MenuReferences REFERENCES =
+            new MenuXmlParser.MenuReferences(List.of(100L, 101L), List.of(10L), List.of());
+    private static final MenuXmlParser.MenuStructure STRUCTURE = new MenuXmlParser.MenuStructure(List.of(), "layout");
+
+    private VideoRepository videoRepository;
+    private MenuVersionService menuVersionService;
+    private Cache videosCache;
+    private MenuIndexService service;
+
+    @BeforeEach
+    void setUp() {
+        videoRepository = mock(VideoRepository.class);
+        menuVersionService = mock(MenuVersionService.class);
+        videosCache = mock(Cache.class);
+        CacheManager cacheManager = mock(CacheManager.class);
+        when(cacheManager.getCache("videos")).thenReturn(videosCache);
+
+        service = new MenuIndexService(mock(MenuAssetRefRepository.class), videoRepository, menuVersionService, cacheManager);
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.clearSynchronization();
+        service.shutdown();
+    }
+
+    private static void complete(int status) {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCompletion(status);
+        }
+    }
+
+    @Test
+    void recordsVersionOnlyAfterUploadCommits() {
+        service.indexMenu(MENU_ID, REFERENCES, STRUCTURE);
+
+        verify(videoRepository).markDownloadable(List.of(100L, 101L));
+        verify(menuVersionService, after(100).never()).recordVersion(any(), any(), any());
+        verify(videosCache, never()).evict(any());
+
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        verify(menuVersionService, timeout(1000)).recordVersion(MENU_ID, REFERENCES, STRUCTURE);
+        verify(videosCache).evict(100L);
+        verify(videosCache).evict(101L);
+    }
+
+    @Test
+    void recordsNothingWhenUploadRollsBack() {
+        service.indexMenu(MENU_ID, REFERENCES, STRUCTURE);
+
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        verify(menuVersionService, after(100).never()).recordVersion(any(), any(), any());
+        verify(videosCache, never()).evict(any());
+    }
+
+    @Test
+    void linksVersionAfterRecordingIt() {
+        service.indexMenu(MENU_ID, REFERENCES, STRUCTURE);
+        service.linkVersionAfterCommit(4L, MENU_ID);
+
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        verify(menuVersionService, timeout(1000)).linkVersion(4L, MENU_ID);
+        InOrder inOrder = inOrder(menuVersionService);
+        inOrder.verify(menuVersionService).recordVersion(MENU_ID, REFERENCES, STRUCTURE);
+        inOrder.verify(menuVersionService).linkVersion(4L, MENU_ID);
+    }
+}
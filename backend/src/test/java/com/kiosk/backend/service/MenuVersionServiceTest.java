@@ -0,0 +1,172 @@
+package com.kiosk.backend.service;
+
+import com.kiosk.backend.entity.MenuAssetRef;
+import com.kiosk.backend.entity.MenuVersion;
+import com.kiosk.backend.entity.MenuVersionAsset;
+import com.kiosk.backend.entity.MenuVersionItem;
+import com.kiosk.backend.entity.Video;
+import com.kiosk.backend.repository.MenuVersionAssetRepository;
+import com.kiosk.backend.repository.MenuVersionItemRepository;
+import com.kiosk.backend.repository.MenuVersionRepository;
+import com.kiosk.backend.repository.VideoRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MenuVersionServiceTest {
+
+    private static final Long FROM_MENU_ID = 1L;
+    private static final Long TO_MENU_ID = 2L;
+
+    private MenuVersionRepository menuVersionRepository;
+    private MenuVersionItemRepository menuVersionItemRepository;
+    private MenuVersionAssetRepository menuVersionAssetRepository;
+    private VideoRepository videoRepository;
+    private MediaStore mediaStore;
+    private MenuVersionService service;
+
+    @BeforeEach
+    void setUp() {
+        menuVersionRepository = mock(MenuVersionRepository.class);
+        menuVersionItemRepository = mock(MenuVersionItemRepository.class);
+        menuVersionAssetRepository = mock(MenuVersionAssetRepository.class);
+        videoRepository = mock(VideoRepository.class);
+        mediaStore = mock(MediaStore.class);
+        MenuRenderService menuRenderService = mock(MenuRenderService.class);
+        when(menuRenderService.replaceS3Urls(anyString(), anyInt()))
+                .thenAnswer(invocation -> "presigned:" + invocation.getArgument(0));
+
+        service = new MenuVersionService(menuVersionRepository, menuVersionItemRepository, menuVersionAssetRepository,
+                videoRepository, mediaStore, new MenuXmlParser(), menuRenderService);
+        stored(TO_MENU_ID, Video.MediaType.DOCUMENT, Video.ImagePurpose.MENU);
+    }
+
+    private void stored(Long id, Video.MediaType mediaType, Video.ImagePurpose imagePurpose) {
+        when(videoRepository.findById(id)).thenReturn(Optional.of(Video.builder()
+                .id(id)
+                .s3Key("documents/menu-" + id + ".xml")
+                .mediaType(mediaType)
+                .imagePurpose(imagePurpose)
+                .build()));
+    }
+
+    private void version(long id, Long menuId, Long lineageId, int version, String layoutHash) {
+        when(menuVersionRepository.findByMenuId(menuId)).thenReturn(Optional.of(MenuVersion.builder()
+                .id(id)
+                .menuId(menuId)
+                .lineageId(lineageId)
+                .version(version)
+                .layoutHash(layoutHash)
+                .build()));
+    }
+
+    private static MenuVersionItem item(long versionId, String itemId, String contentHash) {
+        return MenuVersionItem.builder()
+                .versionId(versionId)
+                .itemId(itemId)
+                .category("main")
+                .contentHash(contentHash)
+                .content("<item id=\"" + itemId + "\"/>")
+                .build();
+    }
+
+    private static MenuVersionAsset asset(long versionId, long assetId, MenuAssetRef.AssetKind kind) {
+        return MenuVersionAsset.builder().versionId(versionId).assetId(assetId).kind(kind).build();
+    }
+
+    @Test
+    void diffsItemsAndAssetsOfTheSameLineage() {
+        version(11, FROM_MENU_ID, FROM_MENU_ID, 1, "layout-1");
+        version(12, TO_MENU_ID, FROM_MENU_ID, 2, "layout-1");
+        when(menuVersionItemRepository.findByVersionIdOrderByIdAsc(11L)).thenReturn(List.of(
+                item(11, "a", "hash-a"), item(11, "b", "hash-b"), item(11, "c", "hash-c")));
+        when(menuVersionItemRepository.findByVersionIdOrderByIdAsc(12L)).thenReturn(List.of(
+                item(12, "a", "hash-a"), item(12, "b", "hash-b2"), item(12, "d", "hash-d")));
+        when(menuVersionAssetRepository.findByVersionIdOrderByIdAsc(11L)).thenReturn(List.of(
+                asset(11, 100, MenuAssetRef.AssetKind.IMAGE), asset(11, 101, MenuAssetRef.AssetKind.IMAGE),
+                asset(11, 10, MenuAssetRef.AssetKind.VIDEO)));
+        when(menuVersionAssetRepository.findByVersionIdOrderByIdAsc(12L)).thenReturn(List.of(
+                asset(12, 101, MenuAssetRef.AssetKind.IMAGE), asset(12, 102, MenuAssetRef.AssetKind.IMAGE),
+                asset(12, 10, MenuAssetRef.AssetKind.VIDEO), asset(12, 11, MenuAssetRef.AssetKind.VIDEO)));
+
+        MenuVersionService.MenuDiff diff = service.diff(FROM_MENU_ID, TO_MENU_ID);
+
+        assertThat(diff.fullDownload()).isFalse();
+        assertThat(diff.layoutChanged()).isFalse();
+        assertThat(diff.fromVersion()).isEqualTo(1);
+        assertThat(diff.toVersion()).isEqualTo(2);
+        assertThat(diff.addedItems()).containsExactly(
+                new MenuVersionService.ItemChange("d", "main", "presigned:<item id=\"d\"/>"));
+        assertThat(diff.changedItems()).containsExactly(
+                new MenuVersionService.ItemChange("b", "main", "presigned:<item id=\"b\"/>"));
+        assertThat(diff.removedItemIds()).containsExactly("c");
+        assertThat(diff.addedImageIds()).containsExactly(102L);
+        assertThat(diff.removedImageIds()).containsExactly(100L);
+        assertThat(diff.addedVideoIds()).containsExactly(11L);
+        assertThat(diff.removedVideoIds()).isEmpty();
+    }
+
+    @Test
+    void reportsLayoutChange() {
+        version(11, FROM_MENU_ID, FROM_MENU_ID, 1, "layout-1");
+        version(12, TO_MENU_ID, FROM_MENU_ID, 2, "layout-2");
+
+        MenuVersionService.MenuDiff diff = service.diff(FROM_MENU_ID, TO_MENU_ID);
+
+        assertThat(diff.fullDownload()).isFalse();
+        assertThat(diff.layoutChanged()).isTrue();
+        assertThat(diff.addedItems()).isEmpty();
+    }
+
+    @Test
+    void requiresFullDownloadAcrossLineages() {
+        version(11, FROM_MENU_ID, FROM_MENU_ID, 1, "layout-1");
+        version(12, TO_MENU_ID, TO_MENU_ID, 1, "layout-1");
+
+        MenuVersionService.MenuDiff diff = service.diff(FROM_MENU_ID, TO_MENU_ID);
+
+        assertThat(diff.fullDownload()).isTrue();
+        assertThat(diff.addedItems()).isEmpty();
+        assertThat(diff.removedItemIds()).isEmpty();
+    }
+
+    @Test
+    void requiresFullDownloadForUnknownMenu() {
+        version(12, TO_MENU_ID, TO_MENU_ID, 3, "layout-1");
+
+        MenuVersionService.MenuDiff diff = service.diff(FROM_MENU_ID, TO_MENU_ID);
+
+        assertThat(diff.fullDownload()).isTrue();
+        assertThat(diff.fromVersion()).isNull();
+        assertThat(diff.toVersion()).isEqualTo(3);
+    }
+
+    @Test
+    void rejectsVideoThatIsNotAMenu() {
+        stored(TO_MENU_ID, Video.MediaType.VIDEO, Video.ImagePurpose.GENERAL);
+
+        assertThatThrownBy(() -> service.diff(FROM_MENU_ID, TO_MENU_ID))
+                .isInstanceOf(IllegalArgumentException.class);
+        verify(mediaStore, never()).downloadFile(any());
+    }
+
+    @Test
+    void failsWithoutRecordingMissingVersion() {
+        assertThatThrownBy(() -> service.diff(FROM_MENU_ID, TO_MENU_ID))
+                .isInstanceOf(IllegalStateException.class);
+        verify(mediaStore, never()).downloadFile(any());
+        verify(menuVersionRepository, never()).save(any());
+    }
+}
@@ -0,0 +1,149 @@
+package com.kiosk.backend.service;
+
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MenuXmlParserTest {
+
+    private static final String MENU_XML = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <menu>
+              <metadata>
+                <name>Lunch</name>
+                <videoId>1</videoId>
+                <background url="https://bucket.s3.ap-northeast-2.amazonaws.com/images/bg.jpg"/>
+              </metadata>
+              <categories>
+                <category id="main" videoId="2"/>
+                <category id="drinks" videoId=" 3 "/>
+                <category id="sides"/>
+              </categories>
+              <items>
+                <item id="a" category="main">
+                  <imageId>100</imageId>
+                  <videoId>10</videoId>
+                  <image>https://bucket.s3.ap-northeast-2.amazonaws.com/images/a.jpg</image>
+                </item>
+                <!-- the first videoId of b belongs to its nested option c -->
+                <item id="b" category="main">
+                  <imageId>101</imageId>
+                  <options>
+                    <item id="c"><videoId>12</videoId></item>
+                  </options>
+                  <videoId>11</videoId>
+                </item>
+                <item id="d" category="drinks"><videoId>x</videoId><videoId>13</videoId></item>
+                <item id="e" category="sides">
+                  <imageId>102</imageId>
+                  <image>https://bucket.s3.ap-northeast-2.amazonaws.com/images/a.jpg</image>
+                </item>
+              </items>
+              <actions>
+                <cancelItem videoId="22"/>
+                <addToCart videoId="20"/>
+                <checkout videoId="21"/>
+                <addToCart videoId="23"/>
+              </actions>
+            </menu>
+            """;
+
+    private final MenuXmlParser parser = new MenuXmlParser();
+
+    private static byte[] bytes(String xml) {
+        return xml.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void collectsReferencesOfEverySection() throws Exception {
+        MenuXmlParser.MenuReferences references = parser.parse(bytes(MENU_XML));
+
+        assertThat(references.imageIds()).containsExactly(100L, 101L, 102L);
+        // metadata, categories, items (nested c shares b's first videoId), actions in reporting order
+        assertThat(references.videoIds()).containsExactly(1L, 2L, 3L, 10L, 12L, 12L, 20L, 21L, 22L);
+        assertThat(references.s3Urls()).containsExactly(
+                "https://bucket.s3.ap-northeast-2.amazonaws.com/images/bg.jpg",
+                "https://bucket.s3.ap-northeast-2.amazonaws.com/images/a.jpg");
+    }
+
+    @Test
+    void matchesDomExtraction() throws Exception {
+        MenuXmlParser.MenuReferences references = parser.parse(bytes(MENU_XML));
+
+        Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new ByteArrayInputStream(bytes(MENU_XML)));
+        assertThat(references.imageIds()).isEqualTo(domImageIds(document));
+        assertThat(references.videoIds()).isEqualTo(domVideoIds(document));
+    }
+
+    @Test
+    void parsesMenuWithoutReferences() throws Exception {
+        MenuXmlParser.MenuReferences references = parser.parse(bytes("<menu><items><item id=\"a\"/></items></menu>"));
+
+        assertThat(references).isEqualTo(MenuXmlParser.MenuReferences.empty());
+    }
+
+    /**
+     * Reference extraction with the DOM traversal the menu index used before the streaming parser
+     */
+    private static List<Long> domImageIds(Document document) {
+        List<Long> ids = new ArrayList<>();
+        NodeList imageIds = document.getElementsByTagName("imageId");
+        for (int i = 0; i < imageIds.getLength(); i++) {
+            addId(imageIds.item(i).getTextContent(), ids);
+        }
+        return ids;
+    }
+
+    private static List<Long> domVideoIds(Document document) {
+        List<Long> ids = new ArrayList<>();
+        NodeList metadata = document.getElementsByTagName("metadata");
+        if (metadata.getLength() > 0) {
+            NodeList videoIds = ((Element) metadata.item(0)).getElementsByTagName("videoId");
+            if (videoIds.getLength() > 0) {
+                addId(videoIds.item(0).getTextContent(), ids);
+            }
+        }
+        NodeList categories = document.getElementsByTagName("category");
+        for (int i = 0; i < categories.getLength(); i++) {
+            addId(((Element) categories.item(i)).getAttribute("videoId"), ids);
+        }
+        NodeList items = document.getElementsByTagName("item");
+        for (int i = 0; i < items.getLength(); i++) {
+            NodeList videoIds = ((Element) items.item(i)).getElementsByTagName("videoId");
+            if (videoIds.getLength() > 0) {
+                addId(videoIds.item(0).getTextContent(), ids);
+            }
+        }
+        NodeList actions = document.getElementsByTagName("actions");
+        if (actions.getLength() > 0) {
+            for (String actionType : List.of("addToCart", "checkout", "increaseQuantity", "decreaseQuantity", "cancelItem")) {
+                NodeList actionNodes = ((Element) actions.item(0)).getElementsByTagName(actionType);
+                if (actionNodes.getLength() > 0) {
+                    addId(((Element) actionNodes.item(0)).getAttribute("videoId"), ids);
+                }
+            }
+        }
+        return ids;
+    }
+
+    private static void addId(String value, List<Long> ids) {
+        if (value == null || value.trim().isEmpty()) {
+            return;
+        }
+        try {
+            ids.add(Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            // Skipped like the parser does
+        }
+    }
+}
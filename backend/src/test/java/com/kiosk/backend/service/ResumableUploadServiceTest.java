@@ -0,0 +1,52 @@
+package com.kiosk.backend.service;
+
+import com.kiosk.backend.entity.UploadSession;
+import com.kiosk.backend.entity.Video;
+import com.kiosk.backend.repository.UploadSessionPartRepository;
+import com.kiosk.backend.repository.UploadSessionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ResumableUploadServiceTest {
+
+    private static final MediaStore.MultipartUpload UPLOAD = new MediaStore.MultipartUpload("videos/uploads/a.mp4", "upload-1");
+
+    private UploadSessionRepository uploadSessionRepository;
+    private MediaStore mediaStore;
+    private ResumableUploadService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        uploadSessionRepository = mock(UploadSessionRepository.class);
+        mediaStore = mock(MediaStore.class);
+        VideoService videoService = mock(VideoService.class);
+        when(videoService.storageFolder(any(), any())).thenReturn("videos/uploads");
+        when(mediaStore.createMultipartUpload(anyString(), anyString(), anyString())).thenReturn(UPLOAD);
+
+        service = new ResumableUploadService(uploadSessionRepository, mock(UploadSessionPartRepository.class),
+                mediaStore, videoService, mock(StorageDeletionQueue.class));
+        ReflectionTestUtils.setField(service, "chunkSize", 8L * 1024 * 1024);
+        ReflectionTestUtils.setField(service, "sessionTtlHours", 24L);
+    }
+
+    @Test
+    void abortsMultipartUploadWhenSessionCannotBeSaved() {
+        when(uploadSessionRepository.save(any(UploadSession.class)))
+                .thenThrow(new DataAccessResourceFailureException("database down"));
+
+        assertThatThrownBy(() -> service.createSession(1L, Video.VideoType.UPLOAD, Video.MediaType.VIDEO, null,
+                "a.mp4", "video/mp4", 1024, "Title", null))
+                .isInstanceOf(DataAccessResourceFailureException.class);
+
+        verify(mediaStore).abortMultipartUpload(UPLOAD);
+    }
+}
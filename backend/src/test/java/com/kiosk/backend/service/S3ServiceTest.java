@@ -0,0 +1,239 @@
+package com.kiosk.backend.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignRequest;
+import software.amazon.awssdk.services.s3.presigner.model.PresignedGetObjectRequest;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class S3ServiceTest {
+
+    private static final int PART_SIZE = 1024;
+    private static final String UPLOAD_ID = "upload-1";
+
+    private S3Client s3Client;
+    private ExecutorService partUploadExecutor;
+    private S3Service service;
+
+    // Part number -> bytes received by uploadPart (copied, the buffers are recycled)
+    private final Map<Integer, byte[]> uploadedParts = new ConcurrentHashMap<>();
+
+    private S3Presigner s3Presigner;
+    private final AtomicLong presignCacheNanos = new AtomicLong();
+    private final AtomicInteger signatures = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        s3Client = mock(S3Client.class);
+        partUploadExecutor = Executors.newFixedThreadPool(2);
+        when(s3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId(UPLOAD_ID).build());
+
+        service = new S3Service(new SimpleMeterRegistry(), mock(LocalContentCache.class));
+        ReflectionTestUtils.setField(service, "bucketName", "bucket");
+        ReflectionTestUtils.setField(service, "multipartPartSize", PART_SIZE);
+        ReflectionTestUtils.setField(service, "multipartConcurrency", 2);
+        ReflectionTestUtils.setField(service, "multipartMaxRetries", 2);
+        ReflectionTestUtils.setField(service, "s3Client", s3Client);
+        ReflectionTestUtils.setField(service, "partUploadExecutor", partUploadExecutor);
+    }
+
+    @AfterEach
+    void tearDown() {
+        partUploadExecutor.shutdownNow();
+    }
+
+    /**
+     * Presigned URL cache with a manual clock; every signature gets a distinct URL
+     */
+    private void initPresignedUrlCache(long maxSize) {
+        s3Presigner = mock(S3Presigner.class);
+        when(s3Presigner.presignGetObject(any(GetObjectPresignRequest.class))).thenAnswer(invocation -> {
+            GetObjectPresignRequest request = invocation.getArgument(0);
+            PresignedGetObjectRequest presigned = mock(PresignedGetObjectRequest.class);
+            when(presigned.url()).thenReturn(new URL("https://bucket.s3.amazonaws.com/"
+                    + request.getObjectRequest().key() + "?signature=" + signatures.incrementAndGet()));
+            return presigned;
+        });
+
+        ReflectionTestUtils.setField(service, "presignCacheMaxSize", maxSize);
+        ReflectionTestUtils.setField(service, "presignReuseFraction", 0.5);
+        ReflectionTestUtils.setField(service, "presignCacheTicker", (Ticker) presignCacheNanos::get);
+        ReflectionTestUtils.invokeMethod(service, "initPresignedUrlCache");
+        ReflectionTestUtils.setField(service, "s3Presigner", s3Presigner);
+        ReflectionTestUtils.setField(service, "presignExecutor", partUploadExecutor);
+    }
+
+    private void advance(Duration duration) {
+        presignCacheNanos.addAndGet(duration.toNanos());
+    }
+
+    private static byte[] content(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+
+    private void acceptParts() {
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class))).thenAnswer(invocation -> {
+            UploadPartRequest request = invocation.getArgument(0);
+            RequestBody body = invocation.getArgument(1);
+            try (InputStream inputStream = body.contentStreamProvider().newStream()) {
+                uploadedParts.put(request.partNumber(), inputStream.readAllBytes());
+            }
+            return UploadPartResponse.builder().eTag("etag-" + request.partNumber()).build();
+        });
+    }
+
+    @Test
+    void splitsLargeStreamIntoPartsOfTheConfiguredSize() throws IOException {
+        acceptParts();
+        byte[] content = content(2 * PART_SIZE + 452);
+
+        String key = service.uploadStream(new ByteArrayInputStream(content), "videos/uploads/", "a.mp4", "video/mp4", null);
+
+        assertThat(uploadedParts).containsOnlyKeys(1, 2, 3);
+        assertThat(uploadedParts.get(1)).hasSize(PART_SIZE);
+        assertThat(uploadedParts.get(2)).hasSize(PART_SIZE);
+        assertThat(uploadedParts.get(3)).hasSize(452);
+        byte[] reassembled = new byte[content.length];
+        System.arraycopy(uploadedParts.get(1), 0, reassembled, 0, PART_SIZE);
+        System.arraycopy(uploadedParts.get(2), 0, reassembled, PART_SIZE, PART_SIZE);
+        System.arraycopy(uploadedParts.get(3), 0, reassembled, 2 * PART_SIZE, 452);
+        assertThat(reassembled).isEqualTo(content);
+
+        ArgumentCaptor<CompleteMultipartUploadRequest> complete = ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+        verify(s3Client).completeMultipartUpload(complete.capture());
+        assertThat(complete.getValue().key()).isEqualTo(key);
+        assertThat(complete.getValue().uploadId()).isEqualTo(UPLOAD_ID);
+        assertThat(complete.getValue().multipartUpload().parts())
+                .extracting(CompletedPart::partNumber, CompletedPart::eTag)
+                .containsExactly(
+                        tuple(1, "etag-1"),
+                        tuple(2, "etag-2"),
+                        tuple(3, "etag-3"));
+        verify(s3Client, never()).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+    }
+
+    @Test
+    void uploadsContentSmallerThanOnePartInASingleRequest() throws IOException {
+        service.uploadStream(new ByteArrayInputStream(content(PART_SIZE - 1)), "videos/uploads/", "a.mp4", "video/mp4", null);
+
+        verify(s3Client).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+        verify(s3Client, never()).createMultipartUpload(any(CreateMultipartUploadRequest.class));
+    }
+
+    @Test
+    void abortsMultipartUploadWhenAPartKeepsFailing() {
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+                .thenThrow(S3Exception.builder().message("part rejected").build());
+
+        assertThatThrownBy(() -> service.uploadStream(new ByteArrayInputStream(content(3 * PART_SIZE)),
+                "videos/uploads/", "a.mp4", "video/mp4", null))
+                .isInstanceOf(IOException.class);
+
+        ArgumentCaptor<AbortMultipartUploadRequest> abort = ArgumentCaptor.forClass(AbortMultipartUploadRequest.class);
+        verify(s3Client).abortMultipartUpload(abort.capture());
+        assertThat(abort.getValue().uploadId()).isEqualTo(UPLOAD_ID);
+        verify(s3Client, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+
+    @Test
+    void reusesPresignedUrlUntilHalfItsLifetimeHasPassed() {
+        initPresignedUrlCache(100);
+
+        String url = service.generatePresignedUrl("images/a.jpg", 10);
+        advance(Duration.ofMinutes(4));
+        assertThat(service.generatePresignedUrl("images/a.jpg", 10)).isEqualTo(url);
+
+        advance(Duration.ofMinutes(2));
+        assertThat(service.generatePresignedUrl("images/a.jpg", 10)).isNotEqualTo(url);
+        verify(s3Presigner, times(2)).presignGetObject(any(GetObjectPresignRequest.class));
+    }
+
+    @Test
+    void cachesEachSignatureDurationSeparately() {
+        initPresignedUrlCache(100);
+
+        String shortUrl = service.generatePresignedUrl("images/a.jpg", 10);
+        String longUrl = service.generatePresignedUrl("images/a.jpg", 60);
+
+        assertThat(longUrl).isNotEqualTo(shortUrl);
+        // The 10 minute URL expired from the cache, the 60 minute one is still reused
+        advance(Duration.ofMinutes(6));
+        assertThat(service.generatePresignedUrl("images/a.jpg", 60)).isEqualTo(longUrl);
+        assertThat(service.generatePresignedUrl("images/a.jpg", 10)).isNotEqualTo(shortUrl);
+    }
+
+    @Test
+    void invalidatingAKeyDropsItsUrlsForEveryDuration() {
+        initPresignedUrlCache(100);
+        String shortUrl = service.generatePresignedUrl("images/a.jpg", 10);
+        String longUrl = service.generatePresignedUrl("images/a.jpg", 60);
+        String otherUrl = service.generatePresignedUrl("images/b.jpg", 10);
+
+        service.invalidatePresignedUrls("images/a.jpg");
+
+        assertThat(service.generatePresignedUrl("images/a.jpg", 10)).isNotEqualTo(shortUrl);
+        assertThat(service.generatePresignedUrl("images/a.jpg", 60)).isNotEqualTo(longUrl);
+        assertThat(service.generatePresignedUrl("images/b.jpg", 10)).isEqualTo(otherUrl);
+    }
+
+    @Test
+    void evictsPresignedUrlsBeyondTheMaximumSize() {
+        initPresignedUrlCache(2);
+        List<String> keys = List.of("images/a.jpg", "images/b.jpg", "images/c.jpg");
+
+        Map<String, String> urls = service.generatePresignedUrls(keys, 10);
+        ((Cache<?, ?>) ReflectionTestUtils.getField(service, "presignedUrlCache")).cleanUp();
+
+        assertThat(urls).containsOnlyKeys(keys);
+        assertThat(service.getPresignedUrlCacheStats())
+                .containsEntry("size", 2L)
+                .containsEntry("evictionCount", 1L);
+        // The evicted URL is signed again on its next request
+        Map<String, String> again = service.generatePresignedUrls(keys, 10);
+        assertThat(keys.stream().filter(key -> !again.get(key).equals(urls.get(key)))).hasSize(1);
+    }
+}
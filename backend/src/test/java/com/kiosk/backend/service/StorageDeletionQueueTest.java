@@ -0,0 +1,95 @@
+package com.kiosk.backend.service;
+
+import com.kiosk.backend.entity.PendingStorageDeletion;
+import com.kiosk.backend.repository.PendingStorageDeletionRepository;
+import com.kiosk.backend.repository.VideoRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StorageDeletionQueueTest {
+
+    private PendingStorageDeletionRepository pendingStorageDeletionRepository;
+    private MediaStore mediaStore;
+    private VideoRepository videoRepository;
+    private StorageDeletionQueue queue;
+
+    @BeforeEach
+    void setUp() {
+        pendingStorageDeletionRepository = mock(PendingStorageDeletionRepository.class);
+        mediaStore = mock(MediaStore.class);
+        videoRepository = mock(VideoRepository.class);
+
+        queue = new StorageDeletionQueue(pendingStorageDeletionRepository, mediaStore, videoRepository);
+        ReflectionTestUtils.setField(queue, "batchSize", 1000);
+        ReflectionTestUtils.setField(queue, "maxBackoffMinutes", 60L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        queue.shutdown();
+    }
+
+    private static PendingStorageDeletion pending(long id, String key) {
+        return PendingStorageDeletion.builder()
+                .id(id)
+                .storageKey(key)
+                .nextAttemptAt(LocalDateTime.now().minusMinutes(1))
+                .build();
+    }
+
+    private void queued(PendingStorageDeletion... deletions) {
+        when(pendingStorageDeletionRepository.findByNextAttemptAtLessThanEqualOrderByIdAsc(any(), any()))
+                .thenReturn(List.of(deletions));
+    }
+
+    @Test
+    void cancelsDeletionOfKeysReferencedAgain() {
+        PendingStorageDeletion a = pending(1, "a");
+        PendingStorageDeletion b = pending(2, "b");
+        PendingStorageDeletion c = pending(3, "c");
+        queued(a, b, c);
+        // A deduplicated upload reused "b" after it was queued
+        when(videoRepository.findKeyColumnsReferencing(anyCollection()))
+                .thenReturn(List.<Object[]>of(new Object[] {"b", null, null, null, null}));
+        when(mediaStore.deleteFiles(List.of("a", "c"))).thenReturn(Map.of());
+
+        int deleted = queue.flush();
+
+        assertThat(deleted).isEqualTo(2);
+        verify(pendingStorageDeletionRepository).deleteAllInBatch(List.of(b));
+        verify(mediaStore).deleteFiles(List.of("a", "c"));
+        verify(pendingStorageDeletionRepository).deleteAllInBatch(List.of(a, c));
+    }
+
+    @Test
+    void schedulesRetryOfFailedKeys() {
+        PendingStorageDeletion a = pending(1, "a");
+        PendingStorageDeletion b = pending(2, "b");
+        queued(a, b);
+        when(videoRepository.findKeyColumnsReferencing(anyCollection())).thenReturn(List.of());
+        when(mediaStore.deleteFiles(List.of("a", "b"))).thenReturn(Map.of("b", "AccessDenied"));
+
+        int deleted = queue.flush();
+
+        assertThat(deleted).isEqualTo(1);
+        verify(pendingStorageDeletionRepository).deleteAllInBatch(List.of(a));
+        verify(pendingStorageDeletionRepository).saveAll(List.of(b));
+        assertThat(b.getAttempts()).isEqualTo(1);
+        assertThat(b.getLastError()).isEqualTo("AccessDenied");
+        assertThat(b.getNextAttemptAt()).isAfter(LocalDateTime.now());
+        assertThat(queue.getStats()).containsEntry("failedAttemptCount", 1L);
+    }
+}
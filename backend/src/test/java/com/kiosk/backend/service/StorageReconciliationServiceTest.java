@@ -0,0 +1,93 @@
+package com.kiosk.backend.service;
+
+import com.kiosk.backend.repository.PendingStorageDeletionRepository;
+import com.kiosk.backend.repository.VideoRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StorageReconciliationServiceTest {
+
+    private static final Instant OLD = Instant.now().minus(Duration.ofDays(3));
+    private static final Instant RECENT = Instant.now().minus(Duration.ofMinutes(5));
+
+    private VideoRepository videoRepository;
+    private PendingStorageDeletionRepository pendingStorageDeletionRepository;
+    private MediaStore mediaStore;
+    private StorageDeletionQueue storageDeletionQueue;
+    private StorageReconciliationService service;
+
+    @BeforeEach
+    void setUp() {
+        videoRepository = mock(VideoRepository.class);
+        pendingStorageDeletionRepository = mock(PendingStorageDeletionRepository.class);
+        mediaStore = mock(MediaStore.class);
+        storageDeletionQueue = mock(StorageDeletionQueue.class);
+
+        service = new StorageReconciliationService(videoRepository, pendingStorageDeletionRepository,
+                mediaStore, storageDeletionQueue);
+        ReflectionTestUtils.setField(service, "prefixes", List.of("videos/", "thumbnails/"));
+        ReflectionTestUtils.setField(service, "gracePeriodHours", 24L);
+        ReflectionTestUtils.setField(service, "dryRun", false);
+
+        when(videoRepository.findAllS3Keys()).thenReturn(List.of("videos/known.mp4"));
+        when(videoRepository.findAllThumbnailS3Keys()).thenReturn(List.of("thumbnails/known.jpg"));
+        when(videoRepository.findAllOptimizedS3Keys()).thenReturn(List.of("videos/known-kiosk.mp4"));
+        when(pendingStorageDeletionRepository.findAllStorageKeys()).thenReturn(List.of("videos/queued.mp4"));
+
+        listing("videos/", List.of(
+                new MediaStore.StoredObject("videos/known.mp4", 100, OLD),
+                new MediaStore.StoredObject("videos/known-kiosk.mp4", 50, OLD),
+                new MediaStore.StoredObject("videos/queued.mp4", 70, OLD),
+                new MediaStore.StoredObject("videos/orphan.mp4", 200, OLD),
+                new MediaStore.StoredObject("videos/uploading.mp4", 300, RECENT)));
+        listing("thumbnails/", List.of(
+                new MediaStore.StoredObject("thumbnails/known.jpg", 10, OLD),
+                new MediaStore.StoredObject("thumbnails/orphan.jpg", 20, OLD)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void listing(String prefix, List<MediaStore.StoredObject> page) {
+        doAnswer(invocation -> {
+            ((Consumer<List<MediaStore.StoredObject>>) invocation.getArgument(1)).accept(page);
+            return null;
+        }).when(mediaStore).listObjects(eq(prefix), any());
+    }
+
+    @Test
+    void queuesUnreferencedObjectsPastGracePeriod() {
+        StorageReconciliationService.ReconciliationResult result = service.reconcile();
+
+        verify(storageDeletionQueue).enqueue(List.of("videos/orphan.mp4", "thumbnails/orphan.jpg"));
+        assertThat(result.scannedObjects()).isEqualTo(7);
+        assertThat(result.orphanedObjects()).isEqualTo(2);
+        assertThat(result.reclaimedBytes()).isEqualTo(220);
+        assertThat(result.dryRun()).isFalse();
+    }
+
+    @Test
+    void dryRunOnlyReportsOrphans() {
+        ReflectionTestUtils.setField(service, "dryRun", true);
+
+        StorageReconciliationService.ReconciliationResult result = service.reconcile();
+
+        verify(storageDeletionQueue, never()).enqueue(anyCollection());
+        assertThat(result.orphanedObjects()).isEqualTo(2);
+        assertThat(result.dryRun()).isTrue();
+    }
+}
@@ -0,0 +1,74 @@
+package com.kiosk.backend.service;
+
+import com.kiosk.backend.entity.BatchCheckpoint;
+import com.kiosk.backend.repository.BatchCheckpointRepository;
+import com.kiosk.backend.repository.VideoRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ThumbnailRegenerationServiceTest {
+
+    private static final ThumbnailRegenerationService.RegenerationFilter ALL =
+            new ThumbnailRegenerationService.RegenerationFilter(null, null, null, false);
+
+    private VideoRepository videoRepository;
+    private BatchCheckpointRepository batchCheckpointRepository;
+    private ThumbnailRegenerationService service;
+
+    @BeforeEach
+    void setUp() {
+        videoRepository = mock(VideoRepository.class);
+        batchCheckpointRepository = mock(BatchCheckpointRepository.class);
+        when(batchCheckpointRepository.findById(ThumbnailRegenerationService.BATCH_TYPE)).thenReturn(Optional.empty());
+        when(batchCheckpointRepository.save(any(BatchCheckpoint.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        service = new ThumbnailRegenerationService(videoRepository, mock(VideoService.class),
+                mock(ThumbnailService.class), mock(MediaStore.class), batchCheckpointRepository);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void startReturnsBeforeTheRunFinishesAndRejectsASecondRun() throws Exception {
+        CountDownLatch pageRequested = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(videoRepository.findThumbnailRegenerationCandidates(anyLong(), anyList(), any(), any(), anyBoolean(), any(Pageable.class)))
+                .thenAnswer(invocation -> {
+                    pageRequested.countDown();
+                    release.await(5, TimeUnit.SECONDS);
+                    return List.of();
+                });
+
+        ThumbnailRegenerationService.RegenerationRun run = service.start(ALL, false);
+
+        assertThat(pageRequested.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(run.result()).isNotDone();
+        assertThatThrownBy(() -> service.start(ALL, false)).isInstanceOf(IllegalStateException.class);
+
+        release.countDown();
+        ThumbnailRegenerationService.RegenerationResult result = run.result().get(5, TimeUnit.SECONDS);
+        assertThat(result.processed()).isZero();
+
+        // The finished run no longer blocks a new one
+        service.start(ALL, true).result().get(5, TimeUnit.SECONDS);
+    }
+}
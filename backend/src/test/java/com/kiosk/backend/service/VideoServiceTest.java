@@ -0,0 +1,84 @@
+package com.kiosk.backend.service;
+
+import com.kiosk.backend.entity.User;
+import com.kiosk.backend.entity.Video;
+import com.kiosk.backend.repository.KioskVideoRepository;
+import com.kiosk.backend.repository.MenuAssetRefRepository;
+import com.kiosk.backend.repository.UserRepository;
+import com.kiosk.backend.repository.VideoRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.CacheManager;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class VideoServiceTest {
+
+    private static final Long VIDEO_ID = 7L;
+    private static final Long ADMIN_ID = 1L;
+
+    private VideoRepository videoRepository;
+    private StorageDeletionQueue storageDeletionQueue;
+    private VideoService service;
+
+    @BeforeEach
+    void setUp() {
+        videoRepository = mock(VideoRepository.class);
+        UserRepository userRepository = mock(UserRepository.class);
+        storageDeletionQueue = mock(StorageDeletionQueue.class);
+        when(userRepository.findById(ADMIN_ID))
+                .thenReturn(Optional.of(User.builder().id(ADMIN_ID).role(User.UserRole.ADMIN).build()));
+
+        service = new VideoService(videoRepository, userRepository, mock(KioskVideoRepository.class),
+                mock(MediaStore.class), storageDeletionQueue, mock(ThumbnailService.class),
+                mock(ThumbnailJobService.class), mock(TranscodeJobService.class), mock(MediaMetadataService.class),
+                new MenuXmlParser(), mock(MenuAssetRefRepository.class), mock(MenuRenderService.class),
+                mock(MenuIndexService.class), mock(CacheManager.class));
+    }
+
+    private void stored(Video video) {
+        when(videoRepository.findById(VIDEO_ID)).thenReturn(Optional.of(video));
+    }
+
+    @Test
+    void deleteKeepsObjectsSharedWithDuplicateUploads() {
+        stored(Video.builder()
+                .id(VIDEO_ID)
+                .uploadedById(2L)
+                .s3Key("videos/uploads/a.mp4")
+                .thumbnailS3Key("thumbnails/uploads/a.jpg")
+                .optimizedS3Key("videos/uploads/a-kiosk.mp4")
+                .build());
+        // Another upload of the same content still uses the file and the kiosk rendition
+        when(videoRepository.findKeyColumnsReferencing(anyCollection())).thenReturn(List.<Object[]>of(
+                new Object[] {"videos/uploads/a.mp4", "thumbnails/uploads/b.jpg", "videos/uploads/a-kiosk.mp4", null, null}));
+
+        service.deleteVideo(VIDEO_ID, ADMIN_ID);
+
+        verify(videoRepository).findKeyColumnsReferencing(
+                Set.of("videos/uploads/a.mp4", "thumbnails/uploads/a.jpg", "videos/uploads/a-kiosk.mp4"));
+        verify(storageDeletionQueue).enqueue(Set.of("thumbnails/uploads/a.jpg"));
+    }
+
+    @Test
+    void deleteQueuesAllObjectsOfUnsharedVideo() {
+        stored(Video.builder()
+                .id(VIDEO_ID)
+                .uploadedById(2L)
+                .s3Key("videos/uploads/a.mp4")
+                .thumbnailS3Key("thumbnails/uploads/a.jpg")
+                .build());
+        when(videoRepository.findKeyColumnsReferencing(anyCollection())).thenReturn(List.of());
+
+        service.deleteVideo(VIDEO_ID, ADMIN_ID);
+
+        verify(storageDeletionQueue).enqueue(Set.of("videos/uploads/a.mp4", "thumbnails/uploads/a.jpg"));
+    }
+}